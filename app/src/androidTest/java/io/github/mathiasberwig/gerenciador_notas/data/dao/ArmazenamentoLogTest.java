@@ -0,0 +1,26 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * {@link ArmazenamentoNotasTest} sobre o {@link ArmazenamentoLog}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArmazenamentoLogTest extends ArmazenamentoNotasTest {
+
+    @Override
+    protected ArmazenamentoNotas abrir() throws IOException {
+        return new ArmazenamentoLog(getArquivos()[0]);
+    }
+
+    @Override
+    protected File[] getArquivos() {
+        return new File[]{new File(InstrumentationRegistry.getTargetContext().getCacheDir(), "notas-teste.log")};
+    }
+}
@@ -0,0 +1,324 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Comportamento esperado de todo {@link ArmazenamentoNotas mecanismo de armazenamento}, executado
+ * sobre cada implementação por uma subclasse.
+ * <p/>
+ * A interrupção do aplicativo é simulada por uma cópia dos {@link #getArquivos() arquivos} do
+ * mecanismo feita enquanto ele está aberto ({@link #capturarArquivos()}), que substitui os
+ * arquivos antes de reabri-lo ({@link #restaurarCaptura(int)}): o mecanismo deve recuperar
+ * somente as transações confirmadas até o momento da cópia.
+ */
+public abstract class ArmazenamentoNotasTest {
+
+    /**
+     * Extensão das cópias dos arquivos criadas por {@link #capturarArquivos()}.
+     */
+    private static final String EXTENSAO_CAPTURA = ".capturado";
+
+    protected ArmazenamentoNotas armazenamento;
+
+    /**
+     * Abre o mecanismo sobre os arquivos atuais, criando-os caso não existam.
+     */
+    protected abstract ArmazenamentoNotas abrir() throws IOException;
+
+    /**
+     * @return os arquivos do mecanismo. O último é aquele ao qual as escritas são anexadas (o
+     * próprio arquivo de registros ou o WAL).
+     */
+    protected abstract File[] getArquivos();
+
+    /**
+     * Fecha o mecanismo, executa a {@code operacao} sobre os seus arquivos e o reabre.
+     */
+    protected void reabrir(GerenciadorConexao.OperacaoArquivo operacao) throws IOException {
+        armazenamento.fechar();
+        operacao.executar();
+        armazenamento = abrir();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        armazenamento = abrir();
+        reabrir(new GerenciadorConexao.OperacaoArquivo() {
+            @Override
+            public void executar() throws IOException {
+                excluirArquivos();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        armazenamento.fechar();
+        excluirArquivos();
+    }
+
+    @Test
+    public void inserirEBuscarPorId() throws IOException {
+        final long id = armazenamento.inserir(new Nota(null, "Título", "Conteúdo"));
+
+        final Nota nota = armazenamento.buscarPorId(id);
+        assertNotNull(nota);
+        assertEquals(id, nota.getId().longValue());
+        assertEquals("Título", nota.getTitulo());
+        assertEquals("Conteúdo", nota.getConteudo());
+        assertNull(armazenamento.buscarPorId(id + 1));
+    }
+
+    @Test
+    public void preservarConteudoExtenso() throws IOException {
+        StringBuilder conteudo = new StringBuilder();
+        for (int i = 0; conteudo.length() < 200 * 1024; i++) {
+            conteudo.append("Linha ").append(i).append(" da nota extensa, com acentuação.\n");
+        }
+        final long id = armazenamento.inserir(new Nota(null, "Extensa", conteudo.toString()));
+
+        assertEquals(conteudo.toString(), armazenamento.buscarPorId(id).getConteudo());
+        final Nota previa = armazenamento.listar(0, 1).get(0);
+        assertTrue(previa.isParcial());
+        assertTrue(conteudo.toString().startsWith(previa.getConteudo()));
+    }
+
+    @Test
+    public void atualizar() throws IOException {
+        final long id = armazenamento.inserir(new Nota(null, "Título", "Conteúdo"));
+
+        assertTrue(armazenamento.atualizar(new Nota(id, "Novo título", "Novo conteúdo")));
+        final Nota nota = armazenamento.buscarPorId(id);
+        assertEquals("Novo título", nota.getTitulo());
+        assertEquals("Novo conteúdo", nota.getConteudo());
+        assertFalse(armazenamento.atualizar(new Nota(id + 1, "Inexistente", "")));
+    }
+
+    @Test
+    public void excluir() throws IOException {
+        final long id = armazenamento.inserir(new Nota(null, "Título", "Conteúdo"));
+
+        assertTrue(armazenamento.excluir(id));
+        assertNull(armazenamento.buscarPorId(id));
+        assertFalse(armazenamento.excluir(id));
+    }
+
+    @Test
+    public void listarEmOrdemDeId() throws IOException {
+        final long[] ids = inserir(5);
+
+        ArrayList<Nota> pagina = armazenamento.listar(0, 3);
+        assertEquals(3, pagina.size());
+        assertEquals(ids[0], pagina.get(0).getId().longValue());
+        assertEquals(ids[2], pagina.get(2).getId().longValue());
+
+        pagina = armazenamento.listar(ids[2], 3);
+        assertEquals(2, pagina.size());
+        assertEquals(ids[3], pagina.get(0).getId().longValue());
+
+        pagina = armazenamento.listarAnteriores(ids[3], 2);
+        assertEquals(2, pagina.size());
+        assertEquals(ids[1], pagina.get(0).getId().longValue());
+        assertEquals(ids[2], pagina.get(1).getId().longValue());
+    }
+
+    @Test
+    public void desfazerTransacaoComFalha() throws IOException {
+        final long id = armazenamento.inserir(new Nota(null, "Original", "Conteúdo"));
+
+        try {
+            armazenamento.executarEmTransacao(new ArmazenamentoNotas.Transacao() {
+                @Override
+                public void executar() throws IOException {
+                    armazenamento.atualizar(new Nota(id, "Alterada", "Conteúdo"));
+                    armazenamento.inserir(new Nota(null, "Nova", "Conteúdo"));
+                    throw new IOException("Falha simulada");
+                }
+            });
+            fail("A falha da transação deveria ser propagada");
+        } catch (IOException ex) {
+            assertEquals("Falha simulada", ex.getMessage());
+        }
+
+        assertTitulos("Original");
+        armazenamento.inserir(new Nota(null, "Posterior", "Conteúdo"));
+        assertTitulos("Original", "Posterior");
+    }
+
+    @Test
+    public void manterDadosAoReabrir() throws IOException {
+        inserir(3);
+        reabrir(new GerenciadorConexao.OperacaoArquivo() {
+            @Override
+            public void executar() {
+            }
+        });
+
+        assertTitulos("Nota 0", "Nota 1", "Nota 2");
+    }
+
+    @Test
+    public void descartarTransacaoInterrompida() throws IOException {
+        final long[] ids = inserir(2);
+
+        armazenamento.executarEmTransacao(new ArmazenamentoNotas.Transacao() {
+            @Override
+            public void executar() throws IOException {
+                armazenamento.atualizar(new Nota(ids[0], "Alterada", "Conteúdo"));
+                armazenamento.excluir(ids[1]);
+                armazenamento.inserir(new Nota(null, "Nova", "Conteúdo"));
+                // Interrompida antes da confirmação
+                capturarArquivos();
+            }
+        });
+        restaurarCaptura(0);
+
+        assertTitulos("Nota 0", "Nota 1");
+        armazenamento.inserir(new Nota(null, "Posterior", "Conteúdo"));
+        assertTitulos("Nota 0", "Nota 1", "Posterior");
+    }
+
+    @Test
+    public void descartarTransacaoComFinalTruncado() throws IOException {
+        final long[] ids = inserir(2);
+        armazenamento.executarEmTransacao(new ArmazenamentoNotas.Transacao() {
+            @Override
+            public void executar() throws IOException {
+                armazenamento.atualizar(new Nota(ids[0], "Alterada", "Conteúdo"));
+                armazenamento.inserir(new Nota(null, "Nova", "Conteúdo"));
+            }
+        });
+        assertTitulos("Alterada", "Nota 1", "Nova");
+
+        // Interrompida durante a escrita do final da transação
+        capturarArquivos();
+        restaurarCaptura(3);
+
+        assertTitulos("Nota 0", "Nota 1");
+        armazenamento.inserir(new Nota(null, "Posterior", "Conteúdo"));
+        assertTitulos("Nota 0", "Nota 1", "Posterior");
+    }
+
+    /**
+     * Insere {@code quantidade} notas com os títulos {@code "Nota 0"}, {@code "Nota 1"}, etc.
+     *
+     * @return os {@code id}s das notas, em ordem.
+     */
+    private long[] inserir(int quantidade) throws IOException {
+        long[] ids = new long[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            ids[i] = armazenamento.inserir(new Nota(null, "Nota " + i, "Conteúdo da nota " + i));
+        }
+        return ids;
+    }
+
+    private void assertTitulos(String... titulos) throws IOException {
+        final ArrayList<Nota> notas = armazenamento.listar(0, Integer.MAX_VALUE);
+        assertEquals(titulos.length, notas.size());
+        for (int i = 0; i < titulos.length; i++) {
+            assertEquals(titulos[i], notas.get(i).getTitulo());
+        }
+    }
+
+    /**
+     * Copia os arquivos existentes do mecanismo, sem fechá-lo.
+     */
+    private void capturarArquivos() throws IOException {
+        for (File arquivo : getArquivos()) {
+            final File captura = new File(arquivo.getPath() + EXTENSAO_CAPTURA);
+            if (arquivo.exists()) {
+                copiar(arquivo, captura);
+            } else if (captura.exists() && !captura.delete()) {
+                throw new IOException("Não foi possível excluir " + captura);
+            }
+        }
+    }
+
+    /**
+     * Substitui os arquivos do mecanismo pelas cópias de {@link #capturarArquivos()} e o reabre.
+     *
+     * @param bytesTruncados bytes descartados do final da cópia do último arquivo.
+     */
+    private void restaurarCaptura(final int bytesTruncados) throws IOException {
+        reabrir(new GerenciadorConexao.OperacaoArquivo() {
+            @Override
+            @SuppressWarnings("TryFinallyCanBeTryWithResources")
+            public void executar() throws IOException {
+                final File[] arquivos = getArquivos();
+                for (int i = 0; i < arquivos.length; i++) {
+                    final File captura = new File(arquivos[i].getPath() + EXTENSAO_CAPTURA);
+                    if (!captura.exists()) {
+                        excluir(arquivos[i]);
+                        continue;
+                    }
+                    if (i == arquivos.length - 1 && bytesTruncados > 0) {
+                        RandomAccessFile acesso = new RandomAccessFile(captura, "rw");
+                        try {
+                            assertTrue(acesso.length() > bytesTruncados);
+                            acesso.setLength(acesso.length() - bytesTruncados);
+                        } finally {
+                            acesso.close();
+                        }
+                    }
+                    copiar(captura, arquivos[i]);
+                    excluir(captura);
+                }
+            }
+        });
+    }
+
+    /**
+     * Exclui os arquivos do mecanismo e as suas cópias.
+     */
+    private void excluirArquivos() throws IOException {
+        for (File arquivo : getArquivos()) {
+            excluir(arquivo);
+            excluir(new File(arquivo.getPath() + EXTENSAO_CAPTURA));
+        }
+    }
+
+    protected static void excluir(File arquivo) throws IOException {
+        if (arquivo.exists() && !arquivo.delete()) {
+            throw new IOException("Não foi possível excluir " + arquivo);
+        }
+    }
+
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static void copiar(File origem, File destino) throws IOException {
+        InputStream entrada = new FileInputStream(origem);
+        try {
+            FileOutputStream saida = new FileOutputStream(destino);
+            try {
+                final byte[] buffer = new byte[8192];
+                int lidos;
+                while ((lidos = entrada.read(buffer)) >= 0) {
+                    saida.write(buffer, 0, lidos);
+                }
+                saida.getFD().sync();
+            } finally {
+                saida.close();
+            }
+        } finally {
+            entrada.close();
+        }
+    }
+}
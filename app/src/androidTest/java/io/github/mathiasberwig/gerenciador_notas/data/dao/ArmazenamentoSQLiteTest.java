@@ -0,0 +1,106 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link ArmazenamentoNotasTest} sobre o {@link ArmazenamentoSQLite}, no banco de dados do
+ * aplicativo, que é excluído antes e depois de cada teste.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArmazenamentoSQLiteTest extends ArmazenamentoNotasTest {
+
+    private GerenciadorConexao conexao;
+
+    @Override
+    protected ArmazenamentoNotas abrir() {
+        conexao = GerenciadorConexao.getInstance(InstrumentationRegistry.getTargetContext());
+        return new ArmazenamentoSQLite(conexao);
+    }
+
+    @Override
+    protected File[] getArquivos() {
+        final String banco = DBHelper.getArquivo(InstrumentationRegistry.getTargetContext()).getPath();
+        return new File[]{new File(banco), new File(banco + "-journal"), new File(banco + "-wal")};
+    }
+
+    /**
+     * A atualização de uma nota segmentada com uma alteração no meio do conteúdo (que altera o seu
+     * tamanho) deve manter o primeiro e o último segmentos inalterados.
+     */
+    @Test
+    public void regravarSomenteSegmentosAlterados() throws IOException {
+        StringBuilder conteudo = new StringBuilder();
+        for (int i = 0; conteudo.length() < CodificadorConteudo.LIMITE_SEGMENTACAO + 8 * ConteudoSegmentado.TAMANHO_SEGMENTO; i++) {
+            conteudo.append("Linha ").append(i).append(" da nota segmentada, com acentuação.\n");
+        }
+        final long id = armazenamento.inserir(new Nota(null, "Segmentada", conteudo.toString()));
+        final List<byte[]> anteriores = lerSegmentos(id);
+
+        final int meio = conteudo.length() / 2;
+        conteudo.replace(meio, meio + 10, "Trecho alterado no meio da nota");
+        assertTrue(armazenamento.atualizar(new Nota(id, "Segmentada", conteudo.toString())));
+
+        assertEquals(conteudo.toString(), armazenamento.buscarPorId(id).getConteudo());
+        final List<byte[]> atuais = lerSegmentos(id);
+        assertArrayEquals(anteriores.get(0), atuais.get(0));
+        assertArrayEquals(anteriores.get(anteriores.size() - 1), atuais.get(atuais.size() - 1));
+    }
+
+    /**
+     * @return os dados dos segmentos da nota, em ordem.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private List<byte[]> lerSegmentos(long id) {
+        final SQLiteDatabase database = conexao.abrir();
+        try {
+            final Cursor cursor = database.query(NotasDAO.Notas.NOME_TABELA_SEGMENTOS,
+                    new String[]{NotasDAO.Segmentos.CONTEUDO}, NotasDAO.Segmentos.ID_NOTA + " = ?",
+                    new String[]{String.valueOf(id)}, null, null, NotasDAO.Segmentos.SEQUENCIA + " ASC");
+            try {
+                final ArrayList<byte[]> segmentos = new ArrayList<>();
+                while (cursor.moveToNext()) {
+                    segmentos.add(cursor.getBlob(0));
+                }
+                assertTrue("Quantidade de segmentos: " + segmentos.size(), segmentos.size() > 2);
+                return segmentos;
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            conexao.liberar(database);
+        }
+    }
+
+    /**
+     * Executa a {@code operacao} com a conexão compartilhada fechada, descartando também o índice
+     * do WAL ({@code -shm}), reconstruído pelo SQLite a partir do WAL ao reabrir o banco de dados.
+     */
+    @Override
+    protected void reabrir(final GerenciadorConexao.OperacaoArquivo operacao) throws IOException {
+        conexao.executarComBancoFechado(new GerenciadorConexao.OperacaoArquivo() {
+            @Override
+            public void executar() throws IOException {
+                operacao.executar();
+                excluir(new File(getArquivos()[0].getPath() + "-shm"));
+            }
+        });
+        armazenamento = abrir();
+    }
+}
@@ -0,0 +1,184 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.github.mathiasberwig.gerenciador_notas.R;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Atualização de um banco de dados da versão 1 com {@link #QUANTIDADE_NOTAS} notas até a
+ * {@link DBHelper#DB_VERSION versão atual}, executada como pelo {@link DBHelper#onUpgrade}: todas
+ * as migrações na transação do {@code SQLiteOpenHelper}.
+ * <p/>
+ * O esquema resultante deve ser o mesmo de um banco de dados criado na versão atual
+ * ({@code criacao_tabelas_db.sql}), com todas as notas indexadas para a busca, e a atualização
+ * deve terminar dentro de {@link #ORCAMENTO_MS}. Os bancos de dados são criados no diretório de
+ * cache, sem alterar o do aplicativo.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigracoesBancoTest {
+
+    private static final int QUANTIDADE_NOTAS = 100 * 1000;
+
+    /**
+     * Duração máxima da atualização, em milissegundos.
+     */
+    private static final long ORCAMENTO_MS = TimeUnit.SECONDS.toMillis(60);
+
+    /**
+     * Esquema da versão 1 (o script de criação original), a partir do qual as migrações são
+     * aplicadas.
+     */
+    private static final String SQL_CRIAR_V1 = "CREATE TABLE notas (_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + " titulo VARCHAR(50) NOT NULL, conteudo TEXT NOT NULL)";
+
+    /**
+     * Palavra presente no conteúdo de todas as notas, buscada no índice após a atualização.
+     */
+    private static final String PALAVRA_COMUM = "gerenciador";
+
+    private Context context;
+    private File arquivoAtualizado;
+    private File arquivoCriado;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        arquivoAtualizado = new File(context.getCacheDir(), "migracoes-teste-atualizado.db");
+        arquivoCriado = new File(context.getCacheDir(), "migracoes-teste-criado.db");
+        SQLiteDatabase.deleteDatabase(arquivoAtualizado);
+        SQLiteDatabase.deleteDatabase(arquivoCriado);
+    }
+
+    @After
+    public void tearDown() {
+        SQLiteDatabase.deleteDatabase(arquivoAtualizado);
+        SQLiteDatabase.deleteDatabase(arquivoCriado);
+    }
+
+    @Test
+    public void atualizarDaVersao1() {
+        final SQLiteDatabase db = abrir(arquivoAtualizado);
+        try {
+            criarVersao1(db);
+
+            final MigracoesBanco migracoes = new MigracoesBanco(context.getResources(), DBHelper.criarMigracoes());
+            final long inicio = System.nanoTime();
+            db.beginTransaction();
+            try {
+                migracoes.executar(db, db.getVersion());
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            final long duracao = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+
+            assertEquals(DBHelper.DB_VERSION, db.getVersion());
+            assertEquals(criarVersaoAtual(), listarEsquema(db));
+            assertEquals(QUANTIDADE_NOTAS, contar(db, "SELECT count(*) FROM notas"));
+            assertEquals(QUANTIDADE_NOTAS, contar(db, "SELECT count(*) FROM notas_fts WHERE notas_fts MATCH '"
+                    + PALAVRA_COMUM + "'"));
+            assertEquals(1, contar(db, "SELECT count(*) FROM notas_fts WHERE notas_fts MATCH 'nota"
+                    + QUANTIDADE_NOTAS + "'"));
+            assertEquals(DBHelper.DB_VERSION - 1, contar(db, "SELECT count(*) FROM " + MigracoesBanco.NOME_TABELA));
+            assertTrue("Atualização concluída em " + duracao + " ms, acima de " + ORCAMENTO_MS + " ms",
+                    duracao <= ORCAMENTO_MS);
+        } finally {
+            db.close();
+        }
+    }
+
+    private static SQLiteDatabase abrir(File arquivo) {
+        final SQLiteDatabase db = SQLiteDatabase.openDatabase(arquivo.getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE | SQLiteDatabase.CREATE_IF_NECESSARY);
+        // Como o DBHelper
+        db.enableWriteAheadLogging();
+        return db;
+    }
+
+    /**
+     * Cria o esquema da versão 1 e insere as notas em uma única transação.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static void criarVersao1(SQLiteDatabase db) {
+        db.execSQL(SQL_CRIAR_V1);
+        db.setVersion(1);
+
+        final StringBuilder conteudo = new StringBuilder();
+        final SQLiteStatement inserir = db.compileStatement("INSERT INTO notas (titulo, conteudo) VALUES (?, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 1; i <= QUANTIDADE_NOTAS; i++) {
+                conteudo.setLength(0);
+                conteudo.append("Conteúdo da nota").append(i).append(" no ").append(PALAVRA_COMUM);
+                while (conteudo.length() < 200) {
+                    conteudo.append(", com acentuação e algumas palavras repetidas");
+                }
+                inserir.bindString(1, "Nota " + i);
+                inserir.bindString(2, conteudo.toString());
+                inserir.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            inserir.close();
+        }
+    }
+
+    /**
+     * @return o esquema de um banco de dados criado na versão atual.
+     */
+    private List<String> criarVersaoAtual() {
+        final SQLiteDatabase db = abrir(arquivoCriado);
+        try {
+            ScriptSQL.executar(db, context.getResources(), R.raw.criacao_tabelas_db);
+            return listarEsquema(db);
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * @return o tipo e o nome das tabelas, views, índices e gatilhos do banco de dados, em ordem.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static List<String> listarEsquema(SQLiteDatabase db) {
+        final ArrayList<String> esquema = new ArrayList<>();
+        final Cursor cursor = db.rawQuery("SELECT type, name FROM sqlite_master ORDER BY type, name", null);
+        try {
+            while (cursor.moveToNext()) {
+                esquema.add(cursor.getString(0) + " " + cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return esquema;
+    }
+
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static long contar(SQLiteDatabase db, String sql) {
+        final SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            return statement.simpleQueryForLong();
+        } finally {
+            statement.close();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.github.mathiasberwig.gerenciador_notas.presentation.adapter;
+
+import android.database.MatrixCursor;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.annotation.UiThreadTest;
+import android.support.test.rule.UiThreadTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.mathiasberwig.gerenciador_notas.data.dao.NotasDAO;
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Alocações da vinculação dos holders do {@link NotasRecyclerViewAdapter}: vincular novamente o
+ * mesmo holder, nos modos de exibição por lista e por cursor, não deve alocar objetos a cada
+ * vinculação.
+ * <p/>
+ * As alocações são contadas pelo {@link Debug} na thread principal, com o holder fora de uma
+ * {@code RecyclerView}, de modo que somente a vinculação seja medida.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NotasRecyclerViewAdapterTest {
+
+    private static final int QUANTIDADE_NOTAS = 10;
+
+    /**
+     * Vinculações da primeira medição; a segunda faz dez vezes mais.
+     */
+    private static final int VINCULACOES = 100;
+
+    /**
+     * Vinculações anteriores às medições, que alocam os objetos reutilizados pelas seguintes.
+     */
+    private static final int AQUECIMENTO = 2 * QUANTIDADE_NOTAS;
+
+    /**
+     * Payloads de uma vinculação completa, como os informados pela {@code RecyclerView}.
+     */
+    private static final List<Object> SEM_PAYLOADS = Collections.emptyList();
+
+    @Rule
+    public final UiThreadTestRule threadPrincipal = new UiThreadTestRule();
+
+    private NotasRecyclerViewAdapter adapter;
+    private NotasRecyclerViewAdapter.ViewHolder holder;
+
+    @Before
+    public void setUp() {
+        ArrayList<Nota> notas = new ArrayList<>();
+        for (int i = 1; i <= QUANTIDADE_NOTAS; i++) {
+            notas.add(new Nota((long) i, "Nota " + i, "Conteúdo da nota " + i));
+        }
+        adapter = new NotasRecyclerViewAdapter(notas, null);
+        // A nota 1 selecionada alterna o destaque do holder entre as vinculações
+        adapter.setIdsSelecionados(new long[]{1});
+    }
+
+    @Test
+    @UiThreadTest
+    public void vincularListaSemAlocar() {
+        criarHolder();
+        assertFalse(adapter.isModoCursor());
+
+        assertSemCrescimento(contarAlocacoes(VINCULACOES), contarAlocacoes(10 * VINCULACOES));
+    }
+
+    @Test
+    @UiThreadTest
+    public void vincularCursorSemAlocar() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{NotasDAO.Notas._ID, NotasDAO.Notas.TITULO,
+                NotasDAO.Notas.CONTEUDO});
+        for (int i = 1; i <= QUANTIDADE_NOTAS; i++) {
+            cursor.addRow(new Object[]{(long) i, "Nota " + i, "Conteúdo da nota " + i});
+        }
+        adapter.trocarCursor(cursor);
+        criarHolder();
+        assertTrue(adapter.isModoCursor());
+
+        try {
+            assertSemCrescimento(contarAlocacoes(VINCULACOES), contarAlocacoes(10 * VINCULACOES));
+        } finally {
+            adapter.trocarCursor(null);
+        }
+    }
+
+    /**
+     * Cria o holder e o vincula a todas as posições, alocando os objetos reutilizados pelas
+     * vinculações seguintes (os buffers do cursor, por exemplo).
+     */
+    private void criarHolder() {
+        holder = adapter.onCreateViewHolder(new FrameLayout(InstrumentationRegistry.getTargetContext()), 0);
+        for (int i = 0; i < AQUECIMENTO; i++) {
+            adapter.onBindViewHolder(holder, i % QUANTIDADE_NOTAS, SEM_PAYLOADS);
+        }
+    }
+
+    /**
+     * Vincula o holder {@code vinculacoes} vezes, percorrendo as posições em ordem.
+     *
+     * @return quantidade de objetos alocados pela thread durante as vinculações.
+     */
+    private int contarAlocacoes(int vinculacoes) {
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            for (int i = 0; i < vinculacoes; i++) {
+                adapter.onBindViewHolder(holder, i % QUANTIDADE_NOTAS, SEM_PAYLOADS);
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        return Debug.getThreadAllocCount();
+    }
+
+    private static void assertSemCrescimento(int alocacoes, int alocacoesDezVezesMais) {
+        assertEquals("Alocações por vinculação", alocacoes, alocacoesDezVezesMais);
+    }
+}
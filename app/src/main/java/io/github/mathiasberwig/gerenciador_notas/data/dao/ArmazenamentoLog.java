@@ -0,0 +1,732 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+/**
+ * {@link ArmazenamentoNotas Mecanismo de armazenamento} sobre um arquivo de registros somente
+ * anexados: cada inserção, atualização ou exclusão acrescenta um registro ao final do arquivo, e um
+ * índice em memória ({@code id} → posição do último registro da nota) é reconstruído ao abrir o
+ * arquivo. As escritas não reescrevem páginas nem índices em disco, favorecendo o salvamento
+ * frequente das notas editadas.
+ * <p/>
+ * As leituras são feitas sobre o arquivo mapeado em memória; o trecho anexado após o último
+ * mapeamento é lido pelo canal até atingir {@link #LIMITE_NAO_MAPEADO} bytes, quando o arquivo é
+ * mapeado novamente. Quando os registros substituídos ou excluídos passam a ocupar a maior parte do
+ * arquivo, ele é compactado em segundo plano (veja {@link #compactar()}).
+ * <p/>
+ * O conteúdo extenso é compactado pelo {@link CodificadorConteudo}; notas acima do limite de
+ * segmentação são gravadas em um único registro.
+ *
+ * <h3>Formato do arquivo</h3>
+ * Cabeçalho: {@code int} {@link #MAGICO}, {@code int} {@link #VERSAO} e {@code long} maior
+ * {@code id} já utilizado até a última compactação. Registros: {@code int} tamanho do corpo, corpo
+ * e {@code int} CRC32 do corpo. Corpo: {@code byte} tipo ({@link #REGISTRO_GRAVACAO},
+ * {@link #REGISTRO_EXCLUSAO}, {@link #REGISTRO_INICIO_TRANSACAO} ou
+ * {@link #REGISTRO_CONFIRMACAO}), {@code long id} ({@code 0} nos marcadores de transação) e, nas
+ * gravações, {@code byte} formato do conteúdo, título, prévia (somente no conteúdo compactado; veja
+ * {@link PreviaConteudo#extrair}) e conteúdo, cada um como {@code int} tamanho seguido dos bytes
+ * (UTF-8 ou compactados), com tamanho {@code -1} para a prévia ausente.
+ * <p/>
+ * Os registros de uma {@link #executarEmTransacao transação} ficam entre um marcador de início e
+ * um de confirmação. Ao abrir o arquivo, um registro incompleto ou com CRC inválido no final
+ * (escrita interrompida) é descartado, assim como os registros de uma transação sem o marcador de
+ * confirmação: a transação é restaurada por inteiro ou não é restaurada.
+ */
+public final class ArmazenamentoLog implements ArmazenamentoNotas {
+    private static final String TAG = ArmazenamentoLog.class.getName();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGICO = 0x474E4C47;
+    private static final int VERSAO = 2;
+
+    /**
+     * Versão anterior aos marcadores de transação, cujos arquivos continuam sendo lidos.
+     */
+    private static final int VERSAO_SEM_TRANSACOES = 1;
+    private static final int TAMANHO_CABECALHO = 16;
+
+    private static final byte REGISTRO_GRAVACAO = 1;
+    private static final byte REGISTRO_EXCLUSAO = 2;
+    private static final byte REGISTRO_INICIO_TRANSACAO = 3;
+    private static final byte REGISTRO_CONFIRMACAO = 4;
+
+    /**
+     * Bytes do registro além do corpo: o tamanho e o CRC32.
+     */
+    private static final int SOBRECARGA_REGISTRO = 8;
+
+    /**
+     * Tamanho do corpo de um registro de exclusão (tipo e {@code id}).
+     */
+    private static final int TAMANHO_EXCLUSAO = 9;
+
+    /**
+     * Bytes do conteúdo em texto decodificados pelas listagens: suficientes para
+     * {@link PreviaConteudo#TAMANHO} + 1 caracteres, com até quatro bytes cada.
+     */
+    private static final int BYTES_PREVIA = 4 * (PreviaConteudo.TAMANHO + 1);
+
+    /**
+     * Bytes anexados após o último mapeamento a partir dos quais o arquivo é mapeado novamente.
+     */
+    private static final long LIMITE_NAO_MAPEADO = 256 * 1024;
+
+    /**
+     * Tamanho mínimo do arquivo para a compactação, que ocorre quando mais da metade dele é
+     * ocupada por registros substituídos ou excluídos.
+     */
+    private static final long TAMANHO_MINIMO_COMPACTACAO = 1024 * 1024;
+
+    /**
+     * Executor das compactações, compartilhado pelas instâncias.
+     */
+    private static final ExecutorService COMPACTACAO = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ArmazenamentoLog-compactacao");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private final File arquivo;
+    private RandomAccessFile acesso;
+    private FileChannel canal;
+
+    /**
+     * Mapeamento do arquivo até {@code mapa.limit()}.
+     */
+    private MappedByteBuffer mapa;
+
+    private long tamanhoArquivo;
+
+    /**
+     * Posição e tamanho do último registro de gravação de cada nota existente.
+     */
+    private TreeMap<Long, Entrada> indice = new TreeMap<>();
+
+    /**
+     * Soma do tamanho dos registros referenciados pelo {@link #indice}.
+     */
+    private long bytesVivos;
+
+    /**
+     * Maior {@code id} já utilizado, inclusive de notas excluídas.
+     */
+    private long ultimoId;
+
+    /**
+     * Alterações do índice na transação corrente, desfeitas caso ela falhe; {@code null} fora de
+     * transações.
+     */
+    private ArrayList<Alteracao> alteracoesTransacao;
+
+    /**
+     * Indica se o marcador de início da transação corrente já foi anexado, o que ocorre somente na
+     * primeira escrita da transação.
+     */
+    private boolean inicioTransacaoAnexado;
+
+    private boolean compactando;
+    private boolean fechado;
+
+    /**
+     * Abre o arquivo, criando-o caso não exista, e reconstrói o índice a partir dos registros.
+     *
+     * @param arquivo o arquivo de registros.
+     */
+    public ArmazenamentoLog(File arquivo) throws IOException {
+        this.arquivo = arquivo;
+        this.acesso = new RandomAccessFile(arquivo, "rw");
+        this.canal = acesso.getChannel();
+        try {
+            recuperar();
+        } catch (IOException ex) {
+            acesso.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public synchronized ArrayList<Nota> listar(long aposId, int limite) throws IOException {
+        verificarAberto();
+        ArrayList<Nota> result = new ArrayList<>(Math.min(limite, indice.size()));
+        for (Map.Entry<Long, Entrada> entrada : indice.tailMap(aposId, false).entrySet()) {
+            if (result.size() >= limite) break;
+            result.add(lerPrevia(entrada.getKey(), entrada.getValue()));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized ArrayList<Nota> listarAnteriores(long antesId, int limite) throws IOException {
+        verificarAberto();
+        ArrayList<Nota> result = new ArrayList<>(Math.min(limite, indice.size()));
+        for (Map.Entry<Long, Entrada> entrada : indice.headMap(antesId, false).descendingMap().entrySet()) {
+            if (result.size() >= limite) break;
+            result.add(lerPrevia(entrada.getKey(), entrada.getValue()));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    @Override
+    public synchronized Nota buscarPorId(long id) throws IOException {
+        verificarAberto();
+        final Entrada entrada = indice.get(id);
+        if (entrada == null) return null;
+
+        ByteBuffer registro = lerCorpo(entrada);
+        registro.position(TAMANHO_EXCLUSAO);
+        final int formato = registro.get();
+        final String titulo = lerTexto(registro);
+        pularCampo(registro);
+        final byte[] conteudo = new byte[registro.getInt()];
+        registro.get(conteudo);
+        if (formato == CodificadorConteudo.FORMATO_DEFLATE) {
+            try {
+                return new Nota(id, titulo, CodificadorConteudo.descompactar(conteudo));
+            } catch (DataFormatException ex) {
+                throw new IOException("Conteúdo compactado inválido na nota " + id, ex);
+            }
+        }
+        return new Nota(id, titulo, new String(conteudo, UTF_8));
+    }
+
+    @Override
+    public synchronized long inserir(Nota nota) throws IOException {
+        verificarAberto();
+        final long id = ultimoId + 1;
+        gravar(id, nota);
+        ultimoId = id;
+        return id;
+    }
+
+    @Override
+    public synchronized boolean atualizar(Nota nota) throws IOException {
+        verificarAberto();
+        if (nota.getId() == null || !indice.containsKey(nota.getId())) return false;
+        gravar(nota.getId(), nota);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean excluir(long id) throws IOException {
+        verificarAberto();
+        if (!indice.containsKey(id)) return false;
+
+        ByteBuffer corpo = ByteBuffer.allocate(TAMANHO_EXCLUSAO);
+        corpo.put(REGISTRO_EXCLUSAO).putLong(id);
+        anexar(corpo);
+        alterarIndice(id, null);
+        concluirEscrita();
+        return true;
+    }
+
+    /**
+     * As escritas da transação são anexadas após um marcador de início e seguidas por um marcador
+     * de confirmação, e sincronizadas com o armazenamento uma única vez, ao final. Caso a transação
+     * falhe, o arquivo é truncado na posição em que ela começou e o índice é restaurado; caso a
+     * execução seja interrompida antes da sincronização, a transação é descartada ao abrir o
+     * arquivo, pois o marcador de confirmação (ou algum registro anterior a ele) não terá sido
+     * gravado. Transações aninhadas fazem parte da transação externa.
+     */
+    @Override
+    public synchronized void executarEmTransacao(Transacao transacao) throws IOException {
+        verificarAberto();
+        if (alteracoesTransacao != null) {
+            transacao.executar();
+            return;
+        }
+
+        final long tamanhoInicial = tamanhoArquivo;
+        final long ultimoIdInicial = ultimoId;
+        final long bytesVivosIniciais = bytesVivos;
+        alteracoesTransacao = new ArrayList<>();
+        inicioTransacaoAnexado = false;
+        boolean concluida = false;
+        try {
+            transacao.executar();
+            if (inicioTransacaoAnexado) {
+                anexar(criarMarcador(REGISTRO_CONFIRMACAO));
+                canal.force(false);
+            }
+            concluida = true;
+        } finally {
+            final ArrayList<Alteracao> alteracoes = alteracoesTransacao;
+            alteracoesTransacao = null;
+            if (!concluida) {
+                desfazer(alteracoes);
+                ultimoId = ultimoIdInicial;
+                bytesVivos = bytesVivosIniciais;
+                truncar(tamanhoInicial);
+            }
+        }
+        agendarCompactacao();
+    }
+
+    @Override
+    public synchronized void fechar() throws IOException {
+        if (fechado) return;
+        fechado = true;
+        mapa = null;
+        acesso.close();
+    }
+
+    /**
+     * Anexa o registro de gravação da {@code nota} com o {@code id} informado.
+     */
+    private void gravar(long id, Nota nota) throws IOException {
+        final String conteudo = nota.getConteudo();
+        final byte[] compactado = CodificadorConteudo.compactar(conteudo);
+        final byte[] titulo = nota.getTitulo().getBytes(UTF_8);
+        final byte[] previa = compactado != null ? PreviaConteudo.extrair(conteudo).getBytes(UTF_8) : null;
+        final byte[] dados = compactado != null ? compactado : conteudo.getBytes(UTF_8);
+
+        ByteBuffer corpo = ByteBuffer.allocate(TAMANHO_EXCLUSAO + 1 + 12 + titulo.length
+                + (previa != null ? previa.length : 0) + dados.length);
+        corpo.put(REGISTRO_GRAVACAO).putLong(id);
+        corpo.put((byte) (compactado != null ? CodificadorConteudo.FORMATO_DEFLATE : CodificadorConteudo.FORMATO_TEXTO));
+        corpo.putInt(titulo.length).put(titulo);
+        if (previa != null) {
+            corpo.putInt(previa.length).put(previa);
+        } else {
+            corpo.putInt(-1);
+        }
+        corpo.putInt(dados.length).put(dados);
+
+        final long posicao = anexar(corpo);
+        alterarIndice(id, new Entrada(posicao, corpo.capacity()));
+        concluirEscrita();
+    }
+
+    /**
+     * Anexa um registro com o {@code corpo} informado ao final do arquivo. Caso a escrita falhe, o
+     * arquivo é truncado na posição anterior a ela.
+     *
+     * @return a posição do registro no arquivo.
+     */
+    private long anexar(ByteBuffer corpo) throws IOException {
+        if (alteracoesTransacao != null && !inicioTransacaoAnexado) {
+            inicioTransacaoAnexado = true;
+            anexar(criarMarcador(REGISTRO_INICIO_TRANSACAO));
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(corpo.array(), 0, corpo.capacity());
+
+        ByteBuffer registro = ByteBuffer.allocate(corpo.capacity() + SOBRECARGA_REGISTRO);
+        registro.putInt(corpo.capacity()).put(corpo.array()).putInt((int) crc.getValue());
+        registro.flip();
+
+        final long posicao = tamanhoArquivo;
+        try {
+            escrever(canal, registro, posicao);
+        } catch (IOException ex) {
+            truncar(posicao);
+            throw ex;
+        }
+        tamanhoArquivo = posicao + registro.limit();
+        return posicao;
+    }
+
+    /**
+     * Sincroniza a escrita com o armazenamento, exceto dentro de transações, sincronizadas ao final.
+     */
+    private void concluirEscrita() throws IOException {
+        if (alteracoesTransacao == null) {
+            canal.force(false);
+            agendarCompactacao();
+        }
+    }
+
+    /**
+     * Aponta o {@code id} para a {@code entrada} (ou o remove do índice, caso seja {@code null}),
+     * registrando a alteração na transação corrente.
+     */
+    private void alterarIndice(long id, Entrada entrada) {
+        final Entrada anterior = entrada != null ? indice.put(id, entrada) : indice.remove(id);
+        if (anterior != null) bytesVivos -= anterior.tamanhoRegistro();
+        if (entrada != null) bytesVivos += entrada.tamanhoRegistro();
+        if (alteracoesTransacao != null) {
+            alteracoesTransacao.add(new Alteracao(id, anterior));
+        }
+    }
+
+    /**
+     * Restaura as entradas do índice alteradas, na ordem inversa das alterações.
+     */
+    private void desfazer(ArrayList<Alteracao> alteracoes) {
+        for (int i = alteracoes.size() - 1; i >= 0; i--) {
+            final Alteracao alteracao = alteracoes.get(i);
+            if (alteracao.anterior != null) {
+                indice.put(alteracao.id, alteracao.anterior);
+            } else {
+                indice.remove(alteracao.id);
+            }
+        }
+    }
+
+    private void truncar(long tamanho) throws IOException {
+        canal.truncate(tamanho);
+        tamanhoArquivo = tamanho;
+        if (mapa != null && mapa.limit() > tamanho) {
+            mapa = null;
+        }
+    }
+
+    /**
+     * Cria a nota exibida nas listagens, decodificando somente o título e o início do conteúdo.
+     */
+    private Nota lerPrevia(long id, Entrada entrada) throws IOException {
+        ByteBuffer registro = lerCorpo(entrada);
+        registro.position(TAMANHO_EXCLUSAO + 1);
+        final String titulo = lerTexto(registro);
+        final int tamanhoPrevia = registro.getInt();
+        final String previa;
+        if (tamanhoPrevia >= 0) {
+            previa = decodificar(registro, tamanhoPrevia);
+        } else {
+            final int tamanhoConteudo = registro.getInt();
+            previa = PreviaConteudo.extrair(decodificar(registro, Math.min(tamanhoConteudo, BYTES_PREVIA)));
+        }
+        return PreviaConteudo.criar(id, titulo, previa);
+    }
+
+    /**
+     * Obtém o corpo do registro da {@code entrada}: um trecho do mapeamento, sem cópia, ou, caso o
+     * registro tenha sido anexado após o último mapeamento, os bytes lidos pelo canal.
+     *
+     * @return o corpo, posicionado no início.
+     */
+    private ByteBuffer lerCorpo(Entrada entrada) throws IOException {
+        final long inicio = entrada.posicao + 4;
+        if (mapa == null || inicio + entrada.tamanho > mapa.limit()) {
+            if (mapa == null || tamanhoArquivo - mapa.limit() > LIMITE_NAO_MAPEADO) {
+                mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanhoArquivo);
+            } else {
+                ByteBuffer corpo = ByteBuffer.allocate(entrada.tamanho);
+                ler(canal, corpo, inicio);
+                corpo.flip();
+                return corpo;
+            }
+        }
+        ByteBuffer corpo = mapa.duplicate();
+        corpo.limit((int) inicio + entrada.tamanho);
+        corpo.position((int) inicio);
+        return corpo.slice();
+    }
+
+    /**
+     * Lê o arquivo, validando os registros e reconstruindo o índice. Registros incompletos ou
+     * inválidos no final do arquivo são descartados, assim como a última transação, caso não tenha
+     * sido confirmada.
+     */
+    private void recuperar() throws IOException {
+        tamanhoArquivo = canal.size();
+        if (tamanhoArquivo < TAMANHO_CABECALHO) {
+            // Arquivo novo, ou cuja criação foi interrompida
+            ByteBuffer cabecalho = criarCabecalho(0);
+            canal.truncate(0);
+            escrever(canal, cabecalho, 0);
+            canal.force(true);
+            tamanhoArquivo = TAMANHO_CABECALHO;
+            return;
+        }
+
+        mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanhoArquivo);
+        final int versao = mapa.getInt(4);
+        if (mapa.getInt(0) != MAGICO || (versao != VERSAO && versao != VERSAO_SEM_TRANSACOES)) {
+            throw new IOException("Arquivo de notas inválido: " + arquivo);
+        }
+        ultimoId = mapa.getLong(8);
+
+        long posicao = TAMANHO_CABECALHO;
+        // Posição do marcador de início da transação ainda não confirmada, ou -1
+        long inicioTransacao = -1;
+        long ultimoIdTransacao = 0;
+        long bytesVivosTransacao = 0;
+        final byte[] corpo = new byte[1024];
+        CRC32 crc = new CRC32();
+        while (posicao + 4 <= tamanhoArquivo) {
+            final int tamanho = mapa.getInt((int) posicao);
+            if (tamanho < TAMANHO_EXCLUSAO || posicao + tamanho + SOBRECARGA_REGISTRO > tamanhoArquivo) break;
+
+            crc.reset();
+            ByteBuffer origem = mapa.duplicate();
+            origem.position((int) posicao + 4);
+            for (int restante = tamanho; restante > 0; ) {
+                final int quantidade = Math.min(restante, corpo.length);
+                origem.get(corpo, 0, quantidade);
+                crc.update(corpo, 0, quantidade);
+                restante -= quantidade;
+            }
+            if ((int) crc.getValue() != origem.getInt()) break;
+
+            final byte tipo = mapa.get((int) posicao + 4);
+            final long id = mapa.getLong((int) posicao + 5);
+            if (tipo == REGISTRO_GRAVACAO) {
+                alterarIndice(id, new Entrada(posicao, tamanho));
+            } else if (tipo == REGISTRO_EXCLUSAO) {
+                alterarIndice(id, null);
+            } else if (tipo == REGISTRO_INICIO_TRANSACAO && inicioTransacao < 0) {
+                inicioTransacao = posicao;
+                ultimoIdTransacao = ultimoId;
+                bytesVivosTransacao = bytesVivos;
+                alteracoesTransacao = new ArrayList<>();
+            } else if (tipo == REGISTRO_CONFIRMACAO && inicioTransacao >= 0) {
+                inicioTransacao = -1;
+                alteracoesTransacao = null;
+            } else {
+                break;
+            }
+            ultimoId = Math.max(ultimoId, id);
+            posicao += tamanho + SOBRECARGA_REGISTRO;
+        }
+
+        if (inicioTransacao >= 0) {
+            Log.w(TAG, "Descartando a transação não confirmada no final de " + arquivo);
+            desfazer(alteracoesTransacao);
+            alteracoesTransacao = null;
+            ultimoId = ultimoIdTransacao;
+            bytesVivos = bytesVivosTransacao;
+            posicao = inicioTransacao;
+        }
+        if (posicao < tamanhoArquivo) {
+            Log.w(TAG, "Descartando " + (tamanhoArquivo - posicao) + " bytes inválidos no final de " + arquivo);
+            truncar(posicao);
+            canal.force(true);
+        }
+        if (versao != VERSAO) {
+            // Os registros anteriores não contêm marcadores de transação e são lidos da mesma forma
+            escrever(canal, criarCabecalho(ultimoId), 0);
+            canal.force(true);
+        }
+    }
+
+    /**
+     * Agenda a compactação caso os registros substituídos e excluídos ocupem mais da metade do
+     * arquivo.
+     */
+    private void agendarCompactacao() {
+        final long bytesMortos = tamanhoArquivo - TAMANHO_CABECALHO - bytesVivos;
+        if (compactando || fechado || alteracoesTransacao != null
+                || tamanhoArquivo < TAMANHO_MINIMO_COMPACTACAO || bytesMortos <= tamanhoArquivo / 2) {
+            return;
+        }
+        compactando = true;
+        COMPACTACAO.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    compactar();
+                } catch (Exception ex) {
+                    Log.e(TAG, "Não foi possível compactar " + arquivo, ex);
+                } finally {
+                    synchronized (ArmazenamentoLog.this) {
+                        compactando = false;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Reescreve o arquivo somente com os registros referenciados pelo índice. Os registros
+     * existentes no início são copiados sem bloquear as demais operações; os anexados durante a
+     * cópia são copiados em seguida, já com o bloqueio, antes de o novo arquivo substituir o atual.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private void compactar() throws IOException {
+        final long[] ids;
+        final Entrada[] entradas;
+        final long tamanhoCopiado;
+        final long ultimoIdCopiado;
+        final ByteBuffer origem;
+        synchronized (this) {
+            if (fechado) return;
+            ids = new long[indice.size()];
+            entradas = new Entrada[indice.size()];
+            int i = 0;
+            for (Map.Entry<Long, Entrada> entrada : indice.entrySet()) {
+                ids[i] = entrada.getKey();
+                entradas[i++] = entrada.getValue();
+            }
+            tamanhoCopiado = tamanhoArquivo;
+            ultimoIdCopiado = ultimoId;
+            if (mapa == null || mapa.limit() < tamanhoArquivo) {
+                mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanhoArquivo);
+            }
+            // Os bytes até tamanhoCopiado não são alterados: as transações são truncadas somente
+            // até a posição em que começaram, posterior a este ponto
+            origem = mapa.duplicate();
+        }
+
+        final File temporario = new File(arquivo.getPath() + ".compactando");
+        RandomAccessFile novoAcesso = new RandomAccessFile(temporario, "rw");
+        boolean substituido = false;
+        try {
+            FileChannel novoCanal = novoAcesso.getChannel();
+            novoCanal.truncate(0);
+            escrever(novoCanal, criarCabecalho(ultimoIdCopiado), 0);
+            long posicao = TAMANHO_CABECALHO;
+            TreeMap<Long, Entrada> novoIndice = new TreeMap<>();
+            for (int i = 0; i < ids.length; i++) {
+                final Entrada entrada = entradas[i];
+                ByteBuffer registro = origem.duplicate();
+                registro.limit((int) (entrada.posicao + entrada.tamanhoRegistro()));
+                registro.position((int) entrada.posicao);
+                escrever(novoCanal, registro, posicao);
+                novoIndice.put(ids[i], new Entrada(posicao, entrada.tamanho));
+                posicao += entrada.tamanhoRegistro();
+            }
+
+            synchronized (this) {
+                if (fechado) return;
+
+                // Registros anexados durante a cópia
+                final long deslocamento = posicao - tamanhoCopiado;
+                ByteBuffer cauda = ByteBuffer.allocate((int) (tamanhoArquivo - tamanhoCopiado));
+                ler(canal, cauda, tamanhoCopiado);
+                cauda.flip();
+                escrever(novoCanal, cauda.duplicate(), posicao);
+                while (cauda.hasRemaining()) {
+                    final long posicaoRegistro = tamanhoCopiado + cauda.position();
+                    final int tamanho = cauda.getInt();
+                    final byte tipo = cauda.get();
+                    final long id = cauda.getLong();
+                    if (tipo == REGISTRO_GRAVACAO) {
+                        novoIndice.put(id, new Entrada(posicaoRegistro + deslocamento, tamanho));
+                    } else if (tipo == REGISTRO_EXCLUSAO) {
+                        novoIndice.remove(id);
+                    }
+                    cauda.position(cauda.position() + tamanho - TAMANHO_EXCLUSAO + 4);
+                }
+                novoCanal.force(true);
+
+                if (!temporario.renameTo(arquivo)) {
+                    throw new IOException("Não foi possível substituir " + arquivo);
+                }
+                substituido = true;
+                acesso.close();
+                acesso = novoAcesso;
+                canal = novoCanal;
+                tamanhoArquivo = novoCanal.size();
+                mapa = null;
+                indice = novoIndice;
+                bytesVivos = 0;
+                for (Entrada entrada : novoIndice.values()) {
+                    bytesVivos += entrada.tamanhoRegistro();
+                }
+            }
+        } finally {
+            if (!substituido) {
+                novoAcesso.close();
+                if (temporario.exists() && !temporario.delete()) {
+                    Log.w(TAG, "Não foi possível excluir " + temporario);
+                }
+            }
+        }
+    }
+
+    private void verificarAberto() throws IOException {
+        if (fechado) throw new IOException("Armazenamento fechado: " + arquivo);
+    }
+
+    private static ByteBuffer criarCabecalho(long ultimoId) {
+        ByteBuffer cabecalho = ByteBuffer.allocate(TAMANHO_CABECALHO);
+        cabecalho.putInt(MAGICO).putInt(VERSAO).putLong(ultimoId);
+        cabecalho.flip();
+        return cabecalho;
+    }
+
+    /**
+     * Cria o corpo de um marcador de transação ({@link #REGISTRO_INICIO_TRANSACAO} ou
+     * {@link #REGISTRO_CONFIRMACAO}).
+     */
+    private static ByteBuffer criarMarcador(byte tipo) {
+        ByteBuffer corpo = ByteBuffer.allocate(TAMANHO_EXCLUSAO);
+        corpo.put(tipo).putLong(0);
+        return corpo;
+    }
+
+    private static void escrever(FileChannel canal, ByteBuffer dados, long posicao) throws IOException {
+        while (dados.hasRemaining()) {
+            posicao += canal.write(dados, posicao);
+        }
+    }
+
+    private static void ler(FileChannel canal, ByteBuffer destino, long posicao) throws IOException {
+        while (destino.hasRemaining()) {
+            final int lidos = canal.read(destino, posicao);
+            if (lidos < 0) throw new IOException("Fim inesperado do arquivo de notas.");
+            posicao += lidos;
+        }
+    }
+
+    private static String lerTexto(ByteBuffer registro) {
+        return decodificar(registro, registro.getInt());
+    }
+
+    private static String decodificar(ByteBuffer registro, int tamanho) {
+        byte[] bytes = new byte[tamanho];
+        registro.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void pularCampo(ByteBuffer registro) {
+        final int tamanho = registro.getInt();
+        if (tamanho > 0) registro.position(registro.position() + tamanho);
+    }
+
+    /**
+     * Posição de um registro no arquivo e tamanho do seu corpo.
+     */
+    private static final class Entrada {
+        final long posicao;
+        final int tamanho;
+
+        Entrada(long posicao, int tamanho) {
+            this.posicao = posicao;
+            this.tamanho = tamanho;
+        }
+
+        long tamanhoRegistro() {
+            return tamanho + SOBRECARGA_REGISTRO;
+        }
+    }
+
+    /**
+     * Entrada do índice substituída por uma escrita em transação.
+     */
+    private static final class Alteracao {
+        final long id;
+        final Entrada anterior;
+
+        Alteracao(long id, Entrada anterior) {
+            this.id = id;
+            this.anterior = anterior;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+/**
+ * Mecanismo de armazenamento das notas utilizado pelo {@link NotasDAO}. O DAO mantém o cache, os
+ * ouvintes e o agrupamento das operações em lote; o mecanismo somente lê e grava as notas.
+ * <p/>
+ * As implementações não dependem de classes do Android além das utilizadas pela {@link Nota}, e
+ * sinalizam erros por exceções, que o {@link NotasDAO} registra e converte nos valores de retorno
+ * documentados nele. Cada escrita individual deve ser atômica e durável ao retornar.
+ *
+ * @see ArmazenamentoSQLite
+ * @see ArmazenamentoLog
+ */
+public interface ArmazenamentoNotas {
+
+    /**
+     * Lista as notas com {@code id} maior que {@code aposId}, em ordem crescente de {@code id},
+     * contendo somente a prévia do conteúdo (veja {@link PreviaConteudo#criar}).
+     *
+     * @param aposId o {@code id} da última nota da página anterior, ou {@code 0}.
+     * @param limite quantidade máxima de notas.
+     * @return as notas da página.
+     */
+    ArrayList<Nota> listar(long aposId, int limite) throws IOException;
+
+    /**
+     * Lista as notas com {@code id} menor que {@code antesId}, as mais próximas dele, em ordem
+     * crescente de {@code id}, contendo somente a prévia do conteúdo.
+     *
+     * @param antesId o {@code id} da primeira nota da página posterior.
+     * @param limite quantidade máxima de notas.
+     * @return as notas da página.
+     */
+    ArrayList<Nota> listarAnteriores(long antesId, int limite) throws IOException;
+
+    /**
+     * @param id o {@code id} da nota.
+     * @return a nota com o conteúdo completo, ou {@code null} caso não exista.
+     */
+    Nota buscarPorId(long id) throws IOException;
+
+    /**
+     * Insere a nota, gerando um {@code id} maior que o de todas as notas já inseridas (inclusive
+     * as excluídas).
+     *
+     * @param nota a nota a ser inserida; o seu {@code id} é ignorado.
+     * @return o {@code id} gerado.
+     */
+    long inserir(Nota nota) throws IOException;
+
+    /**
+     * @param nota a nota a ser atualizada, identificada pelo {@code id}.
+     * @return {@code true} caso a nota exista e tenha sido atualizada.
+     */
+    boolean atualizar(Nota nota) throws IOException;
+
+    /**
+     * @param id o {@code id} da nota a ser excluída.
+     * @return {@code true} caso a nota exista e tenha sido excluída.
+     */
+    boolean excluir(long id) throws IOException;
+
+    /**
+     * Executa a {@code transacao} de forma atômica: caso ela lance uma exceção, nenhuma de suas
+     * escritas é mantida e a exceção é repassada. As escritas são persistidas uma única vez, ao
+     * final, em vez de a cada operação.
+     *
+     * @param transacao as operações a serem executadas, por meio deste mecanismo e na mesma thread.
+     */
+    void executarEmTransacao(Transacao transacao) throws IOException;
+
+    /**
+     * Libera os recursos do mecanismo. Nenhum outro método pode ser chamado depois.
+     */
+    void fechar() throws IOException;
+
+    /**
+     * Operações executadas por {@link #executarEmTransacao(Transacao)}.
+     */
+    interface Transacao {
+        void executar() throws IOException;
+    }
+}
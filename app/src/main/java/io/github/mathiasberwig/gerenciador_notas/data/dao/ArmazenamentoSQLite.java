@@ -0,0 +1,794 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
+import android.util.LongSparseArray;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+import io.github.mathiasberwig.gerenciador_notas.data.model.ResultadoBusca;
+import io.github.mathiasberwig.gerenciador_notas.data.model.Revisao;
+
+import static io.github.mathiasberwig.gerenciador_notas.data.dao.NotasDAO.Notas;
+
+/**
+ * {@link ArmazenamentoNotas Mecanismo de armazenamento} sobre o banco de dados SQLite da aplicação
+ * ({@link DBHelper}), acessado pelo {@link GerenciadorConexao}. Além das operações comuns aos
+ * mecanismos, oferece as que dependem do SQLite: a busca textual, o cursor de notas, a leitura e
+ * escrita de trechos das notas segmentadas ({@link ConteudoSegmentado}) e o histórico de revisões
+ * ({@link HistoricoRevisoes}), registrado a cada inserção e atualização.
+ */
+final class ArmazenamentoSQLite implements ArmazenamentoNotas {
+
+    /**
+     * Projeção do conteúdo utilizada nas listagens: um caractere além da prévia permite identificar,
+     * sem ler o restante do conteúdo, se a nota foi truncada. Notas compactadas têm a prévia
+     * armazenada em {@link Notas#PREVIA}.
+     */
+    private static final String COLUNA_PREVIA = colunaPrevia("");
+
+    // Instruções de escrita, compiladas uma única vez por conexão (GerenciadorConexao#compilar)
+    private static final String SQL_INSERIR = "INSERT INTO " + Notas.NOME_TABELA
+            + " (" + Notas.TITULO + ", " + Notas.CONTEUDO + ", " + Notas.FORMATO + ", " + Notas.PREVIA
+            + ") VALUES (?, ?, ?, ?)";
+    private static final String SQL_ATUALIZAR = "UPDATE " + Notas.NOME_TABELA
+            + " SET " + Notas.TITULO + " = ?, " + Notas.CONTEUDO + " = ?, " + Notas.FORMATO + " = ?, "
+            + Notas.PREVIA + " = ? WHERE " + Notas._ID + " = ?";
+    private static final String SQL_EXCLUIR = "DELETE FROM " + Notas.NOME_TABELA
+            + " WHERE " + Notas._ID + " = ?";
+    private static final String SQL_ATUALIZAR_PREVIA = "UPDATE " + Notas.NOME_TABELA
+            + " SET " + Notas.PREVIA + " = ? WHERE " + Notas._ID + " = ?";
+
+    /**
+     * Peso de uma ocorrência no título em relação a uma ocorrência no conteúdo, na ordenação dos
+     * resultados de {@link #buscar(String, int)}.
+     */
+    private static final double PESO_TITULO = 2.0;
+
+    // Instruções de busca textual, executadas sobre o índice Notas#NOME_TABELA_BUSCA
+    private static final String SQL_BUSCAR_RELEVANCIA = "SELECT docid, matchinfo(" + Notas.NOME_TABELA_BUSCA
+            + ", 'pcx') FROM " + Notas.NOME_TABELA_BUSCA + " WHERE " + Notas.NOME_TABELA_BUSCA + " MATCH ?";
+    private static final String SQL_BUSCAR_TRECHOS = "SELECT n." + Notas._ID + ", n." + Notas.TITULO
+            + ", " + colunaPrevia("n.") + ", snippet(" + Notas.NOME_TABELA_BUSCA + ", ?, ?, '…', 1, 16)"
+            + " FROM " + Notas.NOME_TABELA_BUSCA + " JOIN " + Notas.NOME_TABELA + " n ON n." + Notas._ID
+            + " = " + Notas.NOME_TABELA_BUSCA + ".docid WHERE " + Notas.NOME_TABELA_BUSCA + " MATCH ? AND "
+            + Notas.NOME_TABELA_BUSCA + ".docid IN (";
+
+    /**
+     * Gerenciador da conexão com o banco de dados.
+     */
+    private final GerenciadorConexao conexao;
+
+    ArmazenamentoSQLite(GerenciadorConexao conexao) {
+        this.conexao = conexao;
+    }
+
+    @Override
+    public ArrayList<Nota> listar(long aposId, int limite) {
+        String[] selectionArgs = {String.valueOf(aposId)};
+        return consultar(Notas._ID + " > ?", selectionArgs, Notas._ID + " ASC", String.valueOf(limite), true);
+    }
+
+    @Override
+    public ArrayList<Nota> listarAnteriores(long antesId, int limite) {
+        String[] selectionArgs = {String.valueOf(antesId)};
+        ArrayList<Nota> result = consultar(Notas._ID + " < ?", selectionArgs, Notas._ID + " DESC", String.valueOf(limite), true);
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Lista as notas com {@code id} maior que {@code aposId}, em ordem crescente de {@code id},
+     * com o conteúdo completo (veja {@link NotasDAO#listarCompletas(long, int)}).
+     */
+    ArrayList<Nota> listarCompletas(long aposId, int limite) {
+        String[] selectionArgs = {String.valueOf(aposId)};
+        return consultar(Notas._ID + " > ?", selectionArgs, Notas._ID + " ASC", String.valueOf(limite), false);
+    }
+
+    @Override
+    public Nota buscarPorId(long id) {
+        ArrayList<Nota> result = consultar(Notas._ID + " = ?", new String[]{String.valueOf(id)}, null, "1", false);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    @Override
+    public long inserir(Nota nota) {
+        SQLiteDatabase database = conexao.abrir();
+        final boolean transacaoPropria = iniciarTransacao(database);
+        try {
+            final long rowId = executarInsercao(database, nota);
+            if (transacaoPropria) database.setTransactionSuccessful();
+            return rowId;
+        } finally {
+            encerrarTransacao(database, transacaoPropria);
+        }
+    }
+
+    @Override
+    public boolean atualizar(Nota nota) {
+        SQLiteDatabase database = conexao.abrir();
+        final boolean transacaoPropria = iniciarTransacao(database);
+        try {
+            final boolean atualizada = executarAtualizacao(database, nota) > 0;
+            if (transacaoPropria) database.setTransactionSuccessful();
+            return atualizada;
+        } finally {
+            encerrarTransacao(database, transacaoPropria);
+        }
+    }
+
+    @Override
+    public boolean excluir(long id) {
+        SQLiteDatabase database = conexao.abrir();
+        final boolean transacaoPropria = iniciarTransacao(database);
+        try {
+            final boolean excluida = executarExclusao(database, id) > 0;
+            if (transacaoPropria) database.setTransactionSuccessful();
+            return excluida;
+        } finally {
+            encerrarTransacao(database, transacaoPropria);
+        }
+    }
+
+    @Override
+    public void executarEmTransacao(Transacao transacao) throws IOException {
+        SQLiteDatabase database = conexao.abrir();
+        database.beginTransactionNonExclusive();
+        try {
+            transacao.executar();
+            database.setTransactionSuccessful();
+        } finally {
+            encerrarTransacao(database, true);
+        }
+    }
+
+    /**
+     * A conexão é compartilhada pelo processo; o {@link GerenciadorConexao} a reabre caso volte a
+     * ser utilizada.
+     */
+    @Override
+    public void fechar() {
+        conexao.fechar();
+    }
+
+    /**
+     * Inicia uma transação, caso a thread ainda não esteja em uma. As escritas executadas dentro de
+     * {@link #executarEmTransacao(Transacao)} não abrem transações aninhadas, pois a falha de uma
+     * transação aninhada desfaria também a externa.
+     *
+     * @return {@code true} caso a transação tenha sido iniciada por esta chamada.
+     */
+    private static boolean iniciarTransacao(SQLiteDatabase database) {
+        if (database.inTransaction()) return false;
+        database.beginTransactionNonExclusive();
+        return true;
+    }
+
+    private void encerrarTransacao(SQLiteDatabase database, boolean transacaoPropria) {
+        try {
+            if (transacaoPropria) database.endTransaction();
+        } finally {
+            conexao.liberar(database);
+        }
+    }
+
+    /**
+     * Abre um {@link Cursor} sobre todas as notas (veja {@link NotasDAO#abrirCursor()}).
+     */
+    Cursor abrirCursor() {
+        // A referência obtida impede que a conexão seja fechada enquanto o cursor estiver aberto
+        final SQLiteDatabase database = conexao.abrir();
+        try {
+            // O maior id é calculado uma única vez pela consulta que conta as notas
+            String[] columns = {Notas._ID,
+                    Notas.TITULO,
+                    COLUNA_PREVIA + " AS " + Notas.CONTEUDO,
+                    "(SELECT max(" + Notas._ID + ") FROM " + Notas.NOME_TABELA + ") AS " + Notas.ULTIMO_ID};
+            Cursor cursor = database.query(Notas.NOME_TABELA, columns, null, null, null, null, Notas._ID + " ASC");
+            // Força o preenchimento da primeira CursorWindow
+            cursor.getCount();
+            return new CursorWrapper(cursor) {
+                private boolean fechado;
+
+                @Override
+                public void close() {
+                    super.close();
+                    if (!fechado) {
+                        fechado = true;
+                        conexao.liberar(database);
+                    }
+                }
+            };
+        } catch (RuntimeException ex) {
+            conexao.liberar(database);
+            throw ex;
+        }
+    }
+
+    /**
+     * Obtém o plano de execução ({@code EXPLAIN QUERY PLAN}) da principal instrução da operação,
+     * registrado no log quando ela é {@link MetricasDados#isLenta(long) lenta}.
+     *
+     * @param operacao a operação medida.
+     * @return uma linha por etapa do plano, ou {@code null} caso a operação não tenha uma instrução
+     * representativa.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    String explicarPlano(MetricasDados.Operacao operacao) {
+        final String sql;
+        switch (operacao) {
+            case LISTAR:
+                sql = montarConsulta(Notas._ID + " > ?", Notas._ID + " ASC", "1", true);
+                break;
+            case LISTAR_ANTERIORES:
+                sql = montarConsulta(Notas._ID + " < ?", Notas._ID + " DESC", "1", true);
+                break;
+            case BUSCAR_POR_ID:
+                sql = montarConsulta(Notas._ID + " = ?", null, "1", false);
+                break;
+            case ABRIR_CURSOR:
+                sql = montarConsulta(null, Notas._ID + " ASC", null, true);
+                break;
+            case BUSCAR:
+                sql = SQL_BUSCAR_RELEVANCIA;
+                break;
+            case INSERIR:
+            case INSERIR_TODAS:
+                sql = SQL_INSERIR;
+                break;
+            case ATUALIZAR:
+            case ATUALIZAR_TODAS:
+                sql = SQL_ATUALIZAR;
+                break;
+            case EXCLUIR:
+            case EXCLUIR_TODAS:
+                sql = SQL_EXCLUIR;
+                break;
+            default:
+                return null;
+        }
+
+        SQLiteDatabase database = conexao.abrir();
+        try {
+            // Os parâmetros não vinculados são considerados nulos; a instrução não é executada
+            Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+            try {
+                final int colunaDetalhe = cursor.getColumnIndexOrThrow("detail");
+                StringBuilder plano = new StringBuilder();
+                while (cursor.moveToNext()) {
+                    if (plano.length() > 0) plano.append('\n');
+                    plano.append(cursor.getString(colunaDetalhe));
+                }
+                return plano.toString();
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            conexao.liberar(database);
+        }
+    }
+
+    /**
+     * Monta a instrução executada por {@link #consultar} para os parâmetros informados.
+     */
+    private static String montarConsulta(String selection, String orderBy, String limit, boolean previa) {
+        String[] columns = {Notas._ID,
+                Notas.TITULO,
+                previa ? COLUNA_PREVIA + " AS " + Notas.CONTEUDO : Notas.CONTEUDO,
+                Notas.FORMATO};
+        return SQLiteQueryBuilder.buildQueryString(false, Notas.NOME_TABELA, columns, selection, null, null,
+                orderBy, limit);
+    }
+
+    /**
+     * Consulta as {@link Nota notas} da tabela {@link Notas#NOME_TABELA} conforme os parâmetros
+     * informados.
+     *
+     * @param selection cláusula {@code WHERE} (sem a palavra-chave), ou {@code null}.
+     * @param selectionArgs argumentos da cláusula {@code WHERE}.
+     * @param orderBy cláusula {@code ORDER BY} (sem a palavra-chave), ou {@code null}.
+     * @param limit cláusula {@code LIMIT} (sem a palavra-chave), ou {@code null}.
+     * @param previa {@code true} para ler somente a prévia do conteúdo (veja {@link PreviaConteudo}).
+     * @return as notas encontradas.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private ArrayList<Nota> consultar(String selection, String[] selectionArgs, String orderBy, String limit, boolean previa) {
+        SQLiteDatabase database = conexao.abrir();
+        try {
+            String[] columns = {Notas._ID,
+                    Notas.TITULO,
+                    previa ? COLUNA_PREVIA + " AS " + Notas.CONTEUDO : Notas.CONTEUDO,
+                    Notas.FORMATO};
+            Cursor cursor = database.query(Notas.NOME_TABELA, columns, selection, selectionArgs, null, null, orderBy, limit);
+            try {
+                ArrayList<Nota> result = new ArrayList<>(cursor.getCount());
+                final int colunaId = cursor.getColumnIndexOrThrow(Notas._ID);
+                final int colunaTitulo = cursor.getColumnIndexOrThrow(Notas.TITULO);
+                final int colunaConteudo = cursor.getColumnIndexOrThrow(Notas.CONTEUDO);
+                final int colunaFormato = cursor.getColumnIndexOrThrow(Notas.FORMATO);
+                for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                    final long id = cursor.getLong(colunaId);
+                    final String titulo = cursor.getString(colunaTitulo);
+                    if (previa) {
+                        result.add(PreviaConteudo.criar(id, titulo, cursor.getString(colunaConteudo)));
+                    } else if (cursor.getInt(colunaFormato) == CodificadorConteudo.FORMATO_DEFLATE) {
+                        String conteudo = CodificadorConteudo.descompactar(cursor.getBlob(colunaConteudo));
+                        result.add(new Nota(id, titulo, conteudo));
+                    } else if (cursor.getInt(colunaFormato) == CodificadorConteudo.FORMATO_SEGMENTADO) {
+                        String conteudo = ConteudoSegmentado.ler(database, id, 0, Integer.MAX_VALUE);
+                        result.add(new Nota(id, titulo, conteudo));
+                    } else {
+                        result.add(new Nota(id, titulo, cursor.getString(colunaConteudo)));
+                    }
+                }
+                return result;
+            } finally {
+                cursor.close();
+            }
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Conteúdo compactado inválido.", ex);
+        } finally {
+            conexao.liberar(database);
+        }
+    }
+
+    /**
+     * Busca as notas que contêm os termos informados (veja {@link NotasDAO#buscar(String, int)}).
+     *
+     * @return os resultados em ordem decrescente de relevância, vazio se não houver termos válidos.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    ArrayList<ResultadoBusca> buscar(String termos, int limite) {
+        final String consulta = montarConsultaBusca(termos);
+        if (consulta == null || limite <= 0) return new ArrayList<>();
+
+        SQLiteDatabase database = conexao.abrir();
+        try {
+            // Etapa 1: relevância de todas as notas encontradas
+            Cursor cursor = database.rawQuery(SQL_BUSCAR_RELEVANCIA, new String[]{consulta});
+            final int total;
+            final long[] ids;
+            final double[] relevancias;
+            try {
+                total = cursor.getCount();
+                ids = new long[total];
+                relevancias = new double[total];
+                for (int i = 0; cursor.moveToNext(); i++) {
+                    ids[i] = cursor.getLong(0);
+                    relevancias[i] = calcularRelevancia(cursor.getBlob(1));
+                }
+            } finally {
+                cursor.close();
+            }
+
+            Integer[] ordem = new Integer[total];
+            for (int i = 0; i < total; i++) ordem[i] = i;
+            Arrays.sort(ordem, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    int comparacao = Double.compare(relevancias[b], relevancias[a]);
+                    return comparacao != 0 ? comparacao : (ids[a] < ids[b] ? -1 : (ids[a] == ids[b] ? 0 : 1));
+                }
+            });
+
+            // Etapa 2: trechos e conteúdo apenas das mais relevantes
+            final int quantidade = Math.min(limite, total);
+            ResultadoBusca[] resultados = new ResultadoBusca[quantidade];
+            if (quantidade > 0) {
+                StringBuilder sql = new StringBuilder(SQL_BUSCAR_TRECHOS);
+                LongSparseArray<Integer> posicoes = new LongSparseArray<>(quantidade);
+                for (int i = 0; i < quantidade; i++) {
+                    if (i > 0) sql.append(',');
+                    sql.append(ids[ordem[i]]);
+                    posicoes.put(ids[ordem[i]], i);
+                }
+                sql.append(')');
+
+                final String[] args = {String.valueOf(ResultadoBusca.INICIO_DESTAQUE),
+                        String.valueOf(ResultadoBusca.FIM_DESTAQUE), consulta};
+                cursor = database.rawQuery(sql.toString(), args);
+                try {
+                    while (cursor.moveToNext()) {
+                        final Integer posicao = posicoes.get(cursor.getLong(0));
+                        if (posicao == null) continue;
+                        Nota nota = PreviaConteudo.criar(cursor.getLong(0), cursor.getString(1), cursor.getString(2));
+                        resultados[posicao] = new ResultadoBusca(nota, cursor.getString(3), relevancias[ordem[posicao]]);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+
+            ArrayList<ResultadoBusca> result = new ArrayList<>(quantidade);
+            for (ResultadoBusca resultado : resultados) {
+                // Nulo caso a nota tenha sido excluída entre as duas etapas
+                if (resultado != null) result.add(resultado);
+            }
+            return result;
+        } finally {
+            conexao.liberar(database);
+        }
+    }
+
+    /**
+     * Converte o texto digitado pelo usuário em uma consulta FTS: tudo o que não for letra ou
+     * número (aspas, operadores, parênteses) é descartado e cada termo restante vira uma busca por
+     * prefixo. Os termos são convertidos para minúsculas para não serem interpretados como os
+     * operadores {@code AND}, {@code OR} e {@code NOT}.
+     *
+     * @return a consulta, ou null se não sobrar nenhum termo.
+     */
+    private static String montarConsultaBusca(String termos) {
+        if (termos == null) return null;
+        StringBuilder consulta = new StringBuilder();
+        for (String termo : termos.toLowerCase(Locale.getDefault()).split("[^\\p{L}\\p{N}]+")) {
+            if (termo.isEmpty()) continue;
+            if (consulta.length() > 0) consulta.append(' ');
+            consulta.append(termo).append('*');
+        }
+        return consulta.length() > 0 ? consulta.toString() : null;
+    }
+
+    /**
+     * Calcula a relevância de uma nota a partir do resultado de {@code matchinfo(..., 'pcx')}: para
+     * cada termo e coluna, a fração de todas as ocorrências do termo que está nesta nota, ponderada
+     * pelo peso da coluna ({@link #PESO_TITULO} para o título).
+     */
+    private static double calcularRelevancia(byte[] matchinfo) {
+        IntBuffer valores = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        final int frases = valores.get(0);
+        final int colunas = valores.get(1);
+        double relevancia = 0;
+        for (int frase = 0; frase < frases; frase++) {
+            for (int coluna = 0; coluna < colunas; coluna++) {
+                final int base = 2 + 3 * (frase * colunas + coluna);
+                final int ocorrenciasNota = valores.get(base);
+                final int ocorrenciasTotal = valores.get(base + 1);
+                if (ocorrenciasNota > 0) {
+                    final double peso = coluna == 0 ? PESO_TITULO : 1.0;
+                    relevancia += peso * ocorrenciasNota / ocorrenciasTotal;
+                }
+            }
+        }
+        return relevancia;
+    }
+
+    /**
+     * @param id o {@code id} da nota.
+     * @return a quantidade de caracteres da nota, caso seja segmentada
+     * ({@link CodificadorConteudo#FORMATO_SEGMENTADO}); {@code -1} caso contrário.
+     */
+    int contarCaracteresSegmentados(long id) {
+        SQLiteDatabase database = conexao.abrir();
+        try {
+            if (consultarFormato(database, id) != CodificadorConteudo.FORMATO_SEGMENTADO) return -1;
+            return ConteudoSegmentado.contar(database, id);
+        } finally {
+            conexao.liberar(database);
+        }
+    }
+
+    /**
+     * Lê um trecho da nota, caso seja segmentada (veja {@link NotasDAO#lerTrecho}).
+     *
+     * @return o texto do intervalo, ou {@code null} caso a nota não seja segmentada.
+     */
+    String lerTrechoSegmentado(long id, int inicio, int fim) throws DataFormatException {
+        SQLiteDatabase database = conexao.abrir();
+        try {
+            if (consultarFormato(database, id) != CodificadorConteudo.FORMATO_SEGMENTADO) return null;
+            return ConteudoSegmentado.ler(database, id, inicio, fim);
+        } finally {
+            conexao.liberar(database);
+        }
+    }
+
+    /**
+     * Substitui um trecho da nota, caso seja segmentada (veja {@link NotasDAO#substituirTrecho}),
+     * regravando somente os segmentos que contêm o intervalo e, caso necessário, a prévia. A
+     * revisão é registrada no histórico na mesma transação, por completo, como nas demais
+     * gravações de notas segmentadas; para isso, o conteúdo resultante é lido.
+     *
+     * @return a {@link Nota#isParcial() prévia} da nota atualizada, ou {@code null} caso a nota
+     * não seja segmentada.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    Nota substituirTrechoSegmentado(long id, int inicio, int fim, String texto) throws DataFormatException {
+        SQLiteDatabase database = conexao.abrir();
+        database.beginTransactionNonExclusive();
+        try {
+            if (consultarFormato(database, id) != CodificadorConteudo.FORMATO_SEGMENTADO) return null;
+
+            ConteudoSegmentado.substituir(database, id, inicio, fim, texto);
+            final String conteudo = ConteudoSegmentado.ler(database, id, 0, Integer.MAX_VALUE);
+            final String conteudoPrevia = conteudo.substring(0, Math.min(conteudo.length(), PreviaConteudo.TAMANHO + 1));
+            if (inicio <= PreviaConteudo.TAMANHO) {
+                SQLiteStatement statement = conexao.compilar(database, SQL_ATUALIZAR_PREVIA);
+                try {
+                    synchronized (statement) {
+                        try {
+                            statement.bindString(1, conteudoPrevia);
+                            statement.bindLong(2, id);
+                            statement.executeUpdateDelete();
+                        } finally {
+                            statement.clearBindings();
+                        }
+                    }
+                } finally {
+                    conexao.liberar(statement);
+                }
+            }
+            Nota previa = null;
+            Cursor cursor = database.query(Notas.NOME_TABELA, new String[]{Notas.TITULO},
+                    Notas._ID + " = ?", new String[]{String.valueOf(id)}, null, null, null);
+            try {
+                if (cursor.moveToFirst()) {
+                    previa = PreviaConteudo.criar(id, cursor.getString(0), conteudoPrevia);
+                    HistoricoRevisoes.registrar(database, id, previa.getTitulo(), conteudo, null);
+                }
+            } finally {
+                cursor.close();
+            }
+            database.setTransactionSuccessful();
+            return previa;
+        } finally {
+            encerrarTransacao(database, true);
+        }
+    }
+
+    /**
+     * Lista as revisões da nota (veja {@link NotasDAO#listarRevisoes(long)}).
+     */
+    ArrayList<Revisao> listarRevisoes(long idNota) {
+        SQLiteDatabase database = conexao.abrir();
+        try {
+            return HistoricoRevisoes.listar(database, idNota);
+        } finally {
+            conexao.liberar(database);
+        }
+    }
+
+    /**
+     * Reconstrói uma revisão da nota (veja {@link NotasDAO#buscarRevisao(long, int)}).
+     *
+     * @return a nota na revisão informada, ou {@code null} caso a revisão não exista.
+     */
+    Nota buscarRevisao(long idNota, int revisao) throws DataFormatException {
+        SQLiteDatabase database = conexao.abrir();
+        try {
+            return HistoricoRevisoes.reconstruir(database, idNota, revisao);
+        } finally {
+            conexao.liberar(database);
+        }
+    }
+
+    /**
+     * Exclui as revisões antigas (veja {@link NotasDAO#podarRevisoes(int, long)}), em transações
+     * de até {@link NotasDAO#TAMANHO_LOTE} revisões.
+     *
+     * @return a quantidade de revisões excluídas.
+     */
+    int podarRevisoes(int maximoPorNota, long limiteData) {
+        SQLiteDatabase database = conexao.abrir();
+        try {
+            return HistoricoRevisoes.podar(database, maximoPorNota, limiteData, NotasDAO.TAMANHO_LOTE);
+        } finally {
+            conexao.liberar(database);
+        }
+    }
+
+    /**
+     * @param database a conexão obtida do {@link GerenciadorConexao}.
+     * @param id o {@code id} da nota.
+     * @return o {@link Notas#FORMATO} da nota, ou {@code -1} caso ela não exista.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static int consultarFormato(SQLiteDatabase database, long id) {
+        Cursor cursor = database.query(Notas.NOME_TABELA, new String[]{Notas.FORMATO},
+                Notas._ID + " = ?", new String[]{String.valueOf(id)}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Monta a expressão SQL da prévia do conteúdo (veja {@link #COLUNA_PREVIA}).
+     *
+     * @param prefixo prefixo das colunas (alias da tabela seguido de ponto), ou vazio.
+     */
+    private static String colunaPrevia(String prefixo) {
+        return "CASE WHEN " + prefixo + Notas.FORMATO + " = " + CodificadorConteudo.FORMATO_TEXTO
+                + " THEN substr(" + prefixo + Notas.CONTEUDO + ", 1, " + (PreviaConteudo.TAMANHO + 1) + ")"
+                + " ELSE " + prefixo + Notas.PREVIA + " END";
+    }
+
+    /**
+     * Executa a instrução {@link #SQL_INSERIR} para a {@code nota} informada e registra a primeira
+     * revisão no histórico. Deve ser chamado dentro de uma transação.
+     *
+     * @param database a conexão obtida do {@link GerenciadorConexao}.
+     * @param nota a nota a ser inserida.
+     * @return o {@code _id} da nota inserida, ou {@code -1} em caso de erro.
+     */
+    private long executarInsercao(SQLiteDatabase database, Nota nota) {
+        final boolean segmentado = nota.getConteudo().length() > CodificadorConteudo.LIMITE_SEGMENTACAO;
+        final byte[] compactado = segmentado ? null : CodificadorConteudo.compactar(nota.getConteudo());
+        final long rowId;
+        SQLiteStatement statement = conexao.compilar(database, SQL_INSERIR);
+        try {
+            synchronized (statement) {
+                try {
+                    statement.bindString(1, nota.getTitulo());
+                    vincularConteudo(statement, 2, nota.getConteudo(), segmentado, compactado);
+                    rowId = statement.executeInsert();
+                } finally {
+                    statement.clearBindings();
+                }
+            }
+        } finally {
+            conexao.liberar(statement);
+        }
+        if (rowId != -1) {
+            if (segmentado) ConteudoSegmentado.gravar(database, rowId, nota.getConteudo());
+            HistoricoRevisoes.registrar(database, rowId, nota.getTitulo(), nota.getConteudo(), null);
+        }
+        return rowId;
+    }
+
+    /**
+     * Executa a instrução {@link #SQL_ATUALIZAR} para a {@code nota} informada e registra a revisão
+     * no histórico. A revisão é registrada antes que o conteúdo anterior seja sobrescrito, e ele é
+     * lido somente quando a revisão for armazenada como a diferença em relação a ele. Revisões de
+     * conteúdos segmentados (novos ou anteriores) são armazenadas por completo, sem ler o conteúdo
+     * anterior: a diferença exigiria ler e descompactar todos os segmentos. Deve ser chamado dentro
+     * de uma transação.
+     *
+     * @param database a conexão obtida do {@link GerenciadorConexao}.
+     * @param nota a nota a ser atualizada.
+     * @return número de linhas afetadas.
+     */
+    private int executarAtualizacao(final SQLiteDatabase database, Nota nota) {
+        final long id = nota.getId();
+        final int formatoAnterior = consultarFormato(database, id);
+        if (formatoAnterior == -1) return 0;
+
+        final boolean segmentado = nota.getConteudo().length() > CodificadorConteudo.LIMITE_SEGMENTACAO;
+        final boolean segmentadoAnterior = formatoAnterior == CodificadorConteudo.FORMATO_SEGMENTADO;
+        HistoricoRevisoes.registrar(database, id, nota.getTitulo(), nota.getConteudo(),
+                segmentado || segmentadoAnterior ? null : new HistoricoRevisoes.ConteudoAnterior() {
+                    @Override
+                    public String ler() throws DataFormatException {
+                        return lerConteudo(database, id);
+                    }
+                });
+
+        final byte[] compactado = segmentado ? null : CodificadorConteudo.compactar(nota.getConteudo());
+        final int linhasAfetadas;
+        SQLiteStatement statement = conexao.compilar(database, SQL_ATUALIZAR);
+        try {
+            synchronized (statement) {
+                try {
+                    statement.bindString(1, nota.getTitulo());
+                    vincularConteudo(statement, 2, nota.getConteudo(), segmentado, compactado);
+                    statement.bindLong(5, id);
+                    linhasAfetadas = statement.executeUpdateDelete();
+                } finally {
+                    statement.clearBindings();
+                }
+            }
+        } finally {
+            conexao.liberar(statement);
+        }
+        if (linhasAfetadas > 0) {
+            // Regrava somente os segmentos alterados, ou exclui os que restarem de um conteúdo
+            // segmentado anterior
+            if (segmentado) {
+                try {
+                    ConteudoSegmentado.atualizar(database, id, nota.getConteudo());
+                } catch (DataFormatException ex) {
+                    throw new IllegalStateException("Conteúdo compactado inválido.", ex);
+                }
+            } else if (segmentadoAnterior) {
+                ConteudoSegmentado.excluir(database, id);
+            }
+        }
+        return linhasAfetadas;
+    }
+
+    /**
+     * Lê o conteúdo de uma nota armazenada em uma única coluna (não segmentada).
+     *
+     * @param database a conexão obtida do {@link GerenciadorConexao}.
+     * @param id o {@code id} da nota.
+     * @return o conteúdo da nota, ou {@code null} caso ela não exista ou seja segmentada.
+     * @throws DataFormatException caso o conteúdo compactado esteja corrompido.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static String lerConteudo(SQLiteDatabase database, long id) throws DataFormatException {
+        Cursor cursor = database.query(Notas.NOME_TABELA, new String[]{Notas.CONTEUDO, Notas.FORMATO},
+                Notas._ID + " = ?", new String[]{String.valueOf(id)}, null, null, null);
+        try {
+            if (!cursor.moveToFirst()) return null;
+            switch (cursor.getInt(1)) {
+                case CodificadorConteudo.FORMATO_DEFLATE:
+                    return CodificadorConteudo.descompactar(cursor.getBlob(0));
+                case CodificadorConteudo.FORMATO_TEXTO:
+                    return cursor.getString(0);
+                default:
+                    return null;
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Vincula o conteúdo, o formato e a prévia da nota a partir do parâmetro {@code indice} (três
+     * parâmetros consecutivos, na ordem das colunas {@link Notas#CONTEUDO}, {@link Notas#FORMATO}
+     * e {@link Notas#PREVIA}).
+     *
+     * @param statement a instrução de {@link #SQL_INSERIR} ou {@link #SQL_ATUALIZAR}.
+     * @param indice o índice do parâmetro do conteúdo.
+     * @param conteudo o conteúdo da nota.
+     * @param segmentado {@code true} caso o conteúdo seja armazenado em segmentos
+     *                   ({@link ConteudoSegmentado}), gravados separadamente.
+     * @param compactado o conteúdo compactado, ou {@code null} caso deva ser armazenado como texto.
+     * @see CodificadorConteudo#compactar(String)
+     */
+    private static void vincularConteudo(SQLiteStatement statement, int indice, String conteudo,
+                                         boolean segmentado, byte[] compactado) {
+        if (segmentado) {
+            statement.bindString(indice, "");
+            statement.bindLong(indice + 1, CodificadorConteudo.FORMATO_SEGMENTADO);
+            statement.bindString(indice + 2, PreviaConteudo.extrair(conteudo));
+        } else if (compactado != null) {
+            statement.bindBlob(indice, compactado);
+            statement.bindLong(indice + 1, CodificadorConteudo.FORMATO_DEFLATE);
+            statement.bindString(indice + 2, PreviaConteudo.extrair(conteudo));
+        } else {
+            statement.bindString(indice, conteudo);
+            statement.bindLong(indice + 1, CodificadorConteudo.FORMATO_TEXTO);
+            statement.bindNull(indice + 2);
+        }
+    }
+
+    /**
+     * Executa a instrução {@link #SQL_EXCLUIR} para o {@code id} informado. Deve ser chamado
+     * dentro de uma transação.
+     *
+     * @param database a conexão obtida do {@link GerenciadorConexao}.
+     * @param id o {@code _id} da nota a ser excluída.
+     * @return número de linhas afetadas.
+     */
+    private int executarExclusao(SQLiteDatabase database, long id) {
+        SQLiteStatement statement = conexao.compilar(database, SQL_EXCLUIR);
+        try {
+            synchronized (statement) {
+                try {
+                    statement.bindLong(1, id);
+                    return statement.executeUpdateDelete();
+                } finally {
+                    statement.clearBindings();
+                }
+            }
+        } finally {
+            conexao.liberar(statement);
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseErrorHandler;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.mathiasberwig.gerenciador_notas.data.dao.MetricasDados.Operacao;
+
+/**
+ * Cópias de segurança do banco de dados ({@link DBHelper}), criadas com o aplicativo em uso, e
+ * restauração dessas cópias.
+ *
+ * <h3>Cópia</h3>
+ * Com o WAL habilitado, as escritas são acrescentadas ao arquivo {@code -wal} e só alteram o
+ * arquivo principal nos checkpoints. A cópia desativa os checkpoints automáticos, tornando o
+ * arquivo principal imutável, e o copia em passos de {@link #TAMANHO_PASSO} bytes sem bloquear
+ * leituras nem escritas. Em seguida, obtém o bloqueio de escrita ({@code BEGIN IMMEDIATE}) somente
+ * para copiar o WAL, que contém as transações confirmadas desde o checkpoint executado no início
+ * da cópia. A cópia é então aberta, o WAL é incorporado ao arquivo copiado e a integridade é
+ * verificada ({@code PRAGMA integrity_check}) antes de ela substituir o arquivo de destino.
+ * <p/>
+ * O tempo de bloqueio das escritas depende somente do tamanho do WAL, e não do banco de dados;
+ * ambos os tempos são informados no {@link ResultadoBackup} e registrados nas
+ * {@link MetricasDados métricas}.
+ *
+ * <h3>Restauração</h3>
+ * A cópia é verificada e gravada no diretório do banco de dados; com a conexão fechada, o arquivo
+ * atual é substituído por ela em uma única renomeação. Caso alguma operação mantenha a conexão
+ * aberta, a restauração é cancelada sem alterar o banco de dados.
+ */
+public final class BackupBanco {
+    private static final String TAG = BackupBanco.class.getName();
+
+    /**
+     * Diretório das cópias periódicas, em {@link Context#getFilesDir()}.
+     */
+    static final String DIRETORIO = "backups";
+
+    /**
+     * Extensão dos arquivos das cópias periódicas.
+     */
+    static final String EXTENSAO = ".db";
+
+    /**
+     * Quantidade de cópias periódicas mantidas; as mais antigas são excluídas.
+     */
+    static final int COPIAS_MANTIDAS = 5;
+
+    /**
+     * Intervalo mínimo entre as cópias periódicas.
+     */
+    static final long INTERVALO_COPIAS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Bytes do arquivo principal copiados por passo, entre os quais o progresso é informado.
+     */
+    static final int TAMANHO_PASSO = 1024 * 1024;
+
+    /**
+     * Executor das cópias, separado do executor do {@link NotasDAOAssincrono} para que uma cópia
+     * extensa não atrase as operações das notas.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "gerenciador-notas-backup");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Tratamento de corrupção das cópias abertas para verificação: mantém o arquivo, que o
+     * tratamento padrão do Android excluiria, e deixa a falha ser informada pela verificação.
+     */
+    private static final DatabaseErrorHandler MANTER_ARQUIVO = new DatabaseErrorHandler() {
+        @Override
+        public void onCorruption(SQLiteDatabase database) {
+            Log.e(TAG, "Cópia corrompida: " + database.getPath());
+        }
+    };
+
+    /**
+     * Instância da classe (singleton).
+     */
+    private static volatile BackupBanco instance;
+
+    /**
+     * Recebe o progresso de uma cópia, na thread que a executa.
+     */
+    public interface OuvinteProgresso {
+        /**
+         * @param bytesCopiados bytes copiados até o momento.
+         * @param bytesTotal bytes a copiar, estimados no início da cópia.
+         */
+        void onProgresso(long bytesCopiados, long bytesTotal);
+    }
+
+    private final Context context;
+    private final GerenciadorConexao conexao;
+    private final MetricasDados metricas;
+
+    /**
+     * Resultado da última cópia concluída, ou {@code null} caso nenhuma tenha sido concluída.
+     */
+    private volatile ResultadoBackup ultimoResultado;
+
+    /**
+     * Construtor privado, seguindo o padrão {@code singleton}.
+     *
+     * @param context contexto da aplicação.
+     */
+    private BackupBanco(Context context) {
+        this.context = context;
+        this.conexao = GerenciadorConexao.getInstance(context);
+        this.metricas = MetricasDados.getInstance();
+    }
+
+    /**
+     * Obtém a instância desta classe, criando-a caso ainda não exista.
+     *
+     * @param context contexto para localizar o banco de dados e o diretório das cópias.
+     * @return a instância criada ou existente desta classe.
+     */
+    public static BackupBanco getInstance(Context context) {
+        BackupBanco result = instance;
+        if (result == null) {
+            synchronized (BackupBanco.class) {
+                result = instance;
+                if (result == null) {
+                    result = new BackupBanco(context.getApplicationContext());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return resultado da última cópia concluída desde a abertura do aplicativo, ou {@code null}.
+     */
+    public ResultadoBackup getUltimoResultado() {
+        return ultimoResultado;
+    }
+
+    /**
+     * @return as cópias periódicas existentes, da mais recente para a mais antiga.
+     */
+    public File[] listarCopias() {
+        final File[] arquivos = getDiretorio().listFiles();
+        if (arquivos == null) return new File[0];
+
+        int quantidade = 0;
+        for (File arquivo : arquivos) {
+            if (arquivo.isFile() && arquivo.getName().endsWith(EXTENSAO)) arquivos[quantidade++] = arquivo;
+        }
+        final File[] copias = Arrays.copyOf(arquivos, quantidade);
+        // O nome contém a data da cópia; a ordem alfabética é a ordem cronológica
+        Arrays.sort(copias, Collections.reverseOrder());
+        return copias;
+    }
+
+    /**
+     * @return {@code true} caso não exista cópia periódica criada há menos de
+     * {@link #INTERVALO_COPIAS}.
+     */
+    public boolean isCopiaNecessaria() {
+        final File[] copias = listarCopias();
+        return copias.length == 0 || System.currentTimeMillis() - copias[0].lastModified() >= INTERVALO_COPIAS;
+    }
+
+    /**
+     * Cria uma cópia periódica, em segundo plano, caso {@link #isCopiaNecessaria() necessário}.
+     *
+     * @param ouvinte ouvinte do progresso, ou {@code null}.
+     * @return o resultado futuro da cópia; {@code null} caso ela não seja necessária ou falhe.
+     */
+    public Future<ResultadoBackup> agendarCopiaPeriodica(final OuvinteProgresso ouvinte) {
+        return EXECUTOR.submit(new Callable<ResultadoBackup>() {
+            @Override
+            public ResultadoBackup call() {
+                if (!isCopiaNecessaria()) return null;
+                try {
+                    return criarCopia(ouvinte);
+                } catch (IOException e) {
+                    Log.e(TAG, "Falha na cópia periódica do banco de dados.", e);
+                    return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Cria uma cópia no {@link #DIRETORIO diretório das cópias periódicas}, mantendo somente as
+     * {@link #COPIAS_MANTIDAS} mais recentes.
+     *
+     * @param ouvinte ouvinte do progresso, ou {@code null}.
+     * @return o resultado da cópia.
+     * @throws IOException caso não seja possível copiar o banco de dados ou a cópia esteja corrompida.
+     */
+    public synchronized ResultadoBackup criarCopia(OuvinteProgresso ouvinte) throws IOException {
+        final File diretorio = getDiretorio();
+        if (!diretorio.isDirectory() && !diretorio.mkdirs()) {
+            throw new IOException("Não foi possível criar o diretório " + diretorio);
+        }
+
+        final String nome = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        final ResultadoBackup resultado = copiar(new File(diretorio, "notas-" + nome + EXTENSAO), ouvinte);
+
+        final File[] copias = listarCopias();
+        for (int i = COPIAS_MANTIDAS; i < copias.length; i++) {
+            if (!copias[i].delete()) Log.w(TAG, "Não foi possível excluir a cópia " + copias[i]);
+        }
+        return resultado;
+    }
+
+    /**
+     * Copia o banco de dados para o {@code destino}, sem interromper as operações em andamento.
+     * A cópia é gravada em um arquivo temporário, que substitui o {@code destino} somente após ser
+     * verificada.
+     *
+     * @param destino o arquivo da cópia.
+     * @param ouvinte ouvinte do progresso, ou {@code null}.
+     * @return o resultado da cópia.
+     * @throws IOException caso não seja possível copiar o banco de dados ou a cópia esteja corrompida.
+     */
+    public synchronized ResultadoBackup copiar(File destino, OuvinteProgresso ouvinte) throws IOException {
+        final long inicio = System.nanoTime();
+        final File banco = DBHelper.getArquivo(context);
+        final File wal = new File(banco.getPath() + "-wal");
+        final File temporario = new File(destino.getPath() + ".tmp");
+        excluirArquivos(temporario);
+
+        long bytes = 0;
+        long bloqueio = 0;
+        boolean sucesso = false;
+        try {
+            final SQLiteDatabase database = conexao.abrir();
+            try {
+                // Transfere o WAL para o arquivo principal, sem aguardar leitores ou escritores
+                consultarPragma(database, "wal_checkpoint(PASSIVE)");
+
+                final String autoCheckpoint = configurarAutoCheckpoint(database, "0");
+                try {
+                    // O arquivo principal não é alterado até a reativação dos checkpoints
+                    final long tamanho = banco.length();
+                    final long total = tamanho + wal.length();
+                    bytes = copiarArquivo(banco, temporario, tamanho, total, ouvinte);
+
+                    // Bloqueia as escritas somente durante a cópia do WAL
+                    final long inicioBloqueio = System.nanoTime();
+                    database.beginTransactionNonExclusive();
+                    try {
+                        final File walTemporario = new File(temporario.getPath() + "-wal");
+                        bytes += copiarArquivo(wal, walTemporario, wal.length(), total, null);
+                    } finally {
+                        database.endTransaction();
+                        bloqueio = System.nanoTime() - inicioBloqueio;
+                    }
+                    if (ouvinte != null) ouvinte.onProgresso(bytes, Math.max(bytes, total));
+                } finally {
+                    configurarAutoCheckpoint(database, autoCheckpoint);
+                }
+            } finally {
+                conexao.liberar(database);
+            }
+
+            incorporarWal(temporario);
+            if (!temporario.renameTo(destino)) {
+                throw new IOException("Não foi possível substituir " + destino);
+            }
+            sucesso = true;
+        } catch (SQLiteException e) {
+            throw new IOException("Falha na cópia do banco de dados.", e);
+        } finally {
+            if (!sucesso) excluirArquivos(temporario);
+            metricas.registrar(Operacao.BACKUP, inicio, 0, bytes, sucesso);
+        }
+
+        final ResultadoBackup resultado = new ResultadoBackup(destino, bytes, System.nanoTime() - inicio, bloqueio);
+        ultimoResultado = resultado;
+        Log.i(TAG, "Cópia do banco de dados concluída: " + resultado);
+        return resultado;
+    }
+
+    /**
+     * Substitui o banco de dados pela cópia informada. Após a restauração, as notas exibidas devem
+     * ser recarregadas; o cache do {@link NotasDAO} é descartado. Caso a cópia seja de uma versão
+     * anterior do banco de dados, ela é atualizada pelo {@link DBHelper} na próxima conexão.
+     *
+     * @param copia o arquivo criado por {@link #copiar(File, OuvinteProgresso)}.
+     * @throws IOException caso a cópia esteja corrompida ou seja de uma versão posterior do banco
+     * de dados, ou caso a conexão esteja em uso. O banco de dados atual não é alterado.
+     */
+    public synchronized void restaurar(File copia) throws IOException {
+        final long inicio = System.nanoTime();
+        final File banco = DBHelper.getArquivo(context);
+        final File novo = new File(banco.getPath() + ".restaurar");
+        excluirArquivos(novo);
+
+        boolean sucesso = false;
+        try {
+            verificar(copia);
+
+            // Grava a cópia no diretório do banco, permitindo substituí-lo com uma renomeação
+            copiarArquivo(copia, novo, copia.length(), copia.length(), null);
+
+            conexao.executarComBancoFechado(new GerenciadorConexao.OperacaoArquivo() {
+                @Override
+                public void executar() throws IOException {
+                    final File wal = new File(banco.getPath() + "-wal");
+                    // Ao fechar a última conexão, o SQLite transfere o WAL para o arquivo principal
+                    if (wal.length() > 0) {
+                        throw new IOException("O banco de dados não foi fechado por completo.");
+                    }
+                    wal.delete();
+                    new File(banco.getPath() + "-shm").delete();
+                    new File(banco.getPath() + "-journal").delete();
+                    if (!novo.renameTo(banco)) {
+                        throw new IOException("Não foi possível substituir " + banco);
+                    }
+                }
+            });
+            NotasDAO.getInstance(context).getCache().limpar();
+            sucesso = true;
+        } catch (SQLiteException e) {
+            throw new IOException("Falha na verificação da cópia " + copia, e);
+        } finally {
+            if (!sucesso) excluirArquivos(novo);
+            metricas.registrar(Operacao.RESTAURAR, inicio, 0, copia.length(), sucesso);
+        }
+        Log.i(TAG, "Banco de dados restaurado de " + copia.getName());
+    }
+
+    /**
+     * @return o diretório das cópias periódicas.
+     */
+    private File getDiretorio() {
+        return new File(context.getFilesDir(), DIRETORIO);
+    }
+
+    /**
+     * Verifica a integridade e a versão de uma cópia antes da restauração.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static void verificar(File copia) throws IOException {
+        if (!copia.isFile()) throw new IOException("Cópia não encontrada: " + copia);
+
+        final SQLiteDatabase database = SQLiteDatabase.openDatabase(copia.getPath(), null, SQLiteDatabase.OPEN_READONLY, MANTER_ARQUIVO);
+        try {
+            verificarIntegridade(database);
+            final int versao = database.getVersion();
+            if (versao < 1 || versao > DBHelper.DB_VERSION) {
+                throw new IOException("Versão do banco de dados não suportada: " + versao);
+            }
+        } finally {
+            database.close();
+        }
+    }
+
+    /**
+     * Abre a cópia, incorporando o WAL copiado ao arquivo principal, e verifica a sua integridade.
+     * A cópia passa a ser um único arquivo, sem WAL.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static void incorporarWal(File temporario) throws IOException {
+        final SQLiteDatabase database = SQLiteDatabase.openDatabase(temporario.getPath(), null, SQLiteDatabase.OPEN_READWRITE, MANTER_ARQUIVO);
+        try {
+            consultarPragma(database, "journal_mode=DELETE");
+            verificarIntegridade(database);
+        } finally {
+            database.close();
+        }
+        if (new File(temporario.getPath() + "-wal").length() > 0) {
+            throw new IOException("O WAL da cópia não foi incorporado.");
+        }
+    }
+
+    private static void verificarIntegridade(SQLiteDatabase database) throws IOException {
+        final String resultado = consultarPragma(database, "integrity_check");
+        if (!"ok".equals(resultado)) {
+            throw new IOException("Falha na verificação de integridade: " + resultado);
+        }
+    }
+
+    /**
+     * Altera a quantidade de páginas do WAL que aciona um checkpoint automático ({@code 0}
+     * desativa). A configuração é feita em uma transação para que seja aplicada à conexão de
+     * escrita, na qual os checkpoints automáticos são executados; as demais conexões do pool
+     * somente leem.
+     *
+     * @return a configuração anterior.
+     */
+    private static String configurarAutoCheckpoint(SQLiteDatabase database, String paginas) {
+        database.beginTransactionNonExclusive();
+        try {
+            final String anterior = consultarPragma(database, "wal_autocheckpoint");
+            consultarPragma(database, "wal_autocheckpoint=" + paginas);
+            database.setTransactionSuccessful();
+            return anterior;
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Executa um {@code PRAGMA} e obtém a primeira coluna da primeira linha do resultado. Utiliza
+     * {@code rawQuery}, pois {@code execSQL} não aceita instruções que retornam linhas.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static String consultarPragma(SQLiteDatabase database, String pragma) {
+        final Cursor cursor = database.rawQuery("PRAGMA " + pragma, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Copia os primeiros {@code tamanho} bytes da {@code origem} em passos de
+     * {@link #TAMANHO_PASSO} bytes, sincronizando o destino com o disco ao final. Uma origem
+     * inexistente resulta em nenhum arquivo copiado.
+     *
+     * @return a quantidade de bytes copiados.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static long copiarArquivo(File origem, File destino, long tamanho, long total,
+                                      OuvinteProgresso ouvinte) throws IOException {
+        if (tamanho == 0) return 0;
+
+        final FileInputStream entrada = new FileInputStream(origem);
+        try {
+            final FileOutputStream saida = new FileOutputStream(destino);
+            try {
+                final FileChannel canalEntrada = entrada.getChannel();
+                final FileChannel canalSaida = saida.getChannel();
+                long copiados = 0;
+                while (copiados < tamanho) {
+                    final long passo = canalEntrada.transferTo(copiados, Math.min(TAMANHO_PASSO, tamanho - copiados), canalSaida);
+                    if (passo <= 0) throw new IOException("O arquivo " + origem + " foi truncado durante a cópia.");
+                    copiados += passo;
+                    if (ouvinte != null) ouvinte.onProgresso(copiados, total);
+                }
+                saida.getFD().sync();
+                return copiados;
+            } finally {
+                saida.close();
+            }
+        } finally {
+            entrada.close();
+        }
+    }
+
+    /**
+     * Exclui o arquivo e os arquivos auxiliares do SQLite correspondentes.
+     */
+    private static void excluirArquivos(File arquivo) {
+        arquivo.delete();
+        new File(arquivo.getPath() + "-wal").delete();
+        new File(arquivo.getPath() + "-shm").delete();
+        new File(arquivo.getPath() + "-journal").delete();
+    }
+}
@@ -0,0 +1,209 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.util.LruCache;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+/**
+ * Cache das notas lidas por {@link NotasDAO#buscarPorId(long)}, indexado pelo {@code id}. O limite
+ * é definido em bytes do título e do conteúdo das notas, e não em quantidade de notas, de modo que
+ * poucas notas extensas não ocupem a memória de muitas notas curtas. As notas menos utilizadas
+ * recentemente são descartadas quando o limite é ultrapassado ou quando o sistema solicita a
+ * liberação de memória.
+ * <p/>
+ * O cache armazena cópias das notas e devolve cópias, pois {@link Nota} é mutável (a edição de
+ * uma nota altera a instância recebida antes de gravá-la).
+ * <p/>
+ * As leituras e as escritas do {@link NotasDAO} são executadas em threads diferentes: uma nota lida
+ * do banco de dados é armazenada por {@link #colocarSeInalterado(Nota, long)}, de modo que não
+ * substitua uma versão gravada enquanto era lida.
+ */
+public final class CacheNotas implements ComponentCallbacks2 {
+
+    /**
+     * Estimativa, em bytes, da memória ocupada por uma nota além dos caracteres do título e do
+     * conteúdo (instâncias de {@link Nota}, {@link Long}, {@link String} e entrada do cache).
+     */
+    private static final int BYTES_POR_NOTA = 96;
+
+    /**
+     * Fração da memória máxima do processo utilizada pelo cache.
+     */
+    private static final int FRACAO_MEMORIA = 16;
+
+    private final LruCache<Long, Nota> notas;
+
+    /**
+     * Incrementada a cada alteração feita por uma escrita.
+     *
+     * @see #getVersao()
+     */
+    private long versao;
+
+    /**
+     * Constrói um cache limitado a {@code tamanhoMaximo} bytes.
+     *
+     * @param tamanhoMaximo tamanho máximo do cache, em bytes.
+     */
+    CacheNotas(int tamanhoMaximo) {
+        notas = new LruCache<Long, Nota>(tamanhoMaximo) {
+            @Override
+            protected int sizeOf(Long id, Nota nota) {
+                return tamanhoDe(nota);
+            }
+        };
+    }
+
+    /**
+     * @return o tamanho padrão do cache: {@code 1/}{@link #FRACAO_MEMORIA} da memória máxima do
+     * processo.
+     */
+    static int tamanhoPadrao() {
+        return (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / FRACAO_MEMORIA);
+    }
+
+    /**
+     * Obtém uma cópia da nota armazenada.
+     *
+     * @param id o {@code id} da nota.
+     * @return a cópia da nota, ou {@code null} caso não esteja no cache.
+     */
+    public Nota obter(long id) {
+        final Nota nota = notas.get(id);
+        return nota != null ? copiar(nota) : null;
+    }
+
+    /**
+     * Armazena uma cópia da nota gravada, substituindo a versão anterior, caso exista. Notas maiores que
+     * um quarto do cache não são armazenadas, evitando que uma única nota descarte todas as outras.
+     * Notas {@link Nota#isParcial() parciais} são ignoradas, pois o cache atende a consultas pela
+     * nota completa.
+     *
+     * @param nota a nota, com o {@code id} definido.
+     */
+    public synchronized void colocar(Nota nota) {
+        versao++;
+        armazenar(nota);
+    }
+
+    /**
+     * Armazena uma nota lida do banco de dados, caso nenhuma escrita tenha alterado o cache desde
+     * a {@code versao} obtida antes da leitura.
+     *
+     * @param nota a nota lida, com o {@code id} definido.
+     * @param versao a {@link #getVersao() versão} do cache antes da leitura.
+     */
+    public synchronized void colocarSeInalterado(Nota nota, long versao) {
+        if (versao == this.versao) armazenar(nota);
+    }
+
+    /**
+     * @return a versão atual do cache, a ser informada a {@link #colocarSeInalterado(Nota, long)}.
+     */
+    public synchronized long getVersao() {
+        return versao;
+    }
+
+    private void armazenar(Nota nota) {
+        if (nota.isParcial()) return;
+        if (tamanhoDe(nota) > notas.maxSize() / 4) {
+            notas.remove(nota.getId());
+            return;
+        }
+        notas.put(nota.getId(), copiar(nota));
+    }
+
+    /**
+     * Remove a nota do cache, caso esteja armazenada.
+     *
+     * @param id o {@code id} da nota.
+     */
+    public synchronized void remover(long id) {
+        versao++;
+        notas.remove(id);
+    }
+
+    /**
+     * Remove todas as notas do cache.
+     */
+    public synchronized void limpar() {
+        versao++;
+        notas.evictAll();
+    }
+
+    /**
+     * @return quantidade de consultas atendidas pelo cache.
+     */
+    public int getAcertos() {
+        return notas.hitCount();
+    }
+
+    /**
+     * @return quantidade de consultas a notas que não estavam no cache.
+     */
+    public int getFalhas() {
+        return notas.missCount();
+    }
+
+    /**
+     * @return quantidade de notas descartadas para respeitar o tamanho máximo.
+     */
+    public int getDescartes() {
+        return notas.evictionCount();
+    }
+
+    /**
+     * @return tamanho ocupado pelas notas armazenadas, em bytes.
+     */
+    public int getTamanho() {
+        return notas.size();
+    }
+
+    /**
+     * @return tamanho máximo do cache, em bytes.
+     */
+    public int getTamanhoMaximo() {
+        return notas.maxSize();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            // O processo está próximo de ser encerrado ou o sistema está sem memória
+            notas.evictAll();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            notas.trimToSize(notas.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        // Tratado em onTrimMemory
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // Não utilizado
+    }
+
+    @Override
+    public String toString() {
+        final int acertos = getAcertos();
+        final int consultas = acertos + getFalhas();
+        return "CacheNotas{tamanho=" + getTamanho() + "/" + getTamanhoMaximo() + " bytes"
+                + ", acertos=" + acertos + ", falhas=" + getFalhas() + ", descartes=" + getDescartes()
+                + ", taxaAcerto=" + (consultas > 0 ? 100 * acertos / consultas : 0) + "%}";
+    }
+
+    private static int tamanhoDe(Nota nota) {
+        final int caracteres = (nota.getTitulo() != null ? nota.getTitulo().length() : 0)
+                + (nota.getConteudo() != null ? nota.getConteudo().length() : 0);
+        return BYTES_POR_NOTA + 2 * caracteres;
+    }
+
+    private static Nota copiar(Nota nota) {
+        return new Nota(nota.getId(), nota.getTitulo(), nota.getConteudo());
+    }
+}
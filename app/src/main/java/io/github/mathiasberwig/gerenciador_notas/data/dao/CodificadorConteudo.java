@@ -0,0 +1,115 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compactação do conteúdo das notas armazenado na coluna {@link NotasDAO.Notas#CONTEUDO}. Conteúdos
+ * com mais de {@link #LIMITE_COMPRESSAO} caracteres são armazenados como um BLOB compactado pelo
+ * algoritmo deflate (formato zlib), identificado pela coluna {@link NotasDAO.Notas#FORMATO}.
+ * Conteúdos menores, ou que não se beneficiam da compactação, são armazenados como texto.
+ * <p/>
+ * Não depende de classes do Android, permitindo medir a compactação fora do dispositivo.
+ */
+final class CodificadorConteudo {
+
+    /**
+     * Conteúdo armazenado como texto.
+     */
+    static final int FORMATO_TEXTO = 0;
+
+    /**
+     * Conteúdo armazenado como BLOB compactado (deflate), com o texto codificado em UTF-8.
+     */
+    static final int FORMATO_DEFLATE = 1;
+
+    /**
+     * Conteúdo armazenado em segmentos na tabela {@link NotasDAO.Notas#NOME_TABELA_SEGMENTOS}; a
+     * coluna {@link NotasDAO.Notas#CONTEUDO} fica vazia.
+     *
+     * @see ConteudoSegmentado
+     */
+    static final int FORMATO_SEGMENTADO = 2;
+
+    /**
+     * Diferença em relação à revisão anterior ({@link DeltaConteudo}). Utilizado somente no
+     * histórico de revisões ({@link NotasDAO.Notas#NOME_TABELA_REVISOES}).
+     */
+    static final int FORMATO_DELTA = 3;
+
+    /**
+     * Quantidade de caracteres a partir da qual o conteúdo é armazenado em segmentos em vez de em
+     * uma única coluna, permitindo ler e regravar somente parte dele.
+     */
+    static final int LIMITE_SEGMENTACAO = 256 * 1024;
+
+    /**
+     * Quantidade de caracteres a partir da qual o conteúdo é compactado. Abaixo desse tamanho o
+     * ganho de espaço não compensa o custo de compactar a cada gravação e descompactar a cada leitura.
+     */
+    static final int LIMITE_COMPRESSAO = 4096;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int TAMANHO_BUFFER = 8192;
+
+    private CodificadorConteudo() {
+    }
+
+    /**
+     * Compacta o conteúdo, caso seja maior que {@link #LIMITE_COMPRESSAO} e a compactação reduza o
+     * seu tamanho em pelo menos um oitavo.
+     *
+     * @param conteudo o conteúdo da nota.
+     * @return o conteúdo compactado, ou {@code null} caso deva ser armazenado como texto.
+     */
+    static byte[] compactar(String conteudo) {
+        if (conteudo == null || conteudo.length() <= LIMITE_COMPRESSAO) return null;
+
+        final byte[] original = conteudo.getBytes(UTF_8);
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(original);
+            deflater.finish();
+
+            ByteArrayOutputStream saida = new ByteArrayOutputStream(original.length / 4);
+            byte[] buffer = new byte[TAMANHO_BUFFER];
+            while (!deflater.finished()) {
+                saida.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return saida.size() <= original.length - original.length / 8 ? saida.toByteArray() : null;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Descompacta um conteúdo compactado por {@link #compactar(String)}.
+     *
+     * @param dados o conteúdo compactado.
+     * @return o conteúdo original.
+     * @throws DataFormatException caso os dados não estejam no formato esperado.
+     */
+    static String descompactar(byte[] dados) throws DataFormatException {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(dados);
+
+            ByteArrayOutputStream saida = new ByteArrayOutputStream(dados.length * 4);
+            byte[] buffer = new byte[TAMANHO_BUFFER];
+            while (!inflater.finished()) {
+                final int quantidade = inflater.inflate(buffer);
+                if (quantidade == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Conteúdo compactado incompleto.");
+                }
+                saida.write(buffer, 0, quantidade);
+            }
+            return new String(saida.toByteArray(), UTF_8);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+/**
+ * Armazenamento do conteúdo de notas extensas em segmentos, na tabela
+ * {@link NotasDAO.Notas#NOME_TABELA_SEGMENTOS}. Cada segmento guarda até
+ * {@link #TAMANHO_SEGMENTO} caracteres, compactados quando vantajoso ({@link CodificadorConteudo}),
+ * e o seu tamanho em caracteres, de modo que um intervalo do conteúdo possa ser localizado sem ler
+ * o texto dos segmentos (a coluna do conteúdo é a última da tabela e não é lida pelas consultas
+ * do índice).
+ * <p/>
+ * As sequências dos segmentos são espaçadas em {@link #ESPACAMENTO_SEQUENCIA}, permitindo inserir
+ * segmentos entre dois existentes sem renumerar (e regravar) os seguintes.
+ * <p/>
+ * Os métodos devem ser chamados dentro de uma transação quando houver escrita.
+ */
+final class ConteudoSegmentado {
+
+    /**
+     * Quantidade máxima de caracteres de um segmento.
+     */
+    static final int TAMANHO_SEGMENTO = 16 * 1024;
+
+    /**
+     * Intervalo entre as sequências de segmentos consecutivos gravados por {@link #gravar}.
+     */
+    static final long ESPACAMENTO_SEQUENCIA = 1024;
+
+    private static final String TABELA = NotasDAO.Notas.NOME_TABELA_SEGMENTOS;
+    private static final String ID_NOTA = NotasDAO.Segmentos.ID_NOTA;
+    private static final String SEQUENCIA = NotasDAO.Segmentos.SEQUENCIA;
+    private static final String TAMANHO = NotasDAO.Segmentos.TAMANHO;
+    private static final String FORMATO = NotasDAO.Segmentos.FORMATO;
+    private static final String CONTEUDO = NotasDAO.Segmentos.CONTEUDO;
+
+    private static final String SQL_INSERIR = "INSERT INTO " + TABELA + " (" + ID_NOTA + ", " + SEQUENCIA
+            + ", " + TAMANHO + ", " + FORMATO + ", " + CONTEUDO + ") VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_ATUALIZAR = "UPDATE " + TABELA + " SET " + TAMANHO + " = ?, " + FORMATO
+            + " = ?, " + CONTEUDO + " = ? WHERE " + ID_NOTA + " = ? AND " + SEQUENCIA + " = ?";
+    private static final String SQL_EXCLUIR = "DELETE FROM " + TABELA + " WHERE " + ID_NOTA + " = ? AND "
+            + SEQUENCIA + " = ?";
+
+    private ConteudoSegmentado() {
+    }
+
+    /**
+     * Grava o conteúdo da nota em segmentos, substituindo os segmentos existentes.
+     *
+     * @param db o banco de dados, em uma transação.
+     * @param idNota o {@code _id} da nota.
+     * @param conteudo o conteúdo completo da nota.
+     */
+    static void gravar(SQLiteDatabase db, long idNota, String conteudo) {
+        excluir(db, idNota);
+
+        SQLiteStatement inserir = db.compileStatement(SQL_INSERIR);
+        try {
+            final List<String> segmentos = dividir(conteudo);
+            for (int i = 0; i < segmentos.size(); i++) {
+                gravarSegmento(inserir, idNota, ESPACAMENTO_SEQUENCIA * (i + 1), segmentos.get(i), true);
+            }
+        } finally {
+            inserir.close();
+        }
+    }
+
+    /**
+     * Grava o conteúdo completo da nota, regravando somente os segmentos alterados. Os segmentos
+     * são lidos e comparados ao conteúdo a partir do início e a partir do fim, até o primeiro
+     * segmento diferente em cada sentido; somente o intervalo entre eles é substituído (veja
+     * {@link #substituir}), sem compactar e gravar novamente os segmentos inalterados.
+     *
+     * @param db o banco de dados, em uma transação.
+     * @param idNota o {@code _id} da nota.
+     * @param conteudo o conteúdo completo da nota.
+     * @throws DataFormatException caso um segmento compactado esteja corrompido.
+     */
+    static void atualizar(SQLiteDatabase db, long idNota, String conteudo) throws DataFormatException {
+        final Indice indice = lerIndice(db, idNota);
+        final int quantidade = indice.tamanhos.length;
+        if (quantidade == 0) {
+            gravar(db, idNota, conteudo);
+            return;
+        }
+
+        // Segmentos inalterados no início: [0, primeiro)
+        int primeiro = 0;
+        while (primeiro < quantidade && indice.inicioDe(primeiro + 1) <= conteudo.length()
+                && contem(db, idNota, indice, primeiro, conteudo, indice.inicioDe(primeiro))) {
+            primeiro++;
+        }
+
+        // Segmentos inalterados no fim: [ultimo, quantidade), deslocados pela diferença de tamanho
+        // e sem sobrepor os do início
+        final int diferenca = conteudo.length() - indice.total();
+        int ultimo = quantidade;
+        while (ultimo > primeiro && indice.inicioDe(ultimo - 1) + diferenca >= indice.inicioDe(primeiro)
+                && contem(db, idNota, indice, ultimo - 1, conteudo, indice.inicioDe(ultimo - 1) + diferenca)) {
+            ultimo--;
+        }
+        if (primeiro == ultimo && diferenca == 0) return;
+
+        final int inicio = indice.inicioDe(primeiro);
+        final int fim = indice.inicioDe(ultimo);
+        substituir(db, idNota, indice, inicio, fim, conteudo.substring(inicio, fim + diferenca));
+    }
+
+    /**
+     * Exclui todos os segmentos da nota, caso existam.
+     *
+     * @param db o banco de dados.
+     * @param idNota o {@code _id} da nota.
+     */
+    static void excluir(SQLiteDatabase db, long idNota) {
+        db.delete(TABELA, ID_NOTA + " = ?", new String[]{String.valueOf(idNota)});
+    }
+
+    /**
+     * @param db o banco de dados.
+     * @param idNota o {@code _id} da nota.
+     * @return a quantidade de caracteres do conteúdo segmentado da nota.
+     */
+    static int contar(SQLiteDatabase db, long idNota) {
+        int total = 0;
+        for (int tamanho : lerIndice(db, idNota).tamanhos) {
+            total += tamanho;
+        }
+        return total;
+    }
+
+    /**
+     * Lê o intervalo {@code [inicio, fim)} do conteúdo segmentado da nota. Somente os segmentos que
+     * contêm o intervalo são lidos.
+     *
+     * @param db o banco de dados.
+     * @param idNota o {@code _id} da nota.
+     * @param inicio posição do primeiro caractere.
+     * @param fim posição seguinte ao último caractere; limitada ao tamanho do conteúdo.
+     * @return o texto do intervalo.
+     * @throws DataFormatException caso um segmento compactado esteja corrompido.
+     */
+    static String ler(SQLiteDatabase db, long idNota, int inicio, int fim) throws DataFormatException {
+        final Indice indice = lerIndice(db, idNota);
+        fim = Math.min(fim, indice.total());
+        if (inicio >= fim) return "";
+
+        final int primeiro = indice.segmentoEm(inicio);
+        final int ultimo = indice.segmentoEm(fim - 1);
+        final String texto = lerSegmentos(db, idNota, indice, primeiro, ultimo);
+        final int deslocamento = indice.inicioDe(primeiro);
+        return texto.substring(inicio - deslocamento, fim - deslocamento);
+    }
+
+    /**
+     * Substitui o intervalo {@code [inicio, fim)} do conteúdo segmentado da nota pelo
+     * {@code texto}. Somente os segmentos que contêm o intervalo são lidos e regravados; caso o
+     * texto resultante exceda {@link #TAMANHO_SEGMENTO}, novos segmentos são inseridos entre os
+     * existentes.
+     *
+     * @param db o banco de dados, em uma transação.
+     * @param idNota o {@code _id} da nota.
+     * @param inicio posição do primeiro caractere substituído; limitada ao tamanho do conteúdo.
+     * @param fim posição seguinte ao último caractere substituído; limitada ao tamanho do
+     * conteúdo.
+     * @param texto o texto que substitui o intervalo.
+     * @throws DataFormatException caso um segmento compactado esteja corrompido.
+     * @throws IllegalArgumentException caso o intervalo seja inválido ({@code inicio < 0} ou
+     * {@code fim < inicio}).
+     */
+    static void substituir(SQLiteDatabase db, long idNota, int inicio, int fim, String texto)
+            throws DataFormatException {
+        if (inicio < 0 || fim < inicio) {
+            throw new IllegalArgumentException("Intervalo inválido: [" + inicio + ", " + fim + ")");
+        }
+        substituir(db, idNota, lerIndice(db, idNota), inicio, fim, texto);
+    }
+
+    /**
+     * Substitui o intervalo {@code [inicio, fim)} do conteúdo segmentado da nota, a partir do
+     * índice já lido (veja {@link #substituir(SQLiteDatabase, long, int, int, String)}).
+     */
+    private static void substituir(SQLiteDatabase db, long idNota, Indice indice, int inicio, int fim, String texto)
+            throws DataFormatException {
+        final int total = indice.total();
+        inicio = Math.min(inicio, total);
+        fim = Math.min(fim, total);
+        if (indice.tamanhos.length == 0) {
+            gravar(db, idNota, texto);
+            return;
+        }
+
+        // Segmentos afetados: do que contém o início ao que contém o último caractere substituído
+        final int primeiro = inicio == total ? indice.tamanhos.length - 1 : indice.segmentoEm(inicio);
+        final int ultimo = fim > inicio ? indice.segmentoEm(fim - 1) : primeiro;
+        final int deslocamento = indice.inicioDe(primeiro);
+        final String atual = lerSegmentos(db, idNota, indice, primeiro, ultimo);
+        final String novo = atual.substring(0, inicio - deslocamento) + texto + atual.substring(fim - deslocamento);
+        final List<String> segmentos = dividir(novo);
+
+        // Sequências dos segmentos regravados: as dos segmentos afetados e, caso sejam necessários
+        // mais segmentos, valores intermediários entre o último afetado e o seguinte
+        final int existentes = ultimo - primeiro + 1;
+        final int adicionais = segmentos.size() - existentes;
+        final long ultimaSequencia = indice.sequencias[ultimo];
+        final long proximaSequencia = ultimo + 1 < indice.sequencias.length
+                ? indice.sequencias[ultimo + 1]
+                : ultimaSequencia + ESPACAMENTO_SEQUENCIA * (adicionais + 1);
+        final long passo = adicionais > 0 ? (proximaSequencia - ultimaSequencia) / (adicionais + 1) : 1;
+        if (passo < 1) {
+            // Sem espaço entre as sequências: regrava a nota inteira com as sequências espaçadas
+            gravar(db, idNota, ler(db, idNota, 0, inicio) + texto + ler(db, idNota, fim, total));
+            return;
+        }
+
+        SQLiteStatement atualizar = db.compileStatement(SQL_ATUALIZAR);
+        SQLiteStatement inserir = db.compileStatement(SQL_INSERIR);
+        SQLiteStatement excluir = db.compileStatement(SQL_EXCLUIR);
+        try {
+            for (int i = 0; i < Math.max(existentes, segmentos.size()); i++) {
+                if (i < existentes && i < segmentos.size()) {
+                    gravarSegmento(atualizar, idNota, indice.sequencias[primeiro + i], segmentos.get(i), false);
+                } else if (i < existentes) {
+                    excluir.bindLong(1, idNota);
+                    excluir.bindLong(2, indice.sequencias[primeiro + i]);
+                    excluir.executeUpdateDelete();
+                } else {
+                    final long sequencia = ultimaSequencia + passo * (i - existentes + 1);
+                    gravarSegmento(inserir, idNota, sequencia, segmentos.get(i), true);
+                }
+            }
+        } finally {
+            atualizar.close();
+            inserir.close();
+            excluir.close();
+        }
+    }
+
+    /**
+     * Divide o texto em segmentos de tamanhos semelhantes, com no máximo {@link #TAMANHO_SEGMENTO}
+     * caracteres, sem separar pares substitutos (caracteres fora do plano multilíngue básico).
+     *
+     * @param texto o texto a ser dividido.
+     * @return os segmentos, ou uma lista vazia caso o texto seja vazio.
+     */
+    static List<String> dividir(String texto) {
+        final int quantidade = (texto.length() + TAMANHO_SEGMENTO - 1) / TAMANHO_SEGMENTO;
+        final List<String> segmentos = new ArrayList<>(quantidade);
+        int inicio = 0;
+        for (int i = 1; i <= quantidade; i++) {
+            int fim = (int) ((long) texto.length() * i / quantidade);
+            if (fim < texto.length() && fim > inicio && Character.isHighSurrogate(texto.charAt(fim - 1))) {
+                fim--;
+            }
+            segmentos.add(texto.substring(inicio, fim));
+            inicio = fim;
+        }
+        return segmentos;
+    }
+
+    /**
+     * Vincula e executa {@link #SQL_INSERIR} ({@code inserir = true}) ou {@link #SQL_ATUALIZAR} para
+     * um segmento.
+     */
+    private static void gravarSegmento(SQLiteStatement statement, long idNota, long sequencia,
+                                       String texto, boolean inserir) {
+        final byte[] compactado = CodificadorConteudo.compactar(texto);
+        final int formato = compactado != null
+                ? CodificadorConteudo.FORMATO_DEFLATE : CodificadorConteudo.FORMATO_TEXTO;
+        try {
+            final int parametro = inserir ? 3 : 1;
+            statement.bindLong(parametro, texto.length());
+            statement.bindLong(parametro + 1, formato);
+            if (compactado != null) {
+                statement.bindBlob(parametro + 2, compactado);
+            } else {
+                statement.bindString(parametro + 2, texto);
+            }
+            if (inserir) {
+                statement.bindLong(1, idNota);
+                statement.bindLong(2, sequencia);
+                statement.executeInsert();
+            } else {
+                statement.bindLong(4, idNota);
+                statement.bindLong(5, sequencia);
+                statement.executeUpdateDelete();
+            }
+        } finally {
+            statement.clearBindings();
+        }
+    }
+
+    /**
+     * Verifica se o texto do {@code segmento} (posição no índice) está no {@code conteudo} a partir
+     * da {@code posicao}.
+     */
+    private static boolean contem(SQLiteDatabase db, long idNota, Indice indice, int segmento, String conteudo,
+                                  int posicao) throws DataFormatException {
+        final String texto = lerSegmentos(db, idNota, indice, segmento, segmento);
+        return conteudo.regionMatches(posicao, texto, 0, texto.length());
+    }
+
+    /**
+     * Lê e concatena o texto dos segmentos {@code primeiro} a {@code ultimo} (posições no índice).
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static String lerSegmentos(SQLiteDatabase db, long idNota, Indice indice, int primeiro, int ultimo)
+            throws DataFormatException {
+        StringBuilder texto = new StringBuilder(indice.inicioDe(ultimo + 1) - indice.inicioDe(primeiro));
+        Cursor cursor = db.query(TABELA, new String[]{FORMATO, CONTEUDO},
+                ID_NOTA + " = ? AND " + SEQUENCIA + " BETWEEN ? AND ?",
+                new String[]{String.valueOf(idNota), String.valueOf(indice.sequencias[primeiro]),
+                        String.valueOf(indice.sequencias[ultimo])},
+                null, null, SEQUENCIA + " ASC");
+        try {
+            while (cursor.moveToNext()) {
+                if (cursor.getInt(0) == CodificadorConteudo.FORMATO_DEFLATE) {
+                    texto.append(CodificadorConteudo.descompactar(cursor.getBlob(1)));
+                } else {
+                    texto.append(cursor.getString(1));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Lê as sequências e os tamanhos dos segmentos da nota, sem ler o seu conteúdo.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static Indice lerIndice(SQLiteDatabase db, long idNota) {
+        Cursor cursor = db.query(TABELA, new String[]{SEQUENCIA, TAMANHO}, ID_NOTA + " = ?",
+                new String[]{String.valueOf(idNota)}, null, null, SEQUENCIA + " ASC");
+        try {
+            final long[] sequencias = new long[cursor.getCount()];
+            final int[] tamanhos = new int[sequencias.length];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                sequencias[i] = cursor.getLong(0);
+                tamanhos[i] = cursor.getInt(1);
+            }
+            return new Indice(sequencias, tamanhos);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Sequências e tamanhos dos segmentos de uma nota, em ordem.
+     */
+    private static final class Indice {
+        final long[] sequencias;
+        final int[] tamanhos;
+
+        /**
+         * Posição do primeiro caractere de cada segmento; o último elemento é o tamanho total.
+         */
+        final int[] inicios;
+
+        Indice(long[] sequencias, int[] tamanhos) {
+            this.sequencias = sequencias;
+            this.tamanhos = tamanhos;
+            inicios = new int[tamanhos.length + 1];
+            for (int i = 0; i < tamanhos.length; i++) {
+                inicios[i + 1] = inicios[i] + tamanhos[i];
+            }
+        }
+
+        int total() {
+            return inicios[tamanhos.length];
+        }
+
+        int inicioDe(int segmento) {
+            return inicios[segmento];
+        }
+
+        /**
+         * @return o segmento que contém o caractere na {@code posicao} ({@code 0 <= posicao < total}).
+         */
+        int segmentoEm(int posicao) {
+            int inicio = 0;
+            int fim = tamanhos.length - 1;
+            while (inicio < fim) {
+                final int meio = (inicio + fim + 1) >>> 1;
+                if (inicios[meio] <= posicao) {
+                    inicio = meio;
+                } else {
+                    fim = meio - 1;
+                }
+            }
+            return inicio;
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package io.github.mathiasberwig.gerenciador_notas.data.dao;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
 
-import java.io.InputStream;
-import java.util.Scanner;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import io.github.mathiasberwig.gerenciador_notas.R;
 
@@ -15,6 +20,7 @@ import io.github.mathiasberwig.gerenciador_notas.R;
  * Created by mathias.berwig on 02/05/2016.
  */
 public class DBHelper extends SQLiteOpenHelper {
+    private static final String TAG = DBHelper.class.getName();
 
     /**
      * Nome do arquivo de banco de dados (DB_NAME.sqlite).
@@ -22,13 +28,14 @@ public class DBHelper extends SQLiteOpenHelper {
     private static final String DB_NAME = "gerenciador-notas";
 
     /**
-     * A versão atual do banco de dados.
-     * @see #onUpgrade(SQLiteDatabase, int, int)
+     * A versão atual do banco de dados: a da última migração.
+     * @see #criarMigracoes()
      */
-    private static final int DB_VERSION = 1;
+    static final int DB_VERSION = 5;
 
-    private static DBHelper instance;
+    private static volatile DBHelper instance;
     private final Context context;
+    private final MigracoesBanco migracoes;
 
     /**
      * Construtor privado, seguindo o padrão {@code singleton}.
@@ -38,43 +45,244 @@ public class DBHelper extends SQLiteOpenHelper {
     private DBHelper(Context context) {
         super(context, DB_NAME, null, DB_VERSION);
         this.context = context;
+        this.migracoes = new MigracoesBanco(context.getResources(), criarMigracoes());
+        if (migracoes.getVersaoFinal() != DB_VERSION) {
+            throw new IllegalStateException("DB_VERSION difere da versão da última migração");
+        }
+
+        // Permite que leituras sejam executadas em paralelo com uma escrita
+        setWriteAheadLoggingEnabled(true);
     }
 
     /**
-     * Instanciador da classe (padrão {@code singleton}.
+     * Instanciador da classe (padrão {@code singleton}. A instância é criada com o contexto da
+     * aplicação, evitando manter uma referência para a activity que a solicitou.
      *
      * @param context contexto para instanciar o {@link SQLiteOpenHelper}.
      * @return a instância criada ou existente desta classe.
+     * @see GerenciadorConexao
      */
     public static DBHelper getInstance(Context context) {
-        if (instance == null) {
-            instance = new DBHelper(context);
+        DBHelper result = instance;
+        if (result == null) {
+            synchronized (DBHelper.class) {
+                result = instance;
+                if (result == null) {
+                    result = new DBHelper(context.getApplicationContext());
+                    instance = result;
+                }
+            }
         }
-        return instance;
+        return result;
+    }
+
+    /**
+     * Obtém o arquivo do banco de dados, utilizado pelo {@link BackupBanco}.
+     *
+     * @param context contexto para localizar o diretório dos bancos de dados da aplicação.
+     * @return o arquivo principal do banco de dados (sem os arquivos {@code -wal} e {@code -shm}).
+     */
+    static File getArquivo(Context context) {
+        return context.getDatabasePath(DB_NAME);
+    }
+
+    /**
+     * As migrações do esquema, uma por versão e em ordem, a partir da versão 2. Para alterar o
+     * esquema, inclua uma migração com o script {@code atualizacao_db_vN.sql}, aplique a mesma
+     * alteração em {@code criacao_tabelas_db.sql} e incremente {@link #DB_VERSION}.
+     */
+    static List<MigracoesBanco.Migracao> criarMigracoes() {
+        return Arrays.asList(
+                new MigracoesBanco.Migracao(2, "índice de busca textual", R.raw.atualizacao_db_v2),
+                new MigracoesBanco.Migracao(3, "compactação do conteúdo das notas extensas", R.raw.atualizacao_db_v3) {
+                    @Override
+                    int converter(SQLiteDatabase db) {
+                        return compactarNotasExistentes(db);
+                    }
+                },
+                new MigracoesBanco.Migracao(4, "segmentação do conteúdo das notas muito extensas", R.raw.atualizacao_db_v4) {
+                    @Override
+                    int converter(SQLiteDatabase db) {
+                        return segmentarNotasExistentes(db);
+                    }
+                },
+                new MigracoesBanco.Migracao(5, "histórico de revisões das notas", R.raw.atualizacao_db_v5));
     }
 
+    /**
+     * A criação é executada pelo {@link SQLiteOpenHelper} em uma única transação, registrada nas
+     * {@link MetricasDados métricas} junto com a duração.
+     */
     @Override
     public void onCreate(SQLiteDatabase db) {
-        // Executa o script de criação do banco de dados
-        InputStream in = context.getResources().openRawResource(R.raw.criacao_tabelas_db);
-        Scanner scanner = new Scanner(in);
-        scanner.useDelimiter(";");
+        final long inicio = System.nanoTime();
+        boolean sucesso = false;
+        try {
+            // Executa o script de criação do banco de dados
+            ScriptSQL.executar(db, context.getResources(), R.raw.criacao_tabelas_db);
+            sucesso = true;
+        } finally {
+            registrarMetricas(MetricasDados.Operacao.CRIAR_BANCO, inicio, 0, sucesso);
+        }
+    }
+
+    /**
+     * Executa as migrações posteriores à {@code oldVersion}, na transação do
+     * {@link SQLiteOpenHelper}. A atualização é tudo ou nada, intencionalmente: uma falha desfaz
+     * todas as migrações, inclusive as já concluídas, e a atualização é repetida por completo na
+     * próxima abertura do banco de dados.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        migracoes.executar(db, oldVersion);
+    }
+
+    /**
+     * Registra a criação do banco de dados nas {@link MetricasDados métricas} da aplicação.
+     *
+     * @param linhas quantidade de notas convertidas.
+     */
+    private static void registrarMetricas(MetricasDados.Operacao operacao, long inicio, int linhas, boolean sucesso) {
+        final MetricasDados metricas = MetricasDados.getInstance();
+        metricas.registrarTransacao(sucesso);
+        final long duracao = metricas.registrar(operacao, inicio, linhas, 0, sucesso);
+        Log.i(TAG, operacao.getNome() + " concluída em " + TimeUnit.NANOSECONDS.toMillis(duracao) + " ms ("
+                + linhas + " notas convertidas)");
+    }
+
+    /**
+     * Compacta o conteúdo das notas existentes que ultrapassam o limite de compactação. As notas
+     * são lidas uma a uma, de modo que somente uma nota extensa fique em memória por vez. Uma nota
+     * que não possa ser compactada permanece como texto, sem interromper a atualização.
+     *
+     * @param db o banco de dados em atualização.
+     * @return quantidade de notas compactadas.
+     * @see CodificadorConteudo
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static int compactarNotasExistentes(SQLiteDatabase db) {
+        final String tabela = NotasDAO.Notas.NOME_TABELA;
+        final String conteudo = NotasDAO.Notas.CONTEUDO;
+        final String id = NotasDAO.Notas._ID;
+
+        long bytesOriginais = 0;
+        long bytesCompactados = 0;
+        int quantidade = 0;
+        Cursor ids = db.rawQuery("SELECT " + id + " FROM " + tabela + " WHERE " + NotasDAO.Notas.FORMATO
+                + " = " + CodificadorConteudo.FORMATO_TEXTO + " AND length(" + conteudo + ") > "
+                + CodificadorConteudo.LIMITE_COMPRESSAO, null);
+        SQLiteStatement update = db.compileStatement("UPDATE " + tabela + " SET " + conteudo + " = ?, "
+                + NotasDAO.Notas.FORMATO + " = ?, " + NotasDAO.Notas.PREVIA + " = ? WHERE " + id + " = ?");
         try {
-            while (scanner.hasNext()) {
-                String sql = scanner.next().trim();
+            while (ids.moveToNext()) {
+                final long idNota = ids.getLong(0);
+                Cursor nota = db.rawQuery("SELECT " + conteudo + " FROM " + tabela + " WHERE " + id + " = ?",
+                        new String[]{String.valueOf(idNota)});
+                try {
+                    if (!nota.moveToFirst()) continue;
 
-                if (sql.length() > 0) {
-                    db.execSQL(sql);
+                    final String texto = nota.getString(0);
+                    final byte[] compactado = CodificadorConteudo.compactar(texto);
+                    if (compactado == null) continue;
+
+                    update.bindBlob(1, compactado);
+                    update.bindLong(2, CodificadorConteudo.FORMATO_DEFLATE);
+                    update.bindString(3, PreviaConteudo.extrair(texto));
+                    update.bindLong(4, idNota);
+                    update.executeUpdateDelete();
+
+                    bytesOriginais += texto.length() * 2L;
+                    bytesCompactados += compactado.length;
+                    quantidade++;
+                } catch (Exception ex) {
+                    Log.e(TAG, "Não foi possível compactar a nota " + idNota, ex);
+                } finally {
+                    nota.close();
+                    update.clearBindings();
                 }
             }
-
         } finally {
-            scanner.close();
+            ids.close();
+            update.close();
         }
+        Log.i(TAG, quantidade + " notas compactadas: " + bytesOriginais + " bytes (UTF-16) -> "
+                + bytesCompactados + " bytes");
+        return quantidade;
     }
 
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Não haverá mudanças no banco de dados, portanto esse método será ignorado.
+    /**
+     * Move para a tabela {@link NotasDAO.Notas#NOME_TABELA_SEGMENTOS} o conteúdo das notas
+     * existentes que ultrapassam o limite de segmentação. O conteúdo em texto é lido em partes,
+     * pois uma linha extensa pode não caber na janela do cursor; o compactado é lido inteiro.
+     *
+     * @param db o banco de dados em atualização.
+     * @return quantidade de notas segmentadas.
+     * @see ConteudoSegmentado
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static int segmentarNotasExistentes(SQLiteDatabase db) {
+        final String tabela = NotasDAO.Notas.NOME_TABELA;
+        final String conteudo = NotasDAO.Notas.CONTEUDO;
+        final String formato = NotasDAO.Notas.FORMATO;
+        final String id = NotasDAO.Notas._ID;
+        final int parte = CodificadorConteudo.LIMITE_SEGMENTACAO;
+
+        int quantidade = 0;
+        Cursor ids = db.rawQuery("SELECT " + id + ", " + formato + " FROM " + tabela + " WHERE " + formato
+                + " = " + CodificadorConteudo.FORMATO_DEFLATE + " OR (" + formato + " = "
+                + CodificadorConteudo.FORMATO_TEXTO + " AND length(" + conteudo + ") > " + parte + ")", null);
+        SQLiteStatement update = db.compileStatement("UPDATE " + tabela + " SET " + conteudo + " = '', "
+                + formato + " = " + CodificadorConteudo.FORMATO_SEGMENTADO + ", " + NotasDAO.Notas.PREVIA
+                + " = ? WHERE " + id + " = ?");
+        try {
+            while (ids.moveToNext()) {
+                final long idNota = ids.getLong(0);
+                final String[] args = {String.valueOf(idNota)};
+                try {
+                    final String texto;
+                    if (ids.getInt(1) == CodificadorConteudo.FORMATO_DEFLATE) {
+                        Cursor nota = db.rawQuery("SELECT " + conteudo + " FROM " + tabela + " WHERE " + id
+                                + " = ?", args);
+                        try {
+                            if (!nota.moveToFirst()) continue;
+                            texto = CodificadorConteudo.descompactar(nota.getBlob(0));
+                        } finally {
+                            nota.close();
+                        }
+                        if (texto.length() <= parte) continue;
+                    } else {
+                        // substr() conta caracteres (code points), e não bytes
+                        StringBuilder builder = new StringBuilder();
+                        for (int inicio = 1; ; inicio += parte) {
+                            Cursor nota = db.rawQuery("SELECT substr(" + conteudo + ", " + inicio + ", " + parte
+                                    + ") FROM " + tabela + " WHERE " + id + " = ?", args);
+                            try {
+                                final String trecho = nota.moveToFirst() ? nota.getString(0) : null;
+                                if (trecho == null || trecho.isEmpty()) break;
+                                builder.append(trecho);
+                            } finally {
+                                nota.close();
+                            }
+                        }
+                        texto = builder.toString();
+                    }
+
+                    ConteudoSegmentado.gravar(db, idNota, texto);
+                    update.bindString(1, PreviaConteudo.extrair(texto));
+                    update.bindLong(2, idNota);
+                    update.executeUpdateDelete();
+                    quantidade++;
+                } catch (Exception ex) {
+                    Log.e(TAG, "Não foi possível segmentar a nota " + idNota, ex);
+                } finally {
+                    update.clearBindings();
+                }
+            }
+        } finally {
+            ids.close();
+            update.close();
+        }
+        Log.i(TAG, quantidade + " notas segmentadas");
+        return quantidade;
     }
 }
@@ -0,0 +1,244 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+
+/**
+ * Diferença binária entre duas versões do conteúdo de uma nota (codificado em UTF-8), utilizada
+ * pelo {@link HistoricoRevisoes} para gravar cada revisão a partir da anterior.
+ * <p/>
+ * A diferença é uma sequência de operações que reconstroem o conteúdo novo: cópias de um intervalo
+ * do conteúdo anterior e inserções de bytes literais. O início e o fim em comum são copiados
+ * diretamente; no restante, blocos de {@link #TAMANHO_BLOCO} bytes do conteúdo anterior são
+ * indexados por um hash, e o conteúdo novo é percorrido com um hash deslizante, de modo que trechos
+ * movidos ou repetidos também sejam copiados. O custo é linear no tamanho dos dois conteúdos.
+ * <p/>
+ * Formato: o tamanho do conteúdo anterior e do novo, seguidos das operações; cada operação começa
+ * por {@code (comprimento << 1) | tipo}, seguido da posição no conteúdo anterior (cópia) ou dos
+ * bytes inseridos. Todos os inteiros são codificados em tamanho variável (7 bits por byte).
+ * <p/>
+ * Não depende de classes do Android, permitindo medir o cálculo fora do dispositivo.
+ */
+final class DeltaConteudo {
+
+    /**
+     * Tamanho, em bytes, dos blocos do conteúdo anterior indexados na busca por trechos em comum.
+     * Trechos menores que um bloco são gravados como inserções.
+     */
+    static final int TAMANHO_BLOCO = 16;
+
+    private static final int COPIA = 0;
+    private static final int INSERCAO = 1;
+
+    /**
+     * Multiplicador do hash polinomial dos blocos.
+     */
+    private static final int MULTIPLICADOR = 0x01000193;
+
+    /**
+     * {@link #MULTIPLICADOR} elevado a {@code TAMANHO_BLOCO - 1}: peso do byte que sai do bloco ao
+     * deslizar o hash.
+     */
+    private static final int PESO_PRIMEIRO;
+
+    static {
+        int peso = 1;
+        for (int i = 1; i < TAMANHO_BLOCO; i++) {
+            peso *= MULTIPLICADOR;
+        }
+        PESO_PRIMEIRO = peso;
+    }
+
+    private DeltaConteudo() {
+    }
+
+    /**
+     * Calcula a diferença que transforma {@code base} em {@code alvo}.
+     *
+     * @param base o conteúdo anterior.
+     * @param alvo o conteúdo novo.
+     * @return a diferença, a ser aplicada por {@link #aplicar(byte[], byte[])}.
+     */
+    static byte[] calcular(byte[] base, byte[] alvo) {
+        final ByteArrayOutputStream saida = new ByteArrayOutputStream(64);
+        escreverInteiro(saida, base.length);
+        escreverInteiro(saida, alvo.length);
+
+        final int limiteComum = Math.min(base.length, alvo.length);
+        int prefixo = 0;
+        while (prefixo < limiteComum && base[prefixo] == alvo[prefixo]) {
+            prefixo++;
+        }
+        int sufixo = 0;
+        while (sufixo < limiteComum - prefixo
+                && base[base.length - 1 - sufixo] == alvo[alvo.length - 1 - sufixo]) {
+            sufixo++;
+        }
+
+        escreverCopia(saida, 0, prefixo);
+        escreverTrechoCentral(saida, base, alvo, prefixo, alvo.length - sufixo);
+        escreverCopia(saida, base.length - sufixo, sufixo);
+        return saida.toByteArray();
+    }
+
+    /**
+     * Aplica a diferença calculada por {@link #calcular(byte[], byte[])} sobre o conteúdo anterior.
+     *
+     * @param base o conteúdo anterior.
+     * @param delta a diferença.
+     * @return o conteúdo novo.
+     * @throws DataFormatException caso a diferença esteja corrompida ou tenha sido calculada sobre
+     * outro conteúdo.
+     */
+    static byte[] aplicar(byte[] base, byte[] delta) throws DataFormatException {
+        final int[] posicao = {0};
+        final int tamanhoBase = lerInteiro(delta, posicao);
+        if (tamanhoBase != base.length) {
+            throw new DataFormatException("Diferença calculada sobre um conteúdo de " + tamanhoBase
+                    + " bytes, aplicada sobre " + base.length + " bytes.");
+        }
+        final byte[] resultado = new byte[lerInteiro(delta, posicao)];
+
+        int escritos = 0;
+        while (posicao[0] < delta.length) {
+            final int cabecalho = lerInteiro(delta, posicao);
+            final int comprimento = cabecalho >>> 1;
+            if (comprimento > resultado.length - escritos) {
+                throw new DataFormatException("Operação excede o tamanho do conteúdo.");
+            }
+            if ((cabecalho & 1) == COPIA) {
+                final int origem = lerInteiro(delta, posicao);
+                if (origem > base.length - comprimento) {
+                    throw new DataFormatException("Cópia fora do conteúdo anterior.");
+                }
+                System.arraycopy(base, origem, resultado, escritos, comprimento);
+            } else {
+                if (comprimento > delta.length - posicao[0]) {
+                    throw new DataFormatException("Inserção incompleta.");
+                }
+                System.arraycopy(delta, posicao[0], resultado, escritos, comprimento);
+                posicao[0] += comprimento;
+            }
+            escritos += comprimento;
+        }
+        if (escritos != resultado.length) {
+            throw new DataFormatException("Diferença incompleta: " + escritos + " de " + resultado.length + " bytes.");
+        }
+        return resultado;
+    }
+
+    /**
+     * Escreve as operações do intervalo {@code [inicio, fim)} do alvo, procurando no conteúdo
+     * anterior os blocos em comum.
+     */
+    private static void escreverTrechoCentral(ByteArrayOutputStream saida, byte[] base, byte[] alvo,
+                                              int inicio, int fim) {
+        if (fim - inicio < TAMANHO_BLOCO || base.length < TAMANHO_BLOCO) {
+            escreverInsercao(saida, alvo, inicio, fim);
+            return;
+        }
+
+        // Tabela de posições dos blocos (posição + 1; 0 indica posição vazia), endereçada pelo hash
+        final int blocos = base.length / TAMANHO_BLOCO;
+        int bits = 4;
+        while ((1 << bits) < blocos * 2) {
+            bits++;
+        }
+        final int[] tabela = new int[1 << bits];
+        for (int i = 0; i + TAMANHO_BLOCO <= base.length; i += TAMANHO_BLOCO) {
+            tabela[indice(hash(base, i), bits)] = i + 1;
+        }
+
+        int literal = inicio;
+        int i = inicio;
+        int h = hash(alvo, i);
+        while (true) {
+            final int candidato = tabela[indice(h, bits)] - 1;
+            if (candidato >= 0 && iguais(base, candidato, alvo, i)) {
+                // Estende o trecho em comum para trás, sobre a inserção pendente, e para frente
+                int origem = candidato;
+                int destino = i;
+                while (destino > literal && origem > 0 && base[origem - 1] == alvo[destino - 1]) {
+                    origem--;
+                    destino--;
+                }
+                int fimCopia = i + TAMANHO_BLOCO;
+                int fimOrigem = candidato + TAMANHO_BLOCO;
+                while (fimCopia < fim && fimOrigem < base.length && base[fimOrigem] == alvo[fimCopia]) {
+                    fimCopia++;
+                    fimOrigem++;
+                }
+
+                escreverInsercao(saida, alvo, literal, destino);
+                escreverCopia(saida, origem, fimCopia - destino);
+                literal = fimCopia;
+                i = fimCopia;
+                if (i + TAMANHO_BLOCO > fim) break;
+                h = hash(alvo, i);
+            } else {
+                if (i + TAMANHO_BLOCO >= fim) break;
+                h = (h - alvo[i] * PESO_PRIMEIRO) * MULTIPLICADOR + alvo[i + TAMANHO_BLOCO];
+                i++;
+            }
+        }
+        escreverInsercao(saida, alvo, literal, fim);
+    }
+
+    private static int hash(byte[] dados, int inicio) {
+        int h = 0;
+        for (int i = inicio; i < inicio + TAMANHO_BLOCO; i++) {
+            h = h * MULTIPLICADOR + dados[i];
+        }
+        return h;
+    }
+
+    private static int indice(int hash, int bits) {
+        return (hash * 0x9E3779B1) >>> (32 - bits);
+    }
+
+    private static boolean iguais(byte[] base, int posicaoBase, byte[] alvo, int posicaoAlvo) {
+        if (posicaoBase + TAMANHO_BLOCO > base.length) return false;
+        for (int i = 0; i < TAMANHO_BLOCO; i++) {
+            if (base[posicaoBase + i] != alvo[posicaoAlvo + i]) return false;
+        }
+        return true;
+    }
+
+    private static void escreverCopia(ByteArrayOutputStream saida, int origem, int comprimento) {
+        if (comprimento == 0) return;
+        escreverInteiro(saida, (comprimento << 1) | COPIA);
+        escreverInteiro(saida, origem);
+    }
+
+    private static void escreverInsercao(ByteArrayOutputStream saida, byte[] alvo, int inicio, int fim) {
+        if (fim == inicio) return;
+        escreverInteiro(saida, ((fim - inicio) << 1) | INSERCAO);
+        saida.write(alvo, inicio, fim - inicio);
+    }
+
+    private static void escreverInteiro(ByteArrayOutputStream saida, int valor) {
+        while ((valor & ~0x7F) != 0) {
+            saida.write((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        saida.write(valor);
+    }
+
+    /**
+     * Lê um inteiro escrito por {@link #escreverInteiro}, a partir de {@code posicao[0]}, que é
+     * avançada até o fim do inteiro.
+     */
+    private static int lerInteiro(byte[] dados, int[] posicao) throws DataFormatException {
+        int valor = 0;
+        for (int deslocamento = 0; deslocamento < 32; deslocamento += 7) {
+            if (posicao[0] >= dados.length) throw new DataFormatException("Inteiro incompleto.");
+            final int b = dados[posicao[0]++];
+            valor |= (b & 0x7F) << deslocamento;
+            if ((b & 0x80) == 0) {
+                if (valor < 0) throw new DataFormatException("Inteiro inválido.");
+                return valor;
+            }
+        }
+        throw new DataFormatException("Inteiro inválido.");
+    }
+}
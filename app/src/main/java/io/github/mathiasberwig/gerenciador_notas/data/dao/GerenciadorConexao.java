@@ -0,0 +1,270 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gerencia a conexão com o banco de dados SQLite desta aplicação. Uma única conexão é mantida
+ * aberta para todo o processo, evitando que cada operação reabra o arquivo, releia o esquema e
+ * descarte o cache de páginas do SQLite. A conexão é fechada somente quando o sistema solicita
+ * a liberação de memória do processo ({@link #TRIM_MEMORY_COMPLETE}), sendo reaberta na próxima
+ * utilização.
+ * <p/>
+ * Cada operação deve obter o banco de dados por {@link #abrir()} e devolvê-lo por
+ * {@link #liberar(SQLiteDatabase)}. O fechamento só é efetivado após a liberação de todas as
+ * referências obtidas, de modo que operações em andamento não são interrompidas.
+ */
+public final class GerenciadorConexao implements ComponentCallbacks2 {
+
+    /**
+     * Tempo máximo, em milissegundos, que {@link #executarComBancoFechado(OperacaoArquivo)}
+     * aguarda a liberação das referências ainda mantidas por outras operações.
+     */
+    static final long TEMPO_LIMITE_FECHAMENTO_MS = 5000;
+
+    /**
+     * Intervalo, em milissegundos, entre as verificações da liberação das referências.
+     */
+    private static final long INTERVALO_FECHAMENTO_MS = 20;
+
+    /**
+     * Instância da classe (singleton).
+     */
+    private static volatile GerenciadorConexao instance;
+
+    /**
+     * Auxiliar de conexões do banco de dados.
+     */
+    private final SQLiteOpenHelper databaseHelper;
+
+    /**
+     * Conexão aberta no momento, ou {@code null} caso ainda não tenha sido aberta ou tenha sido
+     * fechada por {@link #fechar()}.
+     */
+    private SQLiteDatabase database;
+
+    /**
+     * Instruções compiladas para a {@link #database conexão atual}, indexadas pelo SQL. São
+     * descartadas junto com a conexão.
+     *
+     * @see #compilar(SQLiteDatabase, String)
+     */
+    private final HashMap<String, SQLiteStatement> instrucoes = new HashMap<>();
+
+    /**
+     * Indica se uma {@link #executarComBancoFechado(OperacaoArquivo) operação sobre os arquivos}
+     * está em andamento; {@link #abrir()} aguarda o seu término.
+     */
+    private boolean fechando;
+
+    /**
+     * Construtor privado, seguindo o padrão {@code singleton}.
+     *
+     * @param databaseHelper instância do auxiliar de manipulação do banco de dados.
+     */
+    private GerenciadorConexao(SQLiteOpenHelper databaseHelper) {
+        this.databaseHelper = databaseHelper;
+    }
+
+    /**
+     * Obtém a instância desta classe, criando-a caso ainda não exista. A instância é registrada
+     * para receber os avisos de memória do contexto da aplicação.
+     *
+     * @param context contexto para acessar o {@link DBHelper}.
+     * @return a instância criada ou existente desta classe.
+     */
+    public static GerenciadorConexao getInstance(Context context) {
+        GerenciadorConexao result = instance;
+        if (result == null) {
+            synchronized (GerenciadorConexao.class) {
+                result = instance;
+                if (result == null) {
+                    final Context applicationContext = context.getApplicationContext();
+                    result = new GerenciadorConexao(DBHelper.getInstance(applicationContext));
+                    applicationContext.registerComponentCallbacks(result);
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Obtém a conexão com o banco de dados, abrindo-a caso necessário. A referência obtida deve
+     * ser devolvida por {@link #liberar(SQLiteDatabase)} ao término da operação.
+     *
+     * @return a conexão com o banco de dados.
+     */
+    public synchronized SQLiteDatabase abrir() {
+        aguardarOperacaoArquivo();
+        if (database == null || !database.isOpen()) {
+            fecharInstrucoes();
+            database = databaseHelper.getWritableDatabase();
+        }
+        database.acquireReference();
+        return database;
+    }
+
+    /**
+     * Devolve uma referência obtida por {@link #abrir()}.
+     *
+     * @param database a conexão obtida.
+     */
+    public void liberar(SQLiteDatabase database) {
+        database.releaseReference();
+    }
+
+    /**
+     * Obtém a instrução compilada para o {@code sql} informado, compilando-a somente no primeiro
+     * uso. Desta forma, o SQLite não precisa analisar novamente as instruções executadas com
+     * frequência, cujos valores são informados por parâmetros posicionais ({@code ?}).
+     * <p/>
+     * Uma {@link SQLiteStatement} não pode ser utilizada por mais de uma thread ao mesmo tempo:
+     * a vinculação dos parâmetros e a execução devem ser feitas em um bloco sincronizado na
+     * própria instrução. A instrução obtida deve ser devolvida por
+     * {@link #liberar(SQLiteStatement)} após a execução, e só é fechada quando não houver mais
+     * referências para ela, mesmo que a conexão seja {@link #fechar() fechada} nesse intervalo.
+     *
+     * @param database a conexão obtida por {@link #abrir()}.
+     * @param sql a instrução SQL a ser compilada.
+     * @return a instrução compilada para a conexão.
+     */
+    public synchronized SQLiteStatement compilar(SQLiteDatabase database, String sql) {
+        if (database != this.database) {
+            // A referência pertence a uma conexão anterior; não mantém instruções para ela, e a
+            // instrução é fechada quando o chamador a liberar
+            return database.compileStatement(sql);
+        }
+
+        SQLiteStatement statement = instrucoes.get(sql);
+        if (statement == null) {
+            statement = database.compileStatement(sql);
+            instrucoes.put(sql, statement);
+        }
+        // Referência do chamador, além da mantida por esta classe enquanto a instrução estiver
+        // em cache
+        statement.acquireReference();
+        return statement;
+    }
+
+    /**
+     * Devolve uma instrução obtida por {@link #compilar(SQLiteDatabase, String)}.
+     *
+     * @param statement a instrução obtida.
+     */
+    public void liberar(SQLiteStatement statement) {
+        statement.releaseReference();
+    }
+
+    /**
+     * Fecha a conexão com o banco de dados. Operações em andamento mantêm suas referências e o
+     * fechamento é concluído quando a última delas for liberada.
+     */
+    public synchronized void fechar() {
+        if (database != null) {
+            fecharInstrucoes();
+            databaseHelper.close();
+            database = null;
+        }
+    }
+
+    /**
+     * Operação executada sobre os arquivos do banco de dados enquanto a conexão está fechada.
+     *
+     * @see #executarComBancoFechado(OperacaoArquivo)
+     */
+    interface OperacaoArquivo {
+        void executar() throws IOException;
+    }
+
+    /**
+     * Fecha a conexão e executa a {@code operacao} antes que ela possa ser reaberta: chamadas a
+     * {@link #abrir()} de outras threads aguardam o término da operação. As referências ainda
+     * mantidas por operações em andamento (ou por cursores abertos) são aguardadas por até
+     * {@link #TEMPO_LIMITE_FECHAMENTO_MS}.
+     *
+     * @param operacao a operação sobre os arquivos do banco de dados.
+     * @throws IOException caso alguma referência para a conexão não seja liberada no tempo limite
+     * (impedindo o seu fechamento), a espera seja interrompida ou a {@code operacao} falhe.
+     */
+    synchronized void executarComBancoFechado(OperacaoArquivo operacao) throws IOException {
+        aguardarOperacaoArquivo();
+        final SQLiteDatabase anterior = database;
+        fechar();
+        fechando = true;
+        try {
+            // As referências são liberadas sem o monitor desta classe, que é liberado durante a
+            // espera; as novas conexões continuam bloqueadas por fechando
+            final long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TEMPO_LIMITE_FECHAMENTO_MS);
+            while (anterior != null && anterior.isOpen()) {
+                if (System.nanoTime() >= limite) {
+                    throw new IOException("O banco de dados está em uso por outra operação.");
+                }
+                try {
+                    wait(INTERVALO_FECHAMENTO_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Espera pelo fechamento do banco de dados interrompida.", e);
+                }
+            }
+            operacao.executar();
+        } finally {
+            fechando = false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Aguarda o término da operação sobre os arquivos em andamento, caso exista. Deve ser chamado
+     * com o monitor desta classe.
+     */
+    private void aguardarOperacaoArquivo() {
+        boolean interrompida = false;
+        while (fechando) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrompida = true;
+            }
+        }
+        if (interrompida) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Descarta as instruções compiladas para a conexão atual, liberando a referência mantida por
+     * esta classe. Instruções ainda em uso por outras threads são fechadas somente quando forem
+     * {@link #liberar(SQLiteStatement) liberadas}.
+     */
+    private void fecharInstrucoes() {
+        for (SQLiteStatement statement : instrucoes.values()) {
+            statement.releaseReference();
+        }
+        instrucoes.clear();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        // O processo está entre os primeiros a serem encerrados; libera o cache de páginas
+        if (level >= TRIM_MEMORY_COMPLETE) {
+            fechar();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        // Tratado em onTrimMemory
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // Não utilizado
+    }
+}
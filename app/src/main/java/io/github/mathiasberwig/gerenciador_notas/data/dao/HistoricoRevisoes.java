@@ -0,0 +1,338 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+import io.github.mathiasberwig.gerenciador_notas.data.model.Revisao;
+
+/**
+ * Histórico de revisões das notas, na tabela {@link NotasDAO.Notas#NOME_TABELA_REVISOES}. Cada
+ * gravação que altera o título ou o conteúdo registra uma revisão, armazenada como a diferença em
+ * relação à anterior ({@link DeltaConteudo}). A cada {@link #INTERVALO_COMPLETAS} revisões, ou
+ * quando a diferença não for vantajosa, o conteúdo é armazenado por completo (compactado quando
+ * vantajoso, veja {@link CodificadorConteudo}), de modo que qualquer revisão seja reconstruída a
+ * partir da revisão completa mais próxima aplicando no máximo {@code INTERVALO_COMPLETAS - 1}
+ * diferenças.
+ * <p/>
+ * A coluna dos dados é a última da tabela e não é lida pela listagem do histórico.
+ * <p/>
+ * Os métodos de escrita, exceto {@link #podar}, devem ser chamados dentro de uma transação.
+ */
+final class HistoricoRevisoes {
+
+    /**
+     * Quantidade máxima de revisões entre duas revisões completas consecutivas.
+     */
+    static final int INTERVALO_COMPLETAS = 16;
+
+    /**
+     * Quantidade de revisões mantidas por nota pela política de retenção padrão.
+     */
+    static final int MAXIMO_REVISOES_PADRAO = 100;
+
+    /**
+     * Idade máxima, em milissegundos, das revisões mantidas pela política de retenção padrão
+     * (30 dias).
+     */
+    static final long IDADE_MAXIMA_PADRAO = 30L * 24 * 60 * 60 * 1000;
+
+    private static final String TABELA = NotasDAO.Notas.NOME_TABELA_REVISOES;
+    private static final String ID_NOTA = NotasDAO.Revisoes.ID_NOTA;
+    private static final String REVISAO = NotasDAO.Revisoes.REVISAO;
+    private static final String DATA = NotasDAO.Revisoes.DATA;
+    private static final String TITULO = NotasDAO.Revisoes.TITULO;
+    private static final String TAMANHO = NotasDAO.Revisoes.TAMANHO;
+    private static final String CRC = NotasDAO.Revisoes.CRC;
+    private static final String FORMATO = NotasDAO.Revisoes.FORMATO;
+    private static final String DADOS = NotasDAO.Revisoes.DADOS;
+
+    /**
+     * Condição que seleciona as revisões completas.
+     */
+    private static final String COMPLETA = FORMATO + " <> " + CodificadorConteudo.FORMATO_DELTA;
+
+    private static final String SQL_INSERIR = "INSERT INTO " + TABELA + " (" + ID_NOTA + ", " + REVISAO
+            + ", " + DATA + ", " + TITULO + ", " + TAMANHO + ", " + CRC + ", " + FORMATO + ", " + DADOS
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Última revisão da nota e a última revisão completa
+    private static final String SQL_ULTIMA = "SELECT " + REVISAO + ", " + TITULO + ", " + CRC + ", (SELECT MAX("
+            + REVISAO + ") FROM " + TABELA + " WHERE " + ID_NOTA + " = ?1 AND " + COMPLETA + ") FROM " + TABELA
+            + " WHERE " + ID_NOTA + " = ?1 ORDER BY " + REVISAO + " DESC LIMIT 1";
+
+    // Revisões desde a última revisão completa até a solicitada, em ordem crescente
+    private static final String SQL_RECONSTRUIR = "SELECT " + REVISAO + ", " + TITULO + ", " + CRC + ", "
+            + FORMATO + ", " + DADOS + " FROM " + TABELA + " WHERE " + ID_NOTA + " = ?1 AND " + REVISAO
+            + " <= ?2 AND " + REVISAO + " >= (SELECT MAX(" + REVISAO + ") FROM " + TABELA + " WHERE "
+            + ID_NOTA + " = ?1 AND " + REVISAO + " <= ?2 AND " + COMPLETA + ") ORDER BY " + REVISAO + " ASC";
+
+    // Primeira revisão mantida de cada nota pela política de retenção: a última revisão completa
+    // que não seja posterior à mais antiga das revisões que a política exige manter
+    private static final String SQL_CORTES = "SELECT u." + ID_NOTA + ", u.primeira, (SELECT MAX(c." + REVISAO
+            + ") FROM " + TABELA + " c WHERE c." + ID_NOTA + " = u." + ID_NOTA + " AND c." + COMPLETA
+            + " AND c." + REVISAO + " <= MIN(u.ultima, MAX(u.ultima - ?1, IFNULL((SELECT MIN(d." + REVISAO
+            + ") FROM " + TABELA + " d WHERE d." + ID_NOTA + " = u." + ID_NOTA + " AND d." + DATA
+            + " >= ?2), u.ultima)))) FROM (SELECT " + ID_NOTA + ", MIN(" + REVISAO + ") AS primeira, MAX("
+            + REVISAO + ") AS ultima FROM " + TABELA + " GROUP BY " + ID_NOTA + ") u";
+
+    private static final String SQL_EXCLUIR_ANTERIORES = "DELETE FROM " + TABELA + " WHERE rowid IN (SELECT rowid FROM "
+            + TABELA + " WHERE " + ID_NOTA + " = ? AND " + REVISAO + " < ? LIMIT ?)";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private HistoricoRevisoes() {
+    }
+
+    /**
+     * Registra uma revisão da nota com o título e o conteúdo gravados, caso sejam diferentes da
+     * última revisão. A revisão é armazenada como a diferença em relação ao {@code anterior} quando
+     * ele corresponder à última revisão registrada; caso contrário (por exemplo, na primeira
+     * gravação após a atualização do banco de dados), é armazenada por completo. O conteúdo
+     * anterior é lido somente quando a diferença puder ser armazenada, isto é, quando a revisão não
+     * precisar ser completa pelo {@link #INTERVALO_COMPLETAS}.
+     *
+     * @param db o banco de dados, em uma transação.
+     * @param idNota o {@code _id} da nota.
+     * @param titulo o título gravado.
+     * @param conteudo o conteúdo completo gravado.
+     * @param anterior o conteúdo da nota antes da gravação, ou {@code null} para armazenar a revisão
+     *                 por completo (em uma inserção, por exemplo).
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    static void registrar(SQLiteDatabase db, long idNota, String titulo, String conteudo, ConteudoAnterior anterior) {
+        final byte[] bytes = conteudo.getBytes(UTF_8);
+        final long crc = calcularCrc(bytes);
+
+        int ultima = 0;
+        int ultimaCompleta = 0;
+        long crcUltima = -1;
+        Cursor cursor = db.rawQuery(SQL_ULTIMA, new String[]{String.valueOf(idNota)});
+        try {
+            if (cursor.moveToFirst()) {
+                ultima = cursor.getInt(0);
+                crcUltima = cursor.getLong(2);
+                ultimaCompleta = cursor.isNull(3) ? 0 : cursor.getInt(3);
+                // Gravação sem alterações
+                if (crcUltima == crc && titulo.equals(cursor.getString(1))) return;
+            }
+        } finally {
+            cursor.close();
+        }
+        final int revisao = ultima + 1;
+
+        byte[] delta = null;
+        if (anterior != null && ultima > 0 && revisao - ultimaCompleta < INTERVALO_COMPLETAS) {
+            final byte[] base = lerAnterior(anterior);
+            if (base != null && calcularCrc(base) == crcUltima) {
+                delta = DeltaConteudo.calcular(base, bytes);
+                // Uma diferença maior que metade do conteúdo não compensa a reconstrução
+                if (delta.length > bytes.length / 2) delta = null;
+            }
+        }
+
+        SQLiteStatement inserir = db.compileStatement(SQL_INSERIR);
+        try {
+            inserir.bindLong(1, idNota);
+            inserir.bindLong(2, revisao);
+            inserir.bindLong(3, System.currentTimeMillis());
+            inserir.bindString(4, titulo);
+            inserir.bindLong(5, conteudo.length());
+            inserir.bindLong(6, crc);
+            if (delta != null) {
+                inserir.bindLong(7, CodificadorConteudo.FORMATO_DELTA);
+                inserir.bindBlob(8, delta);
+            } else {
+                final byte[] compactado = CodificadorConteudo.compactar(conteudo);
+                if (compactado != null) {
+                    inserir.bindLong(7, CodificadorConteudo.FORMATO_DEFLATE);
+                    inserir.bindBlob(8, compactado);
+                } else {
+                    inserir.bindLong(7, CodificadorConteudo.FORMATO_TEXTO);
+                    inserir.bindString(8, conteudo);
+                }
+            }
+            inserir.executeInsert();
+        } finally {
+            inserir.close();
+        }
+    }
+
+    /**
+     * @param db o banco de dados.
+     * @param idNota o {@code _id} da nota.
+     * @return as revisões da nota, da mais recente para a mais antiga, sem o conteúdo.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    static ArrayList<Revisao> listar(SQLiteDatabase db, long idNota) {
+        final String[] colunas = {REVISAO, DATA, TITULO, TAMANHO, FORMATO};
+        Cursor cursor = db.query(TABELA, colunas, ID_NOTA + " = ?", new String[]{String.valueOf(idNota)},
+                null, null, REVISAO + " DESC");
+        try {
+            ArrayList<Revisao> result = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                result.add(new Revisao(idNota, cursor.getInt(0), cursor.getLong(1), cursor.getString(2),
+                        cursor.getInt(3), cursor.getInt(4) != CodificadorConteudo.FORMATO_DELTA));
+            }
+            return result;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Reconstrói o título e o conteúdo da nota em uma revisão, a partir da última revisão completa
+     * que a antecede.
+     *
+     * @param db o banco de dados.
+     * @param idNota o {@code _id} da nota.
+     * @param revisao o número da revisão.
+     * @return a nota na revisão informada, ou {@code null} caso a revisão não exista.
+     * @throws DataFormatException caso os dados de alguma revisão estejam corrompidos.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    static Nota reconstruir(SQLiteDatabase db, long idNota, int revisao) throws DataFormatException {
+        Cursor cursor = db.rawQuery(SQL_RECONSTRUIR, new String[]{String.valueOf(idNota), String.valueOf(revisao)});
+        try {
+            byte[] conteudo = null;
+            int ultima = 0;
+            String titulo = null;
+            long crc = 0;
+            while (cursor.moveToNext()) {
+                ultima = cursor.getInt(0);
+                titulo = cursor.getString(1);
+                crc = cursor.getLong(2);
+                switch (cursor.getInt(3)) {
+                    case CodificadorConteudo.FORMATO_DELTA:
+                        if (conteudo == null) throw new DataFormatException("Revisão completa não encontrada.");
+                        conteudo = DeltaConteudo.aplicar(conteudo, cursor.getBlob(4));
+                        break;
+                    case CodificadorConteudo.FORMATO_DEFLATE:
+                        conteudo = CodificadorConteudo.descompactar(cursor.getBlob(4)).getBytes(UTF_8);
+                        break;
+                    default:
+                        conteudo = cursor.getString(4).getBytes(UTF_8);
+                        break;
+                }
+            }
+            if (conteudo == null || ultima != revisao) return null;
+            if (calcularCrc(conteudo) != crc) {
+                throw new DataFormatException("CRC da revisão " + revisao + " da nota " + idNota + " não confere.");
+            }
+            return new Nota(idNota, titulo, new String(conteudo, UTF_8));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Exclui as revisões antigas de todas as notas: de cada nota, as que não estão entre as
+     * {@code maximoPorNota} mais recentes e as gravadas antes de {@code limiteData} (a última
+     * revisão é sempre mantida). Para que as revisões mantidas possam ser reconstruídas,
+     * a exclusão para na última revisão completa anterior a elas, de modo que algumas revisões
+     * além do limite podem ser mantidas.
+     * <p/>
+     * As revisões são excluídas em transações de até {@code tamanhoLote} revisões, sem manter o
+     * banco de dados bloqueado para escrita durante toda a exclusão. Não deve ser chamado dentro de
+     * uma transação.
+     *
+     * @param db o banco de dados.
+     * @param maximoPorNota quantidade de revisões mantidas por nota; no mínimo {@code 1}.
+     * @param limiteData momento, em milissegundos, a partir do qual as revisões são mantidas, ou
+     *                   {@code 0} para não considerar a data.
+     * @param tamanhoLote quantidade máxima de revisões excluídas por transação.
+     * @return a quantidade de revisões excluídas.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    static int podar(SQLiteDatabase db, int maximoPorNota, long limiteData, int tamanhoLote) {
+        if (maximoPorNota < 1) throw new IllegalArgumentException("maximoPorNota=" + maximoPorNota);
+
+        // Notas com revisões a excluir e a primeira revisão mantida de cada uma
+        long[] ids = new long[16];
+        int[] cortes = new int[16];
+        int notas = 0;
+        Cursor cursor = db.rawQuery(SQL_CORTES, new String[]{String.valueOf(maximoPorNota - 1), String.valueOf(limiteData)});
+        try {
+            while (cursor.moveToNext()) {
+                if (cursor.isNull(2) || cursor.getInt(2) <= cursor.getInt(1)) continue;
+                if (notas == ids.length) {
+                    ids = Arrays.copyOf(ids, notas * 2);
+                    cortes = Arrays.copyOf(cortes, notas * 2);
+                }
+                ids[notas] = cursor.getLong(0);
+                cortes[notas] = cursor.getInt(2);
+                notas++;
+            }
+        } finally {
+            cursor.close();
+        }
+
+        int excluidas = 0;
+        int nota = 0;
+        SQLiteStatement excluir = db.compileStatement(SQL_EXCLUIR_ANTERIORES);
+        try {
+            while (nota < notas) {
+                int excluidasLote = 0;
+                db.beginTransactionNonExclusive();
+                try {
+                    while (nota < notas && excluidasLote < tamanhoLote) {
+                        final int solicitadas = tamanhoLote - excluidasLote;
+                        excluir.bindLong(1, ids[nota]);
+                        excluir.bindLong(2, cortes[nota]);
+                        excluir.bindLong(3, solicitadas);
+                        final int linhas = excluir.executeUpdateDelete();
+                        excluidasLote += linhas;
+                        // Menos linhas que o solicitado: não restam revisões a excluir desta nota
+                        if (linhas < solicitadas) nota++;
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                excluidas += excluidasLote;
+            }
+        } finally {
+            excluir.close();
+        }
+        return excluidas;
+    }
+
+    /**
+     * @return o conteúdo anterior em UTF-8, ou {@code null} caso não possa ser lido (a revisão é
+     * então armazenada por completo).
+     */
+    private static byte[] lerAnterior(ConteudoAnterior anterior) {
+        try {
+            final String conteudo = anterior.ler();
+            return conteudo != null ? conteudo.getBytes(UTF_8) : null;
+        } catch (DataFormatException ex) {
+            return null;
+        }
+    }
+
+    private static long calcularCrc(byte[] dados) {
+        final CRC32 crc = new CRC32();
+        crc.update(dados, 0, dados.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Conteúdo de uma nota antes da gravação, lido por {@link #registrar} somente quando a revisão
+     * for armazenada como diferença.
+     */
+    interface ConteudoAnterior {
+
+        /**
+         * @return o conteúdo da nota antes da gravação, ou {@code null} caso não esteja disponível.
+         * @throws DataFormatException caso o conteúdo compactado esteja corrompido.
+         */
+        String ler() throws DataFormatException;
+    }
+}
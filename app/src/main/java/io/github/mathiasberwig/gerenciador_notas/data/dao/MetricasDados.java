@@ -0,0 +1,393 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.util.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Métricas da camada de dados: para cada {@link Operacao}, a quantidade de execuções, de erros e de
+ * execuções lentas, o histograma de latência, as linhas afetadas e os bytes lidos; e a quantidade
+ * de transações confirmadas e desfeitas. Registradas pelo {@link NotasDAO} e pelo {@link DBHelper}.
+ * <p/>
+ * O histograma tem intervalos em potências de dois, em microssegundos ({@code [2^i, 2^(i+1))}),
+ * de modo que o registro de uma execução custa somente alguns incrementos atômicos, sem alocações
+ * nem bloqueios. Os percentis são estimados pelo limite superior do intervalo que os contém.
+ * <p/>
+ * As métricas podem ser lidas por {@link #getEstatisticas(Operacao)} ou exportadas em JSON por
+ * {@link #escreverJson(Writer)}.
+ */
+public final class MetricasDados {
+
+    /**
+     * Limite padrão a partir do qual uma operação é considerada lenta, em milissegundos.
+     */
+    public static final long LIMITE_LENTA_PADRAO = 50;
+
+    /**
+     * Quantidade de intervalos do histograma; o último acumula as execuções acima de
+     * {@code 2^(INTERVALOS - 1)} microssegundos (cerca de 18 minutos).
+     */
+    private static final int INTERVALOS = 31;
+
+    /**
+     * Operações medidas, identificadas nas exportações pelo {@link #getNome() nome}.
+     */
+    public enum Operacao {
+        LISTAR("listar"),
+        LISTAR_ANTERIORES("listarAnteriores"),
+        BUSCAR_POR_ID("buscarPorId"),
+        BUSCAR("buscar"),
+        ABRIR_CURSOR("abrirCursor"),
+        LER_TRECHO("lerTrecho"),
+        SUBSTITUIR_TRECHO("substituirTrecho"),
+        INSERIR("inserir"),
+        ATUALIZAR("update"),
+        EXCLUIR("delete"),
+        INSERIR_TODAS("inserirTodas"),
+        ATUALIZAR_TODAS("updateTodas"),
+        EXCLUIR_TODAS("deleteTodas"),
+        LISTAR_REVISOES("listarRevisoes"),
+        BUSCAR_REVISAO("buscarRevisao"),
+        PODAR_REVISOES("podarRevisoes"),
+        EXPORTAR("exportar"),
+        IMPORTAR("importar"),
+        BACKUP("backup"),
+        RESTAURAR("restaurar"),
+        CRIAR_BANCO("criarBanco"),
+        ATUALIZAR_BANCO("atualizarBanco");
+
+        private final String nome;
+
+        Operacao(String nome) {
+            this.nome = nome;
+        }
+
+        public String getNome() {
+            return nome;
+        }
+    }
+
+    /**
+     * Instância utilizada pela aplicação.
+     */
+    private static final MetricasDados INSTANCE = new MetricasDados();
+
+    private final Contadores[] contadores = new Contadores[Operacao.values().length];
+    private final AtomicLong transacoesConfirmadas = new AtomicLong();
+    private final AtomicLong transacoesDesfeitas = new AtomicLong();
+    private volatile long limiteLentaNanos = TimeUnit.MILLISECONDS.toNanos(LIMITE_LENTA_PADRAO);
+
+    MetricasDados() {
+        for (int i = 0; i < contadores.length; i++) {
+            contadores[i] = new Contadores();
+        }
+    }
+
+    /**
+     * @return as métricas da {@link NotasDAO#getInstance instância da aplicação} do DAO e do
+     * {@link DBHelper}.
+     */
+    public static MetricasDados getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registra uma execução da {@code operacao}.
+     *
+     * @param operacao a operação executada.
+     * @param inicio o {@link System#nanoTime()} do início da execução.
+     * @param linhas quantidade de linhas (notas) lidas ou gravadas.
+     * @param bytesLidos bytes lidos do armazenamento.
+     * @param sucesso {@code false} caso a operação tenha falhado.
+     * @return a duração da execução, em nanossegundos.
+     */
+    public long registrar(Operacao operacao, long inicio, int linhas, long bytesLidos, boolean sucesso) {
+        final long duracao = System.nanoTime() - inicio;
+        final Contadores c = contadores[operacao.ordinal()];
+        c.quantidade.incrementAndGet();
+        if (!sucesso) c.erros.incrementAndGet();
+        if (isLenta(duracao)) c.lentas.incrementAndGet();
+        c.tempoTotal.addAndGet(duracao);
+        c.linhas.addAndGet(linhas);
+        c.bytesLidos.addAndGet(bytesLidos);
+        c.histograma.incrementAndGet(intervalo(duracao));
+        long maximo;
+        while (duracao > (maximo = c.tempoMaximo.get()) && !c.tempoMaximo.compareAndSet(maximo, duracao)) {
+            // Outra thread atualizou o máximo; tenta novamente
+        }
+        return duracao;
+    }
+
+    /**
+     * Registra a conclusão de uma transação.
+     *
+     * @param confirmada {@code true} caso tenha sido confirmada; {@code false} caso tenha sido
+     *                   desfeita.
+     */
+    public void registrarTransacao(boolean confirmada) {
+        (confirmada ? transacoesConfirmadas : transacoesDesfeitas).incrementAndGet();
+    }
+
+    /**
+     * @param duracao duração de uma execução, em nanossegundos.
+     * @return {@code true} caso a duração ultrapasse o {@link #setLimiteLenta(long) limite}.
+     */
+    public boolean isLenta(long duracao) {
+        return duracao > limiteLentaNanos;
+    }
+
+    /**
+     * Define o limite a partir do qual uma operação é considerada lenta. As operações lentas do
+     * {@link NotasDAO} são registradas no log junto com o plano da consulta.
+     *
+     * @param milissegundos o limite, em milissegundos.
+     */
+    public void setLimiteLenta(long milissegundos) {
+        limiteLentaNanos = TimeUnit.MILLISECONDS.toNanos(milissegundos);
+    }
+
+    /**
+     * @return o limite a partir do qual uma operação é considerada lenta, em milissegundos.
+     */
+    public long getLimiteLenta() {
+        return TimeUnit.NANOSECONDS.toMillis(limiteLentaNanos);
+    }
+
+    public long getTransacoesConfirmadas() {
+        return transacoesConfirmadas.get();
+    }
+
+    public long getTransacoesDesfeitas() {
+        return transacoesDesfeitas.get();
+    }
+
+    /**
+     * @param operacao a operação.
+     * @return uma cópia das métricas da operação.
+     */
+    public Estatisticas getEstatisticas(Operacao operacao) {
+        return new Estatisticas(operacao, contadores[operacao.ordinal()]);
+    }
+
+    /**
+     * Zera todas as métricas, mantendo o limite de operações lentas.
+     */
+    public void zerar() {
+        for (Contadores c : contadores) {
+            c.zerar();
+        }
+        transacoesConfirmadas.set(0);
+        transacoesDesfeitas.set(0);
+    }
+
+    /**
+     * Escreve as métricas em JSON. Os tempos são informados em microssegundos, e o histograma de
+     * cada operação como pares {@code [limite superior, quantidade]} dos intervalos não vazios.
+     * Operações nunca executadas são omitidas.
+     *
+     * @param writer destino do JSON; não é fechado.
+     */
+    public void escreverJson(Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("limiteLentaMs").value(getLimiteLenta());
+        json.name("transacoes").beginObject()
+                .name("confirmadas").value(getTransacoesConfirmadas())
+                .name("desfeitas").value(getTransacoesDesfeitas())
+                .endObject();
+        json.name("operacoes").beginObject();
+        for (Operacao operacao : Operacao.values()) {
+            final Estatisticas e = getEstatisticas(operacao);
+            if (e.getQuantidade() == 0) continue;
+
+            json.name(operacao.getNome()).beginObject()
+                    .name("quantidade").value(e.getQuantidade())
+                    .name("erros").value(e.getErros())
+                    .name("lentas").value(e.getLentas())
+                    .name("linhas").value(e.getLinhas())
+                    .name("bytesLidos").value(e.getBytesLidos())
+                    .name("tempoTotalUs").value(e.getTempoTotal(TimeUnit.MICROSECONDS))
+                    .name("tempoMedioUs").value(e.getTempoMedio(TimeUnit.MICROSECONDS))
+                    .name("tempoMaximoUs").value(e.getTempoMaximo(TimeUnit.MICROSECONDS))
+                    .name("p50Us").value(e.getPercentil(50))
+                    .name("p95Us").value(e.getPercentil(95))
+                    .name("p99Us").value(e.getPercentil(99));
+            json.name("histogramaUs").beginArray();
+            for (int i = 0; i < INTERVALOS; i++) {
+                if (e.histograma[i] == 0) continue;
+                json.beginArray().value(limiteSuperior(i)).value(e.histograma[i]).endArray();
+            }
+            json.endArray();
+            json.endObject();
+        }
+        json.endObject();
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * @return as métricas em JSON (veja {@link #escreverJson(Writer)}).
+     */
+    public String paraJson() {
+        StringWriter writer = new StringWriter();
+        try {
+            escreverJson(writer);
+        } catch (IOException ex) {
+            // StringWriter não lança IOException
+            throw new IllegalStateException(ex);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * @return o índice do intervalo do histograma que contém a {@code duracao} (em nanossegundos).
+     */
+    private static int intervalo(long duracao) {
+        final long micros = Math.max(1, duracao / 1000);
+        return Math.min(INTERVALOS - 1, 63 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * @return o limite superior do intervalo {@code i} do histograma, em microssegundos.
+     */
+    private static long limiteSuperior(int i) {
+        return 1L << (i + 1);
+    }
+
+    /**
+     * Contadores de uma operação, atualizados concorrentemente.
+     */
+    private static final class Contadores {
+        final AtomicLong quantidade = new AtomicLong();
+        final AtomicLong erros = new AtomicLong();
+        final AtomicLong lentas = new AtomicLong();
+        final AtomicLong tempoTotal = new AtomicLong();
+        final AtomicLong tempoMaximo = new AtomicLong();
+        final AtomicLong linhas = new AtomicLong();
+        final AtomicLong bytesLidos = new AtomicLong();
+        final AtomicLongArray histograma = new AtomicLongArray(INTERVALOS);
+
+        void zerar() {
+            quantidade.set(0);
+            erros.set(0);
+            lentas.set(0);
+            tempoTotal.set(0);
+            tempoMaximo.set(0);
+            linhas.set(0);
+            bytesLidos.set(0);
+            for (int i = 0; i < INTERVALOS; i++) {
+                histograma.set(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Cópia das métricas de uma operação. Os valores são lidos sem bloqueio e podem não ser
+     * exatamente simultâneos entre si.
+     */
+    public static final class Estatisticas {
+        private final Operacao operacao;
+        private final long quantidade;
+        private final long erros;
+        private final long lentas;
+        private final long tempoTotal;
+        private final long tempoMaximo;
+        private final long linhas;
+        private final long bytesLidos;
+        private final long[] histograma = new long[INTERVALOS];
+
+        private Estatisticas(Operacao operacao, Contadores c) {
+            this.operacao = operacao;
+            this.quantidade = c.quantidade.get();
+            this.erros = c.erros.get();
+            this.lentas = c.lentas.get();
+            this.tempoTotal = c.tempoTotal.get();
+            this.tempoMaximo = c.tempoMaximo.get();
+            this.linhas = c.linhas.get();
+            this.bytesLidos = c.bytesLidos.get();
+            for (int i = 0; i < INTERVALOS; i++) {
+                histograma[i] = c.histograma.get(i);
+            }
+        }
+
+        public Operacao getOperacao() {
+            return operacao;
+        }
+
+        public long getQuantidade() {
+            return quantidade;
+        }
+
+        public long getErros() {
+            return erros;
+        }
+
+        /**
+         * @return quantidade de execuções acima do {@link MetricasDados#setLimiteLenta(long) limite}.
+         */
+        public long getLentas() {
+            return lentas;
+        }
+
+        /**
+         * @return total de linhas (notas) lidas ou gravadas.
+         */
+        public long getLinhas() {
+            return linhas;
+        }
+
+        /**
+         * @return total de bytes lidos do armazenamento (título e conteúdo, em UTF-16).
+         */
+        public long getBytesLidos() {
+            return bytesLidos;
+        }
+
+        public long getTempoTotal(TimeUnit unidade) {
+            return unidade.convert(tempoTotal, TimeUnit.NANOSECONDS);
+        }
+
+        public long getTempoMedio(TimeUnit unidade) {
+            return quantidade > 0 ? unidade.convert(tempoTotal / quantidade, TimeUnit.NANOSECONDS) : 0;
+        }
+
+        public long getTempoMaximo(TimeUnit unidade) {
+            return unidade.convert(tempoMaximo, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Estima o percentil da latência pelo limite superior do intervalo do histograma que o
+         * contém.
+         *
+         * @param percentil o percentil, entre 0 e 100.
+         * @return a latência estimada, em microssegundos, ou {@code 0} se não houver execuções.
+         */
+        public long getPercentil(double percentil) {
+            long total = 0;
+            for (long q : histograma) total += q;
+            if (total == 0) return 0;
+
+            final double alvo = Math.ceil(total * percentil / 100);
+            long acumulado = 0;
+            for (int i = 0; i < INTERVALOS; i++) {
+                acumulado += histograma[i];
+                if (acumulado >= alvo) return limiteSuperior(i);
+            }
+            return limiteSuperior(INTERVALOS - 1);
+        }
+
+        @Override
+        public String toString() {
+            return operacao.getNome() + "{quantidade=" + quantidade + ", erros=" + erros + ", lentas=" + lentas
+                    + ", medio=" + getTempoMedio(TimeUnit.MICROSECONDS) + "us, p95=" + getPercentil(95)
+                    + "us, maximo=" + getTempoMaximo(TimeUnit.MICROSECONDS) + "us, linhas=" + linhas
+                    + ", bytesLidos=" + bytesLidos + "}";
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Atualiza o esquema do banco de dados por uma sequência ordenada de {@link Migracao migrações},
+ * uma por versão, cada uma com o seu script em {@code res/raw} ({@code atualizacao_db_vN.sql}).
+ * <p/>
+ * A atualização é tudo ou nada: as migrações são executadas pelo {@link DBHelper#onUpgrade}, na
+ * transação do {@code SQLiteOpenHelper}, e a aplicação nunca abre um banco de dados em uma versão
+ * intermediária. Caso uma migração falhe, nenhuma é confirmada e todas são executadas novamente na
+ * próxima abertura. A transação de cada migração, aninhada nessa, grava a nova versão
+ * ({@code user_version}) e registra a duração da migração na tabela {@link #NOME_TABELA}, de modo
+ * que cada script parte do esquema deixado pelo anterior e o deixa completo na sua versão,
+ * inclusive o índice de busca, sem depender das migrações seguintes.
+ * <p/>
+ * Índices sobre tabelas existentes devem ser criados no script depois das alterações em massa
+ * dos dados da migração, para que o SQLite os construa uma única vez, ordenando as linhas, em vez
+ * de atualizá-los a cada linha alterada. Durante as migrações, o cache de páginas é ampliado para
+ * {@link #CACHE_MIGRACAO_KIB}, de modo que essa ordenação seja feita em memória.
+ */
+final class MigracoesBanco {
+    private static final String TAG = MigracoesBanco.class.getName();
+
+    /**
+     * Tabela com a versão, a descrição, a data e a duração de cada migração executada.
+     */
+    static final String NOME_TABELA = "migracoes";
+
+    /**
+     * Tamanho do cache de páginas durante as migrações, em KiB.
+     */
+    static final int CACHE_MIGRACAO_KIB = 8 * 1024;
+
+    private static final String SQL_CRIAR_TABELA = "CREATE TABLE IF NOT EXISTS " + NOME_TABELA
+            + " (versao INTEGER PRIMARY KEY, descricao TEXT NOT NULL, data INTEGER NOT NULL,"
+            + " duracao INTEGER NOT NULL, linhas INTEGER NOT NULL)";
+    private static final String SQL_REGISTRAR = "INSERT OR REPLACE INTO " + NOME_TABELA
+            + " (versao, descricao, data, duracao, linhas) VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * Migração do esquema da versão anterior para {@link #versao}: o script e, opcionalmente, a
+     * conversão em Java das notas existentes ({@link #converter(SQLiteDatabase)}).
+     */
+    static class Migracao {
+        final int versao;
+        final String descricao;
+        final int idScript;
+
+        /**
+         * @param versao a versão do banco de dados após a migração.
+         * @param descricao descrição da alteração, registrada no log e na tabela {@link #NOME_TABELA}.
+         * @param idScript identificador do script da migração ({@code R.raw.*}).
+         */
+        Migracao(int versao, String descricao, int idScript) {
+            this.versao = versao;
+            this.descricao = descricao;
+            this.idScript = idScript;
+        }
+
+        /**
+         * Converte as notas existentes, após o script e na mesma transação. Não faz nada por padrão.
+         *
+         * @param db o banco de dados em atualização.
+         * @return quantidade de notas convertidas.
+         */
+        int converter(SQLiteDatabase db) {
+            return 0;
+        }
+    }
+
+    private final Resources resources;
+    private final List<Migracao> migracoes;
+
+    /**
+     * @param resources recursos da aplicação, dos quais os scripts são lidos.
+     * @param migracoes as migrações, em ordem de versão, a partir da versão 2 e sem lacunas.
+     * @throws IllegalArgumentException caso as migrações não estejam em ordem ou haja lacunas.
+     */
+    MigracoesBanco(Resources resources, List<Migracao> migracoes) {
+        for (int i = 0; i < migracoes.size(); i++) {
+            if (migracoes.get(i).versao != i + 2) {
+                throw new IllegalArgumentException("Migração esperada para a versão " + (i + 2)
+                        + ", encontrada para a versão " + migracoes.get(i).versao);
+            }
+        }
+        this.resources = resources;
+        this.migracoes = new ArrayList<>(migracoes);
+    }
+
+    /**
+     * @return a versão do banco de dados após todas as migrações.
+     */
+    int getVersaoFinal() {
+        return migracoes.size() + 1;
+    }
+
+    /**
+     * Executa, em ordem, as migrações posteriores à {@code versaoAtual}.
+     *
+     * @param db o banco de dados a atualizar.
+     * @param versaoAtual a versão atual do banco de dados.
+     * @return quantidade de notas convertidas pelas migrações.
+     */
+    int executar(SQLiteDatabase db, int versaoAtual) {
+        int linhas = 0;
+        for (int i = Math.max(versaoAtual - 1, 0); i < migracoes.size(); i++) {
+            linhas += executar(db, migracoes.get(i));
+        }
+        return linhas;
+    }
+
+    /**
+     * Executa uma migração em uma transação, aninhada na do {@link DBHelper#onUpgrade}, gravando a
+     * versão e a duração.
+     *
+     * @return quantidade de notas convertidas.
+     */
+    private int executar(SQLiteDatabase db, Migracao migracao) {
+        final MetricasDados metricas = MetricasDados.getInstance();
+        final long inicio = System.nanoTime();
+        int linhas = 0;
+        boolean sucesso = false;
+        db.beginTransaction();
+        try {
+            // Na transação, as instruções são executadas pela conexão de escrita, à qual o
+            // tamanho do cache se aplica
+            final String cacheAnterior = consultar(db, "PRAGMA cache_size");
+            db.execSQL("PRAGMA cache_size = -" + CACHE_MIGRACAO_KIB);
+            try {
+                ScriptSQL.executar(db, resources, migracao.idScript);
+                linhas = migracao.converter(db);
+            } finally {
+                if (cacheAnterior != null) db.execSQL("PRAGMA cache_size = " + cacheAnterior);
+            }
+
+            db.setVersion(migracao.versao);
+            db.execSQL(SQL_CRIAR_TABELA);
+            db.execSQL(SQL_REGISTRAR, new Object[]{migracao.versao, migracao.descricao,
+                    System.currentTimeMillis(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio), linhas});
+            db.setTransactionSuccessful();
+            sucesso = true;
+        } finally {
+            db.endTransaction();
+            metricas.registrarTransacao(sucesso);
+            final long duracao = metricas.registrar(MetricasDados.Operacao.ATUALIZAR_BANCO, inicio, linhas, 0, sucesso);
+            Log.i(TAG, "Migração para a versão " + migracao.versao + " (" + migracao.descricao + ") "
+                    + (sucesso ? "concluída" : "falhou") + " em " + TimeUnit.NANOSECONDS.toMillis(duracao)
+                    + " ms (" + linhas + " notas convertidas)");
+        }
+        return linhas;
+    }
+
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    private static String consultar(SQLiteDatabase db, String sql) {
+        final Cursor cursor = db.rawQuery(sql, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
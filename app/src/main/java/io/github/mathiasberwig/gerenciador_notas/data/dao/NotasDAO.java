@@ -1,44 +1,107 @@
 package io.github.mathiasberwig.gerenciador_notas.data.dao;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteOpenHelper;
 import android.provider.BaseColumns;
 import android.util.Log;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+import io.github.mathiasberwig.gerenciador_notas.data.model.ResultadoBusca;
+import io.github.mathiasberwig.gerenciador_notas.data.model.Revisao;
+
+import static io.github.mathiasberwig.gerenciador_notas.data.dao.MetricasDados.Operacao;
 
 /**
  * Data Access Object responsável por manipular registros de
  * {@link io.github.mathiasberwig.gerenciador_notas.data.model.Nota Notas} no banco de dados SQLite
  * desta aplicação.
+ * <p/>
+ * As notas são lidas e gravadas por um {@link ArmazenamentoNotas mecanismo de armazenamento}
+ * ({@link ArmazenamentoSQLite} na instância da aplicação); o DAO mantém o cache, os ouvintes e o
+ * agrupamento das operações em lote, e converte as exceções do mecanismo nos valores de retorno
+ * documentados em cada método. A duração, as linhas e os bytes lidos de cada operação são
+ * registrados nas {@link #getMetricas() métricas}.
  *
  * Created by mathias.berwig on 02/05/2016.
  */
 public class NotasDAO {
     private static final String TAG = NotasDAO.class.getName();
 
+    /**
+     * Quantidade máxima de notas gravadas em uma mesma transação pelas operações em lote. Cada
+     * transação resulta em uma única sincronização com o armazenamento.
+     */
+    public static final int TAMANHO_LOTE = 1000;
+
+    /**
+     * Quantidade máxima de caracteres do conteúdo lidos pelas listagens. Notas mais extensas são
+     * listadas como {@link Nota#isParcial() parciais}, e o conteúdo completo é lido somente por
+     * {@link #buscarPorId(long)}. Evita que notas extensas ocupem a {@code CursorWindow} e a memória
+     * da listagem, que exibe apenas as primeiras linhas do conteúdo.
+     */
+    public static final int TAMANHO_PREVIA = PreviaConteudo.TAMANHO;
+
     /**
      * Instância da classe (singleton).
      */
-    private static NotasDAO instance;
+    private static volatile NotasDAO instance;
+
+    /**
+     * Mecanismo que lê e grava as notas.
+     */
+    private final ArmazenamentoNotas armazenamento;
+
+    /**
+     * O {@link #armazenamento} quando for o {@link ArmazenamentoSQLite}, que oferece a busca
+     * textual, o cursor de notas, os trechos de notas segmentadas e o histórico de revisões;
+     * {@code null} caso contrário.
+     */
+    private final ArmazenamentoSQLite sqlite;
+
+    /**
+     * Cache das notas consultadas por {@link #buscarPorId(long)}, atualizado a cada gravação.
+     */
+    private final CacheNotas cache;
+
+    /**
+     * Métricas das operações deste DAO.
+     */
+    private final MetricasDados metricas;
 
     /**
-     * Auxiliar de conexões do banco de dados.
+     * Ouvintes notificados a cada alteração na tabela de notas.
      */
-    private final SQLiteOpenHelper databaseHelper;
+    private final CopyOnWriteArrayList<OuvinteAlteracoesNotas> ouvintes = new CopyOnWriteArrayList<>();
 
     /**
-     * Constrói uma nova instância do NotasDAO utilizando o SQLiteOpenHelper informado.
+     * Incrementada antes de cada notificação dos ouvintes.
      *
-     * @param databaseHelper instância do auxiliar de manipulação do banco de dados.
+     * @see #getVersaoAlteracoes()
      */
-    private NotasDAO(SQLiteOpenHelper databaseHelper) {
-        this.databaseHelper = databaseHelper;
+    private final AtomicLong versaoAlteracoes = new AtomicLong();
+
+    /**
+     * Constrói uma nova instância do NotasDAO utilizando o mecanismo de armazenamento informado.
+     *
+     * @param armazenamento mecanismo que lê e grava as notas.
+     * @param cache cache das notas consultadas por {@link #buscarPorId(long)}.
+     * @param metricas métricas em que as operações são registradas.
+     */
+    private NotasDAO(ArmazenamentoNotas armazenamento, CacheNotas cache, MetricasDados metricas) {
+        this.armazenamento = armazenamento;
+        this.sqlite = armazenamento instanceof ArmazenamentoSQLite ? (ArmazenamentoSQLite) armazenamento : null;
+        this.cache = cache;
+        this.metricas = metricas;
     }
 
     /**
@@ -49,52 +112,472 @@ public class NotasDAO {
      * @see #instance
      */
     public static NotasDAO getInstance(Context context) {
-        if (instance == null) {
-            instance = new NotasDAO(DBHelper.getInstance(context));
+        NotasDAO result = instance;
+        if (result == null) {
+            synchronized (NotasDAO.class) {
+                result = instance;
+                if (result == null) {
+                    final CacheNotas cache = new CacheNotas(CacheNotas.tamanhoPadrao());
+                    context.getApplicationContext().registerComponentCallbacks(cache);
+                    result = new NotasDAO(new ArmazenamentoSQLite(GerenciadorConexao.getInstance(context)), cache,
+                            MetricasDados.getInstance());
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cria um DAO independente da {@link #getInstance(Context) instância da aplicação}, sobre o
+     * mecanismo de armazenamento informado (por exemplo, um {@link ArmazenamentoLog}), com cache e
+     * métricas próprios. O mecanismo deve ser {@link ArmazenamentoNotas#fechar() fechado} por quem
+     * o criou.
+     * <p/>
+     * A busca textual, o cursor de notas e o histórico de revisões dependem do
+     * {@link ArmazenamentoSQLite}: nos demais mecanismos, {@link #buscar(String, int)} e
+     * {@link #listarRevisoes(long)} não encontram nenhuma nota ou revisão e {@link #abrirCursor()}
+     * retorna {@code null}.
+     *
+     * @param armazenamento o mecanismo de armazenamento.
+     * @return o novo DAO.
+     */
+    public static NotasDAO criar(ArmazenamentoNotas armazenamento) {
+        return new NotasDAO(armazenamento, new CacheNotas(CacheNotas.tamanhoPadrao()), new MetricasDados());
+    }
+
+    /**
+     * Obtém a {@link Nota} com o {@code id} informado, consultando o banco de dados somente caso
+     * ela não esteja no {@link #getCache() cache}.
+     *
+     * @param id o {@code id} da nota.
+     * @return uma nova instância da nota, ou {@code null} caso não exista ou ocorra algum erro.
+     */
+    public Nota buscarPorId(long id) {
+        final long inicio = System.nanoTime();
+        Nota nota = cache.obter(id);
+        if (nota != null) {
+            medir(Operacao.BUSCAR_POR_ID, inicio, 1, 0, true);
+            return nota;
+        }
+
+        // Uma escrita concluída durante a leitura invalida o resultado para o cache
+        final long versaoCache = cache.getVersao();
+        try {
+            nota = armazenamento.buscarPorId(id);
+        } catch (Exception ex) {
+            Log.e(TAG, "Não foi possível buscar a nota " + id, ex);
+            medir(Operacao.BUSCAR_POR_ID, inicio, 0, 0, false);
+            return null;
+        }
+        if (nota != null) {
+            cache.colocarSeInalterado(nota, versaoCache);
+        }
+        medir(Operacao.BUSCAR_POR_ID, inicio, nota != null ? 1 : 0, bytesDe(nota), true);
+        return nota;
+    }
+
+    /**
+     * Obtém a quantidade de caracteres do conteúdo da nota. O conteúdo das notas segmentadas
+     * ({@link CodificadorConteudo#FORMATO_SEGMENTADO}) não é lido.
+     *
+     * @param id o {@code id} da nota.
+     * @return a quantidade de caracteres, ou {@code -1} caso a nota não exista ou ocorra algum erro.
+     */
+    public int contarCaracteres(long id) {
+        if (sqlite != null) {
+            try {
+                final int caracteres = sqlite.contarCaracteresSegmentados(id);
+                if (caracteres != -1) return caracteres;
+            } catch (Exception ex) {
+                Log.e(TAG, "Não foi possível contar os caracteres da nota " + id, ex);
+                return -1;
+            }
+        }
+        Nota nota = buscarPorId(id);
+        return nota != null ? nota.getConteudo().length() : -1;
+    }
+
+    /**
+     * Lê o intervalo {@code [inicio, fim)} do conteúdo da nota. Das notas segmentadas
+     * ({@link CodificadorConteudo#FORMATO_SEGMENTADO}) somente os segmentos que contêm o intervalo
+     * são lidos; das demais, o conteúdo completo é obtido por {@link #buscarPorId(long)}.
+     *
+     * @param id o {@code id} da nota.
+     * @param inicio posição do primeiro caractere.
+     * @param fim posição seguinte ao último caractere; limitada ao tamanho do conteúdo.
+     * @return o texto do intervalo, ou {@code null} caso a nota não exista ou ocorra algum erro.
+     */
+    public String lerTrecho(long id, int inicio, int fim) {
+        if (inicio < 0 || fim < inicio) {
+            throw new IllegalArgumentException("Intervalo inválido: [" + inicio + ", " + fim + ")");
+        }
+        final long inicioMedicao = System.nanoTime();
+        if (sqlite != null) {
+            try {
+                final String trecho = sqlite.lerTrechoSegmentado(id, inicio, fim);
+                if (trecho != null) {
+                    medir(Operacao.LER_TRECHO, inicioMedicao, 1, 2L * trecho.length(), true);
+                    return trecho;
+                }
+            } catch (Exception ex) {
+                Log.e(TAG, "Não foi possível ler o trecho [" + inicio + ", " + fim + ") da nota " + id, ex);
+                medir(Operacao.LER_TRECHO, inicioMedicao, 0, 0, false);
+                return null;
+            }
+        }
+        Nota nota = buscarPorId(id);
+        if (nota == null) {
+            medir(Operacao.LER_TRECHO, inicioMedicao, 0, 0, true);
+            return null;
+        }
+
+        final String conteudo = nota.getConteudo();
+        final String trecho = conteudo.substring(Math.min(inicio, conteudo.length()), Math.min(fim, conteudo.length()));
+        // Os bytes lidos do armazenamento são registrados por buscarPorId
+        medir(Operacao.LER_TRECHO, inicioMedicao, 1, 0, true);
+        return trecho;
+    }
+
+    /**
+     * Substitui o intervalo {@code [inicio, fim)} do conteúdo da nota pelo {@code texto}. Das
+     * notas segmentadas ({@link CodificadorConteudo#FORMATO_SEGMENTADO}) somente os segmentos que
+     * contêm o intervalo são regravados; as demais são atualizadas por {@link #update(Nota)}. Em
+     * ambos os casos, a revisão é registrada no histórico.
+     * <p/>
+     * Os ouvintes recebem, das notas segmentadas, somente a {@link Nota#isParcial() prévia}.
+     *
+     * @param id o {@code id} da nota.
+     * @param inicio posição do primeiro caractere substituído; limitada ao tamanho do conteúdo.
+     * @param fim posição seguinte ao último caractere substituído; limitada ao tamanho do
+     * conteúdo.
+     * @param texto o texto que substitui o intervalo.
+     * @return {@code true} caso a nota tenha sido atualizada.
+     * @throws IllegalArgumentException caso {@code inicio < 0} ou {@code fim < inicio}.
+     */
+    public boolean substituirTrecho(long id, int inicio, int fim, String texto) {
+        if (inicio < 0 || fim < inicio) {
+            throw new IllegalArgumentException("Intervalo inválido: [" + inicio + ", " + fim + ")");
+        }
+        final long inicioMedicao = System.nanoTime();
+        if (sqlite != null) {
+            final Nota previa;
+            try {
+                previa = sqlite.substituirTrechoSegmentado(id, inicio, fim, texto);
+            } catch (Exception ex) {
+                Log.e(TAG, "Não foi possível substituir o trecho [" + inicio + ", " + fim + ") da nota " + id, ex);
+                metricas.registrarTransacao(false);
+                medir(Operacao.SUBSTITUIR_TRECHO, inicioMedicao, 0, 0, false);
+                return false;
+            }
+            if (previa != null) {
+                metricas.registrarTransacao(true);
+                cache.remover(id);
+                notificarAtualizacao(Collections.singletonList(previa));
+                medir(Operacao.SUBSTITUIR_TRECHO, inicioMedicao, 1, 0, true);
+                return true;
+            }
+        }
+
+        // A leitura e a gravação da nota completa são registradas por buscarPorId e update
+        boolean atualizada = false;
+        Nota nota = buscarPorId(id);
+        if (nota != null) {
+            final String conteudo = nota.getConteudo();
+            final int inicioLimitado = Math.min(inicio, conteudo.length());
+            final int fimLimitado = Math.min(fim, conteudo.length());
+            nota.setConteudo(conteudo.substring(0, inicioLimitado) + texto + conteudo.substring(fimLimitado));
+            atualizada = update(nota) > 0;
         }
-        return instance;
+        medir(Operacao.SUBSTITUIR_TRECHO, inicioMedicao, atualizada ? 1 : 0, 0, true);
+        return atualizada;
     }
 
     /**
-     * Lista todas as {@link Nota notas} do banco de dados local.
+     * Cria a nota exibida nas listagens a partir do conteúdo informado: caso exceda
+     * {@link #TAMANHO_PREVIA} caracteres, o conteúdo é truncado e a nota é marcada como
+     * {@link Nota#isParcial() parcial}.
      *
-     * @return todos os registros da tabela {@link Notas#NOME_TABELA}.
+     * @param id o {@code id} da nota.
+     * @param titulo o título da nota.
+     * @param conteudo o conteúdo completo ou a prévia lida do banco de dados.
+     * @return a nota para listagem.
+     */
+    public static Nota criarPrevia(Long id, String titulo, String conteudo) {
+        return PreviaConteudo.criar(id, titulo, conteudo);
+    }
+
+    /**
+     * @return o cache de notas deste DAO, que expõe os contadores de acertos e falhas.
+     */
+    public CacheNotas getCache() {
+        return cache;
+    }
+
+    /**
+     * @return as métricas das operações deste DAO.
+     */
+    public MetricasDados getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * Lista todas as {@link Nota notas} do banco de dados local. Assim como nas demais listagens,
+     * somente a prévia do conteúdo é lida (veja {@link #TAMANHO_PREVIA}).
+     *
+     * @return todos os registros da tabela {@link Notas#NOME_TABELA}, ou {@code null} em caso de erro.
      * @see <a href="http://bit.ly/1whYCa6">Android Developers - Ler informações de um banco de dados</a>
+     * @see #listar(long, int)
      */
-    @SuppressWarnings("TryFinallyCanBeTryWithResources")
     public ArrayList<Nota> listar() {
-        ArrayList<Nota> result = null;
-        Cursor cursor = null;
-        SQLiteDatabase database = databaseHelper.getReadableDatabase();
+        return listar(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lista uma página de {@link Nota notas} cujo {@code _id} é maior que {@code aposId}, em ordem
+     * crescente. A paginação é feita por chave ({@code WHERE _id > ?}) em vez de {@code OFFSET},
+     * de modo que o SQLite posiciona a busca diretamente no índice da chave primária e o custo de
+     * cada página independe da sua posição na tabela.
+     *
+     * @param aposId o {@code _id} da última nota da página anterior, ou {@code 0} para a primeira
+     *               página.
+     * @param limite quantidade máxima de notas da página.
+     * @return as notas da página, ou {@code null} em caso de erro.
+     */
+    public ArrayList<Nota> listar(long aposId, int limite) {
+        final long inicio = System.nanoTime();
+        try {
+            ArrayList<Nota> result = armazenamento.listar(aposId, limite);
+            medir(Operacao.LISTAR, inicio, result.size(), bytesDe(result), true);
+            return result;
+        } catch (Exception ex) {
+            Log.e(TAG, "Não foi possível listar as notas.", ex);
+            medir(Operacao.LISTAR, inicio, 0, 0, false);
+            return null;
+        }
+    }
+
+    /**
+     * Lista uma página de {@link Nota notas} cujo {@code _id} é menor que {@code antesId}, utilizada
+     * para carregar as notas anteriores à janela exibida. O resultado é retornado em ordem
+     * crescente, assim como em {@link #listar(long, int)}.
+     *
+     * @param antesId o {@code _id} da primeira nota da página posterior.
+     * @param limite quantidade máxima de notas da página.
+     * @return as notas da página, ou {@code null} em caso de erro.
+     */
+    public ArrayList<Nota> listarAnteriores(long antesId, int limite) {
+        final long inicio = System.nanoTime();
+        try {
+            ArrayList<Nota> result = armazenamento.listarAnteriores(antesId, limite);
+            medir(Operacao.LISTAR_ANTERIORES, inicio, result.size(), bytesDe(result), true);
+            return result;
+        } catch (Exception ex) {
+            Log.e(TAG, "Não foi possível listar as notas.", ex);
+            medir(Operacao.LISTAR_ANTERIORES, inicio, 0, 0, false);
+            return null;
+        }
+    }
+
+    /**
+     * Abre um {@link Cursor} sobre todas as {@link Nota notas} do banco de dados local, em ordem
+     * crescente de {@code _id}. Diferente de {@link #listar()}, nenhuma nota é instanciada: as
+     * linhas permanecem na {@code CursorWindow} e podem ser lidas diretamente pelas colunas
+     * {@link Notas#_ID}, {@link Notas#TITULO} e {@link Notas#CONTEUDO}. A coluna do conteúdo contém
+     * somente a prévia (até {@link #TAMANHO_PREVIA} + 1 caracteres; veja {@link #criarPrevia}). A
+     * coluna {@link Notas#ULTIMO_ID} contém o maior {@code _id} da mesma consulta que contou as
+     * notas, de modo que as notas inseridas depois da abertura possam ser identificadas sem
+     * percorrer o cursor.
+     * <p/>
+     * O cursor mantém uma referência ao banco de dados enquanto estiver aberto e deve ser fechado
+     * por quem o solicitou.
+     *
+     * @return o cursor posicionado antes da primeira nota, ou {@code null} em caso de erro ou caso o
+     * mecanismo de armazenamento não seja o {@link ArmazenamentoSQLite}.
+     */
+    public Cursor abrirCursor() {
+        if (sqlite == null) return null;
+        final long inicio = System.nanoTime();
         try {
-            String[] columns = {Notas._ID,
-                    Notas.TITULO,
-                    Notas.CONTEUDO};
-            cursor = database.query(Notas.NOME_TABELA, columns, null, null, null, null, null);
-            result = new ArrayList<>(cursor.getCount());
-            for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
-                Nota nota = new Nota(
-                    cursor.getLong(cursor.getColumnIndexOrThrow(Notas._ID)),
-                    cursor.getString(cursor.getColumnIndexOrThrow(Notas.TITULO)),
-                    cursor.getString(cursor.getColumnIndexOrThrow(Notas.CONTEUDO))
-                );
-                result.add(nota);
+            // Somente a primeira CursorWindow é preenchida ao abrir o cursor
+            Cursor cursor = sqlite.abrirCursor();
+            medir(Operacao.ABRIR_CURSOR, inicio, cursor.getCount(), 0, true);
+            return cursor;
+        } catch (Exception ex) {
+            Log.e(TAG, "Não foi possível abrir o cursor de notas.", ex);
+            medir(Operacao.ABRIR_CURSOR, inicio, 0, 0, false);
+            return null;
+        }
+    }
+
+    /**
+     * Busca as notas cujo título ou conteúdo contenham todos os termos informados. Cada termo é
+     * buscado como prefixo ({@code "reun"} encontra {@code "reunião"}), sem diferenciar maiúsculas
+     * de minúsculas.
+     * <p>
+     * A busca é feita em duas etapas: primeiro são lidas apenas as estatísticas de ocorrência
+     * ({@code matchinfo}) de todas as notas encontradas, que são ordenadas por relevância; depois
+     * os trechos do conteúdo ({@code snippet}) e as notas são carregados somente para as
+     * {@code limite} mais relevantes. Assim como nas listagens, as notas contêm somente a prévia do
+     * conteúdo.
+     *
+     * @param termos texto digitado pelo usuário.
+     * @param limite quantidade máxima de resultados.
+     * @return os resultados em ordem decrescente de relevância (vazio se não houver termos válidos
+     * ou caso o mecanismo de armazenamento não seja o {@link ArmazenamentoSQLite}), ou null caso
+     * ocorra algum erro.
+     */
+    public ArrayList<ResultadoBusca> buscar(String termos, int limite) {
+        if (sqlite == null) {
+            Log.w(TAG, "Busca textual indisponível em " + armazenamento.getClass().getSimpleName());
+            return new ArrayList<>();
+        }
+        final long inicio = System.nanoTime();
+        try {
+            ArrayList<ResultadoBusca> result = sqlite.buscar(termos, limite);
+            long bytes = 0;
+            for (ResultadoBusca resultado : result) {
+                bytes += bytesDe(resultado.getNota());
             }
+            medir(Operacao.BUSCAR, inicio, result.size(), bytes, true);
+            return result;
         } catch (Exception ex) {
-            Log.e(TAG, "Não foi possível listar todas as notas.", ex);
-        } finally {
-            if (cursor != null) {
-                try {
-                    cursor.close();
-                } catch (Exception ex) {
-                    Log.e(TAG, "Não foi possível fechar o cursor.");
-                }
+            Log.e(TAG, "Não foi possível buscar as notas.", ex);
+            medir(Operacao.BUSCAR, inicio, 0, 0, false);
+            return null;
+        }
+    }
+
+    /**
+     * Lista as notas com {@code id} maior que {@code aposId}, em ordem crescente de {@code id}, com
+     * o conteúdo completo. Utilizado para percorrer todas as notas em páginas, mantendo em memória
+     * somente uma página por vez (veja {@link TransferenciaNotas}). As notas não são colocadas no
+     * {@link #getCache() cache}.
+     * <p/>
+     * No {@link ArmazenamentoSQLite}, cada página é lida por uma única consulta; nos demais
+     * mecanismos, o conteúdo de cada nota da página é lido separadamente.
+     *
+     * @param aposId o {@code id} da última nota da página anterior, ou {@code 0}.
+     * @param limite quantidade máxima de notas.
+     * @return as notas da página.
+     * @throws IOException caso não seja possível ler as notas.
+     */
+    ArrayList<Nota> listarCompletas(long aposId, int limite) throws IOException {
+        if (sqlite != null) return sqlite.listarCompletas(aposId, limite);
+
+        ArrayList<Nota> result = armazenamento.listar(aposId, limite);
+        for (int i = 0; i < result.size(); i++) {
+            if (!result.get(i).isParcial()) continue;
+            Nota completa = armazenamento.buscarPorId(result.get(i).getId());
+            // Excluída entre a listagem e a leitura
+            if (completa == null) {
+                result.remove(i--);
+            } else {
+                result.set(i, completa);
             }
-            database.close();
         }
         return result;
     }
 
+    /**
+     * Lista as revisões da nota, registradas a cada inserção ou atualização que alterou o título ou
+     * o conteúdo. As revisões não contêm o conteúdo, que é reconstruído por
+     * {@link #buscarRevisao(long, int)}.
+     *
+     * @param idNota o {@code id} da nota.
+     * @return as revisões, da mais recente para a mais antiga (vazio caso o mecanismo de
+     * armazenamento não seja o {@link ArmazenamentoSQLite}), ou {@code null} caso ocorra algum erro.
+     */
+    public ArrayList<Revisao> listarRevisoes(long idNota) {
+        if (sqlite == null) {
+            Log.w(TAG, "Histórico de revisões indisponível em " + armazenamento.getClass().getSimpleName());
+            return new ArrayList<>();
+        }
+        final long inicio = System.nanoTime();
+        try {
+            ArrayList<Revisao> result = sqlite.listarRevisoes(idNota);
+            medir(Operacao.LISTAR_REVISOES, inicio, result.size(), 0, true);
+            return result;
+        } catch (Exception ex) {
+            Log.e(TAG, "Não foi possível listar as revisões da nota " + idNota, ex);
+            medir(Operacao.LISTAR_REVISOES, inicio, 0, 0, false);
+            return null;
+        }
+    }
+
+    /**
+     * Reconstrói o título e o conteúdo da nota em uma revisão. São lidas somente a última revisão
+     * completa anterior à solicitada e as diferenças seguintes a ela, no máximo
+     * {@link HistoricoRevisoes#INTERVALO_COMPLETAS} revisões, independentemente do tamanho do
+     * histórico.
+     * <p/>
+     * Para restaurar a revisão, basta {@link #update(Nota) atualizar} a nota retornada, o que
+     * registra uma nova revisão.
+     *
+     * @param idNota o {@code id} da nota.
+     * @param revisao o {@link Revisao#getNumero() número} da revisão.
+     * @return uma nova instância da nota, com o conteúdo da revisão, ou {@code null} caso a revisão
+     * não exista (ou tenha sido excluída pela política de retenção) ou ocorra algum erro.
+     */
+    public Nota buscarRevisao(long idNota, int revisao) {
+        if (sqlite == null) return null;
+        final long inicio = System.nanoTime();
+        try {
+            Nota nota = sqlite.buscarRevisao(idNota, revisao);
+            medir(Operacao.BUSCAR_REVISAO, inicio, nota != null ? 1 : 0, bytesDe(nota), true);
+            return nota;
+        } catch (Exception ex) {
+            Log.e(TAG, "Não foi possível reconstruir a revisão " + revisao + " da nota " + idNota, ex);
+            medir(Operacao.BUSCAR_REVISAO, inicio, 0, 0, false);
+            return null;
+        }
+    }
+
+    /**
+     * Aplica a política de retenção padrão do histórico: mantém, de cada nota, no máximo
+     * {@link HistoricoRevisoes#MAXIMO_REVISOES_PADRAO 100} revisões, gravadas nos últimos
+     * {@link HistoricoRevisoes#IDADE_MAXIMA_PADRAO 30 dias}.
+     *
+     * @return a quantidade de revisões excluídas, ou {@code -1} caso ocorra algum erro.
+     * @see #podarRevisoes(int, long)
+     */
+    public int podarRevisoes() {
+        return podarRevisoes(HistoricoRevisoes.MAXIMO_REVISOES_PADRAO, HistoricoRevisoes.IDADE_MAXIMA_PADRAO);
+    }
+
+    /**
+     * Exclui as revisões antigas do histórico: de cada nota, as que não estão entre as
+     * {@code maximoPorNota} mais recentes e as gravadas há mais de {@code idadeMaxima}
+     * milissegundos. A última revisão de cada nota é sempre mantida, assim como as revisões
+     * necessárias para reconstruir as mantidas, desde a última revisão completa anterior a elas.
+     * <p/>
+     * As revisões são excluídas em transações de até {@link #TAMANHO_LOTE} revisões, de modo que as
+     * gravações das notas não aguardem toda a exclusão.
+     *
+     * @param maximoPorNota quantidade de revisões mantidas por nota; no mínimo {@code 1}.
+     * @param idadeMaxima idade máxima das revisões, em milissegundos, ou {@code 0} para não
+     *                    considerar a data.
+     * @return a quantidade de revisões excluídas, ou {@code -1} caso ocorra algum erro.
+     */
+    public int podarRevisoes(int maximoPorNota, long idadeMaxima) {
+        if (maximoPorNota < 1) {
+            throw new IllegalArgumentException("Quantidade de revisões inválida: " + maximoPorNota);
+        }
+        if (sqlite == null) return 0;
+        final long inicio = System.nanoTime();
+        final long limiteData = idadeMaxima > 0 ? System.currentTimeMillis() - idadeMaxima : 0;
+        try {
+            final int excluidas = sqlite.podarRevisoes(maximoPorNota, limiteData);
+            medir(Operacao.PODAR_REVISOES, inicio, excluidas, 0, true);
+            Log.i(TAG, excluidas + " revisões excluídas pela política de retenção.");
+            return excluidas;
+        } catch (Exception ex) {
+            Log.e(TAG, "Não foi possível excluir as revisões antigas.", ex);
+            medir(Operacao.PODAR_REVISOES, inicio, 0, 0, false);
+            return -1;
+        }
+    }
+
     /**
      * Insere uma {@link Nota} na tabela {@link Notas#NOME_TABELA}.
      *
@@ -103,49 +586,50 @@ public class NotasDAO {
      * @see <a href="http://bit.ly/1D3oTNG">Android Developers - Colocar informações no banco de dados</a>
      */
     public boolean inserir(Nota nota) {
-        SQLiteDatabase database = databaseHelper.getWritableDatabase();
+        final long inicio = System.nanoTime();
         boolean sucesso = false;
-        database.beginTransaction();
+        boolean erro = false;
         try {
-            ContentValues values = new ContentValues();
-            values.put(Notas.TITULO, nota.getTitulo());
-            values.put(Notas.CONTEUDO, nota.getConteudo());
-            long rowId = database.insert(Notas.NOME_TABELA, null, values);
+            long rowId = armazenamento.inserir(nota);
             sucesso = rowId != -1;
             nota.setId(rowId);
-            database.setTransactionSuccessful();
         } catch (Exception ex) {
             Log.e(TAG, "Não foi possível completar a inserção de [" + nota + "]", ex);
-        } finally {
-            database.endTransaction();
-            database.close();
+            erro = true;
+        }
+        metricas.registrarTransacao(!erro);
+        medir(Operacao.INSERIR, inicio, sucesso ? 1 : 0, 0, !erro);
+        if (sucesso) {
+            notificarInsercao(Collections.singletonList(copiar(nota)));
         }
         return sucesso;
     }
 
     /**
-     * Atualiza uma {@link Nota} na tabela {@link Notas#NOME_TABELA}.
+     * Atualiza uma {@link Nota} na tabela {@link Notas#NOME_TABELA}. Notas
+     * {@link Nota#isParcial() parciais}, como as das listagens, são recusadas, pois a gravação
+     * substituiria o conteúdo completo pela prévia.
      *
      * @param nota a nota a ser atualizada.
      * @return número de linhas afetadas.
+     * @throws IllegalArgumentException caso a nota seja parcial.
      * @see <a href="http://bit.ly/1tOS68i">Atualizar informações do banco de dados</a>
      */
     public int update(Nota nota) {
-        SQLiteDatabase database = databaseHelper.getWritableDatabase();
+        verificarCompleta(nota);
+        final long inicio = System.nanoTime();
         int linhasAfetadas = 0;
-        database.beginTransaction();
+        boolean erro = false;
         try {
-            ContentValues values = new ContentValues();
-            values.put(Notas.TITULO, nota.getTitulo());
-            values.put(Notas.CONTEUDO, nota.getConteudo());
-            String[] whereArgs = {String.valueOf(nota.getId())};
-            linhasAfetadas =+ database.update(Notas.NOME_TABELA, values, Notas._ID + " = ?", whereArgs);
-            database.setTransactionSuccessful();
+            if (armazenamento.atualizar(nota)) linhasAfetadas = 1;
         } catch (Exception ex) {
             Log.e(TAG, "Não foi possível completar a atualização de [" + nota + "]", ex);
-        } finally {
-            database.endTransaction();
-            database.close();
+            erro = true;
+        }
+        metricas.registrarTransacao(!erro);
+        medir(Operacao.ATUALIZAR, inicio, linhasAfetadas, 0, !erro);
+        if (linhasAfetadas > 0) {
+            notificarAtualizacao(Collections.singletonList(copiar(nota)));
         }
         return linhasAfetadas;
     }
@@ -158,26 +642,401 @@ public class NotasDAO {
      * @see <a href="http://bit.ly/1syEh1A">Android Developers - Excluir informações do banco de dados</a>
      */
     public int delete(Nota note) {
-        SQLiteDatabase database = databaseHelper.getWritableDatabase();
+        final long inicio = System.nanoTime();
         int linhasAfetadas = 0;
-        database.beginTransaction();
+        boolean erro = false;
         try {
-            String[] whereArgs = {String.valueOf(note.getId())};
-            linhasAfetadas =+ database.delete(Notas.NOME_TABELA, Notas._ID + " = ?", whereArgs);
-            database.setTransactionSuccessful();
+            if (armazenamento.excluir(note.getId())) linhasAfetadas = 1;
         } catch (Exception ex) {
             Log.e(TAG, "Não foi possível excluir [" + note + "]", ex);
-        } finally {
-            database.endTransaction();
-            database.close();
+            erro = true;
+        }
+        metricas.registrarTransacao(!erro);
+        medir(Operacao.EXCLUIR, inicio, linhasAfetadas, 0, !erro);
+        if (linhasAfetadas > 0) {
+            notificarExclusao(new long[]{note.getId()});
         }
         return linhasAfetadas;
     }
 
+    /**
+     * Insere todas as {@link Nota notas} informadas, agrupando-as em transações de até
+     * {@link #TAMANHO_LOTE} notas. O {@code id} gerado é definido em cada nota inserida.
+     *
+     * @param notas as notas a serem inseridas.
+     * @return o resultado de cada nota, na ordem de iteração da coleção.
+     */
+    public ResultadoLote inserirTodas(Collection<Nota> notas) {
+        final List<Nota> lista = new ArrayList<>(notas);
+        ResultadoLote resultado = executarEmLote(lista.size(), new OperacaoLote() {
+            @Override
+            public boolean executar(int indice) throws IOException {
+                Nota nota = lista.get(indice);
+                long rowId = armazenamento.inserir(nota);
+                nota.setId(rowId);
+                return rowId != -1;
+            }
+        }, Operacao.INSERIR_TODAS, "inserção");
+        if (resultado.getQuantidadeSucessos() > 0) {
+            notificarInsercao(copiarSucessos(lista, resultado));
+        }
+        return resultado;
+    }
+
+    /**
+     * Atualiza todas as {@link Nota notas} informadas, agrupando-as em transações de até
+     * {@link #TAMANHO_LOTE} notas. Assim como em {@link #update(Nota)}, notas
+     * {@link Nota#isParcial() parciais} são recusadas, antes que qualquer nota seja gravada.
+     *
+     * @param notas as notas a serem atualizadas.
+     * @return o resultado de cada nota, na ordem de iteração da coleção.
+     * @throws IllegalArgumentException caso alguma das notas seja parcial.
+     */
+    public ResultadoLote updateTodas(Collection<Nota> notas) {
+        final List<Nota> lista = new ArrayList<>(notas);
+        for (Nota nota : lista) {
+            verificarCompleta(nota);
+        }
+        ResultadoLote resultado = executarEmLote(lista.size(), new OperacaoLote() {
+            @Override
+            public boolean executar(int indice) throws IOException {
+                return armazenamento.atualizar(lista.get(indice));
+            }
+        }, Operacao.ATUALIZAR_TODAS, "atualização");
+        if (resultado.getQuantidadeSucessos() > 0) {
+            notificarAtualizacao(copiarSucessos(lista, resultado));
+        }
+        return resultado;
+    }
+
+    /**
+     * Exclui todas as notas cujos {@code ids} foram informados, agrupando-as em transações de até
+     * {@link #TAMANHO_LOTE} notas.
+     *
+     * @param ids os {@code _id} das notas a serem excluídas.
+     * @return o resultado de cada nota, na ordem do vetor.
+     */
+    public ResultadoLote deleteTodas(final long[] ids) {
+        ResultadoLote resultado = executarEmLote(ids.length, new OperacaoLote() {
+            @Override
+            public boolean executar(int indice) throws IOException {
+                return armazenamento.excluir(ids[indice]);
+            }
+        }, Operacao.EXCLUIR_TODAS, "exclusão");
+        if (resultado.getQuantidadeSucessos() > 0) {
+            long[] excluidos = new long[resultado.getQuantidadeSucessos()];
+            for (int i = 0, j = 0; i < ids.length; i++) {
+                if (resultado.isSucesso(i)) excluidos[j++] = ids[i];
+            }
+            notificarExclusao(excluidos);
+        }
+        return resultado;
+    }
+
+    /**
+     * Registra um ouvinte para ser notificado das alterações na tabela de notas.
+     *
+     * @param ouvinte o ouvinte a ser registrado.
+     */
+    public void registrarOuvinte(OuvinteAlteracoesNotas ouvinte) {
+        ouvintes.addIfAbsent(ouvinte);
+    }
+
+    /**
+     * Remove um ouvinte registrado por {@link #registrarOuvinte(OuvinteAlteracoesNotas)}.
+     *
+     * @param ouvinte o ouvinte a ser removido.
+     */
+    public void removerOuvinte(OuvinteAlteracoesNotas ouvinte) {
+        ouvintes.remove(ouvinte);
+    }
+
+    /**
+     * Obtém a versão das alterações: a quantidade de alterações notificadas aos ouvintes. A versão
+     * é incrementada antes de cada notificação e as notificações não são executadas em paralelo,
+     * de modo que, durante a notificação, corresponde à alteração notificada, e um ouvinte que
+     * obtém a versão após o registro é notificado de todas as alterações posteriores a ela.
+     *
+     * @return a versão atual das alterações.
+     */
+    public long getVersaoAlteracoes() {
+        return versaoAlteracoes.get();
+    }
+
+    // As notificações também mantêm o cache atualizado, pois ocorrem após cada gravação concluída,
+    // e são executadas uma de cada vez (veja getVersaoAlteracoes)
+
+    private void notificarInsercao(List<Nota> notas) {
+        synchronized (ouvintes) {
+            versaoAlteracoes.incrementAndGet();
+            for (Nota nota : notas) {
+                cache.colocar(nota);
+            }
+            for (OuvinteAlteracoesNotas ouvinte : ouvintes) {
+                ouvinte.onNotasInseridas(notas);
+            }
+        }
+    }
+
+    private void notificarAtualizacao(List<Nota> notas) {
+        synchronized (ouvintes) {
+            versaoAlteracoes.incrementAndGet();
+            for (Nota nota : notas) {
+                cache.colocar(nota);
+            }
+            for (OuvinteAlteracoesNotas ouvinte : ouvintes) {
+                ouvinte.onNotasAtualizadas(notas);
+            }
+        }
+    }
+
+    private void notificarExclusao(long[] ids) {
+        synchronized (ouvintes) {
+            versaoAlteracoes.incrementAndGet();
+            for (long id : ids) {
+                cache.remover(id);
+            }
+            for (OuvinteAlteracoesNotas ouvinte : ouvintes) {
+                ouvinte.onNotasExcluidas(ids);
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException caso a {@code nota} seja {@link Nota#isParcial() parcial}.
+     */
+    private static void verificarCompleta(Nota nota) {
+        if (nota.isParcial()) {
+            throw new IllegalArgumentException("A nota [" + nota.getId() + "] contém somente a prévia do conteúdo");
+        }
+    }
+
+    /**
+     * Cria uma cópia da {@code nota} para as notificações, de modo que alterações posteriores na
+     * instância original não afetem os ouvintes.
+     */
+    private static Nota copiar(Nota nota) {
+        final Nota copia = new Nota(nota.getId(), nota.getTitulo(), nota.getConteudo());
+        copia.setParcial(nota.isParcial());
+        return copia;
+    }
+
+    /**
+     * Cria cópias das notas cuja operação em lote foi concluída com sucesso.
+     */
+    private static List<Nota> copiarSucessos(List<Nota> notas, ResultadoLote resultado) {
+        List<Nota> copias = new ArrayList<>(resultado.getQuantidadeSucessos());
+        for (int i = 0; i < notas.size(); i++) {
+            if (resultado.isSucesso(i)) copias.add(copiar(notas.get(i)));
+        }
+        return Collections.unmodifiableList(copias);
+    }
+
+    /**
+     * Executa a {@code operacao} para cada um dos {@code quantidade} itens, agrupando-os em
+     * transações de até {@link #TAMANHO_LOTE} itens. A falha de um item não interrompe os demais;
+     * a falha de uma transação marca todos os seus itens como não processados.
+     *
+     * @param quantidade quantidade de itens do lote.
+     * @param operacao operação executada para cada item.
+     * @param medida operação registrada nas métricas.
+     * @param descricao descrição da operação, utilizada nas mensagens de log.
+     * @return o resultado de cada item.
+     */
+    private ResultadoLote executarEmLote(int quantidade, final OperacaoLote operacao, Operacao medida,
+                                         final String descricao) {
+        final long inicio = System.nanoTime();
+        final boolean[] sucessos = new boolean[quantidade];
+        int quantidadeSucessos = 0;
+
+        for (int inicioLote = 0; inicioLote < quantidade; inicioLote += TAMANHO_LOTE) {
+            final int primeiro = inicioLote;
+            final int fimLote = Math.min(inicioLote + TAMANHO_LOTE, quantidade);
+            boolean concluida = false;
+            try {
+                armazenamento.executarEmTransacao(new ArmazenamentoNotas.Transacao() {
+                    @Override
+                    public void executar() {
+                        for (int i = primeiro; i < fimLote; i++) {
+                            try {
+                                sucessos[i] = operacao.executar(i);
+                            } catch (Exception ex) {
+                                Log.e(TAG, "Não foi possível completar a " + descricao + " do item " + i + " do lote.", ex);
+                            }
+                        }
+                    }
+                });
+                concluida = true;
+            } catch (Exception ex) {
+                Log.e(TAG, "Não foi possível completar a " + descricao + " dos itens " + inicioLote + " a " + (fimLote - 1) + " do lote.", ex);
+            }
+            metricas.registrarTransacao(concluida);
+
+            if (concluida) {
+                for (int i = inicioLote; i < fimLote; i++) {
+                    if (sucessos[i]) quantidadeSucessos++;
+                }
+            } else {
+                // A transação foi desfeita; nenhum item do lote foi gravado
+                Arrays.fill(sucessos, inicioLote, fimLote, false);
+            }
+        }
+
+        ResultadoLote resultado = new ResultadoLote(sucessos, quantidadeSucessos, System.nanoTime() - inicio);
+        medir(medida, inicio, quantidadeSucessos, 0, quantidadeSucessos == quantidade);
+        Log.i(TAG, "Operação de " + descricao + " em lote concluída: " + resultado);
+        return resultado;
+    }
+
+    /**
+     * Registra a execução da {@code operacao} nas {@link #metricas}. Caso seja lenta, registra no
+     * log a duração e, no {@link ArmazenamentoSQLite}, o plano da consulta.
+     *
+     * @param operacao a operação executada.
+     * @param inicio o {@link System#nanoTime()} do início da execução.
+     * @param linhas quantidade de notas lidas ou gravadas.
+     * @param bytesLidos bytes lidos do armazenamento (veja {@link #bytesDe(Nota)}).
+     * @param sucesso {@code false} caso a operação tenha falhado.
+     */
+    private void medir(Operacao operacao, long inicio, int linhas, long bytesLidos, boolean sucesso) {
+        final long duracao = metricas.registrar(operacao, inicio, linhas, bytesLidos, sucesso);
+        if (!metricas.isLenta(duracao)) return;
+
+        String plano = null;
+        if (sqlite != null) {
+            try {
+                plano = sqlite.explicarPlano(operacao);
+            } catch (Exception ex) {
+                Log.e(TAG, "Não foi possível obter o plano de " + operacao.getNome(), ex);
+            }
+        }
+        Log.w(TAG, "Operação lenta: " + operacao.getNome() + " levou "
+                + TimeUnit.NANOSECONDS.toMillis(duracao) + " ms (" + linhas + " notas, " + bytesLidos
+                + " bytes lidos)" + (plano != null ? "\nPlano da consulta:\n" + plano : ""));
+    }
+
+    /**
+     * Estima os bytes lidos do armazenamento para a nota: o título e o conteúdo em UTF-16, assim
+     * como na estimativa do {@link CacheNotas}.
+     */
+    private static long bytesDe(Nota nota) {
+        if (nota == null) return 0;
+        return 2L * ((nota.getTitulo() != null ? nota.getTitulo().length() : 0)
+                + (nota.getConteudo() != null ? nota.getConteudo().length() : 0));
+    }
+
+    private static long bytesDe(List<Nota> notas) {
+        long bytes = 0;
+        for (Nota nota : notas) {
+            bytes += bytesDe(nota);
+        }
+        return bytes;
+    }
+
+    /**
+     * Operação executada para cada item de um lote.
+     *
+     * @see #executarEmLote(int, OperacaoLote, Operacao, String)
+     */
+    private interface OperacaoLote {
+        /**
+         * Executa a operação para o item {@code indice} do lote, dentro da transação corrente.
+         *
+         * @param indice posição do item no lote.
+         * @return {@code true} caso a operação tenha sido concluída com sucesso.
+         */
+        boolean executar(int indice) throws IOException;
+    }
+
     /** Constantes com nomes da tabela de notas. */
-    private static class Notas implements BaseColumns {
-        private static final String NOME_TABELA = "notas";
-        private static final String TITULO = "titulo";
-        private static final String CONTEUDO = "conteudo";
+    public static final class Notas implements BaseColumns {
+        public static final String NOME_TABELA = "notas";
+        public static final String TITULO = "titulo";
+        public static final String CONTEUDO = "conteudo";
+
+        /**
+         * Formato de armazenamento de {@link #CONTEUDO}: texto, BLOB compactado ou segmentado em
+         * {@link #NOME_TABELA_SEGMENTOS} (com {@link #CONTEUDO} vazio).
+         *
+         * @see CodificadorConteudo
+         */
+        public static final String FORMATO = "formato";
+
+        /**
+         * Início do conteúdo, em texto, das notas compactadas ou segmentadas ({@code null} nas
+         * demais).
+         */
+        public static final String PREVIA = "previa";
+
+        /**
+         * Coluna do cursor de {@link NotasDAO#abrirCursor()} com o maior {@code _id} entre as notas
+         * do cursor, o mesmo em todas as linhas.
+         */
+        public static final String ULTIMO_ID = "ultimo_id";
+
+        /**
+         * Tabela FTS4 que indexa {@link #TITULO} e {@link #CONTEUDO} (nessa ordem), mantida por
+         * gatilhos na tabela {@link #NOME_TABELA}. Das notas compactadas, somente a
+         * {@link #PREVIA} é indexada.
+         */
+        public static final String NOME_TABELA_BUSCA = "notas_fts";
+
+        /**
+         * Tabela com os segmentos do conteúdo das notas extensas (veja {@link Segmentos}). Os
+         * segmentos são excluídos por gatilho junto com a nota.
+         */
+        public static final String NOME_TABELA_SEGMENTOS = "notas_segmentos";
+
+        /**
+         * Tabela com o histórico de revisões das notas (veja {@link Revisoes}). As revisões são
+         * excluídas por gatilho junto com a nota.
+         */
+        public static final String NOME_TABELA_REVISOES = "notas_revisoes";
+    }
+
+    /** Constantes com nomes das colunas da tabela {@link Notas#NOME_TABELA_SEGMENTOS}. */
+    static final class Segmentos {
+        static final String ID_NOTA = "nota_id";
+        static final String SEQUENCIA = "sequencia";
+
+        /**
+         * Quantidade de caracteres do segmento (após descompactado).
+         */
+        static final String TAMANHO = "tamanho";
+
+        /**
+         * Formato de armazenamento de {@link #CONTEUDO}: texto ou BLOB compactado.
+         */
+        static final String FORMATO = "formato";
+        static final String CONTEUDO = "conteudo";
+    }
+
+    /** Constantes com nomes das colunas da tabela {@link Notas#NOME_TABELA_REVISOES}. */
+    static final class Revisoes {
+        static final String ID_NOTA = "nota_id";
+        static final String REVISAO = "revisao";
+
+        /**
+         * Momento da gravação, em milissegundos.
+         */
+        static final String DATA = "data";
+        static final String TITULO = "titulo";
+
+        /**
+         * Quantidade de caracteres do conteúdo da revisão.
+         */
+        static final String TAMANHO = "tamanho";
+
+        /**
+         * CRC-32 do conteúdo da revisão, codificado em UTF-8.
+         */
+        static final String CRC = "crc";
+
+        /**
+         * Formato de armazenamento de {@link #DADOS}: conteúdo completo, como texto ou BLOB
+         * compactado, ou a diferença em relação à revisão anterior.
+         */
+        static final String FORMATO = "formato";
+        static final String DADOS = "dados";
     }
 }
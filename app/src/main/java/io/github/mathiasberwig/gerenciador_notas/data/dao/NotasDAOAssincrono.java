@@ -0,0 +1,532 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+import io.github.mathiasberwig.gerenciador_notas.data.model.ResultadoBusca;
+import io.github.mathiasberwig.gerenciador_notas.data.model.Revisao;
+
+/**
+ * Fachada assíncrona do {@link NotasDAO}. As operações são executadas em threads dedicadas ao
+ * banco de dados e os resultados são entregues na thread principal, por meio de um
+ * {@link Callback}, de modo que nenhuma operação do SQLite é executada na thread de interface.
+ * <p/>
+ * As escritas são executadas em uma única thread, na ordem em que foram solicitadas. As leituras
+ * são executadas em um pool próprio, em paralelo com as escritas (o banco de dados utiliza WAL):
+ * uma listagem ou busca não aguarda uma importação ou a poda das revisões, mas também não aguarda
+ * as escritas solicitadas antes dela e lê o estado confirmado no momento da leitura. As leituras de
+ * uma mesma instância são executadas uma por vez, na ordem em que foram solicitadas, de modo que
+ * os seus resultados sejam entregues nessa ordem; as de instâncias diferentes, em paralelo.
+ * <p/>
+ * Cada componente (activity ou fragmento) deve criar a sua própria instância e chamar
+ * {@link #cancelar()} ao ser destruído: as leituras pendentes são canceladas e os resultados das
+ * operações em andamento são descartados, sem chamar os callbacks. As escritas
+ * ({@link #executarEscrita(Callable, Callback)}) já solicitadas são sempre executadas; somente os
+ * seus callbacks deixam de ser chamados.
+ * <p/>
+ * A API síncrona do {@link NotasDAO} continua disponível para uso fora da thread principal.
+ */
+public class NotasDAOAssincrono {
+    private static final String TAG = NotasDAOAssincrono.class.getName();
+
+    /**
+     * Quantidade de threads de leitura, limitada pelas conexões de leitura que o SQLite mantém
+     * abertas com WAL.
+     */
+    private static final int THREADS_LEITURA = 2;
+
+    /**
+     * Executor das escritas, compartilhado por todas as instâncias. Uma única thread garante que
+     * as escritas sejam executadas na ordem em que foram solicitadas.
+     */
+    private static final ExecutorService EXECUTOR_ESCRITAS =
+            Executors.newSingleThreadExecutor(new FabricaThreads("gerenciador-notas-db-escrita"));
+
+    /**
+     * Executor das leituras, compartilhado por todas as instâncias.
+     */
+    private static final ExecutorService EXECUTOR_LEITURAS =
+            Executors.newFixedThreadPool(THREADS_LEITURA, new FabricaThreads("gerenciador-notas-db-leitura"));
+
+    /**
+     * Handler da thread principal, na qual os callbacks são executados.
+     */
+    private static final Handler HANDLER_PRINCIPAL = new Handler(Looper.getMainLooper());
+
+    /**
+     * O Data Access Object síncrono utilizado pelas operações.
+     */
+    private final NotasDAO dao;
+
+    /**
+     * Leituras solicitadas por esta instância que ainda não foram concluídas, canceladas por
+     * {@link #cancelar()}.
+     */
+    private final Set<Future<?>> pendentes = new HashSet<>();
+
+    /**
+     * Leituras desta instância aguardando a conclusão da anterior para serem executadas no
+     * {@link #EXECUTOR_LEITURAS}.
+     */
+    private final ArrayDeque<Runnable> filaLeituras = new ArrayDeque<>();
+
+    /**
+     * Indica se uma leitura desta instância está no {@link #EXECUTOR_LEITURAS}.
+     */
+    private boolean lendo;
+
+    /**
+     * Indica se {@link #cancelar()} foi chamado. Após o cancelamento, nenhum callback é executado.
+     */
+    private volatile boolean cancelado;
+
+    /**
+     * Constrói uma nova fachada assíncrona sobre o {@code dao} informado.
+     *
+     * @param dao o Data Access Object síncrono.
+     */
+    public NotasDAOAssincrono(NotasDAO dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * @return o Data Access Object síncrono utilizado pelas operações.
+     */
+    public NotasDAO getDAO() {
+        return dao;
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#listar(long, int)}.
+     */
+    public Future<?> listar(final long aposId, final int limite, Callback<ArrayList<Nota>> callback) {
+        return executar(new Callable<ArrayList<Nota>>() {
+            @Override
+            public ArrayList<Nota> call() {
+                return dao.listar(aposId, limite);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#buscarPorId(long)}.
+     */
+    public Future<?> buscarPorId(final long id, Callback<Nota> callback) {
+        return executar(new Callable<Nota>() {
+            @Override
+            public Nota call() {
+                return dao.buscarPorId(id);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#lerTrecho(long, int, int)}.
+     */
+    public Future<?> lerTrecho(final long id, final int inicio, final int fim, Callback<String> callback) {
+        return executar(new Callable<String>() {
+            @Override
+            public String call() {
+                return dao.lerTrecho(id, inicio, fim);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#substituirTrecho(long, int, int, String)}.
+     */
+    public Future<?> substituirTrecho(final long id, final int inicio, final int fim, final String texto,
+                                      Callback<Boolean> callback) {
+        return executarEscrita(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dao.substituirTrecho(id, inicio, fim, texto);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#listarAnteriores(long, int)}.
+     */
+    public Future<?> listarAnteriores(final long antesId, final int limite, Callback<ArrayList<Nota>> callback) {
+        return executar(new Callable<ArrayList<Nota>>() {
+            @Override
+            public ArrayList<Nota> call() {
+                return dao.listarAnteriores(antesId, limite);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#buscar(String, int)}.
+     */
+    public Future<?> buscar(final String termos, final int limite, Callback<ArrayList<ResultadoBusca>> callback) {
+        return executar(new Callable<ArrayList<ResultadoBusca>>() {
+            @Override
+            public ArrayList<ResultadoBusca> call() {
+                return dao.buscar(termos, limite);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#abrirCursor()}. A primeira {@code CursorWindow} é
+     * preenchida no pool de leitura. Caso a operação seja cancelada, o cursor é fechado.
+     */
+    public Future<?> abrirCursor(Callback<Cursor> callback) {
+        return executar(new Callable<Cursor>() {
+            @Override
+            public Cursor call() {
+                return dao.abrirCursor();
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#inserir(Nota)}.
+     */
+    public Future<?> inserir(final Nota nota, Callback<Boolean> callback) {
+        return executarEscrita(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dao.inserir(nota);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#update(Nota)}.
+     */
+    public Future<?> update(final Nota nota, Callback<Integer> callback) {
+        return executarEscrita(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return dao.update(nota);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#delete(Nota)}.
+     */
+    public Future<?> delete(final Nota nota, Callback<Integer> callback) {
+        return executarEscrita(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return dao.delete(nota);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#inserirTodas(Collection)}.
+     */
+    public Future<?> inserirTodas(final Collection<Nota> notas, Callback<ResultadoLote> callback) {
+        return executarEscrita(new Callable<ResultadoLote>() {
+            @Override
+            public ResultadoLote call() {
+                return dao.inserirTodas(notas);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#updateTodas(Collection)}.
+     */
+    public Future<?> updateTodas(final Collection<Nota> notas, Callback<ResultadoLote> callback) {
+        return executarEscrita(new Callable<ResultadoLote>() {
+            @Override
+            public ResultadoLote call() {
+                return dao.updateTodas(notas);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#deleteTodas(long[])}.
+     */
+    public Future<?> deleteTodas(final long[] ids, Callback<ResultadoLote> callback) {
+        return executarEscrita(new Callable<ResultadoLote>() {
+            @Override
+            public ResultadoLote call() {
+                return dao.deleteTodas(ids);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#listarRevisoes(long)}.
+     */
+    public Future<?> listarRevisoes(final long idNota, Callback<ArrayList<Revisao>> callback) {
+        return executar(new Callable<ArrayList<Revisao>>() {
+            @Override
+            public ArrayList<Revisao> call() {
+                return dao.listarRevisoes(idNota);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#buscarRevisao(long, int)}.
+     */
+    public Future<?> buscarRevisao(final long idNota, final int revisao, Callback<Nota> callback) {
+        return executar(new Callable<Nota>() {
+            @Override
+            public Nota call() {
+                return dao.buscarRevisao(idNota, revisao);
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link NotasDAO#podarRevisoes()}.
+     */
+    public Future<?> podarRevisoes(Callback<Integer> callback) {
+        return executarEscrita(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return dao.podarRevisoes();
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link TransferenciaNotas#exportar(File, TransferenciaNotas.Formato)}.
+     * O resultado é {@code null} caso ocorra algum erro.
+     */
+    public Future<?> exportar(final File arquivo, final TransferenciaNotas.Formato formato,
+                              Callback<ResultadoTransferencia> callback) {
+        return executar(new Callable<ResultadoTransferencia>() {
+            @Override
+            public ResultadoTransferencia call() {
+                try {
+                    return new TransferenciaNotas(dao).exportar(arquivo, formato);
+                } catch (IOException ex) {
+                    Log.e(TAG, "Não foi possível exportar as notas para " + arquivo, ex);
+                    return null;
+                }
+            }
+        }, callback);
+    }
+
+    /**
+     * Versão assíncrona de {@link TransferenciaNotas#importar(File, TransferenciaNotas.Formato)}.
+     * O resultado é {@code null} caso ocorra algum erro; os lotes gravados antes do erro são
+     * mantidos.
+     */
+    public Future<?> importar(final File arquivo, final TransferenciaNotas.Formato formato,
+                              Callback<ResultadoTransferencia> callback) {
+        return executarEscrita(new Callable<ResultadoTransferencia>() {
+            @Override
+            public ResultadoTransferencia call() {
+                try {
+                    return new TransferenciaNotas(dao).importar(arquivo, formato);
+                } catch (IOException ex) {
+                    Log.e(TAG, "Não foi possível importar as notas de " + arquivo, ex);
+                    return null;
+                }
+            }
+        }, callback);
+    }
+
+    /**
+     * Executa a {@code tarefa}, uma leitura, no pool de leitura e entrega o resultado ao
+     * {@code callback} na thread principal. A tarefa é cancelada por {@link #cancelar()} caso
+     * ainda não tenha sido iniciada.
+     *
+     * @param tarefa a operação a ser executada.
+     * @param callback o callback que receberá o resultado, ou {@code null}.
+     * @param <T> tipo do resultado da operação.
+     * @return a tarefa agendada, que pode ser cancelada individualmente.
+     */
+    public <T> Future<?> executar(Callable<T> tarefa, Callback<T> callback) {
+        return executar(tarefa, callback, true);
+    }
+
+    /**
+     * Executa a {@code tarefa}, uma escrita, na thread de escrita, após as escritas já solicitadas,
+     * e entrega o resultado ao {@code callback} na thread principal. A tarefa não deve depender do
+     * resultado de leituras pendentes. Ao contrário das leituras, a tarefa é executada mesmo
+     * que {@link #cancelar()} seja chamado antes do seu início: somente o callback é suprimido.
+     *
+     * @param tarefa a operação a ser executada.
+     * @param callback o callback que receberá o resultado, ou {@code null}.
+     * @param <T> tipo do resultado da operação.
+     * @return a tarefa agendada.
+     */
+    public <T> Future<?> executarEscrita(Callable<T> tarefa, Callback<T> callback) {
+        return executar(tarefa, callback, false);
+    }
+
+    /**
+     * @param leitura {@code true} caso a tarefa seja uma leitura, executada no pool de leitura e
+     * cancelada por {@link #cancelar()}.
+     */
+    private <T> Future<?> executar(Callable<T> tarefa, final Callback<T> callback, boolean leitura) {
+        final FutureTask<T> future = new FutureTask<T>(tarefa) {
+            @Override
+            protected void set(T resultado) {
+                super.set(resultado);
+                // Cancelada durante a execução: o resultado não será entregue
+                if (isCancelled()) {
+                    descartar(resultado);
+                }
+            }
+
+            @Override
+            protected void done() {
+                synchronized (pendentes) {
+                    pendentes.remove(this);
+                }
+                if (isCancelled()) return;
+
+                final T resultado;
+                try {
+                    resultado = get();
+                } catch (Exception ex) {
+                    Log.e(TAG, "Falha ao executar a operação no banco de dados.", ex);
+                    return;
+                }
+                HANDLER_PRINCIPAL.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (cancelado) {
+                            descartar(resultado);
+                        } else if (callback != null) {
+                            callback.onConcluido(resultado);
+                        }
+                    }
+                });
+            }
+        };
+
+        if (leitura) {
+            synchronized (pendentes) {
+                if (cancelado) return future;
+                pendentes.add(future);
+            }
+            enfileirarLeitura(future);
+        } else {
+            EXECUTOR_ESCRITAS.execute(future);
+        }
+        return future;
+    }
+
+    /**
+     * Executa a {@code leitura} no {@link #EXECUTOR_LEITURAS} após as leituras já solicitadas por
+     * esta instância.
+     */
+    private void enfileirarLeitura(final Runnable leitura) {
+        synchronized (filaLeituras) {
+            filaLeituras.add(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        leitura.run();
+                    } finally {
+                        executarProximaLeitura();
+                    }
+                }
+            });
+            if (!lendo) executarProximaLeitura();
+        }
+    }
+
+    private void executarProximaLeitura() {
+        synchronized (filaLeituras) {
+            final Runnable proxima = filaLeituras.poll();
+            lendo = proxima != null;
+            if (lendo) EXECUTOR_LEITURAS.execute(proxima);
+        }
+    }
+
+    /**
+     * Cancela as leituras pendentes e impede a execução dos callbacks das operações em andamento
+     * e das escritas pendentes, que continuam sendo executadas. Deve ser chamado quando o
+     * componente que criou esta instância for destruído.
+     */
+    public void cancelar() {
+        synchronized (pendentes) {
+            cancelado = true;
+            for (Future<?> future : pendentes) {
+                future.cancel(false);
+            }
+            pendentes.clear();
+        }
+    }
+
+    /**
+     * Libera o resultado de uma operação que não será entregue ao callback (um {@link Cursor},
+     * por exemplo).
+     *
+     * @param resultado o resultado descartado.
+     */
+    private static void descartar(Object resultado) {
+        if (resultado instanceof Closeable) {
+            try {
+                ((Closeable) resultado).close();
+            } catch (Exception ex) {
+                Log.e(TAG, "Não foi possível liberar o resultado descartado.", ex);
+            }
+        }
+    }
+
+    /**
+     * Cria as threads dos executores, com prioridade de segundo plano.
+     */
+    private static class FabricaThreads implements ThreadFactory {
+        private final String nome;
+        private final AtomicInteger contador = new AtomicInteger();
+
+        FabricaThreads(String nome) {
+            this.nome = nome;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, nome + "-" + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Recebe, na thread principal, o resultado de uma operação assíncrona.
+     *
+     * @param <T> tipo do resultado da operação.
+     */
+    public interface Callback<T> {
+        /**
+         * Executado na thread principal quando a operação é concluída.
+         *
+         * @param resultado o resultado retornado pelo {@link NotasDAO}.
+         */
+        void onConcluido(T resultado);
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import java.util.List;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+/**
+ * Recebe as notificações de alterações na tabela de notas realizadas pelo {@link NotasDAO}, de
+ * modo que a lista exibida possa ser atualizada sem consultar novamente o banco de dados.
+ * <p/>
+ * Os métodos são executados na thread que realizou a alteração, após a conclusão da transação.
+ *
+ * @see NotasDAO#registrarOuvinte(OuvinteAlteracoesNotas)
+ */
+public interface OuvinteAlteracoesNotas {
+    /**
+     * Executado quando notas são inseridas.
+     *
+     * @param notas cópias das notas inseridas, com o {@code id} gerado.
+     */
+    void onNotasInseridas(List<Nota> notas);
+
+    /**
+     * Executado quando notas são atualizadas.
+     *
+     * @param notas cópias das notas atualizadas, com o novo título e conteúdo.
+     */
+    void onNotasAtualizadas(List<Nota> notas);
+
+    /**
+     * Executado quando notas são excluídas.
+     *
+     * @param ids os {@code _id} das notas excluídas.
+     */
+    void onNotasExcluidas(long[] ids);
+}
@@ -0,0 +1,52 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+/**
+ * Prévia do conteúdo das notas, lida pelas listagens em vez do conteúdo completo. Não depende de
+ * classes do Android, sendo compartilhada por todos os {@link ArmazenamentoNotas mecanismos de
+ * armazenamento}.
+ *
+ * @see NotasDAO#TAMANHO_PREVIA
+ */
+final class PreviaConteudo {
+
+    /**
+     * Quantidade máxima de caracteres do conteúdo das notas listadas.
+     */
+    static final int TAMANHO = 200;
+
+    private PreviaConteudo() {
+    }
+
+    /**
+     * Cria a nota exibida nas listagens a partir do conteúdo informado: caso exceda
+     * {@link #TAMANHO} caracteres, o conteúdo é truncado e a nota é marcada como
+     * {@link Nota#isParcial() parcial}.
+     *
+     * @param id o {@code id} da nota.
+     * @param titulo o título da nota.
+     * @param conteudo o conteúdo completo ou a prévia armazenada (veja {@link #extrair(String)}).
+     * @return a nota para listagem.
+     */
+    static Nota criar(Long id, String titulo, String conteudo) {
+        Nota nota = new Nota(id, titulo, conteudo);
+        if (conteudo != null && conteudo.length() > TAMANHO) {
+            nota.setConteudo(conteudo.substring(0, TAMANHO));
+            nota.setParcial(true);
+        }
+        return nota;
+    }
+
+    /**
+     * Obtém a prévia armazenada junto com um conteúdo compactado ou segmentado: um caractere além
+     * de {@link #TAMANHO} permite identificar, sem ler o restante do conteúdo, se a nota listada
+     * deve ser marcada como parcial.
+     *
+     * @param conteudo o conteúdo completo da nota.
+     * @return o início do conteúdo, com até {@link #TAMANHO} + 1 caracteres.
+     */
+    static String extrair(String conteudo) {
+        return conteudo.length() > TAMANHO + 1 ? conteudo.substring(0, TAMANHO + 1) : conteudo;
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import java.io.File;
+
+/**
+ * Resultado de uma cópia de segurança do banco de dados criada pelo {@link BackupBanco}.
+ */
+public class ResultadoBackup {
+
+    /**
+     * Arquivo da cópia, já verificado.
+     */
+    private final File arquivo;
+
+    /**
+     * Bytes copiados do banco de dados e do WAL.
+     */
+    private final long bytes;
+
+    /**
+     * Tempo total da cópia, incluindo a verificação de integridade, em nanossegundos.
+     */
+    private final long duracaoNanos;
+
+    /**
+     * Tempo durante o qual as escritas no banco de dados ficaram bloqueadas, em nanossegundos.
+     */
+    private final long bloqueioNanos;
+
+    ResultadoBackup(File arquivo, long bytes, long duracaoNanos, long bloqueioNanos) {
+        this.arquivo = arquivo;
+        this.bytes = bytes;
+        this.duracaoNanos = duracaoNanos;
+        this.bloqueioNanos = bloqueioNanos;
+    }
+
+    /**
+     * @return o arquivo da cópia.
+     */
+    public File getArquivo() {
+        return arquivo;
+    }
+
+    /**
+     * @return bytes copiados do banco de dados e do WAL.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return tempo total da cópia, incluindo a verificação de integridade, em milissegundos.
+     */
+    public long getDuracaoMillis() {
+        return duracaoNanos / 1000000L;
+    }
+
+    /**
+     * @return tempo durante o qual as escritas no banco de dados ficaram bloqueadas (cópia do
+     * WAL), em microssegundos. As leituras não são bloqueadas.
+     */
+    public long getBloqueioMicros() {
+        return bloqueioNanos / 1000L;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoBackup{" +
+                "arquivo=" + arquivo.getName() +
+                ", bytes=" + bytes +
+                ", duracaoMillis=" + getDuracaoMillis() +
+                ", bloqueioMicros=" + getBloqueioMicros() +
+                '}';
+    }
+}
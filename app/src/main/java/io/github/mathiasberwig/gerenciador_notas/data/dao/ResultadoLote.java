@@ -0,0 +1,83 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+/**
+ * Resultado de uma operação em lote do {@link NotasDAO}, como
+ * {@link NotasDAO#inserirTodas(java.util.Collection)}.
+ */
+public class ResultadoLote {
+
+    /**
+     * Indica, para cada item do lote (na ordem em que foram informados), se a operação foi
+     * concluída com sucesso.
+     */
+    private final boolean[] sucessos;
+
+    /**
+     * Quantidade de itens processados com sucesso.
+     */
+    private final int quantidadeSucessos;
+
+    /**
+     * Tempo total da operação, em nanossegundos.
+     */
+    private final long duracaoNanos;
+
+    ResultadoLote(boolean[] sucessos, int quantidadeSucessos, long duracaoNanos) {
+        this.sucessos = sucessos;
+        this.quantidadeSucessos = quantidadeSucessos;
+        this.duracaoNanos = duracaoNanos;
+    }
+
+    /**
+     * @param indice posição do item no lote.
+     * @return {@code true} caso a operação tenha sido concluída com sucesso para o item.
+     */
+    public boolean isSucesso(int indice) {
+        return sucessos[indice];
+    }
+
+    /**
+     * @return quantidade de itens do lote.
+     */
+    public int getQuantidade() {
+        return sucessos.length;
+    }
+
+    /**
+     * @return quantidade de itens processados com sucesso.
+     */
+    public int getQuantidadeSucessos() {
+        return quantidadeSucessos;
+    }
+
+    /**
+     * @return quantidade de itens cuja operação falhou.
+     */
+    public int getQuantidadeFalhas() {
+        return sucessos.length - quantidadeSucessos;
+    }
+
+    /**
+     * @return tempo total da operação, em milissegundos.
+     */
+    public long getDuracaoMillis() {
+        return duracaoNanos / 1000000L;
+    }
+
+    /**
+     * @return vazão da operação, em notas processadas por segundo.
+     */
+    public double getNotasPorSegundo() {
+        return duracaoNanos == 0 ? 0 : sucessos.length * 1000000000.0 / duracaoNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoLote{" +
+                "quantidade=" + sucessos.length +
+                ", sucessos=" + quantidadeSucessos +
+                ", duracaoMillis=" + getDuracaoMillis() +
+                ", notasPorSegundo=" + String.format("%.1f", getNotasPorSegundo()) +
+                '}';
+    }
+}
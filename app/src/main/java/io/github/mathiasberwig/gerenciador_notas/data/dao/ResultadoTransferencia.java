@@ -0,0 +1,97 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+/**
+ * Resultado de uma exportação ou importação de notas pela {@link TransferenciaNotas}.
+ */
+public class ResultadoTransferencia {
+
+    /**
+     * Quantidade de notas exportadas ou lidas do arquivo importado.
+     */
+    private final int quantidade;
+
+    /**
+     * Quantidade de notas lidas do arquivo importado que não puderam ser gravadas.
+     */
+    private final int quantidadeFalhas;
+
+    /**
+     * Bytes escritos no arquivo exportado ou lidos do arquivo importado.
+     */
+    private final long bytes;
+
+    /**
+     * Tempo total da operação, em nanossegundos.
+     */
+    private final long duracaoNanos;
+
+    /**
+     * Maior uso do heap observado durante a operação, em bytes.
+     */
+    private final long picoHeapBytes;
+
+    ResultadoTransferencia(int quantidade, int quantidadeFalhas, long bytes, long duracaoNanos, long picoHeapBytes) {
+        this.quantidade = quantidade;
+        this.quantidadeFalhas = quantidadeFalhas;
+        this.bytes = bytes;
+        this.duracaoNanos = duracaoNanos;
+        this.picoHeapBytes = picoHeapBytes;
+    }
+
+    /**
+     * @return quantidade de notas exportadas ou lidas do arquivo importado.
+     */
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    /**
+     * @return quantidade de notas lidas do arquivo importado que não puderam ser gravadas
+     * ({@code 0} na exportação).
+     */
+    public int getQuantidadeFalhas() {
+        return quantidadeFalhas;
+    }
+
+    /**
+     * @return bytes escritos no arquivo exportado ou lidos do arquivo importado.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return tempo total da operação, em milissegundos.
+     */
+    public long getDuracaoMillis() {
+        return duracaoNanos / 1000000L;
+    }
+
+    /**
+     * @return vazão da operação, em notas processadas por segundo.
+     */
+    public double getNotasPorSegundo() {
+        return duracaoNanos == 0 ? 0 : quantidade * 1000000000.0 / duracaoNanos;
+    }
+
+    /**
+     * @return maior uso do heap ({@code totalMemory - freeMemory}) observado durante a operação,
+     * em bytes, amostrado a cada página ou lote de notas. Inclui os objetos não relacionados à
+     * operação e os ainda não coletados.
+     */
+    public long getPicoHeapBytes() {
+        return picoHeapBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultadoTransferencia{" +
+                "quantidade=" + quantidade +
+                ", falhas=" + quantidadeFalhas +
+                ", bytes=" + bytes +
+                ", duracaoMillis=" + getDuracaoMillis() +
+                ", notasPorSegundo=" + String.format("%.1f", getNotasPorSegundo()) +
+                ", picoHeapKiB=" + picoHeapBytes / 1024 +
+                '}';
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.content.res.Resources;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executa scripts SQL armazenados em {@code res/raw}. As instruções são separadas por {@code ;} no
+ * fim da linha, exceto dentro de blocos {@code BEGIN ... END;} (corpo de gatilhos), cujas
+ * instruções internas também terminam em {@code ;}. Linhas iniciadas por {@code --} são ignoradas.
+ */
+final class ScriptSQL {
+
+    private ScriptSQL() {
+    }
+
+    /**
+     * Executa todas as instruções do script informado.
+     *
+     * @param db o banco de dados no qual as instruções serão executadas.
+     * @param resources recursos da aplicação.
+     * @param idScript identificador do script ({@code R.raw.*}).
+     */
+    static void executar(SQLiteDatabase db, Resources resources, int idScript) {
+        for (String sql : ler(resources, idScript)) {
+            db.execSQL(sql);
+        }
+    }
+
+    /**
+     * Lê e separa as instruções do script informado.
+     *
+     * @param resources recursos da aplicação.
+     * @param idScript identificador do script ({@code R.raw.*}).
+     * @return as instruções do script, na ordem em que aparecem.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    static List<String> ler(Resources resources, int idScript) {
+        InputStream in = resources.openRawResource(idScript);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        try {
+            List<String> instrucoes = new ArrayList<>();
+            StringBuilder atual = new StringBuilder();
+            boolean dentroBloco = false;
+
+            String linha;
+            while ((linha = reader.readLine()) != null) {
+                final String texto = linha.trim();
+                if (texto.isEmpty() || texto.startsWith("--")) continue;
+
+                atual.append(linha).append('\n');
+                final String maiusculas = texto.toUpperCase();
+                if (!dentroBloco && maiusculas.endsWith("BEGIN")) {
+                    dentroBloco = true;
+                } else if (dentroBloco ? maiusculas.equals("END;") : texto.endsWith(";")) {
+                    dentroBloco = false;
+                    adicionar(instrucoes, atual);
+                }
+            }
+            adicionar(instrucoes, atual);
+            return instrucoes;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Não foi possível ler o script " + idScript, ex);
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Adiciona a instrução acumulada em {@code atual}, sem o {@code ;} final, e limpa o acumulador.
+     */
+    private static void adicionar(List<String> instrucoes, StringBuilder atual) {
+        String sql = atual.toString().trim();
+        if (sql.endsWith(";")) {
+            sql = sql.substring(0, sql.length() - 1).trim();
+        }
+        if (sql.length() > 0) {
+            instrucoes.add(sql);
+        }
+        atual.setLength(0);
+    }
+}
@@ -0,0 +1,504 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.zip.DataFormatException;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+import static io.github.mathiasberwig.gerenciador_notas.data.dao.MetricasDados.Operacao;
+
+/**
+ * Exportação e importação de todas as notas em um arquivo, nos formatos {@link Formato}. Ambas
+ * as operações mantêm em memória somente uma página ({@link #TAMANHO_PAGINA} notas) ou um lote
+ * ({@link NotasDAO#TAMANHO_LOTE} notas) por vez, independentemente da quantidade de notas.
+ * <p/>
+ * A exportação percorre as notas em ordem de {@code id}, em páginas lidas por
+ * {@link NotasDAO#listarCompletas(long, int)}, e as escreve por um buffer de
+ * {@link #TAMANHO_BUFFER} bytes. A importação lê o arquivo nota a nota e as grava por
+ * {@link NotasDAO#inserirTodas}, uma transação por lote. As notas importadas recebem novos
+ * {@code ids}; os {@code ids} do arquivo são ignorados.
+ *
+ * <h3>Formatos</h3>
+ * {@link Formato#JSON_LINHAS}: um objeto por linha, com os campos {@code id}, {@code titulo} e
+ * {@code conteudo}, em UTF-8.
+ * <p/>
+ * {@link Formato#BINARIO}: cabeçalho com {@code int} {@link #MAGICO} e {@code int}
+ * {@link #VERSAO}; um registro por nota com {@code byte} {@link #REGISTRO_NOTA}, {@code long id},
+ * título, {@code byte} formato do conteúdo (texto ou compactado; veja {@link CodificadorConteudo})
+ * e conteúdo, cada texto como {@code int} tamanho seguido dos bytes; e um registro final com
+ * {@code byte} {@link #REGISTRO_FIM} e {@code int} quantidade de notas, que permite identificar um
+ * arquivo truncado.
+ */
+public final class TransferenciaNotas {
+    private static final String TAG = TransferenciaNotas.class.getName();
+
+    /**
+     * Formato do arquivo de exportação.
+     */
+    public enum Formato {
+        /**
+         * JSON Lines: legível e editável, maior e mais lento que o binário.
+         */
+        JSON_LINHAS("jsonl"),
+
+        /**
+         * Binário, com o conteúdo extenso compactado.
+         */
+        BINARIO("notas");
+
+        private final String extensao;
+
+        Formato(String extensao) {
+            this.extensao = extensao;
+        }
+
+        /**
+         * @return a extensão sugerida para o arquivo, sem o ponto.
+         */
+        public String getExtensao() {
+            return extensao;
+        }
+    }
+
+    /**
+     * Quantidade de notas lidas por página na exportação.
+     */
+    static final int TAMANHO_PAGINA = 100;
+
+    /**
+     * Tamanho do buffer de leitura e escrita dos arquivos.
+     */
+    static final int TAMANHO_BUFFER = 64 * 1024;
+
+    private static final int MAGICO = 0x474E4558;
+    private static final int VERSAO = 1;
+    private static final byte REGISTRO_NOTA = 1;
+    private static final byte REGISTRO_FIM = 0;
+
+    /**
+     * Tamanho máximo de um texto no formato binário, que impede que um arquivo corrompido
+     * provoque a alocação de um vetor arbitrariamente grande.
+     */
+    private static final int TAMANHO_MAXIMO_TEXTO = 64 * 1024 * 1024;
+
+    private static final String CAMPO_ID = "id";
+    private static final String CAMPO_TITULO = "titulo";
+    private static final String CAMPO_CONTEUDO = "conteudo";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final NotasDAO dao;
+
+    /**
+     * @param dao o DAO cujas notas são exportadas ou no qual as notas são importadas.
+     */
+    public TransferenciaNotas(NotasDAO dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Exporta todas as notas para o arquivo. As notas são escritas em um arquivo temporário, que
+     * substitui o {@code arquivo} somente após ser gravado por completo e sincronizado com o disco.
+     *
+     * @param arquivo o arquivo de destino.
+     * @param formato o formato do arquivo.
+     * @return o resultado da exportação.
+     * @throws IOException caso não seja possível ler as notas ou escrever o arquivo.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    public ResultadoTransferencia exportar(File arquivo, Formato formato) throws IOException {
+        final File temporario = new File(arquivo.getPath() + ".tmp");
+        final FileOutputStream saida = new FileOutputStream(temporario);
+        boolean concluida = false;
+        try {
+            final ResultadoTransferencia resultado = exportar(new BufferedOutputStream(saida, TAMANHO_BUFFER), formato);
+            saida.getFD().sync();
+            concluida = true;
+            return resultado;
+        } finally {
+            saida.close();
+            if (concluida) {
+                if (!temporario.renameTo(arquivo)) {
+                    temporario.delete();
+                    throw new IOException("Não foi possível substituir " + arquivo);
+                }
+            } else if (!temporario.delete()) {
+                Log.w(TAG, "Não foi possível excluir " + temporario);
+            }
+        }
+    }
+
+    /**
+     * Exporta todas as notas para a {@code saida}, que não é fechada.
+     *
+     * @param saida o destino das notas; deve ser bufferizada pelo chamador, caso necessário.
+     * @param formato o formato das notas.
+     * @return o resultado da exportação.
+     * @throws IOException caso não seja possível ler as notas ou escrever na saída.
+     */
+    public ResultadoTransferencia exportar(OutputStream saida, Formato formato) throws IOException {
+        final Medicao medicao = new Medicao();
+        final ContadorSaida contador = new ContadorSaida(saida);
+        int quantidade = 0;
+        boolean sucesso = false;
+        try {
+            final Escritor escritor = formato == Formato.JSON_LINHAS
+                    ? new EscritorJson(contador) : new EscritorBinario(contador);
+            long aposId = 0;
+            while (true) {
+                final ArrayList<Nota> pagina = dao.listarCompletas(aposId, TAMANHO_PAGINA);
+                for (int i = 0; i < pagina.size(); i++) {
+                    escritor.escrever(pagina.get(i));
+                }
+                quantidade += pagina.size();
+                medicao.amostrarHeap();
+                if (pagina.size() < TAMANHO_PAGINA) break;
+                aposId = pagina.get(pagina.size() - 1).getId();
+            }
+            escritor.concluir(quantidade);
+            sucesso = true;
+        } finally {
+            dao.getMetricas().registrar(Operacao.EXPORTAR, medicao.inicio, quantidade, 0, sucesso);
+        }
+
+        final ResultadoTransferencia resultado = medicao.concluir(quantidade, 0, contador.bytes);
+        Log.i(TAG, "Exportação concluída: " + resultado);
+        return resultado;
+    }
+
+    /**
+     * Importa as notas do arquivo.
+     *
+     * @param arquivo o arquivo exportado por {@link #exportar(File, Formato)}.
+     * @param formato o formato do arquivo.
+     * @return o resultado da importação.
+     * @throws IOException caso não seja possível ler o arquivo ou ele não esteja no formato
+     * esperado. Os lotes gravados antes do erro são mantidos.
+     */
+    @SuppressWarnings("TryFinallyCanBeTryWithResources")
+    public ResultadoTransferencia importar(File arquivo, Formato formato) throws IOException {
+        final InputStream entrada = new BufferedInputStream(new FileInputStream(arquivo), TAMANHO_BUFFER);
+        try {
+            return importar(entrada, formato);
+        } finally {
+            entrada.close();
+        }
+    }
+
+    /**
+     * Importa as notas da {@code entrada}, que não é fechada. As notas são lidas uma a uma e
+     * gravadas a cada {@link NotasDAO#TAMANHO_LOTE} notas, em uma única transação por lote.
+     *
+     * @param entrada a origem das notas; deve ser bufferizada pelo chamador, caso necessário.
+     * @param formato o formato das notas.
+     * @return o resultado da importação.
+     * @throws IOException caso não seja possível ler a entrada ou ela não esteja no formato
+     * esperado. Os lotes gravados antes do erro são mantidos.
+     */
+    public ResultadoTransferencia importar(InputStream entrada, Formato formato) throws IOException {
+        final Medicao medicao = new Medicao();
+        final ContadorEntrada contador = new ContadorEntrada(entrada);
+        int quantidade = 0;
+        int falhas = 0;
+        boolean sucesso = false;
+        try {
+            final Leitor leitor = formato == Formato.JSON_LINHAS
+                    ? new LeitorJson(contador) : new LeitorBinario(contador);
+            final ArrayList<Nota> lote = new ArrayList<>(NotasDAO.TAMANHO_LOTE);
+            Nota nota;
+            while ((nota = leitor.ler()) != null) {
+                lote.add(nota);
+                quantidade++;
+                if (lote.size() == NotasDAO.TAMANHO_LOTE) {
+                    falhas += dao.inserirTodas(lote).getQuantidadeFalhas();
+                    medicao.amostrarHeap();
+                    lote.clear();
+                }
+            }
+            if (!lote.isEmpty()) {
+                falhas += dao.inserirTodas(lote).getQuantidadeFalhas();
+                medicao.amostrarHeap();
+            }
+            sucesso = falhas == 0;
+        } finally {
+            dao.getMetricas().registrar(Operacao.IMPORTAR, medicao.inicio, quantidade - falhas, contador.bytes, sucesso);
+        }
+
+        final ResultadoTransferencia resultado = medicao.concluir(quantidade, falhas, contador.bytes);
+        Log.i(TAG, "Importação concluída: " + resultado);
+        return resultado;
+    }
+
+    /**
+     * Duração e maior uso do heap de uma operação.
+     */
+    private static final class Medicao {
+        final long inicio = System.nanoTime();
+        private long picoHeap;
+
+        void amostrarHeap() {
+            final Runtime runtime = Runtime.getRuntime();
+            picoHeap = Math.max(picoHeap, runtime.totalMemory() - runtime.freeMemory());
+        }
+
+        ResultadoTransferencia concluir(int quantidade, int falhas, long bytes) {
+            amostrarHeap();
+            return new ResultadoTransferencia(quantidade, falhas, bytes, System.nanoTime() - inicio, picoHeap);
+        }
+    }
+
+    /**
+     * Escreve as notas em um dos {@link Formato formatos}.
+     */
+    private interface Escritor {
+        void escrever(Nota nota) throws IOException;
+
+        /**
+         * Escreve o final do arquivo, caso o formato tenha, e descarrega os buffers.
+         */
+        void concluir(int quantidade) throws IOException;
+    }
+
+    private static final class EscritorJson implements Escritor {
+        private final Writer writer;
+
+        EscritorJson(OutputStream saida) {
+            writer = new OutputStreamWriter(saida, UTF_8);
+        }
+
+        @Override
+        public void escrever(Nota nota) throws IOException {
+            // O JsonWriter aceita um único valor por documento: cada linha tem o seu, sobre o mesmo
+            // writer (o JsonWriter não tem buffer próprio e não é fechado)
+            final JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name(CAMPO_ID).value(nota.getId());
+            json.name(CAMPO_TITULO).value(nota.getTitulo());
+            json.name(CAMPO_CONTEUDO).value(nota.getConteudo());
+            json.endObject();
+            writer.write('\n');
+        }
+
+        @Override
+        public void concluir(int quantidade) throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static final class EscritorBinario implements Escritor {
+        private final DataOutputStream saida;
+
+        EscritorBinario(OutputStream saida) throws IOException {
+            this.saida = new DataOutputStream(saida);
+            this.saida.writeInt(MAGICO);
+            this.saida.writeInt(VERSAO);
+        }
+
+        @Override
+        public void escrever(Nota nota) throws IOException {
+            saida.writeByte(REGISTRO_NOTA);
+            saida.writeLong(nota.getId());
+            escreverBytes(nota.getTitulo().getBytes(UTF_8));
+            final byte[] compactado = CodificadorConteudo.compactar(nota.getConteudo());
+            if (compactado != null) {
+                saida.writeByte(CodificadorConteudo.FORMATO_DEFLATE);
+                escreverBytes(compactado);
+            } else {
+                saida.writeByte(CodificadorConteudo.FORMATO_TEXTO);
+                escreverBytes(nota.getConteudo().getBytes(UTF_8));
+            }
+        }
+
+        private void escreverBytes(byte[] bytes) throws IOException {
+            saida.writeInt(bytes.length);
+            saida.write(bytes);
+        }
+
+        @Override
+        public void concluir(int quantidade) throws IOException {
+            saida.writeByte(REGISTRO_FIM);
+            saida.writeInt(quantidade);
+            saida.flush();
+        }
+    }
+
+    /**
+     * Lê as notas de um dos {@link Formato formatos}.
+     */
+    private interface Leitor {
+        /**
+         * @return a próxima nota, ou {@code null} ao final do arquivo.
+         */
+        Nota ler() throws IOException;
+    }
+
+    private static final class LeitorJson implements Leitor {
+        private final JsonReader json;
+        private int linha;
+
+        LeitorJson(InputStream entrada) {
+            json = new JsonReader(new InputStreamReader(entrada, UTF_8));
+            // Permite ler um objeto por linha, em vez de um único valor
+            json.setLenient(true);
+        }
+
+        @Override
+        public Nota ler() throws IOException {
+            if (json.peek() == JsonToken.END_DOCUMENT) return null;
+            linha++;
+
+            String titulo = null;
+            String conteudo = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                final String campo = json.nextName();
+                if (CAMPO_TITULO.equals(campo)) {
+                    titulo = json.nextString();
+                } else if (CAMPO_CONTEUDO.equals(campo)) {
+                    conteudo = json.nextString();
+                } else {
+                    // CAMPO_ID e campos desconhecidos
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            if (titulo == null || conteudo == null) {
+                throw new IOException("Nota sem título ou conteúdo na linha " + linha);
+            }
+            return new Nota(0L, titulo, conteudo);
+        }
+    }
+
+    private static final class LeitorBinario implements Leitor {
+        private final DataInputStream entrada;
+        private int lidas;
+
+        LeitorBinario(InputStream entrada) throws IOException {
+            this.entrada = new DataInputStream(entrada);
+            if (this.entrada.readInt() != MAGICO) throw new IOException("O arquivo não é uma exportação de notas.");
+            final int versao = this.entrada.readInt();
+            if (versao != VERSAO) throw new IOException("Versão do arquivo não suportada: " + versao);
+        }
+
+        @Override
+        public Nota ler() throws IOException {
+            try {
+                return lerRegistro();
+            } catch (EOFException ex) {
+                throw new IOException("Arquivo truncado após " + lidas + " notas.", ex);
+            }
+        }
+
+        private Nota lerRegistro() throws IOException {
+            final byte registro = entrada.readByte();
+            if (registro == REGISTRO_FIM) {
+                final int quantidade = entrada.readInt();
+                if (quantidade != lidas) {
+                    throw new IOException("O arquivo declara " + quantidade + " notas, mas contém " + lidas);
+                }
+                return null;
+            }
+            if (registro != REGISTRO_NOTA) throw new IOException("Registro inválido: " + registro);
+
+            entrada.readLong();
+            final String titulo = new String(lerBytes(), UTF_8);
+            final int formato = entrada.readByte();
+            final byte[] conteudo = lerBytes();
+            lidas++;
+            if (formato == CodificadorConteudo.FORMATO_TEXTO) {
+                return new Nota(0L, titulo, new String(conteudo, UTF_8));
+            }
+            if (formato != CodificadorConteudo.FORMATO_DEFLATE) throw new IOException("Formato inválido: " + formato);
+            try {
+                return new Nota(0L, titulo, CodificadorConteudo.descompactar(conteudo));
+            } catch (DataFormatException ex) {
+                throw new IOException("Conteúdo compactado inválido na nota " + lidas, ex);
+            }
+        }
+
+        private byte[] lerBytes() throws IOException {
+            final int tamanho = entrada.readInt();
+            if (tamanho < 0 || tamanho > TAMANHO_MAXIMO_TEXTO) throw new IOException("Tamanho inválido: " + tamanho);
+            final byte[] bytes = new byte[tamanho];
+            entrada.readFully(bytes);
+            return bytes;
+        }
+    }
+
+    /**
+     * Conta os bytes escritos, sem a escrita byte a byte do {@link FilterOutputStream}.
+     */
+    private static final class ContadorSaida extends FilterOutputStream {
+        long bytes;
+
+        ContadorSaida(OutputStream saida) {
+            super(saida);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            bytes += len;
+        }
+    }
+
+    /**
+     * Conta os bytes lidos.
+     */
+    private static final class ContadorEntrada extends FilterInputStream {
+        long bytes;
+
+        ContadorEntrada(InputStream entrada) {
+            super(entrada);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) bytes++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int lidos = super.read(b, off, len);
+            if (lidos > 0) bytes += lidos;
+            return lidos;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long pulados = super.skip(n);
+            bytes += pulados;
+            return pulados;
+        }
+    }
+}
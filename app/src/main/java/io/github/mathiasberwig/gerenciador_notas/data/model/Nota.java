@@ -14,6 +14,13 @@ public class Nota implements Parcelable {
     private String titulo;
     private String conteudo;
 
+    /**
+     * Indica se {@link #conteudo} contém somente o início do conteúdo da nota, como nas listagens.
+     *
+     * @see io.github.mathiasberwig.gerenciador_notas.data.dao.NotasDAO#buscarPorId(long)
+     */
+    private boolean parcial;
+
     public Nota() {
         // Valores padrão adicionados para prevenir exceções NullPointerException
         this.id = 0L;
@@ -31,6 +38,7 @@ public class Nota implements Parcelable {
         id = in.readLong();
         titulo = in.readString();
         conteudo = in.readString();
+        parcial = in.readByte() != 0;
     }
 
     public static final Creator<Nota> CREATOR = new Creator<Nota>() {
@@ -69,6 +77,14 @@ public class Nota implements Parcelable {
         this.conteudo = conteudo;
     }
 
+    public boolean isParcial() {
+        return parcial;
+    }
+
+    public void setParcial(boolean parcial) {
+        this.parcial = parcial;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -78,7 +94,8 @@ public class Nota implements Parcelable {
 
         return (id != null ? id.equals(nota.id) : nota.id == null)
                 && (titulo != null ? titulo.equals(nota.titulo) : nota.titulo == null)
-                && (conteudo != null ? conteudo.equals(nota.conteudo) : nota.conteudo == null);
+                && (conteudo != null ? conteudo.equals(nota.conteudo) : nota.conteudo == null)
+                && parcial == nota.parcial;
     }
 
     @Override
@@ -86,6 +103,7 @@ public class Nota implements Parcelable {
         int result = id != null ? id.hashCode() : 0;
         result = 31 * result + (titulo != null ? titulo.hashCode() : 0);
         result = 31 * result + (conteudo != null ? conteudo.hashCode() : 0);
+        result = 31 * result + (parcial ? 1 : 0);
         return result;
     }
 
@@ -95,6 +113,7 @@ public class Nota implements Parcelable {
                 "id=" + id +
                 ", titulo='" + titulo + '\'' +
                 ", conteudo='" + conteudo + '\'' +
+                ", parcial=" + parcial +
                 '}';
     }
 
@@ -108,5 +127,6 @@ public class Nota implements Parcelable {
         dest.writeLong(id);
         dest.writeString(titulo);
         dest.writeString(conteudo);
+        dest.writeByte((byte) (parcial ? 1 : 0));
     }
 }
\ No newline at end of file
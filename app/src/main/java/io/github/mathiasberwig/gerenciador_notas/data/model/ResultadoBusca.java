@@ -0,0 +1,46 @@
+package io.github.mathiasberwig.gerenciador_notas.data.model;
+
+/**
+ * Representa uma nota encontrada por uma busca textual, acompanhada do trecho em que os termos
+ * aparecem e da relevância calculada para ela.
+ */
+public class ResultadoBusca {
+
+    /**
+     * Caracteres que delimitam, no {@link #getTrecho() trecho}, as ocorrências dos termos buscados.
+     * São utilizados caracteres de controle em vez de marcação HTML para que o texto da nota seja
+     * exibido literalmente, mesmo que contenha {@code <} ou {@code &}.
+     */
+    public static final char INICIO_DESTAQUE = '\u0002';
+    public static final char FIM_DESTAQUE = '\u0003';
+
+    private final Nota nota;
+    private final String trecho;
+    private final double relevancia;
+
+    public ResultadoBusca(Nota nota, String trecho, double relevancia) {
+        this.nota = nota;
+        this.trecho = trecho;
+        this.relevancia = relevancia;
+    }
+
+    public Nota getNota() {
+        return nota;
+    }
+
+    /**
+     * @return trecho do conteúdo em que os termos foram encontrados, com as ocorrências delimitadas
+     * por {@link #INICIO_DESTAQUE} e {@link #FIM_DESTAQUE}. Caso os termos apareçam somente no
+     * título, contém o início do conteúdo, sem destaques.
+     */
+    public String getTrecho() {
+        return trecho;
+    }
+
+    /**
+     * @return relevância da nota para a busca; quanto maior, mais relevante.
+     */
+    public double getRelevancia() {
+        return relevancia;
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.mathiasberwig.gerenciador_notas.data.model;
+
+/**
+ * Representa uma revisão de uma nota, registrada a cada gravação em que o título ou o conteúdo
+ * foram alterados. Contém somente os dados exibidos no histórico; o conteúdo da revisão é
+ * reconstruído por
+ * {@link io.github.mathiasberwig.gerenciador_notas.data.dao.NotasDAO#buscarRevisao(long, int)}.
+ */
+public class Revisao {
+
+    private final long idNota;
+    private final int numero;
+    private final long data;
+    private final String titulo;
+    private final int tamanho;
+    private final boolean completa;
+
+    public Revisao(long idNota, int numero, long data, String titulo, int tamanho, boolean completa) {
+        this.idNota = idNota;
+        this.numero = numero;
+        this.data = data;
+        this.titulo = titulo;
+        this.tamanho = tamanho;
+        this.completa = completa;
+    }
+
+    public long getIdNota() {
+        return idNota;
+    }
+
+    /**
+     * @return o número da revisão, crescente a cada gravação da nota a partir de {@code 1}.
+     */
+    public int getNumero() {
+        return numero;
+    }
+
+    /**
+     * @return o momento da gravação, em milissegundos desde 01/01/1970 (UTC).
+     */
+    public long getData() {
+        return data;
+    }
+
+    public String getTitulo() {
+        return titulo;
+    }
+
+    /**
+     * @return a quantidade de caracteres do conteúdo da revisão.
+     */
+    public int getTamanho() {
+        return tamanho;
+    }
+
+    /**
+     * @return {@code true} caso o conteúdo da revisão esteja armazenado por completo; caso
+     * contrário, é armazenado como a diferença em relação à revisão anterior.
+     */
+    public boolean isCompleta() {
+        return completa;
+    }
+
+    @Override
+    public String toString() {
+        return "Revisao{idNota=" + idNota + ", numero=" + numero + ", data=" + data + ", tamanho=" + tamanho
+                + ", completa=" + completa + "}";
+    }
+}
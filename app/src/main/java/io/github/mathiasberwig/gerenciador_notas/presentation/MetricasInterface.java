@@ -0,0 +1,594 @@
+package io.github.mathiasberwig.gerenciador_notas.presentation;
+
+import android.os.Trace;
+import android.util.JsonWriter;
+import android.view.Choreographer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Métricas de desempenho da interface: a duração de cada criação e vinculação de holders da lista
+ * de notas, a quantidade e o tempo de vinculações em cada quadro, os quadros lentos e a duração
+ * das transições entre fragmentos.
+ * <p/>
+ * Os trechos medidos também são marcados com {@link Trace#beginSection(String) seções de trace},
+ * visíveis no {@code systrace} mesmo com o monitoramento desativado. Os quadros são delimitados
+ * por um {@link Choreographer.FrameCallback}, registrado somente entre
+ * {@link #iniciarMonitoramento()} e {@link #encerrarMonitoramento()}: um quadro é lento quando o
+ * intervalo até o quadro seguinte ultrapassa o {@link #setLimiteQuadroLento(long) limite}, e as
+ * vinculações executadas nesse intervalo são atribuídas a ele.
+ * <p/>
+ * O registro é feito na thread principal e não aloca objetos: as durações são mantidas em vetores
+ * circulares com as últimas {@link #CAPACIDADE_AMOSTRAS} amostras, a partir das quais o
+ * {@link #getRelatorio() relatório} calcula os percentis exatos.
+ */
+public final class MetricasInterface {
+
+    /**
+     * Limite padrão a partir do qual um quadro é considerado lento, em milissegundos: um quadro e
+     * meio a 60 Hz, ou seja, ao menos um quadro perdido.
+     */
+    public static final long LIMITE_QUADRO_LENTO_PADRAO = 25;
+
+    /**
+     * Quantidade de durações de criação e de vinculação mantidas para o cálculo dos percentis.
+     */
+    public static final int CAPACIDADE_AMOSTRAS = 2048;
+
+    /**
+     * Quantidade de quadros lentos e de transições mantidos no relatório.
+     */
+    private static final int CAPACIDADE_EVENTOS = 32;
+
+    /**
+     * Seções de trace das vinculações e das criações de holders.
+     */
+    private static final String SECAO_BIND = "NotasAdapter.onBindViewHolder";
+    private static final String SECAO_CRIACAO = "NotasAdapter.onCreateViewHolder";
+
+    /**
+     * Instância utilizada pela aplicação.
+     */
+    private static final MetricasInterface INSTANCE = new MetricasInterface();
+
+    private final Choreographer.FrameCallback callbackQuadro = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            registrarQuadro(frameTimeNanos);
+        }
+    };
+
+    private boolean ativo;
+    private long limiteQuadroLentoNanos = TimeUnit.MILLISECONDS.toNanos(LIMITE_QUADRO_LENTO_PADRAO);
+
+    // Quadro atual, iniciado no último callback do Choreographer
+    private long inicioQuadro;
+    private int bindsQuadro;
+    private long tempoBindsQuadro;
+    private int criacoesQuadro;
+
+    // Totais desde o último zerar()
+    private long quadros;
+    private long quadrosLentos;
+    private long quadrosComBind;
+    private long binds;
+    private long criacoes;
+    private int maximoBindsQuadro;
+
+    private final Amostras amostrasBind = new Amostras();
+    private final Amostras amostrasCriacao = new Amostras();
+
+    // Últimos quadros lentos, em vetor circular
+    private final long[] lentosInicio = new long[CAPACIDADE_EVENTOS];
+    private final long[] lentosDuracao = new long[CAPACIDADE_EVENTOS];
+    private final int[] lentosBinds = new int[CAPACIDADE_EVENTOS];
+    private final long[] lentosTempoBinds = new long[CAPACIDADE_EVENTOS];
+    private final int[] lentosCriacoes = new int[CAPACIDADE_EVENTOS];
+
+    // Últimas transições, em vetor circular, e a transição em andamento
+    private final String[] transicoesNome = new String[CAPACIDADE_EVENTOS];
+    private final long[] transicoesDuracao = new long[CAPACIDADE_EVENTOS];
+    private long totalTransicoes;
+    private String transicaoPendente;
+    private long inicioTransicao;
+    private int quadrosTransicao;
+
+    MetricasInterface() {
+    }
+
+    /**
+     * @return as métricas da aplicação.
+     */
+    public static MetricasInterface getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Passa a delimitar os quadros e a registrar as durações. Deve ser chamado na thread principal.
+     */
+    public synchronized void iniciarMonitoramento() {
+        if (ativo) return;
+        ativo = true;
+        inicioQuadro = 0;
+        Choreographer.getInstance().postFrameCallback(callbackQuadro);
+    }
+
+    /**
+     * Deixa de delimitar os quadros e de registrar as durações; o quadro em andamento e a transição
+     * pendente são descartados. Deve ser chamado na thread principal.
+     */
+    public synchronized void encerrarMonitoramento() {
+        if (!ativo) return;
+        ativo = false;
+        Choreographer.getInstance().removeFrameCallback(callbackQuadro);
+        descartarQuadro();
+        transicaoPendente = null;
+    }
+
+    public synchronized boolean isMonitorando() {
+        return ativo;
+    }
+
+    /**
+     * Define o limite a partir do qual um quadro é considerado lento.
+     *
+     * @param milissegundos o limite, em milissegundos.
+     */
+    public synchronized void setLimiteQuadroLento(long milissegundos) {
+        limiteQuadroLentoNanos = TimeUnit.MILLISECONDS.toNanos(milissegundos);
+    }
+
+    public synchronized long getLimiteQuadroLento() {
+        return TimeUnit.NANOSECONDS.toMillis(limiteQuadroLentoNanos);
+    }
+
+    /**
+     * Inicia a seção de trace de uma vinculação. Deve ser seguido de {@link #registrarBind(long)}.
+     *
+     * @return o {@link System#nanoTime()} do início da vinculação.
+     */
+    public long iniciarBind() {
+        Trace.beginSection(SECAO_BIND);
+        return System.nanoTime();
+    }
+
+    /**
+     * Encerra a seção de trace da vinculação e registra a sua duração no quadro atual.
+     *
+     * @param inicio o valor retornado por {@link #iniciarBind()}.
+     */
+    public void registrarBind(long inicio) {
+        final long duracao = System.nanoTime() - inicio;
+        Trace.endSection();
+        synchronized (this) {
+            if (!ativo) return;
+            binds++;
+            bindsQuadro++;
+            tempoBindsQuadro += duracao;
+            amostrasBind.adicionar(duracao);
+        }
+    }
+
+    /**
+     * Inicia a seção de trace de uma criação de holder. Deve ser seguido de
+     * {@link #registrarCriacao(long)}.
+     *
+     * @return o {@link System#nanoTime()} do início da criação.
+     */
+    public long iniciarCriacao() {
+        Trace.beginSection(SECAO_CRIACAO);
+        return System.nanoTime();
+    }
+
+    /**
+     * Encerra a seção de trace da criação e registra a sua duração no quadro atual.
+     *
+     * @param inicio o valor retornado por {@link #iniciarCriacao()}.
+     */
+    public void registrarCriacao(long inicio) {
+        final long duracao = System.nanoTime() - inicio;
+        Trace.endSection();
+        synchronized (this) {
+            if (!ativo) return;
+            criacoes++;
+            criacoesQuadro++;
+            amostrasCriacao.adicionar(duracao);
+        }
+    }
+
+    /**
+     * Inicia a medição de uma transição entre fragmentos, como a substituição da lista pelo
+     * {@code EditarNotaFragment}. Como a transação é executada de forma assíncrona, a transição é
+     * concluída no início do segundo quadro seguinte, após o quadro que exibe o novo fragmento.
+     * Uma transição pendente é substituída pela nova.
+     *
+     * @param nome o nome da transição, exibido no relatório.
+     */
+    public synchronized void iniciarTransicao(String nome) {
+        if (!ativo) return;
+        transicaoPendente = nome;
+        inicioTransicao = System.nanoTime();
+        quadrosTransicao = 0;
+    }
+
+    /**
+     * @return uma cópia das métricas registradas.
+     */
+    public synchronized Relatorio getRelatorio() {
+        return new Relatorio(this);
+    }
+
+    /**
+     * Zera todas as métricas, mantendo o monitoramento e o limite de quadros lentos.
+     */
+    public synchronized void zerar() {
+        descartarQuadro();
+        quadros = 0;
+        quadrosLentos = 0;
+        quadrosComBind = 0;
+        binds = 0;
+        criacoes = 0;
+        maximoBindsQuadro = 0;
+        amostrasBind.zerar();
+        amostrasCriacao.zerar();
+        Arrays.fill(transicoesNome, null);
+        totalTransicoes = 0;
+        transicaoPendente = null;
+    }
+
+    /**
+     * Escreve o relatório em JSON, com os tempos em microssegundos.
+     *
+     * @param writer destino do JSON; não é fechado.
+     */
+    public void escreverJson(Writer writer) throws IOException {
+        final Relatorio r = getRelatorio();
+        JsonWriter json = new JsonWriter(writer);
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("monitorando").value(r.monitorando);
+        json.name("limiteQuadroLentoMs").value(r.limiteQuadroLento);
+        json.name("quadros").value(r.quadros);
+        json.name("quadrosLentos").value(r.quadrosLentos);
+        json.name("quadrosComBind").value(r.quadrosComBind);
+        json.name("maximoBindsQuadro").value(r.maximoBindsQuadro);
+        json.name("binds").beginObject()
+                .name("quantidade").value(r.binds)
+                .name("p50Us").value(r.getPercentilBind(50))
+                .name("p90Us").value(r.getPercentilBind(90))
+                .name("p99Us").value(r.getPercentilBind(99))
+                .name("maximoUs").value(r.getPercentilBind(100))
+                .endObject();
+        json.name("criacoes").beginObject()
+                .name("quantidade").value(r.criacoes)
+                .name("p50Us").value(r.getPercentilCriacao(50))
+                .name("p90Us").value(r.getPercentilCriacao(90))
+                .name("p99Us").value(r.getPercentilCriacao(99))
+                .name("maximoUs").value(r.getPercentilCriacao(100))
+                .endObject();
+        json.name("ultimosQuadrosLentos").beginArray();
+        for (QuadroLento q : r.getUltimosQuadrosLentos()) {
+            json.beginObject()
+                    .name("duracaoUs").value(q.getDuracao(TimeUnit.MICROSECONDS))
+                    .name("binds").value(q.getBinds())
+                    .name("tempoBindsUs").value(q.getTempoBinds(TimeUnit.MICROSECONDS))
+                    .name("criacoes").value(q.getCriacoes())
+                    .endObject();
+        }
+        json.endArray();
+        json.name("ultimasTransicoes").beginArray();
+        for (Transicao t : r.getUltimasTransicoes()) {
+            json.beginObject()
+                    .name("nome").value(t.getNome())
+                    .name("duracaoUs").value(t.getDuracao(TimeUnit.MICROSECONDS))
+                    .endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * @return o relatório em JSON (veja {@link #escreverJson(Writer)}).
+     */
+    public String paraJson() {
+        StringWriter writer = new StringWriter();
+        try {
+            escreverJson(writer);
+        } catch (IOException ex) {
+            // StringWriter não lança IOException
+            throw new IllegalStateException(ex);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Encerra o quadro atual, iniciado no callback anterior, e inicia o próximo.
+     *
+     * @param frameTimeNanos o início do novo quadro, informado pelo {@link Choreographer}.
+     */
+    private synchronized void registrarQuadro(long frameTimeNanos) {
+        if (!ativo) return;
+
+        if (inicioQuadro != 0) {
+            final long duracao = frameTimeNanos - inicioQuadro;
+            quadros++;
+            if (bindsQuadro > 0) quadrosComBind++;
+            if (bindsQuadro > maximoBindsQuadro) maximoBindsQuadro = bindsQuadro;
+            if (duracao > limiteQuadroLentoNanos) {
+                final int i = (int) (quadrosLentos % CAPACIDADE_EVENTOS);
+                lentosInicio[i] = inicioQuadro;
+                lentosDuracao[i] = duracao;
+                lentosBinds[i] = bindsQuadro;
+                lentosTempoBinds[i] = tempoBindsQuadro;
+                lentosCriacoes[i] = criacoesQuadro;
+                quadrosLentos++;
+            }
+        }
+        descartarQuadro();
+        inicioQuadro = frameTimeNanos;
+
+        if (transicaoPendente != null && ++quadrosTransicao == 2) {
+            final int i = (int) (totalTransicoes % CAPACIDADE_EVENTOS);
+            transicoesNome[i] = transicaoPendente;
+            transicoesDuracao[i] = System.nanoTime() - inicioTransicao;
+            totalTransicoes++;
+            transicaoPendente = null;
+        }
+
+        Choreographer.getInstance().postFrameCallback(callbackQuadro);
+    }
+
+    private void descartarQuadro() {
+        inicioQuadro = 0;
+        bindsQuadro = 0;
+        tempoBindsQuadro = 0;
+        criacoesQuadro = 0;
+    }
+
+    /**
+     * Vetor circular com as últimas {@link #CAPACIDADE_AMOSTRAS} durações registradas.
+     */
+    private static final class Amostras {
+        final long[] duracoes = new long[CAPACIDADE_AMOSTRAS];
+        long total;
+
+        void adicionar(long duracao) {
+            duracoes[(int) (total % CAPACIDADE_AMOSTRAS)] = duracao;
+            total++;
+        }
+
+        /**
+         * @return cópia ordenada das amostras mantidas.
+         */
+        long[] ordenadas() {
+            final long[] copia = Arrays.copyOf(duracoes, (int) Math.min(total, CAPACIDADE_AMOSTRAS));
+            Arrays.sort(copia);
+            return copia;
+        }
+
+        void zerar() {
+            total = 0;
+        }
+    }
+
+    /**
+     * Cópia das métricas da interface, obtida por {@link #getRelatorio()}. Os percentis são
+     * calculados sobre as últimas {@link #CAPACIDADE_AMOSTRAS} amostras.
+     */
+    public static final class Relatorio {
+        private final boolean monitorando;
+        private final long limiteQuadroLento;
+        private final long quadros;
+        private final long quadrosLentos;
+        private final long quadrosComBind;
+        private final long binds;
+        private final long criacoes;
+        private final int maximoBindsQuadro;
+        private final long[] bindsOrdenados;
+        private final long[] criacoesOrdenadas;
+        private final List<QuadroLento> ultimosQuadrosLentos;
+        private final List<Transicao> ultimasTransicoes;
+
+        private Relatorio(MetricasInterface m) {
+            monitorando = m.ativo;
+            limiteQuadroLento = m.getLimiteQuadroLento();
+            quadros = m.quadros;
+            quadrosLentos = m.quadrosLentos;
+            quadrosComBind = m.quadrosComBind;
+            binds = m.binds;
+            criacoes = m.criacoes;
+            maximoBindsQuadro = m.maximoBindsQuadro;
+            bindsOrdenados = m.amostrasBind.ordenadas();
+            criacoesOrdenadas = m.amostrasCriacao.ordenadas();
+
+            // Eventos do mais antigo para o mais recente
+            final List<QuadroLento> lentos = new ArrayList<>();
+            for (long n = Math.max(0, quadrosLentos - CAPACIDADE_EVENTOS); n < quadrosLentos; n++) {
+                final int i = (int) (n % CAPACIDADE_EVENTOS);
+                lentos.add(new QuadroLento(m.lentosInicio[i], m.lentosDuracao[i], m.lentosBinds[i],
+                        m.lentosTempoBinds[i], m.lentosCriacoes[i]));
+            }
+            ultimosQuadrosLentos = Collections.unmodifiableList(lentos);
+
+            final List<Transicao> transicoes = new ArrayList<>();
+            for (long n = Math.max(0, m.totalTransicoes - CAPACIDADE_EVENTOS); n < m.totalTransicoes; n++) {
+                final int i = (int) (n % CAPACIDADE_EVENTOS);
+                transicoes.add(new Transicao(m.transicoesNome[i], m.transicoesDuracao[i]));
+            }
+            ultimasTransicoes = Collections.unmodifiableList(transicoes);
+        }
+
+        public boolean isMonitorando() {
+            return monitorando;
+        }
+
+        /**
+         * @return o limite de quadros lentos, em milissegundos, no momento do relatório.
+         */
+        public long getLimiteQuadroLento() {
+            return limiteQuadroLento;
+        }
+
+        public long getQuadros() {
+            return quadros;
+        }
+
+        public long getQuadrosLentos() {
+            return quadrosLentos;
+        }
+
+        /**
+         * @return quantidade de quadros em que ao menos um holder foi vinculado.
+         */
+        public long getQuadrosComBind() {
+            return quadrosComBind;
+        }
+
+        public long getBinds() {
+            return binds;
+        }
+
+        public long getCriacoes() {
+            return criacoes;
+        }
+
+        /**
+         * @return a maior quantidade de vinculações em um único quadro.
+         */
+        public int getMaximoBindsQuadro() {
+            return maximoBindsQuadro;
+        }
+
+        /**
+         * @param percentil o percentil, entre 0 e 100.
+         * @return a duração das vinculações no percentil, em microssegundos, ou {@code 0} se não
+         * houver amostras.
+         */
+        public long getPercentilBind(double percentil) {
+            return percentil(bindsOrdenados, percentil);
+        }
+
+        /**
+         * @param percentil o percentil, entre 0 e 100.
+         * @return a duração das criações de holders no percentil, em microssegundos, ou {@code 0}
+         * se não houver amostras.
+         */
+        public long getPercentilCriacao(double percentil) {
+            return percentil(criacoesOrdenadas, percentil);
+        }
+
+        /**
+         * @return os últimos quadros lentos, do mais antigo para o mais recente.
+         */
+        public List<QuadroLento> getUltimosQuadrosLentos() {
+            return ultimosQuadrosLentos;
+        }
+
+        /**
+         * @return as últimas transições entre fragmentos, da mais antiga para a mais recente.
+         */
+        public List<Transicao> getUltimasTransicoes() {
+            return ultimasTransicoes;
+        }
+
+        private static long percentil(long[] ordenadas, double percentil) {
+            if (ordenadas.length == 0) return 0;
+            final int i = (int) Math.ceil(ordenadas.length * percentil / 100) - 1;
+            return TimeUnit.NANOSECONDS.toMicros(ordenadas[Math.max(0, Math.min(ordenadas.length - 1, i))]);
+        }
+
+        @Override
+        public String toString() {
+            return "Relatorio{quadros=" + quadros + ", lentos=" + quadrosLentos + ", comBind=" + quadrosComBind
+                    + ", binds=" + binds + ", bindP50=" + getPercentilBind(50) + "us, bindP90="
+                    + getPercentilBind(90) + "us, bindP99=" + getPercentilBind(99) + "us, maximoBindsQuadro="
+                    + maximoBindsQuadro + ", criacoes=" + criacoes + ", criacaoP90=" + getPercentilCriacao(90)
+                    + "us, transicoes=" + ultimasTransicoes + "}";
+        }
+    }
+
+    /**
+     * Quadro cujo intervalo até o quadro seguinte ultrapassou o limite de quadros lentos.
+     */
+    public static final class QuadroLento {
+        private final long inicio;
+        private final long duracao;
+        private final int binds;
+        private final long tempoBinds;
+        private final int criacoes;
+
+        private QuadroLento(long inicio, long duracao, int binds, long tempoBinds, int criacoes) {
+            this.inicio = inicio;
+            this.duracao = duracao;
+            this.binds = binds;
+            this.tempoBinds = tempoBinds;
+            this.criacoes = criacoes;
+        }
+
+        /**
+         * @return o início do quadro, na base de tempo de {@link System#nanoTime()}.
+         */
+        public long getInicio() {
+            return inicio;
+        }
+
+        public long getDuracao(TimeUnit unidade) {
+            return unidade.convert(duracao, TimeUnit.NANOSECONDS);
+        }
+
+        public int getBinds() {
+            return binds;
+        }
+
+        /**
+         * @return a soma das durações das vinculações do quadro.
+         */
+        public long getTempoBinds(TimeUnit unidade) {
+            return unidade.convert(tempoBinds, TimeUnit.NANOSECONDS);
+        }
+
+        public int getCriacoes() {
+            return criacoes;
+        }
+
+        @Override
+        public String toString() {
+            return "QuadroLento{duracao=" + getDuracao(TimeUnit.MICROSECONDS) + "us, binds=" + binds
+                    + ", tempoBinds=" + getTempoBinds(TimeUnit.MICROSECONDS) + "us, criacoes=" + criacoes + "}";
+        }
+    }
+
+    /**
+     * Transição entre fragmentos medida a partir de {@link #iniciarTransicao(String)}.
+     */
+    public static final class Transicao {
+        private final String nome;
+        private final long duracao;
+
+        private Transicao(String nome, long duracao) {
+            this.nome = nome;
+            this.duracao = duracao;
+        }
+
+        public String getNome() {
+            return nome;
+        }
+
+        public long getDuracao(TimeUnit unidade) {
+            return unidade.convert(duracao, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return nome + "=" + getDuracao(TimeUnit.MICROSECONDS) + "us";
+        }
+    }
+}
@@ -1,20 +1,36 @@
 package io.github.mathiasberwig.gerenciador_notas.presentation.activity;
 
+import android.app.Fragment;
 import android.content.DialogInterface;
+import android.util.Log;
 import android.os.Bundle;
+import android.os.Trace;
 import android.support.design.widget.FloatingActionButton;
+import android.support.v4.view.MenuItemCompat;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.view.ActionMode;
+import android.support.v7.widget.SearchView;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Toast;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.Callable;
 
+import io.github.mathiasberwig.gerenciador_notas.BuildConfig;
 import io.github.mathiasberwig.gerenciador_notas.R;
+import io.github.mathiasberwig.gerenciador_notas.data.dao.BackupBanco;
 import io.github.mathiasberwig.gerenciador_notas.data.dao.NotasDAO;
+import io.github.mathiasberwig.gerenciador_notas.data.dao.NotasDAOAssincrono;
+import io.github.mathiasberwig.gerenciador_notas.data.dao.ResultadoLote;
 import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+import io.github.mathiasberwig.gerenciador_notas.presentation.MetricasInterface;
+import io.github.mathiasberwig.gerenciador_notas.presentation.adapter.NotasRecyclerViewAdapter;
 import io.github.mathiasberwig.gerenciador_notas.presentation.fragment.EditarNotaFragment;
 import io.github.mathiasberwig.gerenciador_notas.presentation.fragment.ListarNotasFragment;
 
@@ -23,89 +39,215 @@ public class MainActivity extends AppCompatActivity
         EditarNotaFragment.OnEdicaoConcluidaListener {
     private static final String TAG = MainActivity.class.getName();
 
+    /**
+     * Argumento de {@code dumpsys} que exporta as métricas da camada de dados em JSON:
+     * {@code adb shell dumpsys activity <pacote>/.presentation.activity.MainActivity metricas}.
+     *
+     * @see #dump(String, FileDescriptor, PrintWriter, String[])
+     */
+    private static final String DUMP_METRICAS = "metricas";
+
+    /**
+     * Argumento de {@code dumpsys} que exporta o relatório de desempenho da interface em JSON,
+     * monitorada enquanto a activity está em primeiro plano nas builds de depuração.
+     *
+     * @see MetricasInterface#escreverJson(java.io.Writer)
+     */
+    private static final String DUMP_QUADROS = "quadros";
+
     /**
      * Instância do fragmento Listar Notas.
      */
     private ListarNotasFragment listarNotasFragment;
 
     /**
-     * Instância do Data Access Object.
+     * Instância do Data Access Object assíncrono, cancelada em {@link #onDestroy()}.
      */
-    private NotasDAO notasDAO;
+    private NotasDAOAssincrono notasDAO;
 
     /**
-     * Indica qual nota está selecionada no momento.
+     * Modo de ação exibido enquanto houver notas selecionadas, ou {@code null}.
      */
-    private Nota notaSelecionada;
+    private ActionMode modoSelecao;
+
+    /**
+     * Callback do {@link #modoSelecao}, com as ações sobre as notas selecionadas.
+     */
+    private final ActionMode.Callback callbackModoSelecao = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.menu_selecao, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            // Somente uma nota pode ser editada por vez
+            menu.findItem(R.id.action_editar_nota).setVisible(getAdapterNotas().getQuantidadeSelecionadas() == 1);
+            return true;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            switch (item.getItemId()) {
+                case R.id.action_editar_nota:
+                    prepararFragmentoEditarNota(false);
+                    return true;
+
+                case R.id.action_excluir_nota:
+                    excluirNotasSelecionadas();
+                    return true;
+
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            // Encerrar o modo de ação (inclusive pelo botão voltar) remove a seleção
+            modoSelecao = null;
+            getAdapterNotas().limparSelecao();
+        }
+    };
 
     /**
      * Referência para o botão de ação flutuante.
      */
     private FloatingActionButton fab;
 
+    /**
+     * Indica se o estado da activity foi salvo desde que foi retomada pela última vez: a pilha de
+     * fragmentos não pode ser alterada até que seja retomada novamente.
+     */
+    private boolean estadoSalvo;
+
+    /**
+     * Indica se o retorno para a lista de notas foi adiado por uma edição concluída com o
+     * {@link #estadoSalvo estado salvo}.
+     *
+     * @see #concluirEdicao(boolean)
+     */
+    private boolean retornoPendente;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
         // Obtém a instância do DAO
-        notasDAO = NotasDAO.getInstance(this);
+        notasDAO = new NotasDAOAssincrono(NotasDAO.getInstance(this));
 
         // Exibe o fragmento de listagem de notas
         prepararFragmentoListarNotas(savedInstanceState);
 
         // Exibe o botão de ação flutuante
         prepararFAB();
+
+        // Exclui as revisões antigas do histórico das notas e cria a cópia de segurança diária do
+        // banco de dados, uma vez a cada abertura do aplicativo
+        if (savedInstanceState == null) {
+            notasDAO.podarRevisoes(null);
+            BackupBanco.getInstance(this).agendarCopiaPeriodica(null);
+        }
     }
 
     @Override
-    public boolean onCreateOptionsMenu(Menu menu) {
-        getMenuInflater().inflate(R.menu.menu_main, menu);
-        return true;
+    protected void onDestroy() {
+        super.onDestroy();
+
+        // Descarta as operações pendentes no banco de dados
+        notasDAO.cancelar();
     }
 
     @Override
-    public boolean onOptionsItemSelected(MenuItem item) {
-        switch (item.getItemId()) {
-            case R.id.action_editar_nota:
-                prepararFragmentoEditarNota(false);
-                return true;
+    protected void onResume() {
+        super.onResume();
 
-            case R.id.action_excluir_nota:
-                excluirNotaSelecionada();
-                return true;
+        // Mede os quadros da interface somente nas builds de depuração
+        if (BuildConfig.DEBUG) {
+            MetricasInterface.getInstance().iniciarMonitoramento();
+        }
+    }
 
-            default:
-                return super.onOptionsItemSelected(item);
+    @Override
+    protected void onPostResume() {
+        super.onPostResume();
+
+        // A pilha de fragmentos pode ser alterada novamente
+        estadoSalvo = false;
+        if (retornoPendente) {
+            retornoPendente = false;
+            concluirEdicao(true);
         }
     }
 
     @Override
-    public boolean onPrepareOptionsMenu(Menu menu) {
-        super.onPrepareOptionsMenu(menu);
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        estadoSalvo = true;
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+
+        if (BuildConfig.DEBUG) {
+            final MetricasInterface metricas = MetricasInterface.getInstance();
+            metricas.encerrarMonitoramento();
+            Log.d(TAG, metricas.getRelatorio().toString());
+        }
+    }
 
-        // Mostra ou oculta os menus de contexo de acordo com o estado de seleção
-        final boolean mostrarItens = notaSelecionada != null;
-        menu.findItem(R.id.action_excluir_nota).setVisible(mostrarItens);
-        menu.findItem(R.id.action_editar_nota).setVisible(mostrarItens);
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        if (args != null && args.length > 0 && DUMP_METRICAS.equals(args[0])) {
+            try {
+                NotasDAO.getInstance(this).getMetricas().escreverJson(writer);
+                writer.println();
+            } catch (IOException ex) {
+                Log.e(TAG, "Não foi possível exportar as métricas.", ex);
+            }
+            return;
+        }
+        if (args != null && args.length > 0 && DUMP_QUADROS.equals(args[0])) {
+            try {
+                MetricasInterface.getInstance().escreverJson(writer);
+                writer.println();
+            } catch (IOException ex) {
+                Log.e(TAG, "Não foi possível exportar o relatório da interface.", ex);
+            }
+            return;
+        }
+        super.dump(prefix, fd, writer, args);
+    }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_main, menu);
+        prepararBusca(menu.findItem(R.id.action_buscar));
         return true;
     }
 
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_restaurar_backup) {
+            mostrarDialogoRestaurarBackup();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
     @Override
     public void onBackPressed() {
 
         // Verifica se o fragmento que está sendo exibido é diferente do ListarNotasFragment. Se for,
         // exibe o dialogo para cancelar a edição
+        // (a seleção de notas é removida pelo próprio modo de ação, que recebe o botão voltar)
         if (!getFragmentManager().findFragmentById(R.id.fragment_container).equals(listarNotasFragment)) {
             mostrarDialogoCancelarEdicao();
         } else
 
-        // Verifica se alguma nota está selecionada. Caso esteja, remove o foco da mesma.
-        if (notaSelecionada != null) {
-            removerSelecaoNota();
-        } else
-
         // Executa o comportamento padrão
         {
             super.onBackPressed();
@@ -113,36 +255,108 @@ public class MainActivity extends AppCompatActivity
     }
 
     @Override
-    public void onNotaSelecionada(Nota nota) {
-        // Define a referência para a nota selecionada
-        notaSelecionada = nota;
+    public void onSelecaoAlterada(int quantidade) {
+        if (quantidade == 0) {
+            encerrarModoSelecao();
+            return;
+        }
 
-        // Atualiza o menu de contexto
-        invalidateOptionsMenu();
+        // Exibe o modo de ação com a quantidade de notas selecionadas
+        if (modoSelecao == null) {
+            modoSelecao = startSupportActionMode(callbackModoSelecao);
+            if (modoSelecao == null) return;
+        }
+        modoSelecao.setTitle(getResources().getQuantityString(R.plurals.titulo_notas_selecionadas, quantidade, quantidade));
+        modoSelecao.invalidate();
     }
 
     @Override
-    public void onEdicaoConcluida(Nota nota, boolean novaNota) {
+    public void onEdicaoConcluida(Nota nota, boolean sucesso) {
+        // A nota é gravada pelo próprio fragmento, que salva as alterações automaticamente
+        concluirEdicao(sucesso);
+    }
 
-        // Insere ou atualiza a nota no banco de dados
-        if (novaNota ? notasDAO.inserir(nota) : notasDAO.update(nota) > 0) {
+    @Override
+    public void onEdicaoCancelada() {
+        mostrarDialogoCancelarEdicao();
+    }
+
+    /**
+     * Retorna para a lista de notas após a gravação da nota editada, ou exibe uma mensagem de erro
+     * caso a gravação tenha falhado. Caso a gravação seja concluída depois de o estado da activity
+     * ter sido salvo (a activity foi pausada durante a gravação), o retorno é adiado até que ela
+     * seja retomada, pois a pilha de fragmentos não pode ser alterada nesse intervalo.
+     *
+     * @param sucesso {@code true} caso a nota tenha sido gravada no banco de dados.
+     */
+    private void concluirEdicao(boolean sucesso) {
+        if (sucesso && estadoSalvo) {
+            retornoPendente = true;
+        } else if (sucesso) {
             // Retorna para o fragmento anterior
-            getFragmentManager().popBackStackImmediate();
+            MetricasInterface.getInstance().iniciarTransicao("listarNotas");
+            Trace.beginSection("MainActivity.concluirEdicao");
+            try {
+                getFragmentManager().popBackStackImmediate();
+            } finally {
+                Trace.endSection();
+            }
 
             // Mostra o botão de ação flutuante
             fab.show();
 
-            // Atualiza a lista de notas
-            atualizarListaNotas();
+            // A lista de notas é atualizada pelo fragmento, que é notificado das alterações
         } else {
             // Falha ao salvar alterações no banco de dados
             Toast.makeText(this, R.string.erro_salvar_nota, Toast.LENGTH_LONG).show();
         }
     }
 
-    @Override
-    public void onEdicaoCancelada() {
-        mostrarDialogoCancelarEdicao();
+    /**
+     * Configura a {@link SearchView} do item de busca: o texto digitado é buscado pelo
+     * {@link ListarNotasFragment}, e a busca é encerrada quando a view é recolhida. Caso o fragmento
+     * tenha sido restaurado com uma busca em andamento, a view é expandida com o texto buscado.
+     *
+     * @param itemBuscar o item de menu {@code action_buscar}.
+     */
+    private void prepararBusca(MenuItem itemBuscar) {
+        final SearchView searchView = (SearchView) MenuItemCompat.getActionView(itemBuscar);
+        searchView.setQueryHint(getString(R.string.hint_buscar_notas));
+
+        final String termo = listarNotasFragment != null ? listarNotasFragment.getTermoBusca() : null;
+        if (termo != null) {
+            MenuItemCompat.expandActionView(itemBuscar);
+            searchView.setQuery(termo, false);
+        }
+
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                listarNotasFragment.buscar(query);
+                // Oculta o teclado para exibir os resultados
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                listarNotasFragment.buscar(newText);
+                return true;
+            }
+        });
+
+        MenuItemCompat.setOnActionExpandListener(itemBuscar, new MenuItemCompat.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                listarNotasFragment.encerrarBusca();
+                return true;
+            }
+        });
     }
 
     /**
@@ -180,11 +394,9 @@ public class MainActivity extends AppCompatActivity
             return;
         }
 
-        // Consulta as notas no banco de dados local
-        ArrayList<Nota> notas = notasDAO.listar();
-
-        // Cria o fragmento de lista de notas para ser adicionado ao layout
-        listarNotasFragment = ListarNotasFragment.newInstance(notas);
+        // Cria o fragmento de lista de notas, que exibirá as notas em páginas ou, caso sejam
+        // muitas, diretamente de um cursor
+        listarNotasFragment = ListarNotasFragment.newInstance();
 
         // Adiciona o fragmento ao 'fragment_container' (FrameLayout)
         getFragmentManager().beginTransaction()
@@ -194,23 +406,68 @@ public class MainActivity extends AppCompatActivity
     }
 
     private void prepararFragmentoEditarNota(boolean novaNota) {
+        Trace.beginSection("MainActivity.prepararFragmentoEditarNota");
+        try {
+            prepararFragmentoEditarNota(novaNota, getAdapterNotas().getIdsSelecionados());
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Exibe o {@link EditarNotaFragment} para uma nova nota ou para a nota selecionada, carregando
+     * o conteúdo completo caso a lista contenha somente a prévia (ou, no modo por cursor, nenhuma
+     * nota em memória).
+     *
+     * @param novaNota {@code true} para criar uma nova nota.
+     * @param idsSelecionados os {@code ids} das notas selecionadas; somente uma nota pode ser editada.
+     */
+    private void prepararFragmentoEditarNota(boolean novaNota, long[] idsSelecionados) {
         // Verifica se a activity hospeda o contâiner do fragmento
         if (findViewById(R.id.fragment_container) == null) return;
 
-        Nota nota = notaSelecionada;
-
         // Verifica se a nota que será editada é válida
-        if (novaNota || notaSelecionada == null) {
-            nota = new Nota();
+        if (novaNota || idsSelecionados.length != 1) {
+            encerrarModoSelecao();
+            exibirFragmentoEditarNota(new Nota(), true);
+            return;
         }
+        final long id = idsSelecionados[0];
+        final Nota nota = getAdapterNotas().getNota(id);
 
-        // Remove a seleção da nota anterior
-        removerSelecaoNota();
+        // Remove a seleção da nota editada
+        encerrarModoSelecao();
+
+        if (nota != null && !nota.isParcial()) {
+            exibirFragmentoEditarNota(nota, false);
+            return;
+        }
+
+        // A lista contém somente a prévia do conteúdo; carrega a nota completa antes da edição
+        notasDAO.buscarPorId(id, new NotasDAOAssincrono.Callback<Nota>() {
+            @Override
+            public void onConcluido(Nota completa) {
+                if (completa != null) {
+                    exibirFragmentoEditarNota(completa, false);
+                } else {
+                    Toast.makeText(MainActivity.this, R.string.erro_carregar_nota, Toast.LENGTH_LONG).show();
+                }
+            }
+        });
+    }
 
+    /**
+     * Exibe o {@link EditarNotaFragment} para a nota informada.
+     *
+     * @param nota a nota a ser editada, com o conteúdo completo.
+     * @param novaNota {@code true} caso a nota ainda não exista no banco de dados.
+     */
+    private void exibirFragmentoEditarNota(Nota nota, boolean novaNota) {
         // Cria o fragmento de edição de nota para ser adicionado ao layout
         EditarNotaFragment editarNotaFragment = EditarNotaFragment.newInstance(nota, novaNota);
 
-        // Substitui o fragmento
+        // Substitui o fragmento; a transição é concluída quando o novo fragmento for desenhado
+        MetricasInterface.getInstance().iniciarTransicao("editarNota");
         getFragmentManager().beginTransaction()
                 .replace(R.id.fragment_container, editarNotaFragment)
                 .addToBackStack(EditarNotaFragment.class.getName())
@@ -221,45 +478,119 @@ public class MainActivity extends AppCompatActivity
     }
 
     /**
-     * Consulta a lista de notas no banco de dados e atualiza o adaptador do recycler view.
+     * Exclui todas as notas selecionadas em uma única operação em lote. O fragmento é notificado
+     * uma única vez com os {@code ids} excluídos, removendo-os da lista e da seleção.
+     *
+     * @see NotasDAO#deleteTodas(long[])
      */
-    private void atualizarListaNotas() {
-        // Consulta as notas no banco de dados local
-        ArrayList<Nota> notas = notasDAO.listar();
+    private void excluirNotasSelecionadas() {
+        final long[] ids = getAdapterNotas().getIdsSelecionados();
+        if (ids.length == 0) return;
 
-        // Atualiza a lista de notas utilizada pelo adapter
-        listarNotasFragment.getAdapter().setNotas(notas);
+        notasDAO.deleteTodas(ids, new NotasDAOAssincrono.Callback<ResultadoLote>() {
+            @Override
+            public void onConcluido(ResultadoLote resultado) {
+                if (resultado.getQuantidadeFalhas() == 0) {
+                    encerrarModoSelecao();
+                    return;
+                }
+
+                // Mantém selecionadas somente as notas que não foram excluídas
+                final long[] falhas = new long[resultado.getQuantidadeFalhas()];
+                for (int i = 0, j = 0; i < ids.length; i++) {
+                    if (!resultado.isSucesso(i)) falhas[j++] = ids[i];
+                }
+                getAdapterNotas().setIdsSelecionados(falhas);
+                onSelecaoAlterada(falhas.length);
+                Toast.makeText(MainActivity.this, R.string.erro_excluir_notas, Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     /**
-     * Exclui a nota que está selecionada no momento.
+     * Encerra o {@link #modoSelecao}, caso exibido, removendo a seleção de notas.
      */
-    private void excluirNotaSelecionada() {
-        if (notaSelecionada == null) return;
-
-        if (notasDAO.delete(notaSelecionada) > 0) {
-            removerSelecaoNota();
-            atualizarListaNotas();
+    private void encerrarModoSelecao() {
+        if (modoSelecao != null) {
+            modoSelecao.finish();
         } else {
-            // Mostra mensagem de erro
-            Toast.makeText(this, R.string.erro_salvar_nota, Toast.LENGTH_LONG).show();
+            getAdapterNotas().limparSelecao();
         }
     }
 
     /**
-     * Define como {@code null} o valor da variável {@link #notaSelecionada}; remove o destaque da
-     * nota selecionada no {@code RecyclerView}; e atualiza o menu de contexto.
+     * @return o adaptador da lista de notas exibida pelo {@link #listarNotasFragment}.
      */
-    private void removerSelecaoNota() {
-        notaSelecionada = null;                                     // Referência da Activity
-        listarNotasFragment.getAdapter().setNotaSelecionada(null);  // Referência do Adapter
-        invalidateOptionsMenu();                                    // Atualiza o menu de contexto
+    private NotasRecyclerViewAdapter getAdapterNotas() {
+        return listarNotasFragment.getAdapter();
+    }
+
+    /**
+     * Exibe um diálogo questionando se o usuário deseja substituir as notas pelas da cópia de
+     * segurança mais recente. Disponível somente com a lista de notas exibida, de modo que nenhuma
+     * nota esteja em edição.
+     */
+    private void mostrarDialogoRestaurarBackup() {
+        if (getFragmentManager().findFragmentById(R.id.fragment_container) != listarNotasFragment) return;
+
+        final File[] copias = BackupBanco.getInstance(this).listarCopias();
+        if (copias.length == 0) {
+            Toast.makeText(this, R.string.erro_sem_backup, Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        new AlertDialog.Builder(this)
+                .setMessage(R.string.msg_restaurar_backup)
+                .setPositiveButton(android.R.string.yes, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        restaurarBackup(copias[0]);
+                    }
+                })
+                .setNegativeButton(android.R.string.no, null)
+                .show();
+    }
+
+    /**
+     * Substitui o banco de dados pela {@code copia} e exibe novamente as notas. O cursor da lista,
+     * que mantém uma referência para a conexão, é fechado antes, e a restauração é executada na
+     * thread de escrita do banco de dados, após as escritas já solicitadas.
+     *
+     * @param copia a cópia de segurança a ser restaurada.
+     * @see BackupBanco#restaurar(File)
+     */
+    private void restaurarBackup(final File copia) {
+        encerrarModoSelecao();
+        listarNotasFragment.liberarCursor();
+
+        final BackupBanco backup = BackupBanco.getInstance(this);
+        notasDAO.executarEscrita(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                try {
+                    backup.restaurar(copia);
+                    return true;
+                } catch (IOException ex) {
+                    Log.e(TAG, "Não foi possível restaurar a cópia " + copia, ex);
+                    return false;
+                }
+            }
+        }, new NotasDAOAssincrono.Callback<Boolean>() {
+            @Override
+            public void onConcluido(Boolean sucesso) {
+                // Exibe as notas restauradas ou, em caso de falha, novamente as atuais
+                listarNotasFragment.escolherModoExibicao();
+                Toast.makeText(MainActivity.this, sucesso ? R.string.msg_backup_restaurado : R.string.erro_restaurar_backup,
+                        Toast.LENGTH_LONG).show();
+            }
+        });
     }
 
     /**
      * Exibe um diálogo questionando se o usuário deseja realmente cancelar a edição. Caso selecione
-     * sim, a ação de voltar/cancelar é realizada, mostrando o fragmento {@link ListarNotasFragment}.
-     * Caso o usuário deseje continuar editando a nota, nenhuma ação é executada.
+     * sim, as alterações salvas automaticamente são desfeitas e a ação de voltar/cancelar é
+     * realizada, mostrando o fragmento {@link ListarNotasFragment}. Caso o usuário deseje continuar
+     * editando a nota, nenhuma ação é executada.
      */
     private void mostrarDialogoCancelarEdicao() {
         new AlertDialog.Builder(this)
@@ -267,6 +598,12 @@ public class MainActivity extends AppCompatActivity
                 .setPositiveButton(android.R.string.yes, new DialogInterface.OnClickListener() {
                     @Override
                     public void onClick(DialogInterface dialog, int which) {
+                        // Desfaz as alterações já salvas automaticamente
+                        final Fragment fragmento = getFragmentManager().findFragmentById(R.id.fragment_container);
+                        if (fragmento instanceof EditarNotaFragment) {
+                            ((EditarNotaFragment) fragmento).descartarAlteracoes();
+                        }
+
                         // Retorna para o fragmento anterior
                         getFragmentManager().popBackStack();
                         // Exibe o botão de ação flutuante
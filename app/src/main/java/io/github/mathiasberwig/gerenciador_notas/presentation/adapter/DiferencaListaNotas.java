@@ -0,0 +1,220 @@
+package io.github.mathiasberwig.gerenciador_notas.presentation.adapter;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+/**
+ * Conjunto de operações (inserção, remoção, movimentação e alteração) que transforma uma lista de
+ * {@link Nota notas} em outra, identificando as notas pelo {@code id}. O cálculo não depende da
+ * interface gráfica e pode ser executado fora da thread principal; as operações são então
+ * aplicadas ao adaptador por {@link #aplicar(RecyclerView.Adapter)}, que emite notificações
+ * específicas em vez de {@code notifyDataSetChanged()}.
+ */
+public class DiferencaListaNotas {
+
+    // Tipos de operação
+    static final int INSERCAO = 0;
+    static final int REMOCAO = 1;
+    static final int MOVIMENTACAO = 2;
+    static final int ALTERACAO = 3;
+
+    /**
+     * Quantidade máxima de movimentações antes de desistir do cálculo. Cada movimentação requer
+     * uma busca linear; listas muito reordenadas são atualizadas integralmente.
+     */
+    private static final int MAX_MOVIMENTACOES = 64;
+
+    /**
+     * Instância que indica que a lista deve ser atualizada integralmente.
+     */
+    private static final DiferencaListaNotas COMPLETA = new DiferencaListaNotas(null, 0);
+
+    /**
+     * Operações codificadas em trios {@code [tipo, posição, argumento]}, em ordem de aplicação. O
+     * argumento é a quantidade de itens para inserções, remoções e alterações, e a posição de
+     * destino para movimentações. {@code null} indica atualização integral.
+     */
+    private final int[] operacoes;
+
+    /**
+     * Quantidade de valores utilizados em {@link #operacoes}.
+     */
+    private final int tamanho;
+
+    private DiferencaListaNotas(int[] operacoes, int tamanho) {
+        this.operacoes = operacoes;
+        this.tamanho = tamanho;
+    }
+
+    /**
+     * Calcula as operações que transformam a lista {@code antiga} na lista {@code nova}. As listas
+     * não são modificadas.
+     *
+     * @param antiga a lista exibida atualmente.
+     * @param nova a lista que passará a ser exibida.
+     * @return a diferença entre as listas.
+     */
+    public static DiferencaListaNotas calcular(List<Nota> antiga, List<Nota> nova) {
+        if (antiga.isEmpty() || nova.isEmpty()) {
+            return COMPLETA;
+        }
+
+        Construtor construtor = new Construtor();
+
+        // Identifica as notas da nova lista
+        HashSet<Long> idsNovos = new HashSet<>(nova.size() * 2);
+        for (Nota nota : nova) {
+            idsNovos.add(nota.getId());
+        }
+
+        // Remove, do fim para o início, as notas que não existem na nova lista
+        ArrayList<Nota> atual = new ArrayList<>(antiga);
+        for (int i = atual.size() - 1; i >= 0; i--) {
+            if (!idsNovos.contains(atual.get(i).getId())) {
+                atual.remove(i);
+                construtor.adicionar(REMOCAO, i);
+            }
+        }
+
+        // Percorre a nova lista, inserindo ou trazendo para a posição cada nota
+        HashMap<Long, Nota> restantes = new HashMap<>(atual.size() * 2);
+        for (Nota nota : atual) {
+            restantes.put(nota.getId(), nota);
+        }
+        int movimentacoes = 0;
+        for (int i = 0; i < nova.size(); i++) {
+            final Nota nota = nova.get(i);
+            final long id = nota.getId();
+            final Nota anterior = i < atual.size() ? atual.get(i) : null;
+
+            if (anterior != null && anterior.getId() == id) {
+                // Mesma posição: verifica se o conteúdo foi alterado
+                if (!anterior.equals(nota)) {
+                    construtor.adicionar(ALTERACAO, i);
+                }
+            } else if (restantes.containsKey(id)) {
+                // A nota existe mais adiante na lista atual: move para esta posição
+                if (++movimentacoes > MAX_MOVIMENTACOES) {
+                    return COMPLETA;
+                }
+                int origem = i + 1;
+                while (atual.get(origem).getId() != id) {
+                    origem++;
+                }
+                Nota movida = atual.remove(origem);
+                atual.add(i, movida);
+                construtor.adicionarMovimentacao(origem, i);
+                if (!movida.equals(nota)) {
+                    construtor.adicionar(ALTERACAO, i);
+                }
+            } else {
+                atual.add(i, nota);
+                construtor.adicionar(INSERCAO, i);
+            }
+            restantes.remove(id);
+        }
+
+        return construtor.construir();
+    }
+
+    /**
+     * @return {@code true} caso a lista deva ser atualizada integralmente.
+     */
+    public boolean isCompleta() {
+        return operacoes == null;
+    }
+
+    /**
+     * @return {@code true} caso as listas sejam idênticas.
+     */
+    public boolean isVazia() {
+        return operacoes != null && tamanho == 0;
+    }
+
+    /**
+     * Notifica o {@code adapter} de cada operação, na ordem em que foram calculadas. Deve ser
+     * chamado na thread principal, imediatamente após o adaptador passar a utilizar a nova lista.
+     *
+     * @param adapter o adaptador que exibe as notas.
+     */
+    public void aplicar(RecyclerView.Adapter<?> adapter) {
+        if (operacoes == null) {
+            adapter.notifyDataSetChanged();
+            return;
+        }
+
+        for (int i = 0; i < tamanho; i += 3) {
+            final int posicao = operacoes[i + 1];
+            final int argumento = operacoes[i + 2];
+            switch (operacoes[i]) {
+                case INSERCAO:
+                    adapter.notifyItemRangeInserted(posicao, argumento);
+                    break;
+                case REMOCAO:
+                    adapter.notifyItemRangeRemoved(posicao, argumento);
+                    break;
+                case MOVIMENTACAO:
+                    adapter.notifyItemMoved(posicao, argumento);
+                    break;
+                case ALTERACAO:
+                    adapter.notifyItemRangeChanged(posicao, argumento);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Acumula as operações, agrupando em intervalos as operações consecutivas do mesmo tipo.
+     */
+    private static class Construtor {
+        private int[] operacoes = new int[48];
+        private int tamanho;
+
+        /**
+         * Adiciona uma inserção, remoção ou alteração de um item na {@code posicao}.
+         */
+        void adicionar(int tipo, int posicao) {
+            if (tamanho > 0 && operacoes[tamanho - 3] == tipo) {
+                final int inicio = operacoes[tamanho - 2];
+                final int quantidade = operacoes[tamanho - 1];
+                if (tipo == REMOCAO && posicao == inicio - 1) {
+                    // Remoções são calculadas do fim para o início
+                    operacoes[tamanho - 2] = posicao;
+                    operacoes[tamanho - 1] = quantidade + 1;
+                    return;
+                } else if (tipo != REMOCAO && posicao == inicio + quantidade) {
+                    operacoes[tamanho - 1] = quantidade + 1;
+                    return;
+                }
+            }
+            adicionar(tipo, posicao, 1);
+        }
+
+        /**
+         * Adiciona a movimentação de um item da posição {@code origem} para {@code destino}.
+         */
+        void adicionarMovimentacao(int origem, int destino) {
+            adicionar(MOVIMENTACAO, origem, destino);
+        }
+
+        private void adicionar(int tipo, int posicao, int argumento) {
+            if (tamanho + 3 > operacoes.length) {
+                operacoes = Arrays.copyOf(operacoes, operacoes.length * 2);
+            }
+            operacoes[tamanho++] = tipo;
+            operacoes[tamanho++] = posicao;
+            operacoes[tamanho++] = argumento;
+        }
+
+        DiferencaListaNotas construir() {
+            return new DiferencaListaNotas(operacoes, tamanho);
+        }
+    }
+}
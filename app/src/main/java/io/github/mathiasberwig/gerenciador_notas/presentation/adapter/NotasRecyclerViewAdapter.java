@@ -1,116 +1,706 @@
 package io.github.mathiasberwig.gerenciador_notas.presentation.adapter;
 
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
 import android.graphics.Color;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.RecyclerView;
-import android.util.Log;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+import android.util.LongSparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import io.github.mathiasberwig.gerenciador_notas.R;
+import io.github.mathiasberwig.gerenciador_notas.data.dao.NotasDAO;
 import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+import io.github.mathiasberwig.gerenciador_notas.data.model.ResultadoBusca;
+import io.github.mathiasberwig.gerenciador_notas.presentation.MetricasInterface;
 import io.github.mathiasberwig.gerenciador_notas.presentation.fragment.ListarNotasFragment;
 
 public class NotasRecyclerViewAdapter extends RecyclerView.Adapter<NotasRecyclerViewAdapter.ViewHolder> {
     private static final String TAG = NotasRecyclerViewAdapter.class.getName();
 
     /**
-     * Lista de notas que serão exibidas.
+     * Quantidade máxima de notas mantidas em memória. Ao carregar uma página em uma das pontas da
+     * lista, as notas excedentes da ponta oposta são descartadas, de forma que a memória utilizada
+     * fique limitada à janela visível mais uma margem, independente do tamanho da tabela.
+     */
+    public static final int MAX_NOTAS_JANELA = 200;
+
+    /**
+     * Posições além das vinculadas verificadas ao atualizar uma nota no modo por cursor: as views
+     * mantidas em cache pela {@code RecyclerView} fora da tela (duas, por padrão).
+     */
+    private static final int MARGEM_VIEWS_CACHE = 2;
+
+    /**
+     * Payload das notificações de alteração que afetam somente o destaque de seleção.
+     */
+    private static final Object PAYLOAD_SELECAO = new Object();
+
+    /**
+     * Executor no qual as {@link DiferencaListaNotas diferenças} entre listas são calculadas.
+     */
+    private static final ExecutorService EXECUTOR_DIFERENCAS = Executors.newSingleThreadExecutor();
+
+    /**
+     * Handler da thread principal, na qual as diferenças calculadas são aplicadas.
+     */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Lista de notas que serão exibidas, ordenadas pelo {@code id}.
      */
     private ArrayList<Nota> notas;
 
+    /**
+     * Indica se a primeira nota da {@link #notas lista} é também a primeira do banco de dados.
+     */
+    private boolean inicioAlcancado = true;
+
+    /**
+     * Indica se a última nota da {@link #notas lista} é também a última do banco de dados.
+     */
+    private boolean fimAlcancado = true;
+
     /**
      * Listener para callback de eventos de interação.
      */
     private final ListarNotasFragment.OnNotaSelecionadaListener notaSelecionadaListener;
 
     /**
-     * Armazena a {@link Nota} selecionada, caso exista.
+     * Os {@code ids} das notas selecionadas. Por serem identificadas pelo {@code id}, as notas
+     * permanecem selecionadas quando a lista é recarregada ou paginada.
+     */
+    private final SelecaoNotas selecao = new SelecaoNotas();
+
+    /**
+     * Cursor utilizado no modo de exibição por cursor, ou {@code null} caso as notas sejam exibidas
+     * a partir da {@link #notas lista}.
+     *
+     * @see #trocarCursor(Cursor)
+     */
+    private Cursor cursor;
+
+    /**
+     * Maior {@code id} entre as notas do {@link #cursor}. Notas inseridas com {@code id} maior são
+     * exibidas após as do cursor.
+     */
+    private long ultimoIdCursor;
+
+    /**
+     * Prévias das notas do {@link #cursor} atualizadas depois da sua abertura, indexadas pelo
+     * {@code id}, exibidas no lugar das linhas do cursor.
+     */
+    private final LongSparseArray<Nota> atualizadasCursor = new LongSparseArray<>();
+
+    /**
+     * Prévias das notas inseridas depois da abertura do {@link #cursor}, em ordem crescente de
+     * {@code id}, exibidas após as notas do cursor.
+     */
+    private final ArrayList<Nota> inseridasCursor = new ArrayList<>();
+
+    /**
+     * A {@code RecyclerView} à qual o adaptador está associado, ou {@code null}.
+     */
+    private RecyclerView recyclerView;
+
+    /**
+     * Incrementado a cada alteração da {@link #notas lista}, permitindo identificar diferenças
+     * calculadas sobre uma versão desatualizada.
+     */
+    private int versaoNotas;
+
+    /**
+     * Identifica a última solicitação de {@link #setNotas(ArrayList, boolean, boolean)}.
+     */
+    private int ultimaSolicitacao;
+
+    /**
+     * Trechos destacados dos resultados de busca, indexados pelo {@code id} da nota, ou {@code null}
+     * caso as notas não sejam resultados de uma busca.
+     *
+     * @see #setResultadosBusca(List)
      */
-    private Nota notaSelecionada;
+    private LongSparseArray<CharSequence> trechos;
+
+    // Índices das colunas do cursor, obtidos uma única vez em trocarCursor
+    private int colunaId;
+    private int colunaTitulo;
+    private int colunaConteudo;
+
+    /**
+     * Métricas de criação e vinculação dos holders.
+     */
+    private final MetricasInterface metricas = MetricasInterface.getInstance();
 
     public NotasRecyclerViewAdapter(ArrayList<Nota> items, ListarNotasFragment.OnNotaSelecionadaListener listener) {
         notas = items == null ? new ArrayList<Nota>() : items;
         notaSelecionadaListener = listener;
     }
 
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        this.recyclerView = recyclerView;
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        this.recyclerView = null;
+    }
+
     @Override
     public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.adapter_nota, parent, false);
-        return new ViewHolder(view);
+        final long inicio = metricas.iniciarCriacao();
+        try {
+            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.adapter_nota, parent, false);
+            return new ViewHolder(view);
+        } finally {
+            metricas.registrarCriacao(inicio);
+        }
     }
 
     @Override
-    public void onBindViewHolder(final ViewHolder holder, int position) {
-        // Define a nota e demais informações vinculadas à view
-        holder.nota = notas.get(position);
-        holder.tituloView.setText(notas.get(position).getTitulo());
-        holder.conteudoView.setText(notas.get(position).getConteudo());
-
-        // Define o listener para toques longos na view
-        holder.cardView.setOnLongClickListener(new View.OnLongClickListener() {
-            @Override
-            public boolean onLongClick(View v) {
-                if (notaSelecionadaListener != null) {
-                    // Define a nota como selecionada
-                    setNotaSelecionada(holder.nota);
+    public void onBindViewHolder(ViewHolder holder, int position, List<Object> payloads) {
+        // A RecyclerView sempre vincula por este método, que é o único medido
+        final long inicio = metricas.iniciarBind();
+        try {
+            // Alterações somente de seleção não precisam vincular novamente o título e o conteúdo
+            if (!payloads.isEmpty() && somenteSelecao(payloads)) {
+                holder.destacar(isSelecionada(holder));
+            } else {
+                onBindViewHolder(holder, position);
+            }
+        } finally {
+            metricas.registrarBind(inicio);
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        // Os listeners de toque são definidos uma única vez, na criação do holder, e a seleção é
+        // verificada pelo id: vincular novamente um holder não aloca objetos
+        if (cursor == null) {
+            vincularNota(holder, notas.get(position));
+        } else if (position >= cursor.getCount()) {
+            vincularNota(holder, inseridasCursor.get(position - cursor.getCount()));
+        } else {
+            vincularCursor(holder, position);
+        }
 
-                    // Notifica a activity que um item foi selecionado
-                    notaSelecionadaListener.onNotaSelecionada(holder.nota);
+        // Define a cor de background do card view de acordo com a nota selecionada
+        holder.destacar(isSelecionada(holder));
+    }
+
+    @Override
+    public int getItemCount() {
+        return cursor != null ? cursor.getCount() + inseridasCursor.size() : notas.size();
+    }
+
+    /**
+     * Vincula o {@code holder} à {@code nota} e, no modo de busca, ao trecho encontrado.
+     */
+    private void vincularNota(ViewHolder holder, Nota nota) {
+        holder.nota = nota;
+        holder.idNota = nota.getId();
+        holder.tituloView.setText(nota.getTitulo());
+        final CharSequence trecho = trechos != null ? trechos.get(holder.idNota) : null;
+        holder.conteudoView.setText(trecho != null ? trecho : nota.getConteudo());
+    }
+
+    /**
+     * Vincula o {@code holder} à linha {@code position} do {@link #cursor}. Título e conteúdo são
+     * copiados da {@code CursorWindow} para os buffers do próprio holder, sem criar {@link String
+     * Strings} nem instâncias de {@link Nota}. Notas atualizadas depois da abertura do cursor são
+     * vinculadas a partir de {@link #atualizadasCursor}.
+     *
+     * @param holder o holder que receberá as informações.
+     * @param position a posição da nota no cursor.
+     */
+    private void vincularCursor(ViewHolder holder, int position) {
+        cursor.moveToPosition(position);
+        final long id = cursor.getLong(colunaId);
+        final Nota atualizada = atualizadasCursor.size() > 0 ? atualizadasCursor.get(id) : null;
+        if (atualizada != null) {
+            vincularNota(holder, atualizada);
+            return;
+        }
+        holder.nota = null;
+        holder.idNota = id;
+
+        cursor.copyStringToBuffer(colunaTitulo, holder.bufferTitulo);
+        holder.tituloView.setText(holder.bufferTitulo.data, 0, holder.bufferTitulo.sizeCopied);
+
+        cursor.copyStringToBuffer(colunaConteudo, holder.bufferConteudo);
+        holder.conteudoView.setText(holder.bufferConteudo.data, 0, holder.bufferConteudo.sizeCopied);
+    }
+
+    /**
+     * @param payloads os payloads de uma notificação de alteração.
+     * @return {@code true} caso todos os payloads sejam {@link #PAYLOAD_SELECAO}.
+     */
+    private static boolean somenteSelecao(List<Object> payloads) {
+        // Percorre por índice para não alocar um Iterator a cada vinculação
+        for (int i = 0, n = payloads.size(); i < n; i++) {
+            if (payloads.get(i) != PAYLOAD_SELECAO) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Verifica se a nota exibida pelo {@code holder} está na {@link #selecao}.
+     *
+     * @param holder o holder da nota.
+     * @return {@code true} caso a nota esteja selecionada.
+     */
+    private boolean isSelecionada(ViewHolder holder) {
+        return selecao.contem(holder.idNota);
+    }
+
+    /**
+     * Inverte a seleção da nota exibida pelo {@code holder}, atualiza o seu destaque e notifica o
+     * {@link #notaSelecionadaListener}.
+     *
+     * @param holder o holder da nota tocada.
+     */
+    private void alternarSelecao(ViewHolder holder) {
+        selecao.alternar(holder.idNota);
+        final int posicao = holder.getAdapterPosition();
+        if (posicao != RecyclerView.NO_POSITION) {
+            notifyItemChanged(posicao, PAYLOAD_SELECAO);
+        }
+        if (notaSelecionadaListener != null) {
+            notaSelecionadaListener.onSelecaoAlterada(selecao.getTamanho());
+        }
+    }
+
+    /**
+     * Ativa o modo de exibição por cursor, no qual os holders são vinculados diretamente às linhas
+     * do {@code cursor} em vez da {@link #notas lista}. O cursor anterior, caso exista, é fechado,
+     * e as alterações aplicadas sobre ele são descartadas.
+     * <p/>
+     * O maior {@code id} do cursor é lido da coluna {@link NotasDAO.Notas#ULTIMO_ID} da primeira
+     * linha ou, caso o cursor não a possua, da última linha.
+     *
+     * @param novoCursor o cursor de notas obtido em
+     *                   {@link io.github.mathiasberwig.gerenciador_notas.data.dao.NotasDAO#abrirCursor()},
+     *                   ou {@code null} para fechar o cursor atual e retornar à exibição da lista.
+     */
+    public void trocarCursor(Cursor novoCursor) {
+        if (novoCursor == cursor) return;
+
+        final Cursor anterior = cursor;
+        cursor = novoCursor;
+        if (cursor != null) {
+            colunaId = cursor.getColumnIndexOrThrow(NotasDAO.Notas._ID);
+            colunaTitulo = cursor.getColumnIndexOrThrow(NotasDAO.Notas.TITULO);
+            colunaConteudo = cursor.getColumnIndexOrThrow(NotasDAO.Notas.CONTEUDO);
+            final int colunaUltimoId = cursor.getColumnIndex(NotasDAO.Notas.ULTIMO_ID);
+            if (colunaUltimoId >= 0) {
+                ultimoIdCursor = cursor.moveToFirst() ? cursor.getLong(colunaUltimoId) : 0;
+            } else {
+                ultimoIdCursor = cursor.moveToLast() ? cursor.getLong(colunaId) : 0;
+            }
+            notas = new ArrayList<>();
+            trechos = null;
+            inicioAlcancado = true;
+            fimAlcancado = true;
+        }
+        atualizadasCursor.clear();
+        inseridasCursor.clear();
+        versaoNotas++;
+        notifyDataSetChanged();
+
+        if (anterior != null) {
+            anterior.close();
+        }
+    }
+
+    /**
+     * @return {@code true} caso as notas sejam exibidas a partir de um cursor.
+     * @see #trocarCursor(Cursor)
+     */
+    public boolean isModoCursor() {
+        return cursor != null;
+    }
+
+    /**
+     * @return a quantidade de notas selecionadas.
+     */
+    public int getQuantidadeSelecionadas() {
+        return selecao.getTamanho();
+    }
+
+    /**
+     * @return uma cópia dos {@code ids} das notas selecionadas, em ordem crescente.
+     */
+    public long[] getIdsSelecionados() {
+        return selecao.paraVetor();
+    }
+
+    /**
+     * Substitui a seleção pelas notas com os {@code ids} informados, sem notificar o
+     * {@link #notaSelecionadaListener}. As notas não precisam estar carregadas: serão destacadas
+     * quando forem exibidas.
+     *
+     * @param ids os {@code ids} das notas selecionadas.
+     */
+    public void setIdsSelecionados(long[] ids) {
+        selecao.definir(ids);
+        atualizarDestaques();
+    }
+
+    /**
+     * Remove todas as notas da seleção, sem notificar o {@link #notaSelecionadaListener}.
+     */
+    public void limparSelecao() {
+        if (selecao.isVazia()) return;
+        selecao.limpar();
+        atualizarDestaques();
+    }
+
+    /**
+     * Atualiza somente o destaque de todas as notas exibidas; as demais são destacadas ao serem
+     * vinculadas.
+     */
+    private void atualizarDestaques() {
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECAO);
+    }
+
+    /**
+     * Obtém a nota carregada com o {@code id} informado. No modo por cursor as notas não são
+     * mantidas em memória e devem ser consultadas no banco de dados.
+     *
+     * @param id o {@code id} da nota.
+     * @return a nota, possivelmente {@link Nota#isParcial() parcial}, ou {@code null} caso não
+     * esteja carregada.
+     */
+    public Nota getNota(long id) {
+        if (cursor != null) return null;
+
+        final int indice = indiceDe(id);
+        return indice >= 0 ? notas.get(indice) : null;
+    }
 
-                    return true;
+    /**
+     * Obtém a posição da nota com o {@code id} informado. No modo por cursor a posição não é
+     * localizada, pois exigiria percorrer o cursor.
+     *
+     * @param id o {@code id} da nota.
+     * @return a posição da nota, ou {@link RecyclerView#NO_POSITION} caso não seja encontrada.
+     */
+    public int getPosicao(long id) {
+        if (cursor != null) return RecyclerView.NO_POSITION;
+
+        final int indice = indiceDe(id);
+        return indice >= 0 ? indice : RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Obtém o {@code id} da nota exibida na posição informada.
+     *
+     * @param posicao a posição da nota.
+     * @return o {@code id} da nota.
+     */
+    public long getIdNota(int posicao) {
+        if (cursor != null) {
+            if (posicao >= cursor.getCount()) return inseridasCursor.get(posicao - cursor.getCount()).getId();
+            cursor.moveToPosition(posicao);
+            return cursor.getLong(colunaId);
+        }
+        return notas.get(posicao).getId();
+    }
+
+    /**
+     * Localiza, por busca binária, a nota com o {@code id} informado na {@link #notas lista},
+     * que é mantida em ordem crescente de {@code id}. No modo de busca as notas estão ordenadas
+     * por relevância, e a lista (limitada ao número de resultados) é percorrida.
+     *
+     * @param id o {@code id} da nota.
+     * @return a posição da nota, caso exista; caso contrário, {@code (-(posição de inserção) - 1)},
+     * ou {@code -1} no modo de busca.
+     */
+    private int indiceDe(long id) {
+        if (trechos != null) {
+            for (int i = 0; i < notas.size(); i++) {
+                if (notas.get(i).getId() == id) return i;
+            }
+            return -1;
+        }
+
+        return indiceDe(notas, id);
+    }
+
+    /**
+     * Localiza, por busca binária, a nota com o {@code id} informado em uma lista em ordem
+     * crescente de {@code id}.
+     *
+     * @return a posição da nota, caso exista; caso contrário, {@code (-(posição de inserção) - 1)}.
+     */
+    private static int indiceDe(List<Nota> lista, long id) {
+        int inicio = 0;
+        int fim = lista.size() - 1;
+        while (inicio <= fim) {
+            final int meio = (inicio + fim) >>> 1;
+            final long idMeio = lista.get(meio).getId();
+            if (idMeio < id) {
+                inicio = meio + 1;
+            } else if (idMeio > id) {
+                fim = meio - 1;
+            } else {
+                return meio;
+            }
+        }
+        return -(inicio + 1);
+    }
+
+    /**
+     * Aplica à lista exibida as notas inseridas no banco de dados. Notas cujo {@code id} está fora
+     * da janela carregada são ignoradas, pois serão consultadas junto com a sua página. Assim como
+     * nas listagens, somente a prévia do conteúdo é mantida.
+     * <p/>
+     * No modo por cursor, as notas posteriores à última do cursor são exibidas após ele, sem
+     * consultá-lo novamente; as demais já estão no cursor, aberto depois da inserção, e são
+     * tratadas como atualizações.
+     *
+     * @param inseridas as notas inseridas.
+     * @return {@code false} caso, no modo por cursor, as alterações acumuladas excedam
+     * {@link #MAX_NOTAS_JANELA} e o cursor deva ser aberto novamente.
+     * @see io.github.mathiasberwig.gerenciador_notas.data.dao.OuvinteAlteracoesNotas
+     */
+    public boolean aplicarInsercoes(List<Nota> inseridas) {
+        if (cursor != null) {
+            for (Nota inserida : inseridas) {
+                final Nota nota = NotasDAO.criarPrevia(inserida.getId(), inserida.getTitulo(), inserida.getConteudo());
+                if (nota.getId() <= ultimoIdCursor) {
+                    atualizarNotaCursor(nota);
+                    continue;
+                }
+                final int indice = indiceDe(inseridasCursor, nota.getId());
+                if (indice >= 0) {
+                    inseridasCursor.set(indice, nota);
+                    notifyItemChanged(cursor.getCount() + indice);
+                } else {
+                    inseridasCursor.add(-indice - 1, nota);
+                    notifyItemInserted(cursor.getCount() - indice - 1);
                 }
-                return false;
             }
-        });
+            return inseridasCursor.size() + atualizadasCursor.size() <= MAX_NOTAS_JANELA;
+        }
 
-        // Define o lister para toques na view
-        holder.cardView.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                // Verifica se a nota clicada é a selecionada. Caso não seja, remove a seleção
-                if (!holder.nota.equals(notaSelecionada)) {
-                    setNotaSelecionada(null);
-                    notaSelecionadaListener.onNotaSelecionada(null);
+        for (Nota inserida : inseridas) {
+            final Nota nota = NotasDAO.criarPrevia(inserida.getId(), inserida.getTitulo(), inserida.getConteudo());
+            final int indice = indiceDe(nota.getId());
+            if (indice >= 0) {
+                notas.set(indice, nota);
+                notifyItemChanged(indice);
+                continue;
+            }
+
+            final int posicao = -indice - 1;
+            final boolean depoisDaJanela = posicao == notas.size() && !fimAlcancado;
+            final boolean antesDaJanela = posicao == 0 && !inicioAlcancado;
+            if (depoisDaJanela || antesDaJanela) continue;
+
+            notas.add(posicao, nota);
+            notifyItemInserted(posicao);
+        }
+        versaoNotas++;
+        return true;
+    }
+
+    /**
+     * Aplica à lista exibida as notas atualizadas no banco de dados. No modo por cursor, as prévias
+     * são mantidas em {@link #atualizadasCursor}, sem consultar o cursor novamente.
+     *
+     * @param atualizadas as notas atualizadas.
+     * @return {@code false} caso, no modo por cursor, as alterações acumuladas excedam
+     * {@link #MAX_NOTAS_JANELA} e o cursor deva ser aberto novamente.
+     * @see io.github.mathiasberwig.gerenciador_notas.data.dao.OuvinteAlteracoesNotas
+     */
+    public boolean aplicarAtualizacoes(List<Nota> atualizadas) {
+        if (cursor != null) {
+            for (Nota nota : atualizadas) {
+                final Nota previa = NotasDAO.criarPrevia(nota.getId(), nota.getTitulo(), nota.getConteudo());
+                final int indice = indiceDe(inseridasCursor, previa.getId());
+                if (indice >= 0) {
+                    inseridasCursor.set(indice, previa);
+                    notifyItemChanged(cursor.getCount() + indice);
+                } else if (previa.getId() <= ultimoIdCursor) {
+                    atualizarNotaCursor(previa);
                 }
             }
-        });
+            return inseridasCursor.size() + atualizadasCursor.size() <= MAX_NOTAS_JANELA;
+        }
 
-        // Define a cor de background do card view de acordo com a nota selecionada
-        boolean selecionada = notas.get(position).equals(notaSelecionada);
-        holder.cardView.setCardBackgroundColor(selecionada ? Color.LTGRAY : Color.WHITE);
+        for (Nota nota : atualizadas) {
+            final int indice = indiceDe(nota.getId());
+            if (indice >= 0) {
+                notas.set(indice, NotasDAO.criarPrevia(nota.getId(), nota.getTitulo(), nota.getConteudo()));
+                notifyItemChanged(indice);
+            }
+        }
+        versaoNotas++;
+        return true;
     }
 
-    @Override
-    public int getItemCount() {
-        return notas.size();
+    /**
+     * Remove da lista exibida as notas excluídas do banco de dados.
+     * <p/>
+     * No modo por cursor, somente as notas inseridas depois da abertura do cursor são removidas
+     * sem consultá-lo: o {@code SQLiteCursor} preenche cada {@code CursorWindow} executando a
+     * consulta novamente, de modo que as linhas posteriores a uma nota excluída do cursor mudariam
+     * de posição nas janelas preenchidas depois da exclusão.
+     *
+     * @param ids os {@code id} das notas excluídas.
+     * @return {@code false} caso, no modo por cursor, alguma nota excluída esteja no cursor, que
+     * deve ser aberto novamente.
+     * @see io.github.mathiasberwig.gerenciador_notas.data.dao.OuvinteAlteracoesNotas
+     */
+    public boolean aplicarExclusoes(long[] ids) {
+        boolean aplicadas = true;
+        boolean selecaoAlterada = false;
+        for (long id : ids) {
+            selecaoAlterada |= selecao.remover(id);
+            if (cursor != null) {
+                final int indice = indiceDe(inseridasCursor, id);
+                if (indice >= 0) {
+                    inseridasCursor.remove(indice);
+                    notifyItemRemoved(cursor.getCount() + indice);
+                } else if (id <= ultimoIdCursor) {
+                    atualizadasCursor.remove(id);
+                    aplicadas = false;
+                }
+                continue;
+            }
+
+            final int indice = indiceDe(id);
+            if (indice >= 0) {
+                notas.remove(indice);
+                notifyItemRemoved(indice);
+            }
+        }
+        versaoNotas++;
+
+        // Notas excluídas deixam de estar selecionadas
+        if (selecaoAlterada && notaSelecionadaListener != null) {
+            notaSelecionadaListener.onSelecaoAlterada(selecao.getTamanho());
+        }
+        return aplicadas;
     }
 
     /**
-     * Marca como selecionada a nota informada.
+     * Exibe a prévia atualizada de uma nota do {@link #cursor} e vincula novamente a sua view,
+     * caso esteja vinculada. A posição é procurada somente entre as notas vinculadas e as views em
+     * cache próximas a elas; as demais são vinculadas com a prévia ao serem exibidas.
      *
-     * @param nota A nota que deve receber destaque na lista, ou {@code null} para remover a seleção.
+     * @param previa a prévia da nota atualizada.
      */
-    public void setNotaSelecionada(Nota nota) {
-        if (notas.contains(nota) || nota == null) {
-            notaSelecionada = nota;
-            notifyDataSetChanged();
-        } else {
-            Log.i(TAG, "setNotaSelecionada: A nota informada não pertence à lista de notas.");
+    private void atualizarNotaCursor(Nota previa) {
+        atualizadasCursor.put(previa.getId(), previa);
+        if (recyclerView == null || recyclerView.getChildCount() == 0) return;
+
+        int primeira = Integer.MAX_VALUE;
+        int ultima = -1;
+        for (int i = 0, n = recyclerView.getChildCount(); i < n; i++) {
+            final int posicao = recyclerView.getChildAdapterPosition(recyclerView.getChildAt(i));
+            if (posicao == RecyclerView.NO_POSITION) continue;
+            primeira = Math.min(primeira, posicao);
+            ultima = Math.max(ultima, posicao);
+        }
+        if (ultima < 0) return;
+
+        final int fim = Math.min(ultima + MARGEM_VIEWS_CACHE, cursor.getCount() - 1);
+        for (int posicao = Math.max(primeira - MARGEM_VIEWS_CACHE, 0); posicao <= fim; posicao++) {
+            cursor.moveToPosition(posicao);
+            if (cursor.getLong(colunaId) == previa.getId()) {
+                notifyItemChanged(posicao);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Exibe os resultados de uma busca, na ordem recebida, com os trechos encontrados no lugar do
+     * conteúdo. Enquanto o modo de busca estiver ativo, as notas não são mantidas em ordem de
+     * {@code id}, portanto a aplicação de alterações ({@link #aplicarInsercoes(List)} e demais) não
+     * deve ser utilizada: a busca deve ser refeita.
+     *
+     * @param resultados os resultados obtidos em {@link NotasDAO#buscar(String, int)}.
+     * @see #encerrarBusca()
+     */
+    public void setResultadosBusca(List<ResultadoBusca> resultados) {
+        // Resultados de busca são sempre exibidos a partir de uma lista
+        trocarCursor(null);
+
+        ArrayList<Nota> encontradas = new ArrayList<>(resultados.size());
+        trechos = new LongSparseArray<>(resultados.size());
+        for (ResultadoBusca resultado : resultados) {
+            encontradas.add(resultado.getNota());
+            trechos.put(resultado.getNota().getId(), destacar(resultado.getTrecho()));
         }
+
+        // Invalida diferenças ainda em cálculo para a lista anterior
+        ultimaSolicitacao++;
+        substituirNotas(encontradas, true, true);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Desativa o modo de busca. A lista exibida deve ser substituída em seguida por
+     * {@link #setNotas(ArrayList, boolean, boolean)} ou {@link #trocarCursor(Cursor)}.
+     */
+    public void encerrarBusca() {
+        if (trechos == null) return;
+        trechos = null;
+        ultimaSolicitacao++;
+        substituirNotas(new ArrayList<Nota>(), true, true);
+        notifyDataSetChanged();
     }
 
     /**
-     * Retorna a nota selecionada.
+     * @return {@code true} caso as notas exibidas sejam resultados de uma busca.
+     * @see #setResultadosBusca(List)
+     */
+    public boolean isModoBusca() {
+        return trechos != null;
+    }
+
+    /**
+     * Converte os delimitadores de destaque do {@code trecho} em texto em negrito.
      *
-     * @return A nota selecionada ou {@code null}.
+     * @param trecho o trecho obtido em {@link ResultadoBusca#getTrecho()}.
+     * @return o trecho formatado.
      */
-    public Nota getNotaSelecionada() {
-        return notaSelecionada;
+    private static CharSequence destacar(String trecho) {
+        if (trecho == null) return null;
+        SpannableStringBuilder texto = new SpannableStringBuilder();
+        int inicioDestaque = -1;
+        for (int i = 0; i < trecho.length(); i++) {
+            final char c = trecho.charAt(i);
+            if (c == ResultadoBusca.INICIO_DESTAQUE) {
+                inicioDestaque = texto.length();
+            } else if (c == ResultadoBusca.FIM_DESTAQUE && inicioDestaque >= 0) {
+                texto.setSpan(new StyleSpan(Typeface.BOLD), inicioDestaque, texto.length(),
+                        Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                inicioDestaque = -1;
+            } else {
+                texto.append(c);
+            }
+        }
+        return texto;
     }
 
     /**
@@ -128,23 +718,186 @@ public class NotasRecyclerViewAdapter extends RecyclerView.Adapter<NotasRecycler
      * @param notas lista de {@link Nota Notas} para substituir a variável {@link #notas}.
      */
     public void setNotas(ArrayList<Nota> notas) {
+        setNotas(notas, true, true);
+    }
+
+    /**
+     * Substitui a lista de notas que está sendo exibida por uma janela de notas do banco de dados.
+     *
+     * @param notas lista de {@link Nota Notas} para substituir a variável {@link #notas}.
+     * @param inicioAlcancado {@code true} caso não existam notas anteriores à janela.
+     * @param fimAlcancado {@code true} caso não existam notas posteriores à janela.
+     */
+    public void setNotas(ArrayList<Nota> notas, final boolean inicioAlcancado, final boolean fimAlcancado) {
+        final ArrayList<Nota> novas = notas == null ? new ArrayList<Nota>() : notas;
+        final int solicitacao = ++ultimaSolicitacao;
+
+        if (novas == this.notas || cursor != null || trechos != null || this.notas.isEmpty() || novas.isEmpty()) {
+            // Substituir os resultados de uma busca encerra o modo de busca
+            trechos = null;
+            substituirNotas(novas, inicioAlcancado, fimAlcancado);
+            // Notifica que as notas foram alteradas, solicitando ao adaptador que atualize as
+            // informações na tela (onBindViewHolder)
+            notifyDataSetChanged();
+            return;
+        }
+
+        // Calcula a diferença entre as listas fora da thread principal
+        final int versao = versaoNotas;
+        final ArrayList<Nota> antigas = new ArrayList<>(this.notas);
+        EXECUTOR_DIFERENCAS.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiferencaListaNotas diferenca = DiferencaListaNotas.calcular(antigas, novas);
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Uma solicitação mais recente substituirá a lista
+                        if (solicitacao != ultimaSolicitacao) return;
+
+                        if (versao != versaoNotas) {
+                            // A lista foi alterada durante o cálculo; calcula novamente
+                            setNotas(novas, inicioAlcancado, fimAlcancado);
+                            return;
+                        }
+                        substituirNotas(novas, inicioAlcancado, fimAlcancado);
+                        diferenca.aplicar(NotasRecyclerViewAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Substitui a {@link #notas lista} e os limites da janela exibida, sem notificar o adaptador.
+     */
+    private void substituirNotas(ArrayList<Nota> notas, boolean inicioAlcancado, boolean fimAlcancado) {
         this.notas = notas;
-        // Notifica que as notas foram alteradas, solicitando ao adaptador que atualize as
-        // informações na tela (onBindViewHolder)
-        notifyDataSetChanged();
+        this.inicioAlcancado = inicioAlcancado;
+        this.fimAlcancado = fimAlcancado;
+        versaoNotas++;
     }
 
-    public class ViewHolder extends RecyclerView.ViewHolder {
+    /**
+     * Adiciona uma página de notas ao final da lista. Caso a janela ultrapasse
+     * {@link #MAX_NOTAS_JANELA}, as primeiras notas são descartadas.
+     *
+     * @param pagina as notas posteriores à última nota da lista, em ordem crescente de {@code id}.
+     * @param fimAlcancado {@code true} caso a página contenha a última nota do banco de dados.
+     */
+    public void adicionarNoFim(List<Nota> pagina, boolean fimAlcancado) {
+        this.fimAlcancado = fimAlcancado;
+        if (pagina.isEmpty()) return;
+
+        final int inicio = notas.size();
+        versaoNotas++;
+        notas.addAll(pagina);
+        notifyItemRangeInserted(inicio, pagina.size());
+
+        // Descarta as notas excedentes do início da janela
+        final int excedentes = notas.size() - MAX_NOTAS_JANELA;
+        if (excedentes > 0) {
+            notas.subList(0, excedentes).clear();
+            notifyItemRangeRemoved(0, excedentes);
+            inicioAlcancado = false;
+        }
+    }
+
+    /**
+     * Adiciona uma página de notas ao início da lista. Caso a janela ultrapasse
+     * {@link #MAX_NOTAS_JANELA}, as últimas notas são descartadas.
+     *
+     * @param pagina as notas anteriores à primeira nota da lista, em ordem crescente de {@code id}.
+     * @param inicioAlcancado {@code true} caso a página contenha a primeira nota do banco de dados.
+     */
+    public void adicionarNoInicio(List<Nota> pagina, boolean inicioAlcancado) {
+        this.inicioAlcancado = inicioAlcancado;
+        if (pagina.isEmpty()) return;
+
+        versaoNotas++;
+        notas.addAll(0, pagina);
+        notifyItemRangeInserted(0, pagina.size());
+
+        // Descarta as notas excedentes do final da janela
+        final int excedentes = notas.size() - MAX_NOTAS_JANELA;
+        if (excedentes > 0) {
+            final int inicio = notas.size() - excedentes;
+            notas.subList(inicio, notas.size()).clear();
+            notifyItemRangeRemoved(inicio, excedentes);
+            fimAlcancado = false;
+        }
+    }
+
+    /**
+     * @return {@code true} caso não existam notas anteriores às exibidas.
+     */
+    public boolean isInicioAlcancado() {
+        return inicioAlcancado;
+    }
+
+    /**
+     * @return {@code true} caso não existam notas posteriores às exibidas.
+     */
+    public boolean isFimAlcancado() {
+        return fimAlcancado;
+    }
+
+    public class ViewHolder extends RecyclerView.ViewHolder
+            implements View.OnClickListener, View.OnLongClickListener {
         public final TextView tituloView;
         public final TextView conteudoView;
         public final CardView cardView;
         public Nota nota;
+        public long idNota;
+
+        // Buffers reutilizados pelo modo de exibição por cursor
+        private final CharArrayBuffer bufferTitulo = new CharArrayBuffer(64);
+        private final CharArrayBuffer bufferConteudo = new CharArrayBuffer(256);
+
+        /**
+         * Indica se o card está com a cor de destaque, evitando redefinir a mesma cor a cada
+         * vinculação.
+         */
+        private boolean destacado;
 
         public ViewHolder(View view) {
             super(view);
             cardView = (CardView) view;
             tituloView = (TextView) view.findViewById(R.id.txt_nota_titulo);
             conteudoView = (TextView) view.findViewById(R.id.txt_nota_conteudo);
+
+            // Os listeners são o próprio holder, que identifica a nota tocada pelo id vinculado
+            cardView.setOnClickListener(this);
+            cardView.setOnLongClickListener(this);
+            cardView.setCardBackgroundColor(Color.WHITE);
+        }
+
+        /**
+         * Define a cor de background do card de acordo com a seleção.
+         *
+         * @param selecionada {@code true} caso a nota exibida esteja selecionada.
+         */
+        void destacar(boolean selecionada) {
+            if (selecionada == destacado) return;
+            destacado = selecionada;
+            cardView.setCardBackgroundColor(selecionada ? Color.LTGRAY : Color.WHITE);
+        }
+
+        @Override
+        public void onClick(View v) {
+            // Enquanto houver notas selecionadas, toques simples também alteram a seleção
+            if (!selecao.isVazia()) {
+                alternarSelecao(this);
+            }
+        }
+
+        @Override
+        public boolean onLongClick(View v) {
+            if (notaSelecionadaListener == null) return false;
+
+            // Seleciona a nota (ou remove a seleção) e notifica a activity
+            alternarSelecao(this);
+            return true;
         }
 
         @Override
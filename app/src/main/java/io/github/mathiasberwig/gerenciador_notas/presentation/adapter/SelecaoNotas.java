@@ -0,0 +1,117 @@
+package io.github.mathiasberwig.gerenciador_notas.presentation.adapter;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto dos {@code ids} das notas selecionadas, mantidos em ordem crescente em um vetor de
+ * {@code long}. A verificação de cada vinculação é uma busca binária, sem empacotar os {@code ids}
+ * nem comparar o conteúdo das notas, e a seleção pode ser salva diretamente em um
+ * {@link android.os.Bundle} por {@link #paraVetor()}.
+ * <p/>
+ * Acessado somente na thread principal.
+ */
+public final class SelecaoNotas {
+
+    private long[] ids = new long[8];
+    private int tamanho;
+
+    /**
+     * @param id o {@code id} da nota.
+     * @return {@code true} caso a nota esteja selecionada.
+     */
+    public boolean contem(long id) {
+        return tamanho > 0 && Arrays.binarySearch(ids, 0, tamanho, id) >= 0;
+    }
+
+    /**
+     * Seleciona a nota com o {@code id} informado.
+     *
+     * @param id o {@code id} da nota.
+     * @return {@code true} caso a nota não estivesse selecionada.
+     */
+    public boolean adicionar(long id) {
+        final int indice = Arrays.binarySearch(ids, 0, tamanho, id);
+        if (indice >= 0) return false;
+
+        final int posicao = -indice - 1;
+        if (tamanho == ids.length) {
+            ids = Arrays.copyOf(ids, tamanho * 2);
+        }
+        System.arraycopy(ids, posicao, ids, posicao + 1, tamanho - posicao);
+        ids[posicao] = id;
+        tamanho++;
+        return true;
+    }
+
+    /**
+     * Remove a nota com o {@code id} informado da seleção.
+     *
+     * @param id o {@code id} da nota.
+     * @return {@code true} caso a nota estivesse selecionada.
+     */
+    public boolean remover(long id) {
+        final int indice = Arrays.binarySearch(ids, 0, tamanho, id);
+        if (indice < 0) return false;
+
+        System.arraycopy(ids, indice + 1, ids, indice, tamanho - indice - 1);
+        tamanho--;
+        return true;
+    }
+
+    /**
+     * Inverte a seleção da nota com o {@code id} informado.
+     *
+     * @param id o {@code id} da nota.
+     * @return {@code true} caso a nota tenha sido selecionada; {@code false} caso tenha sido
+     * removida da seleção.
+     */
+    public boolean alternar(long id) {
+        return adicionar(id) || !remover(id);
+    }
+
+    /**
+     * Substitui a seleção pelos {@code ids} informados, em qualquer ordem.
+     *
+     * @param novos os {@code ids} das notas selecionadas.
+     */
+    public void definir(long[] novos) {
+        limpar();
+        for (long id : novos) {
+            adicionar(id);
+        }
+    }
+
+    /**
+     * Remove todas as notas da seleção.
+     */
+    public void limpar() {
+        tamanho = 0;
+    }
+
+    /**
+     * @return a quantidade de notas selecionadas.
+     */
+    public int getTamanho() {
+        return tamanho;
+    }
+
+    public boolean isVazia() {
+        return tamanho == 0;
+    }
+
+    /**
+     * @param indice posição na seleção, entre {@code 0} e {@link #getTamanho()} - 1.
+     * @return o {@code id} na posição informada, em ordem crescente de {@code id}.
+     */
+    public long get(int indice) {
+        if (indice >= tamanho) throw new IndexOutOfBoundsException("indice=" + indice + ", tamanho=" + tamanho);
+        return ids[indice];
+    }
+
+    /**
+     * @return uma cópia dos {@code ids} selecionados, em ordem crescente.
+     */
+    public long[] paraVetor() {
+        return Arrays.copyOf(ids, tamanho);
+    }
+}
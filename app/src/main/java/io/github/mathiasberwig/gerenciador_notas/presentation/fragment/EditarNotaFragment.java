@@ -4,18 +4,34 @@ import android.app.Activity;
 import android.app.Fragment;
 import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.EditText;
 
+import java.util.concurrent.Callable;
+
 import io.github.mathiasberwig.gerenciador_notas.R;
+import io.github.mathiasberwig.gerenciador_notas.data.dao.NotasDAO;
+import io.github.mathiasberwig.gerenciador_notas.data.dao.NotasDAOAssincrono;
 import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
 
 /**
  * Fragmento representando uma {@link Nota} editável.
  * <p/>
+ * As alterações são salvas automaticamente: cada sequência de digitação é agrupada em uma única
+ * gravação, executada após {@link #ATRASO_SALVAMENTO_MS} sem novas alterações, ao pausar o
+ * fragmento e ao concluir a edição. As gravações são feitas na thread do banco de dados e
+ * ignoradas caso o hash do título e do conteúdo não tenha mudado desde a última gravação.
+ * Descartar as alterações desfaz as gravações automáticas.
+ * <p/>
  * Activities contendo este fragmento devem implementar a interface {@link OnEdicaoConcluidaListener}.
  */
 public class EditarNotaFragment extends Fragment {
@@ -23,6 +39,22 @@ public class EditarNotaFragment extends Fragment {
 
     public static final String EXTRA_NOTA = "nota";
     public static final String EXTRA_NOVA_NOTA = "novaNota";
+    public static final String EXTRA_HASH_SALVO = "hashSalvo";
+    public static final String EXTRA_GRAVADA = "gravada";
+    public static final String EXTRA_SALVANDO = "salvando";
+
+    /**
+     * Argumento com o {@code id} gerado na inserção da nova nota, definido quando a inserção é
+     * concluída.
+     *
+     * @see #restaurarIdInserido()
+     */
+    public static final String EXTRA_ID_INSERIDO = "idInserido";
+
+    /**
+     * Intervalo, em milissegundos, sem alterações no texto antes que a nota seja salva.
+     */
+    private static final long ATRASO_SALVAMENTO_MS = 1500;
 
     // Referências de componentes gráficos
     private EditText edtTituloNota;
@@ -43,6 +75,78 @@ public class EditarNotaFragment extends Fragment {
      */
     private OnEdicaoConcluidaListener edicaoConcluidaListener;
 
+    /**
+     * Data Access Object assíncrono no qual as gravações são executadas. Não é cancelado em
+     * {@link #onDestroy()}, para que a gravação feita ao pausar o fragmento seja concluída; os
+     * callbacks somente atualizam o estado deste fragmento.
+     */
+    private NotasDAOAssincrono notasDAO;
+
+    /**
+     * Handler da thread principal, no qual o salvamento automático é agendado.
+     */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Hash do título e do conteúdo gravados por último (ou carregados, caso a nota não tenha sido
+     * alterada).
+     *
+     * @see #calcularHash()
+     */
+    private long hashSalvo;
+
+    /**
+     * Indica se alguma gravação foi solicitada, e portanto deve ser desfeita caso as alterações
+     * sejam descartadas.
+     */
+    private boolean gravada;
+
+    // Controle das gravações: somente uma é executada por vez, e as solicitadas durante a execução
+    // são agrupadas em uma única gravação seguinte
+    private boolean salvando;
+    private boolean salvamentoPendente;
+    private boolean conclusaoPendente;
+
+    /**
+     * Indica se as alterações foram descartadas durante uma gravação: as gravações são desfeitas ao
+     * fim dela, quando o {@code id} de uma nova nota é conhecido.
+     */
+    private boolean descartePendente;
+
+    /**
+     * Indica se as alterações foram descartadas; nenhuma gravação é feita em seguida.
+     */
+    private boolean descartada;
+
+    /**
+     * Executa o salvamento automático, agendado a cada alteração do texto.
+     */
+    private final Runnable salvarAutomaticamente = new Runnable() {
+        @Override
+        public void run() {
+            salvar(false);
+        }
+    };
+
+    /**
+     * Reagenda o salvamento automático a cada alteração do título ou do conteúdo.
+     */
+    private final TextWatcher observadorTexto = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            handler.removeCallbacks(salvarAutomaticamente);
+            handler.postDelayed(salvarAutomaticamente, ATRASO_SALVAMENTO_MS);
+        }
+    };
+
     /**
      * Construtor vazio mandatório para o gerenciador de fragmentos instancia-lo (em mudanças de
      * orientação da tela, por exemplo).
@@ -69,15 +173,35 @@ public class EditarNotaFragment extends Fragment {
         return fragment;
     }
 
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        notasDAO = new NotasDAOAssincrono(NotasDAO.getInstance(getActivity()));
+    }
+
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+        Trace.beginSection("EditarNotaFragment.onCreateView");
+        try {
+            return criarView(inflater, container, savedInstanceState);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Infla o layout do fragmento e exibe a nota informada na criação da instância.
+     */
+    private View criarView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_editar_nota, container, false);
 
         // Obtém os parâmetros de criação do fragmento ou da instância anterior
         final Bundle options = savedInstanceState == null ? getArguments() : savedInstanceState;
 
-        // Obtém a nota informada na criação da instância
-        nota = options.getParcelable(EXTRA_NOTA);
+        // Obtém uma cópia da nota informada na criação da instância: a original, mantida nos
+        // argumentos, é restaurada caso as alterações sejam descartadas
+        final Nota informada = options.getParcelable(EXTRA_NOTA);
+        nota = informada != null ? new Nota(informada.getId(), informada.getTitulo(), informada.getConteudo()) : null;
         novaNota = options.getBoolean(EXTRA_NOVA_NOTA);
 
         // Localiza os EditText
@@ -87,18 +211,55 @@ public class EditarNotaFragment extends Fragment {
         // Atualiza as informações da nota na IU
         updateViews();
 
+        // Restaura o estado do salvamento automático, ou o inicia a partir da nota carregada
+        if (savedInstanceState != null) {
+            hashSalvo = savedInstanceState.getLong(EXTRA_HASH_SALVO);
+            gravada = savedInstanceState.getBoolean(EXTRA_GRAVADA);
+            restaurarIdInserido();
+            if (savedInstanceState.getBoolean(EXTRA_SALVANDO)) aguardarGravacaoAnterior();
+        } else {
+            hashSalvo = calcularHash();
+        }
+
+        // Observa as alterações somente após exibir a nota
+        edtTituloNota.addTextChangedListener(observadorTexto);
+        edtConteudoNota.addTextChangedListener(observadorTexto);
+
         // Localiza as views de botões e define os respectivos listeners
         configurarBotoes(view);
 
         return view;
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+
+        // Grava as alterações ainda não salvas, sem aguardar o salvamento automático
+        handler.removeCallbacks(salvarAutomaticamente);
+        if (!descartada) {
+            salvar(false);
+        }
+    }
+
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
 
+        updateNota();
         outState.putParcelable(EXTRA_NOTA, nota);
         outState.putBoolean(EXTRA_NOVA_NOTA, novaNota);
+        outState.putLong(EXTRA_HASH_SALVO, hashSalvo);
+        outState.putBoolean(EXTRA_GRAVADA, gravada);
+        outState.putBoolean(EXTRA_SALVANDO, salvando);
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        handler.removeCallbacks(salvarAutomaticamente);
+        edtTituloNota.removeTextChangedListener(observadorTexto);
+        edtConteudoNota.removeTextChangedListener(observadorTexto);
     }
 
     @Override
@@ -143,11 +304,189 @@ public class EditarNotaFragment extends Fragment {
      * Atualiza as informações da {@link #nota} a partir da interface gráfica.
      */
     public void updateNota() {
-        if (nota == null) return;
+        if (nota == null || edtTituloNota == null) return;
         nota.setTitulo(edtTituloNota.getText().toString());
         nota.setConteudo(edtConteudoNota.getText().toString());
     }
 
+    /**
+     * Calcula um hash de 64 bits do título e do conteúdo exibidos, diretamente sobre os
+     * {@link Editable}, sem copiá-los para {@link String Strings}.
+     *
+     * @return o hash do texto exibido.
+     */
+    private long calcularHash() {
+        long hash = hash(1125899906842597L, edtTituloNota.getText());
+        // Separa o título do conteúdo, de modo que mover texto entre eles altere o hash
+        hash = 31 * hash + 0x1F;
+        return hash(hash, edtConteudoNota.getText());
+    }
+
+    private static long hash(long hash, CharSequence texto) {
+        for (int i = 0, n = texto.length(); i < n; i++) {
+            hash = 31 * hash + texto.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Grava o título e o conteúdo exibidos, caso tenham sido alterados desde a última gravação. A
+     * gravação é executada na thread do banco de dados; caso outra esteja em andamento, é executada
+     * em seguida.
+     *
+     * @param concluir {@code true} para notificar o {@link #edicaoConcluidaListener} após a gravação.
+     */
+    private void salvar(final boolean concluir) {
+        if (nota == null || edtTituloNota == null || descartada) return;
+
+        if (salvando) {
+            salvamentoPendente = true;
+            conclusaoPendente |= concluir;
+            return;
+        }
+
+        final long hash = calcularHash();
+        if (hash == hashSalvo) {
+            if (concluir) notificarConclusao(true);
+            return;
+        }
+
+        // Grava uma cópia, pois a nota continua sendo alterada na thread principal
+        updateNota();
+        final Nota copia = new Nota(nota.getId(), nota.getTitulo(), nota.getConteudo());
+        final boolean inserir = novaNota;
+        salvando = true;
+        gravada = true;
+        notasDAO.executarEscrita(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                final NotasDAO dao = notasDAO.getDAO();
+                return inserir ? dao.inserir(copia) : dao.update(copia) > 0;
+            }
+        }, new NotasDAOAssincrono.Callback<Boolean>() {
+            @Override
+            public void onConcluido(Boolean sucesso) {
+                if (sucesso) {
+                    nota.setId(copia.getId());
+                    novaNota = false;
+                    hashSalvo = hash;
+                    // Mantido nos argumentos, compartilhados com a instância recriada caso o estado
+                    // tenha sido salvo durante a inserção
+                    if (inserir) getArguments().putLong(EXTRA_ID_INSERIDO, copia.getId());
+                } else {
+                    Log.w(TAG, "Não foi possível salvar automaticamente a nota " + copia.getId());
+                }
+                encerrarGravacao(sucesso, concluir);
+            }
+        });
+    }
+
+    /**
+     * Encerra uma gravação, executando em seguida o descarte ou o salvamento solicitados durante
+     * ela, ou notificando a conclusão da edição.
+     *
+     * @param sucesso {@code true} caso a nota tenha sido gravada.
+     * @param concluir {@code true} caso a gravação deva concluir a edição.
+     */
+    private void encerrarGravacao(boolean sucesso, boolean concluir) {
+        salvando = false;
+        if (descartePendente) {
+            descartePendente = false;
+            desfazerGravacoes();
+        } else if (salvamentoPendente) {
+            final boolean concluirEmSeguida = concluir || conclusaoPendente;
+            salvamentoPendente = false;
+            conclusaoPendente = false;
+            salvar(concluirEmSeguida);
+        } else if (concluir) {
+            notificarConclusao(sucesso);
+        }
+    }
+
+    /**
+     * Obtém dos argumentos o {@code id} da nova nota, caso a instância anterior deste fragmento
+     * (destruída em uma mudança de orientação da tela, por exemplo) a tenha inserido depois de
+     * salvar o estado. Os argumentos são os mesmos objetos nas duas instâncias.
+     */
+    private void restaurarIdInserido() {
+        if (novaNota && getArguments().containsKey(EXTRA_ID_INSERIDO)) {
+            nota.setId(getArguments().getLong(EXTRA_ID_INSERIDO));
+            novaNota = false;
+        }
+    }
+
+    /**
+     * Trata a gravação da instância anterior, em andamento quando o estado foi salvo, como uma
+     * gravação desta instância: as gravações solicitadas enquanto isso são executadas depois que
+     * o seu resultado for conhecido. Como a thread de escrita é única, uma escrita vazia é
+     * concluída depois da gravação anterior, cujo callback define o {@code id} inserido.
+     */
+    private void aguardarGravacaoAnterior() {
+        salvando = true;
+        notasDAO.executarEscrita(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return true;
+            }
+        }, new NotasDAOAssincrono.Callback<Boolean>() {
+            @Override
+            public void onConcluido(Boolean sucesso) {
+                restaurarIdInserido();
+                encerrarGravacao(true, false);
+            }
+        });
+    }
+
+    /**
+     * Descarta as alterações: interrompe o salvamento automático e desfaz as gravações já feitas,
+     * excluindo a nova nota ou restaurando a nota original. Deve ser chamado antes de remover o
+     * fragmento, ao confirmar o cancelamento da edição.
+     */
+    public void descartarAlteracoes() {
+        if (descartada) return;
+        descartada = true;
+        handler.removeCallbacks(salvarAutomaticamente);
+        salvamentoPendente = false;
+        conclusaoPendente = false;
+        if (!gravada) return;
+
+        // O id de uma nova nota é conhecido somente ao fim da sua inserção
+        if (salvando) {
+            descartePendente = true;
+        } else {
+            desfazerGravacoes();
+        }
+    }
+
+    /**
+     * Exclui a nova nota ou restaura a nota original, após as gravações em andamento, pois a
+     * thread de escrita é única.
+     */
+    private void desfazerGravacoes() {
+        final Nota original = getArguments().getParcelable(EXTRA_NOTA);
+        final boolean nova = getArguments().getBoolean(EXTRA_NOVA_NOTA);
+        final Long id = nota.getId();
+        final NotasDAO dao = notasDAO.getDAO();
+        notasDAO.executarEscrita(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                if (nova || original == null) {
+                    return id == null || id == 0 || dao.delete(new Nota(id, null, null)) > 0;
+                }
+                return dao.update(original) > 0;
+            }
+        }, null);
+    }
+
+    /**
+     * Notifica o {@link #edicaoConcluidaListener}, caso o fragmento ainda esteja anexado.
+     */
+    private void notificarConclusao(boolean sucesso) {
+        if (edicaoConcluidaListener != null) {
+            edicaoConcluidaListener.onEdicaoConcluida(nota, sucesso);
+        }
+    }
+
     /**
      * Encontra as views de botões no fragmento e define os eventos {@code onClick} para os botões
      * {@link R.id#btn_salvar} e {@link R.id#btn_cancelar_edicao}.
@@ -163,8 +502,9 @@ public class EditarNotaFragment extends Fragment {
         btnSalvar.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                updateNota();
-                edicaoConcluidaListener.onEdicaoConcluida(nota, novaNota);
+                // Grava imediatamente as alterações pendentes e conclui a edição em seguida
+                handler.removeCallbacks(salvarAutomaticamente);
+                salvar(true);
             }
         });
         btnCancelar.setOnClickListener(new View.OnClickListener() {
@@ -185,16 +525,18 @@ public class EditarNotaFragment extends Fragment {
      */
     public interface OnEdicaoConcluidaListener {
         /**
-         * Executado quando uma {@link Nota} é alterada.
+         * Executado quando o usuário conclui a edição, após a gravação das alterações pendentes.
          *
          * @param nota a nota com as modificações realizadas.
-         * @param novaNota {@code true } indica que a {@code nota} não está armazenada no banco de
-         *                 dados local.
+         * @param sucesso {@code false} caso a gravação tenha falhado; a edição pode ser concluída
+         *                novamente.
          */
-        void onEdicaoConcluida(Nota nota, boolean novaNota);
+        void onEdicaoConcluida(Nota nota, boolean sucesso);
 
         /**
-         * Executado quando a edição de uma nota é cancelada.
+         * Executado quando o usuário solicita o cancelamento da edição. Caso seja confirmado,
+         * {@link EditarNotaFragment#descartarAlteracoes()} deve ser chamado antes de remover o
+         * fragmento.
          */
         void onEdicaoCancelada();
     }
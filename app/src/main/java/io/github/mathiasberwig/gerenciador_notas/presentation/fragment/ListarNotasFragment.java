@@ -3,7 +3,10 @@ package io.github.mathiasberwig.gerenciador_notas.presentation.fragment;
 import android.app.Activity;
 import android.app.Fragment;
 import android.content.Context;
+import android.database.Cursor;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
@@ -12,9 +15,14 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import io.github.mathiasberwig.gerenciador_notas.R;
+import io.github.mathiasberwig.gerenciador_notas.data.dao.NotasDAO;
+import io.github.mathiasberwig.gerenciador_notas.data.dao.NotasDAOAssincrono;
+import io.github.mathiasberwig.gerenciador_notas.data.dao.OuvinteAlteracoesNotas;
 import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+import io.github.mathiasberwig.gerenciador_notas.data.model.ResultadoBusca;
 import io.github.mathiasberwig.gerenciador_notas.presentation.adapter.NotasRecyclerViewAdapter;
 
 /**
@@ -22,15 +30,68 @@ import io.github.mathiasberwig.gerenciador_notas.presentation.adapter.NotasRecyc
  * <p/>
  * Activities contendo este fragmento devem implementar a interface {@link OnNotaSelecionadaListener}.
  */
-public class ListarNotasFragment extends Fragment {
+public class ListarNotasFragment extends Fragment implements OuvinteAlteracoesNotas {
     private static final String TAG = ListarNotasFragment.class.getName();
 
-    public static final String EXTRA_LISTA_NOTAS = "notas";
-    public static final String EXTRA_NOTA_SELECIONADA = "notaSelecionada";
+    public static final String EXTRA_IDS_SELECIONADOS = "idsSelecionados";
+    public static final String EXTRA_ID_ANCORA = "idAncora";
+    public static final String EXTRA_POSICAO_ANCORA = "posicaoAncora";
+    public static final String EXTRA_DESLOCAMENTO_ANCORA = "deslocamentoAncora";
+    public static final String EXTRA_ESTADO_RETIDO = "estadoRetido";
+    public static final String EXTRA_MODO_CURSOR = "modoCursor";
+    public static final String EXTRA_TERMO_BUSCA = "termoBusca";
 
     /**
-     * Listener responsável por receber notificações de interações (onLongClick) com os itens da
-     * lista.
+     * Valor dos extras de {@code id} quando não há nota.
+     */
+    private static final long SEM_ID = -1;
+
+    /**
+     * Quantidade de notas consultadas no banco de dados a cada página.
+     */
+    public static final int TAMANHO_PAGINA = 50;
+
+    /**
+     * Quantidade de notas restantes para alcançar uma das pontas da lista que dispara o
+     * carregamento da próxima página.
+     */
+    private static final int MARGEM_CARREGAMENTO = 15;
+
+    /**
+     * Quantidade de notas a partir da qual a lista é exibida no modo por cursor, quando o modo não
+     * é definido na criação do fragmento ({@link #newInstance()}). Abaixo dela, a cópia das notas
+     * em uma lista paginada é pequena e permite atualizar somente as notas alteradas.
+     */
+    static final int LIMITE_MODO_CURSOR = 1000;
+
+    /**
+     * Quantidade máxima de resultados exibidos em uma busca.
+     */
+    private static final int LIMITE_RESULTADOS_BUSCA = 100;
+
+    /**
+     * Intervalo, em milissegundos, sem alterações no texto buscado antes que a busca seja executada.
+     */
+    private static final long ATRASO_BUSCA_MS = 300;
+
+    /**
+     * Janela de notas retida em memória pela última instância destruída com o estado salvo, para
+     * que a instância recriada (em mudanças de orientação da tela, por exemplo) a reutilize sem
+     * consultar o banco de dados nem serializar as notas no {@link Bundle}. O {@link Bundle} guarda
+     * somente o {@link EstadoRetido#token token}; caso o processo tenha sido encerrado, o token não
+     * corresponde e as notas são consultadas novamente a partir da âncora de rolagem.
+     * <p/>
+     * Acessado somente na thread principal.
+     */
+    private static EstadoRetido estadoRetido;
+
+    /**
+     * Último token atribuído a um {@link #estadoRetido}.
+     */
+    private static long ultimoToken;
+
+    /**
+     * Listener responsável por receber as alterações na seleção de notas da lista.
      */
     private OnNotaSelecionadaListener interactionListener;
 
@@ -39,6 +100,83 @@ public class ListarNotasFragment extends Fragment {
      */
     private NotasRecyclerViewAdapter adapter;
 
+    /**
+     * Data Access Object assíncrono utilizado para carregar as páginas de notas. Cancelado em
+     * {@link #onDestroy()}.
+     */
+    private NotasDAOAssincrono notasDAO;
+
+    /**
+     * Handler da thread principal, na qual as alterações notificadas pelo DAO são aplicadas.
+     */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /**
+     * {@link NotasDAO#getVersaoAlteracoes() Versão das alterações} refletida pelas notas exibidas:
+     * todas as alterações até ela foram aplicadas ao adaptador. Retida junto com as notas, de modo
+     * que a próxima instância identifique as alterações descartadas entre as instâncias (aplicações
+     * pendentes no {@link #handler} e notificações sem ouvinte registrado).
+     *
+     * @see EstadoRetido#versao
+     */
+    private long versaoAplicada;
+
+    // Lista e gerenciador de layout da view atual, ou null enquanto a view estiver destruída
+    private RecyclerView recyclerView;
+    private LinearLayoutManager layoutManager;
+
+    /**
+     * Âncora de rolagem: a primeira nota visível ({@code id} e posição) e o deslocamento do topo
+     * da sua view. Definida ao destruir a view e ao restaurar o estado, e aplicada quando a lista e
+     * a view estiverem disponíveis.
+     *
+     * @see #aplicarAncora()
+     */
+    private long idAncora = SEM_ID;
+    private int posicaoAncora = RecyclerView.NO_POSITION;
+    private int deslocamentoAncora;
+
+    /**
+     * Indica se uma página está sendo carregada, evitando carregamentos duplicados.
+     */
+    private boolean carregandoPagina;
+
+    /**
+     * Indica se as notas são exibidas no modo por cursor.
+     *
+     * @see #newInstanceModoCursor()
+     * @see #escolherModoExibicao()
+     */
+    private boolean modoCursor;
+
+    /**
+     * Texto da busca em andamento, ou {@code null} caso as notas não estejam sendo buscadas.
+     *
+     * @see #buscar(String)
+     */
+    private String termoBusca;
+
+    /**
+     * Executa a busca por {@link #termoBusca}, agendada em {@link #buscar(String)}.
+     */
+    private final Runnable executarBusca = new Runnable() {
+        @Override
+        public void run() {
+            final String termo = termoBusca;
+            if (termo == null) return;
+
+            notasDAO.buscar(termo, LIMITE_RESULTADOS_BUSCA, new NotasDAOAssincrono.Callback<ArrayList<ResultadoBusca>>() {
+                @Override
+                public void onConcluido(ArrayList<ResultadoBusca> resultados) {
+                    // Descarta resultados de buscas encerradas ou substituídas
+                    if (resultados != null && termo.equals(termoBusca)) {
+                        adapter.setResultadosBusca(resultados);
+                    }
+                }
+            });
+        }
+    };
+
     /**
      * Construtor vazio mandatório para o gerenciador de fragmentos instancia-lo (em mudanças de
      * orientação da tela, por exemplo).
@@ -47,17 +185,31 @@ public class ListarNotasFragment extends Fragment {
     }
 
     /**
-     * Construtor auxiliar para esta classe.
+     * Construtor auxiliar para esta classe. As notas são consultadas pelo próprio fragmento, fora
+     * da thread principal, e exibidas no modo por cursor caso sejam ao menos
+     * {@link #LIMITE_MODO_CURSOR}; caso contrário, em páginas.
      *
-     * @param notas a lista de notas que deve ser exibida pelo fragmento.
      * @return Instância criada conforme os parâmetros solicitados.
      */
-    public static ListarNotasFragment newInstance(ArrayList<Nota> notas) {
+    public static ListarNotasFragment newInstance() {
+        ListarNotasFragment fragment = new ListarNotasFragment();
+        fragment.setArguments(new Bundle());
+        return fragment;
+    }
+
+    /**
+     * Construtor auxiliar para esta classe no modo de exibição por cursor: as notas não são
+     * carregadas em uma lista, e sim lidas diretamente de um cursor aberto pelo próprio fragmento.
+     *
+     * @return Instância criada no modo de exibição por cursor.
+     * @see NotasRecyclerViewAdapter#trocarCursor(android.database.Cursor)
+     */
+    public static ListarNotasFragment newInstanceModoCursor() {
         ListarNotasFragment fragment = new ListarNotasFragment();
 
         // Define os parâmetros de inicialização
         Bundle args = new Bundle();
-        args.putParcelableArrayList(EXTRA_LISTA_NOTAS, notas);
+        args.putBoolean(EXTRA_MODO_CURSOR, true);
         fragment.setArguments(args);
         return fragment;
     }
@@ -65,6 +217,52 @@ public class ListarNotasFragment extends Fragment {
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+
+        // Obtém os parâmetros de criação do fragmento ou da instância anterior
+        final Bundle options = savedInstanceState == null ? getArguments() : savedInstanceState;
+        final boolean modoDefinido = options.containsKey(EXTRA_MODO_CURSOR);
+        modoCursor = options.getBoolean(EXTRA_MODO_CURSOR);
+        idAncora = options.getLong(EXTRA_ID_ANCORA, SEM_ID);
+        posicaoAncora = options.getInt(EXTRA_POSICAO_ANCORA, RecyclerView.NO_POSITION);
+        deslocamentoAncora = options.getInt(EXTRA_DESLOCAMENTO_ANCORA);
+
+        // Cria o adaptador, que é mantido enquanto o fragmento estiver na pilha (inclusive
+        // enquanto a sua view estiver destruída durante a edição de uma nota)
+        NotasDAO dao = NotasDAO.getInstance(getActivity());
+        notasDAO = new NotasDAOAssincrono(dao);
+        adapter = new NotasRecyclerViewAdapter(null, interactionListener);
+
+        // Passa a receber as alterações feitas no banco de dados. A versão é obtida após o registro:
+        // as alterações posteriores a ela serão notificadas a esta instância
+        dao.registrarOuvinte(this);
+        versaoAplicada = dao.getVersaoAlteracoes();
+
+        // Restaura a janela de notas: da memória, caso tenha sido retida por esta instância do
+        // processo e nenhuma alteração tenha sido perdida desde então; senão, do banco de dados, a
+        // partir da âncora de rolagem
+        final EstadoRetido retido = recuperarEstadoRetido(options.getLong(EXTRA_ESTADO_RETIDO), versaoAplicada);
+        if (!modoDefinido) {
+            escolherModoExibicao();
+        } else if (modoCursor) {
+            recarregarNotas();
+        } else if (retido != null) {
+            adapter.setNotas(retido.notas, retido.inicioAlcancado, retido.fimAlcancado);
+        } else if (idAncora != SEM_ID) {
+            carregarAPartirDe(idAncora);
+        } else {
+            recarregarNotas();
+        }
+
+        // Retoma a busca em andamento, caso exista
+        if (options.getString(EXTRA_TERMO_BUSCA) != null) {
+            buscar(options.getString(EXTRA_TERMO_BUSCA));
+        }
+
+        // Restaura as notas selecionadas previamente, sem consultá-las: a seleção guarda somente ids
+        final long[] idsSelecionados = options.getLongArray(EXTRA_IDS_SELECIONADOS);
+        if (idsSelecionados != null) {
+            adapter.setIdsSelecionados(idsSelecionados);
+        }
     }
 
     @Override
@@ -73,17 +271,13 @@ public class ListarNotasFragment extends Fragment {
 
         if (view instanceof RecyclerView) {
             // Cria a RecyclerView e define o gerenciador de layout da mesma
-            final RecyclerView recyclerView = (RecyclerView) view;
-            recyclerView.setLayoutManager(new LinearLayoutManager(view.getContext()));
-
-            // Obtém os parâmetros de criação do fragmento ou da instância anterior
-            final Bundle options = savedInstanceState == null ? getArguments() : savedInstanceState;
-            ArrayList<Nota> notas = options.getParcelableArrayList(EXTRA_LISTA_NOTAS);
-            Nota notaSelecionada = options.getParcelable(EXTRA_NOTA_SELECIONADA);
+            recyclerView = (RecyclerView) view;
+            layoutManager = new LinearLayoutManager(view.getContext());
+            recyclerView.setLayoutManager(layoutManager);
 
-            // Cria  e define o adaptador
-            adapter = new NotasRecyclerViewAdapter(notas, interactionListener);
+            // Define o adaptador criado em onCreate e retorna à posição anterior, caso exista
             recyclerView.setAdapter(adapter);
+            aplicarAncora();
 
             // Localiza o FAB e define o listener de scroll para oculta-lo durante a navegação
             final FloatingActionButton fab = (FloatingActionButton) getActivity().findViewById(R.id.fab);
@@ -96,18 +290,33 @@ public class ListarNotasFragment extends Fragment {
                     else if (dy < 0)
                         // Scroll vertical para cima. Mostra o FAB
                         fab.show();
+
+                    // Carrega a próxima página caso a rolagem se aproxime de uma das pontas
+                    verificarCarregamentoPagina(recyclerView, layoutManager, dy);
                 }
             });
+        }
+        return view;
+    }
 
-            // Define a nota selecionada previamente, caso exista
-            if (notaSelecionada != null) {
-                adapter.setNotaSelecionada(notaSelecionada);
+    @Override
+    public void onActivityCreated(Bundle savedInstanceState) {
+        super.onActivityCreated(savedInstanceState);
 
-                // Força a atualização do menu de contexto na Activity
-                interactionListener.onNotaSelecionada(notaSelecionada);
-            }
+        // Informa a activity (recriada, por exemplo) sobre a seleção restaurada
+        if (adapter.getQuantidadeSelecionadas() > 0 && interactionListener != null) {
+            interactionListener.onSelecaoAlterada(adapter.getQuantidadeSelecionadas());
         }
-        return view;
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+
+        // Guarda a posição da rolagem para quando a view for recriada (retorno da edição)
+        salvarAncora();
+        recyclerView = null;
+        layoutManager = null;
     }
 
     @Override
@@ -138,13 +347,327 @@ public class ListarNotasFragment extends Fragment {
         interactionListener = null;
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+
+        // Cancela as consultas pendentes e fecha o cursor do modo de exibição por cursor, caso exista
+        notasDAO.getDAO().removerOuvinte(this);
+        notasDAO.cancelar();
+        handler.removeCallbacksAndMessages(null);
+        adapter.trocarCursor(null);
+    }
+
+    @Override
+    public void onNotasInseridas(final List<Nota> notas) {
+        // Notificado durante a alteração: a versão atual é a da alteração
+        final long versao = notasDAO.getDAO().getVersaoAlteracoes();
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (termoBusca != null) {
+                    reagendarBusca(0);
+                } else if (!aplicarAlteracoes(adapter.aplicarInsercoes(notas))) {
+                    recarregarNotas();
+                }
+                versaoAplicada = versao;
+            }
+        });
+    }
+
+    @Override
+    public void onNotasAtualizadas(final List<Nota> notas) {
+        // Notificado durante a alteração: a versão atual é a da alteração
+        final long versao = notasDAO.getDAO().getVersaoAlteracoes();
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (termoBusca != null) {
+                    reagendarBusca(0);
+                } else if (!aplicarAlteracoes(adapter.aplicarAtualizacoes(notas))) {
+                    recarregarNotas();
+                }
+                versaoAplicada = versao;
+            }
+        });
+    }
+
+    @Override
+    public void onNotasExcluidas(final long[] ids) {
+        // Notificado durante a alteração: a versão atual é a da alteração
+        final long versao = notasDAO.getDAO().getVersaoAlteracoes();
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (termoBusca != null) {
+                    reagendarBusca(0);
+                } else if (!aplicarAlteracoes(adapter.aplicarExclusoes(ids))) {
+                    recarregarNotas();
+                }
+                versaoAplicada = versao;
+            }
+        });
+    }
+
+    /**
+     * Verifica se uma alteração notificada pelo DAO foi aplicada ao adaptador sem consultar o banco
+     * de dados. No modo por cursor, as atualizações e as inserções de novas notas são aplicadas
+     * sobre o cursor aberto; as exclusões de notas do cursor e o acúmulo de alterações exigem que
+     * ele seja aberto novamente. Enquanto o cursor é aberto, a alteração pode não estar nele.
+     *
+     * @param aplicadas o retorno de {@code NotasRecyclerViewAdapter#aplicar*}.
+     * @return {@code true} caso as notas não precisem ser recarregadas.
+     */
+    private boolean aplicarAlteracoes(boolean aplicadas) {
+        return aplicadas && modoCursor == adapter.isModoCursor();
+    }
+
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
 
-        // Salva a lista de notas atual e a nota selecionada
-        outState.putParcelableArrayList(EXTRA_LISTA_NOTAS, adapter.getNotas());
-        outState.putParcelable(EXTRA_NOTA_SELECIONADA, adapter.getNotaSelecionada());
+        // Somente identificadores são salvos, de modo que o custo independe da quantidade de notas
+        salvarAncora();
+        outState.putLongArray(EXTRA_IDS_SELECIONADOS, adapter.getIdsSelecionados());
+        outState.putLong(EXTRA_ID_ANCORA, idAncora);
+        outState.putInt(EXTRA_POSICAO_ANCORA, posicaoAncora);
+        outState.putInt(EXTRA_DESLOCAMENTO_ANCORA, deslocamentoAncora);
+        outState.putBoolean(EXTRA_MODO_CURSOR, modoCursor);
+        outState.putString(EXTRA_TERMO_BUSCA, termoBusca);
+
+        // Retém a janela de notas em memória para a próxima instância. No modo por cursor e no modo
+        // de busca as notas são consultadas novamente na restauração.
+        if (!modoCursor && !adapter.isModoBusca() && adapter.getItemCount() > 0) {
+            estadoRetido = new EstadoRetido(++ultimoToken, versaoAplicada, adapter.getNotas(),
+                    adapter.isInicioAlcancado(), adapter.isFimAlcancado());
+            outState.putLong(EXTRA_ESTADO_RETIDO, estadoRetido.token);
+        }
+    }
+
+    /**
+     * Obtém e descarta o {@link #estadoRetido}, caso corresponda ao token informado. O estado é
+     * descartado sem ser utilizado caso alguma alteração no banco de dados não tenha sido aplicada
+     * às notas retidas: notificada enquanto nenhuma instância estava registrada, ou pendente no
+     * handler da instância anterior quando foi destruída.
+     *
+     * @param token o token salvo no estado da instância anterior, ou {@code 0}.
+     * @param versaoAtual a {@link NotasDAO#getVersaoAlteracoes() versão das alterações} obtida
+     *                    após o registro da nova instância como ouvinte.
+     * @return o estado retido, ou {@code null} caso não exista, seja de outra instância ou esteja
+     * desatualizado.
+     */
+    private static EstadoRetido recuperarEstadoRetido(long token, long versaoAtual) {
+        final EstadoRetido retido = estadoRetido;
+        if (retido == null || token != retido.token) return null;
+
+        estadoRetido = null;
+        return retido.versao == versaoAtual ? retido : null;
+    }
+
+    /**
+     * Guarda a primeira nota visível e o deslocamento da sua view como âncora de rolagem. Caso a
+     * view não exista (durante a edição de uma nota), mantém a âncora guardada anteriormente.
+     */
+    private void salvarAncora() {
+        if (layoutManager == null || adapter.getItemCount() == 0) return;
+
+        final int posicao = layoutManager.findFirstVisibleItemPosition();
+        final View view = layoutManager.findViewByPosition(posicao);
+        if (posicao == RecyclerView.NO_POSITION || view == null) return;
+
+        posicaoAncora = posicao;
+        idAncora = adapter.getIdNota(posicao);
+        deslocamentoAncora = view.getTop() - recyclerView.getPaddingTop();
+    }
+
+    /**
+     * Rola a lista até a âncora guardada, caso a view exista e a nota da âncora (ou, no modo por
+     * cursor, a sua posição) já tenha sido carregada. A âncora é descartada após ser aplicada.
+     */
+    private void aplicarAncora() {
+        if (layoutManager == null || (idAncora == SEM_ID && posicaoAncora == RecyclerView.NO_POSITION)) return;
+
+        final int posicao = modoCursor ? posicaoAncora : adapter.getPosicao(idAncora);
+        if (posicao == RecyclerView.NO_POSITION || posicao >= adapter.getItemCount()) return;
+
+        layoutManager.scrollToPositionWithOffset(posicao, deslocamentoAncora);
+        idAncora = SEM_ID;
+        posicaoAncora = RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Abre o cursor sobre todas as notas e mantém o modo por cursor caso elas sejam ao menos
+     * {@link #LIMITE_MODO_CURSOR}; caso contrário, fecha o cursor e carrega a primeira página. O
+     * modo escolhido é mantido no estado salvo do fragmento.
+     * <p/>
+     * Também utilizado para exibir novamente as notas após {@link #liberarCursor()}.
+     */
+    public void escolherModoExibicao() {
+        notasDAO.abrirCursor(new NotasDAOAssincrono.Callback<Cursor>() {
+            @Override
+            public void onConcluido(Cursor cursor) {
+                // Sem cursor (outro mecanismo de armazenamento ou erro), as notas são paginadas
+                if (cursor != null && cursor.getCount() >= LIMITE_MODO_CURSOR) {
+                    modoCursor = true;
+                    adapter.trocarCursor(cursor);
+                    aplicarAncora();
+                    return;
+                }
+                if (cursor != null) cursor.close();
+                modoCursor = false;
+                recarregarNotas();
+            }
+        });
+    }
+
+    /**
+     * Fecha o cursor do modo de exibição por cursor, caso exista, liberando a sua referência para
+     * a conexão com o banco de dados (antes de restaurar uma cópia de segurança, por exemplo). A
+     * lista fica vazia até que as notas sejam exibidas novamente por
+     * {@link #escolherModoExibicao()}.
+     */
+    public void liberarCursor() {
+        adapter.trocarCursor(null);
+    }
+
+    /**
+     * Carrega uma página de notas iniciando na nota {@code id}, utilizada para restaurar a lista
+     * na posição em que estava sem carregar as notas anteriores. Caso a nota e as posteriores a ela
+     * tenham sido excluídas, a primeira página é carregada.
+     *
+     * @param id o {@code id} da primeira nota da página.
+     */
+    private void carregarAPartirDe(final long id) {
+        carregandoPagina = true;
+        notasDAO.listar(id - 1, TAMANHO_PAGINA, new NotasDAOAssincrono.Callback<ArrayList<Nota>>() {
+            @Override
+            public void onConcluido(ArrayList<Nota> notas) {
+                carregandoPagina = false;
+                if (notas == null || notas.isEmpty()) {
+                    recarregarNotas();
+                    return;
+                }
+                // As notas anteriores são carregadas ao rolar para o início da lista
+                adapter.setNotas(notas, id <= 1, notas.size() < TAMANHO_PAGINA);
+                aplicarAncora();
+            }
+        });
+    }
+
+    /**
+     * Verifica se a rolagem se aproximou de uma das pontas da janela de notas carregadas e, caso
+     * existam mais notas no banco de dados nessa direção, carrega a página seguinte.
+     *
+     * @param recyclerView a view que recebeu a rolagem.
+     * @param layoutManager o gerenciador de layout da {@code recyclerView}.
+     * @param dy deslocamento vertical da rolagem.
+     */
+    private void verificarCarregamentoPagina(RecyclerView recyclerView, LinearLayoutManager layoutManager, int dy) {
+        if (carregandoPagina || modoCursor || adapter.isModoBusca() || adapter.getItemCount() == 0) return;
+
+        if (dy > 0 && !adapter.isFimAlcancado()
+                && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - MARGEM_CARREGAMENTO) {
+            carregandoPagina = true;
+            ArrayList<Nota> notas = adapter.getNotas();
+            notasDAO.listar(notas.get(notas.size() - 1).getId(), TAMANHO_PAGINA, new NotasDAOAssincrono.Callback<ArrayList<Nota>>() {
+                @Override
+                public void onConcluido(ArrayList<Nota> pagina) {
+                    // O resultado é entregue fora do callback de rolagem, permitindo alterar o adaptador
+                    if (pagina != null) {
+                        adapter.adicionarNoFim(pagina, pagina.size() < TAMANHO_PAGINA);
+                    }
+                    carregandoPagina = false;
+                }
+            });
+        } else if (dy < 0 && !adapter.isInicioAlcancado()
+                && layoutManager.findFirstVisibleItemPosition() <= MARGEM_CARREGAMENTO) {
+            carregandoPagina = true;
+            notasDAO.listarAnteriores(adapter.getNotas().get(0).getId(), TAMANHO_PAGINA, new NotasDAOAssincrono.Callback<ArrayList<Nota>>() {
+                @Override
+                public void onConcluido(ArrayList<Nota> pagina) {
+                    if (pagina != null) {
+                        adapter.adicionarNoInicio(pagina, pagina.size() < TAMANHO_PAGINA);
+                    }
+                    carregandoPagina = false;
+                }
+            });
+        }
+    }
+
+    /**
+     * Consulta novamente as notas no banco de dados, fora da thread principal, e atualiza o
+     * adaptador: no modo por cursor, um novo cursor substitui o anterior; caso contrário, a
+     * primeira página de notas substitui a lista exibida.
+     */
+    public void recarregarNotas() {
+        if (modoCursor) {
+            notasDAO.abrirCursor(new NotasDAOAssincrono.Callback<Cursor>() {
+                @Override
+                public void onConcluido(Cursor cursor) {
+                    if (cursor != null) {
+                        adapter.trocarCursor(cursor);
+                        aplicarAncora();
+                    }
+                }
+            });
+            return;
+        }
+
+        carregandoPagina = true;
+        notasDAO.listar(0, TAMANHO_PAGINA, new NotasDAOAssincrono.Callback<ArrayList<Nota>>() {
+            @Override
+            public void onConcluido(ArrayList<Nota> notas) {
+                if (notas != null) {
+                    adapter.setNotas(notas, true, notas.size() < TAMANHO_PAGINA);
+                    aplicarAncora();
+                }
+                carregandoPagina = false;
+            }
+        });
+    }
+
+    /**
+     * Busca as notas que contenham o texto informado e exibe os resultados no lugar da lista. A
+     * busca é executada somente após {@link #ATRASO_BUSCA_MS} sem novas chamadas, evitando consultas
+     * a cada caractere digitado. Enquanto a busca estiver ativa, alterações nas notas fazem com que
+     * ela seja executada novamente.
+     *
+     * @param termos o texto digitado pelo usuário.
+     * @see NotasDAO#buscar(String, int)
+     * @see #encerrarBusca()
+     */
+    public void buscar(String termos) {
+        termoBusca = termos == null ? "" : termos;
+        reagendarBusca(ATRASO_BUSCA_MS);
+    }
+
+    /**
+     * Encerra a busca em andamento e volta a exibir a lista de notas.
+     */
+    public void encerrarBusca() {
+        if (termoBusca == null) return;
+
+        termoBusca = null;
+        handler.removeCallbacks(executarBusca);
+        adapter.encerrarBusca();
+        recarregarNotas();
+    }
+
+    /**
+     * @return o texto da busca em andamento, ou {@code null} caso as notas não estejam sendo buscadas.
+     */
+    public String getTermoBusca() {
+        return termoBusca;
+    }
+
+    /**
+     * Agenda a execução da busca, substituindo a execução agendada anteriormente.
+     *
+     * @param atraso atraso, em milissegundos, até a execução.
+     */
+    private void reagendarBusca(long atraso) {
+        handler.removeCallbacks(executarBusca);
+        handler.postDelayed(executarBusca, atraso);
     }
 
     /**
@@ -156,20 +679,49 @@ public class ListarNotasFragment extends Fragment {
         return adapter;
     }
 
+    /**
+     * Janela de notas retida em memória entre instâncias do fragmento.
+     *
+     * @see #estadoRetido
+     */
+    private static final class EstadoRetido {
+        final long token;
+
+        /**
+         * A {@link #versaoAplicada versão das alterações} refletida pelas {@link #notas}.
+         */
+        final long versao;
+        final ArrayList<Nota> notas;
+        final boolean inicioAlcancado;
+        final boolean fimAlcancado;
+
+        EstadoRetido(long token, long versao, ArrayList<Nota> notas, boolean inicioAlcancado, boolean fimAlcancado) {
+            this.token = token;
+            this.versao = versao;
+            this.notas = notas;
+            this.inicioAlcancado = inicioAlcancado;
+            this.fimAlcancado = fimAlcancado;
+        }
+    }
+
     /**
      * Esta interface deve ser implementada por activities que contém este fragmento, de modo a
-     * permitir que a activity seja notificada quando uma {@link Nota} foi selecionada (toque longo).
+     * permitir que a activity seja notificada quando a seleção de {@link Nota notas} for alterada:
+     * um {@link android.view.View.OnLongClickListener toque longo} seleciona uma nota, e enquanto
+     * houver notas selecionadas, toques simples selecionam ou removem notas da seleção.
      * <p/>
      * Veja o treinamento no Android Developers sobre <a href="http://developer.android.com/training/basics/fragments/communicating.html">
      * Comunicação com outros fragmentos</a> para mais informações.
      */
     public interface OnNotaSelecionadaListener {
         /**
-         * Executado quando uma {@link Nota} é selecionada por meio de um
-         * {@link android.view.View.OnLongClickListener toque longo}.
+         * Executado quando notas são selecionadas ou removidas da seleção pelo usuário, ou quando
+         * notas selecionadas são excluídas. As notas selecionadas são obtidas em
+         * {@link NotasRecyclerViewAdapter#getIdsSelecionados()}.
          *
-         * @param nota a nota que foi selecionada pelo usuário.
+         * @param quantidade a quantidade de notas selecionadas, ou {@code 0} caso a seleção tenha
+         *                   sido esvaziada.
          */
-        void onNotaSelecionada(Nota nota);
+        void onSelecaoAlterada(int quantidade);
     }
 }
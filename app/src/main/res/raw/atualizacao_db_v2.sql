@@ -0,0 +1,21 @@
+-- Versão 2: índice de busca textual (FTS4) sobre o título e o conteúdo das notas.
+CREATE VIRTUAL TABLE notas_fts USING fts4(content="notas", titulo, conteudo);
+
+CREATE TRIGGER notas_fts_antes_update BEFORE UPDATE ON notas BEGIN
+    DELETE FROM notas_fts WHERE docid = old._id;
+END;
+
+CREATE TRIGGER notas_fts_antes_delete BEFORE DELETE ON notas BEGIN
+    DELETE FROM notas_fts WHERE docid = old._id;
+END;
+
+CREATE TRIGGER notas_fts_apos_update AFTER UPDATE ON notas BEGIN
+    INSERT INTO notas_fts (docid, titulo, conteudo) VALUES (new._id, new.titulo, new.conteudo);
+END;
+
+CREATE TRIGGER notas_fts_apos_insert AFTER INSERT ON notas BEGIN
+    INSERT INTO notas_fts (docid, titulo, conteudo) VALUES (new._id, new.titulo, new.conteudo);
+END;
+
+-- Indexa as notas existentes
+INSERT INTO notas_fts (notas_fts) VALUES ('rebuild');
@@ -0,0 +1,37 @@
+-- Versão 3: formato de armazenamento do conteúdo (texto ou compactado) e prévia em texto das
+-- notas compactadas. O índice de busca passa a utilizar a view notas_texto como conteúdo externo,
+-- pois o conteúdo compactado não pode ser indexado.
+ALTER TABLE notas ADD COLUMN formato INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE notas ADD COLUMN previa TEXT;
+
+DROP TRIGGER IF EXISTS notas_fts_antes_update;
+DROP TRIGGER IF EXISTS notas_fts_antes_delete;
+DROP TRIGGER IF EXISTS notas_fts_apos_update;
+DROP TRIGGER IF EXISTS notas_fts_apos_insert;
+DROP TABLE IF EXISTS notas_fts;
+
+CREATE VIEW notas_texto AS
+    SELECT _id AS rowid, titulo, CASE WHEN formato = 0 THEN conteudo ELSE previa END AS conteudo
+    FROM notas;
+
+CREATE VIRTUAL TABLE notas_fts USING fts4(content="notas_texto", titulo, conteudo);
+
+CREATE TRIGGER notas_fts_antes_update BEFORE UPDATE ON notas BEGIN
+    DELETE FROM notas_fts WHERE docid = old._id;
+END;
+
+CREATE TRIGGER notas_fts_antes_delete BEFORE DELETE ON notas BEGIN
+    DELETE FROM notas_fts WHERE docid = old._id;
+END;
+
+CREATE TRIGGER notas_fts_apos_update AFTER UPDATE ON notas BEGIN
+    INSERT INTO notas_fts (docid, titulo, conteudo)
+    VALUES (new._id, new.titulo, CASE WHEN new.formato = 0 THEN new.conteudo ELSE new.previa END);
+END;
+
+CREATE TRIGGER notas_fts_apos_insert AFTER INSERT ON notas BEGIN
+    INSERT INTO notas_fts (docid, titulo, conteudo)
+    VALUES (new._id, new.titulo, CASE WHEN new.formato = 0 THEN new.conteudo ELSE new.previa END);
+END;
+
+INSERT INTO notas_fts (notas_fts) VALUES ('rebuild');
@@ -0,0 +1,14 @@
+-- Versão 4: conteúdo das notas muito extensas armazenado em segmentos (formato 2), permitindo
+-- ler e alterar um trecho sem carregar o conteúdo completo.
+CREATE TABLE notas_segmentos (
+    nota_id INTEGER NOT NULL,
+    sequencia INTEGER NOT NULL,
+    tamanho INTEGER NOT NULL,
+    formato INTEGER NOT NULL,
+    conteudo NOT NULL,
+    PRIMARY KEY (nota_id, sequencia)
+);
+
+CREATE TRIGGER notas_segmentos_apos_delete AFTER DELETE ON notas BEGIN
+    DELETE FROM notas_segmentos WHERE nota_id = old._id;
+END;
@@ -0,0 +1,18 @@
+-- Versão 5: histórico de revisões das notas, com cada revisão armazenada como a diferença em
+-- relação à anterior e, periodicamente, por completo. As notas existentes passam a ter histórico a
+-- partir da próxima gravação.
+CREATE TABLE notas_revisoes (
+    nota_id INTEGER NOT NULL,
+    revisao INTEGER NOT NULL,
+    data INTEGER NOT NULL,
+    titulo TEXT NOT NULL,
+    tamanho INTEGER NOT NULL,
+    crc INTEGER NOT NULL,
+    formato INTEGER NOT NULL,
+    dados NOT NULL,
+    PRIMARY KEY (nota_id, revisao)
+);
+
+CREATE TRIGGER notas_revisoes_apos_delete AFTER DELETE ON notas BEGIN
+    DELETE FROM notas_revisoes WHERE nota_id = old._id;
+END;
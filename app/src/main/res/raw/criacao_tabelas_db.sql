@@ -1,7 +1,91 @@
+DROP VIEW IF EXISTS notas_texto;
+DROP TABLE IF EXISTS migracoes;
+DROP TABLE IF EXISTS notas_revisoes;
+DROP TABLE IF EXISTS notas_segmentos;
+DROP TABLE IF EXISTS notas_fts;
 DROP TABLE IF EXISTS notas;
 
+-- O conteúdo é armazenado como texto (formato 0) ou, acima de um limite de tamanho, como BLOB
+-- compactado (formato 1) ou em segmentos na tabela notas_segmentos (formato 2, com conteúdo
+-- vazio). Nesses casos, previa guarda o início do conteúdo como texto, para as listagens e para a
+-- busca.
 CREATE TABLE notas (
     _id INTEGER PRIMARY KEY AUTOINCREMENT,
     titulo VARCHAR(50) NOT NULL,
-    conteudo TEXT NOT NULL
-);
\ No newline at end of file
+    conteudo TEXT NOT NULL,
+    formato INTEGER NOT NULL DEFAULT 0,
+    previa TEXT
+);
+
+-- Segmentos do conteúdo das notas extensas, em ordem de sequência. Cada segmento é texto
+-- (formato 0) ou BLOB compactado (formato 1); tamanho é a quantidade de caracteres do segmento, de
+-- modo que um trecho do conteúdo possa ser localizado sem ler os demais segmentos.
+CREATE TABLE notas_segmentos (
+    nota_id INTEGER NOT NULL,
+    sequencia INTEGER NOT NULL,
+    tamanho INTEGER NOT NULL,
+    formato INTEGER NOT NULL,
+    conteudo NOT NULL,
+    PRIMARY KEY (nota_id, sequencia)
+);
+
+CREATE TRIGGER notas_segmentos_apos_delete AFTER DELETE ON notas BEGIN
+    DELETE FROM notas_segmentos WHERE nota_id = old._id;
+END;
+
+-- Histórico de revisões das notas. Cada revisão guarda o título e o conteúdo completo (formato 0,
+-- texto, ou 1, BLOB compactado) ou a diferença binária em relação à revisão anterior (formato 3).
+-- crc é o CRC-32 do conteúdo da revisão em UTF-8, que permite verificar se a revisão anterior
+-- corresponde ao conteúdo sobre o qual a diferença é calculada.
+CREATE TABLE notas_revisoes (
+    nota_id INTEGER NOT NULL,
+    revisao INTEGER NOT NULL,
+    data INTEGER NOT NULL,
+    titulo TEXT NOT NULL,
+    tamanho INTEGER NOT NULL,
+    crc INTEGER NOT NULL,
+    formato INTEGER NOT NULL,
+    dados NOT NULL,
+    PRIMARY KEY (nota_id, revisao)
+);
+
+CREATE TRIGGER notas_revisoes_apos_delete AFTER DELETE ON notas BEGIN
+    DELETE FROM notas_revisoes WHERE nota_id = old._id;
+END;
+
+-- Texto pesquisável das notas: o conteúdo, ou a prévia das notas compactadas
+CREATE VIEW notas_texto AS
+    SELECT _id AS rowid, titulo, CASE WHEN formato = 0 THEN conteudo ELSE previa END AS conteudo
+    FROM notas;
+
+-- Índice de busca textual sobre o título e o conteúdo das notas. O texto não é duplicado: a
+-- view notas_texto é utilizada como conteúdo externo e o índice é mantido pelos gatilhos abaixo.
+CREATE VIRTUAL TABLE notas_fts USING fts4(content="notas_texto", titulo, conteudo);
+
+CREATE TRIGGER notas_fts_antes_update BEFORE UPDATE ON notas BEGIN
+    DELETE FROM notas_fts WHERE docid = old._id;
+END;
+
+CREATE TRIGGER notas_fts_antes_delete BEFORE DELETE ON notas BEGIN
+    DELETE FROM notas_fts WHERE docid = old._id;
+END;
+
+CREATE TRIGGER notas_fts_apos_update AFTER UPDATE ON notas BEGIN
+    INSERT INTO notas_fts (docid, titulo, conteudo)
+    VALUES (new._id, new.titulo, CASE WHEN new.formato = 0 THEN new.conteudo ELSE new.previa END);
+END;
+
+CREATE TRIGGER notas_fts_apos_insert AFTER INSERT ON notas BEGIN
+    INSERT INTO notas_fts (docid, titulo, conteudo)
+    VALUES (new._id, new.titulo, CASE WHEN new.formato = 0 THEN new.conteudo ELSE new.previa END);
+END;
+
+-- Migrações executadas nos bancos de dados criados em versões anteriores, com a duração de cada
+-- uma em milissegundos e a quantidade de notas convertidas (veja MigracoesBanco)
+CREATE TABLE migracoes (
+    versao INTEGER PRIMARY KEY,
+    descricao TEXT NOT NULL,
+    data INTEGER NOT NULL,
+    duracao INTEGER NOT NULL,
+    linhas INTEGER NOT NULL
+);
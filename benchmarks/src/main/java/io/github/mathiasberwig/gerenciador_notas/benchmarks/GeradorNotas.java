@@ -0,0 +1,111 @@
+package io.github.mathiasberwig.gerenciador_notas.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+/**
+ * Gera as notas utilizadas pelos benchmarks. A geração parte de uma semente fixa, de modo que
+ * execuções diferentes meçam exatamente os mesmos dados.
+ */
+public final class GeradorNotas {
+
+    /**
+     * Semente padrão dos geradores.
+     */
+    public static final long SEMENTE = 20160502L;
+
+    /**
+     * Texto de uma reunião, com palavras de um vocabulário restrito (compactação típica de texto).
+     */
+    public static final String TRANSCRICAO = "transcricao";
+
+    /**
+     * Linhas de log coladas na nota, muito repetitivas (compactação elevada).
+     */
+    public static final String LOG = "log";
+
+    /**
+     * Caracteres aleatórios, que não se beneficiam da compactação.
+     */
+    public static final String ALEATORIO = "aleatorio";
+
+    private static final String[] VOCABULARIO = {"reunião", "projeto", "prazo", "cliente", "entrega",
+            "equipe", "revisão", "banco", "de", "dados", "notas", "a", "o", "para", "com", "sobre",
+            "versão", "teste", "ajuste", "interface", "pendente", "concluído", "próxima", "semana"};
+
+    private static final String[] NIVEIS_LOG = {"DEBUG", "INFO", "INFO", "INFO", "WARN", "ERROR"};
+
+    private final Random random;
+
+    public GeradorNotas() {
+        this(SEMENTE);
+    }
+
+    public GeradorNotas(long semente) {
+        random = new Random(semente);
+    }
+
+    /**
+     * @param quantidade quantidade de notas.
+     * @param tamanhoConteudo quantidade de caracteres do conteúdo de cada nota.
+     * @return notas sem {@code id}, com conteúdo do tipo {@link #TRANSCRICAO}.
+     */
+    public ArrayList<Nota> notas(int quantidade, int tamanhoConteudo) {
+        ArrayList<Nota> notas = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            notas.add(nota(null, tamanhoConteudo));
+        }
+        return notas;
+    }
+
+    /**
+     * @param id o {@code id} da nota, ou {@code null}.
+     * @param tamanhoConteudo quantidade de caracteres do conteúdo.
+     * @return uma nota com conteúdo do tipo {@link #TRANSCRICAO}.
+     */
+    public Nota nota(Long id, int tamanhoConteudo) {
+        return new Nota(id, texto(TRANSCRICAO, 8 + random.nextInt(32)).trim(), texto(TRANSCRICAO, tamanhoConteudo));
+    }
+
+    /**
+     * @param tipo {@link #TRANSCRICAO}, {@link #LOG} ou {@link #ALEATORIO}.
+     * @param tamanho quantidade de caracteres.
+     * @return o texto gerado.
+     */
+    public String texto(String tipo, int tamanho) {
+        StringBuilder texto = new StringBuilder(tamanho + 64);
+        switch (tipo) {
+            case TRANSCRICAO:
+                while (texto.length() < tamanho) {
+                    texto.append(VOCABULARIO[random.nextInt(VOCABULARIO.length)]);
+                    texto.append(random.nextInt(12) == 0 ? ".\n" : " ");
+                }
+                break;
+            case LOG:
+                long instante = 1462190400000L;
+                while (texto.length() < tamanho) {
+                    instante += random.nextInt(500);
+                    texto.append(instante).append(' ')
+                            .append(NIVEIS_LOG[random.nextInt(NIVEIS_LOG.length)])
+                            .append(" NotasDAO: operação concluída em ").append(random.nextInt(40))
+                            .append(" ms\n");
+                }
+                break;
+            case ALEATORIO:
+                while (texto.length() < tamanho) {
+                    texto.append((char) (0x21 + random.nextInt(0x2000)));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Tipo de texto desconhecido: " + tipo);
+        }
+        texto.setLength(tamanho);
+        return texto.toString();
+    }
+
+    public Random getRandom() {
+        return random;
+    }
+}
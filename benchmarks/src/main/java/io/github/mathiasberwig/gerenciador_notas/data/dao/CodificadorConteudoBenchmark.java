@@ -0,0 +1,103 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+
+import io.github.mathiasberwig.gerenciador_notas.benchmarks.GeradorNotas;
+
+/**
+ * Custo e ganho do {@link CodificadorConteudo}. Os contadores de {@link Bytes} acompanham cada
+ * compactação, de modo que a taxa de compactação ({@code bytesCompactados / bytesOriginais})
+ * possa ser calculada a partir do mesmo relatório que as latências.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class CodificadorConteudoBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({GeradorNotas.TRANSCRICAO, GeradorNotas.LOG, GeradorNotas.ALEATORIO})
+    public String tipo;
+
+    @Param({"8192", "65536"})
+    public int tamanho;
+
+    private String conteudo;
+    private byte[] compactado;
+
+    /**
+     * Tamanho do conteúdo em UTF-8, calculado uma única vez para não ser incluído nas medições.
+     */
+    private int bytesTexto;
+
+    /**
+     * Bytes do conteúdo em UTF-8 e após a compactação, somados a cada operação.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bytes {
+        public long bytesOriginais;
+        public long bytesCompactados;
+
+        @Setup(Level.Iteration)
+        public void zerar() {
+            bytesOriginais = 0;
+            bytesCompactados = 0;
+        }
+    }
+
+    @Setup
+    public void gerarConteudo() {
+        conteudo = new GeradorNotas().texto(tipo, tamanho);
+        compactado = CodificadorConteudo.compactar(conteudo);
+        bytesTexto = conteudo.getBytes(UTF_8).length;
+    }
+
+    /**
+     * Compactação executada a cada gravação de uma nota extensa. Para conteúdo que não se
+     * beneficia da compactação, mede o custo da tentativa descartada.
+     */
+    @Benchmark
+    public byte[] compactar(Bytes bytes) {
+        byte[] resultado = CodificadorConteudo.compactar(conteudo);
+        bytes.bytesOriginais += bytesTexto;
+        bytes.bytesCompactados += resultado != null ? resultado.length : bytesTexto;
+        return resultado;
+    }
+
+    /**
+     * Descompactação executada a cada leitura de uma nota extensa.
+     */
+    @Benchmark
+    public String descompactar() throws DataFormatException {
+        return compactado != null ? CodificadorConteudo.descompactar(compactado) : conteudo;
+    }
+
+    /**
+     * Referência: codificação em UTF-8 do texto sem compactação, equivalente ao trabalho de gravar
+     * o conteúdo como texto.
+     */
+    @Benchmark
+    public byte[] codificarTexto() {
+        return conteudo.getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+
+import io.github.mathiasberwig.gerenciador_notas.benchmarks.GeradorNotas;
+
+/**
+ * Custo e ganho do {@link DeltaConteudo}, calculado a cada gravação de uma revisão. A revisão nova
+ * é gerada a partir da anterior com {@code edicoes} alterações (inserções, exclusões e trechos
+ * movidos), como em uma sessão de edição. Os contadores de {@link Bytes} permitem comparar o
+ * tamanho da diferença com o do conteúdo completo e com o do conteúdo compactado.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class DeltaConteudoBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({GeradorNotas.TRANSCRICAO, GeradorNotas.LOG})
+    public String tipo;
+
+    @Param({"8192", "65536"})
+    public int tamanho;
+
+    @Param({"1", "10"})
+    public int edicoes;
+
+    private byte[] anterior;
+    private byte[] novo;
+    private byte[] delta;
+
+    /**
+     * Bytes do conteúdo em UTF-8 e da diferença, somados a cada cálculo.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bytes {
+        public long bytesConteudo;
+        public long bytesDelta;
+
+        @Setup(Level.Iteration)
+        public void zerar() {
+            bytesConteudo = 0;
+            bytesDelta = 0;
+        }
+    }
+
+    @Setup
+    public void gerarRevisoes() {
+        final GeradorNotas gerador = new GeradorNotas();
+        final Random random = gerador.getRandom();
+        final String texto = gerador.texto(tipo, tamanho);
+
+        StringBuilder editado = new StringBuilder(texto);
+        for (int i = 0; i < edicoes; i++) {
+            final int posicao = random.nextInt(editado.length());
+            switch (i % 3) {
+                case 0:
+                    editado.insert(posicao, gerador.texto(tipo, 40));
+                    break;
+                case 1:
+                    editado.delete(posicao, Math.min(editado.length(), posicao + 40));
+                    break;
+                default:
+                    final int fim = Math.min(editado.length(), posicao + 200);
+                    final String trecho = editado.substring(posicao, fim);
+                    editado.delete(posicao, fim);
+                    editado.insert(random.nextInt(editado.length() + 1), trecho);
+                    break;
+            }
+        }
+
+        anterior = texto.getBytes(UTF_8);
+        novo = editado.toString().getBytes(UTF_8);
+        delta = DeltaConteudo.calcular(anterior, novo);
+    }
+
+    /**
+     * Cálculo da diferença, executado a cada gravação de uma revisão.
+     */
+    @Benchmark
+    public byte[] calcular(Bytes bytes) {
+        byte[] resultado = DeltaConteudo.calcular(anterior, novo);
+        bytes.bytesConteudo += novo.length;
+        bytes.bytesDelta += resultado.length;
+        return resultado;
+    }
+
+    /**
+     * Aplicação da diferença, executada para cada revisão entre a revisão completa e a
+     * reconstruída.
+     */
+    @Benchmark
+    public byte[] aplicar() throws DataFormatException {
+        return DeltaConteudo.aplicar(anterior, delta);
+    }
+}
@@ -0,0 +1,162 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import io.github.mathiasberwig.gerenciador_notas.benchmarks.GeradorNotas;
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+/**
+ * Duração de cada migração do {@link MigracoesBanco} sobre um banco de dados com
+ * {@link #quantidadeNotas} notas, reproduzida por JDBC com os mesmos scripts
+ * ({@code res/raw/atualizacao_db_vN.sql}) e, como no aplicativo, em uma transação que também grava
+ * a nova versão. O banco de dados na versão anterior à {@link #versao} é criado uma vez e copiado
+ * antes de cada medição. As conversões em Java das versões 3 e 4 alteram somente as notas acima
+ * dos limites de compactação e de segmentação, ausentes deste conjunto, e não são reproduzidas.
+ * <p/>
+ * {@link #cacheKib} compara o cache de páginas padrão do SQLite com o utilizado durante as
+ * migrações ({@link MigracoesBanco#CACHE_MIGRACAO_KIB}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MigracoesBancoBenchmark {
+
+    /**
+     * Esquema da versão 1 (o script de criação original), a partir do qual as migrações são
+     * aplicadas.
+     */
+    private static final String SQL_CRIAR_V1 = "CREATE TABLE notas (_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + " titulo VARCHAR(50) NOT NULL, conteudo TEXT NOT NULL)";
+
+    @Param({"100000"})
+    public int quantidadeNotas;
+
+    @Param({"200"})
+    public int tamanhoConteudo;
+
+    @Param({"2", "3", "4", "5"})
+    public int versao;
+
+    @Param({"2000", "8192"})
+    public int cacheKib;
+
+    private File modelo;
+    private File arquivo;
+    private Connection conexao;
+
+    @Setup(Level.Trial)
+    public void criarModelo() throws IOException, SQLException {
+        modelo = File.createTempFile("gerenciador-notas-v" + (versao - 1), ".db");
+        NotasDAOJdbc.excluirArquivos(modelo);
+
+        // Sem WAL, de modo que o arquivo principal possa ser copiado sozinho
+        Connection c = DriverManager.getConnection("jdbc:sqlite:" + modelo.getPath());
+        try {
+            Statement statement = c.createStatement();
+            try {
+                statement.execute(SQL_CRIAR_V1);
+            } finally {
+                statement.close();
+            }
+
+            c.setAutoCommit(false);
+            PreparedStatement inserir = c.prepareStatement("INSERT INTO notas (titulo, conteudo) VALUES (?, ?)");
+            try {
+                GeradorNotas gerador = new GeradorNotas();
+                for (int i = 0; i < quantidadeNotas; i++) {
+                    Nota nota = gerador.nota(null, tamanhoConteudo);
+                    inserir.setString(1, nota.getTitulo());
+                    inserir.setString(2, nota.getConteudo());
+                    inserir.executeUpdate();
+                }
+                c.commit();
+            } finally {
+                inserir.close();
+                c.setAutoCommit(true);
+            }
+
+            for (int v = 2; v < versao; v++) {
+                migrar(c, v, cacheKib);
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void excluirModelo() {
+        NotasDAOJdbc.excluirArquivos(modelo);
+    }
+
+    @Setup(Level.Invocation)
+    public void copiarModelo() throws IOException, SQLException {
+        arquivo = new File(modelo.getPath() + ".copia");
+        NotasDAOJdbc.excluirArquivos(arquivo);
+        Files.copy(modelo.toPath(), arquivo.toPath());
+
+        conexao = DriverManager.getConnection("jdbc:sqlite:" + arquivo.getPath());
+        Statement statement = conexao.createStatement();
+        try {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+        } finally {
+            statement.close();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void excluirCopia() throws SQLException {
+        conexao.close();
+        NotasDAOJdbc.excluirArquivos(arquivo);
+    }
+
+    @Benchmark
+    public void migrar() throws SQLException {
+        migrar(conexao, versao, cacheKib);
+    }
+
+    /**
+     * Executa o script da migração para a {@code versao} e grava a versão em uma transação, como
+     * o {@link MigracoesBanco}.
+     */
+    private static void migrar(Connection conexao, int versao, int cacheKib) throws SQLException {
+        conexao.setAutoCommit(false);
+        Statement statement = conexao.createStatement();
+        try {
+            statement.execute("PRAGMA cache_size = -" + cacheKib);
+            for (String sql : NotasDAOJdbc.lerScript("/atualizacao_db_v" + versao + ".sql")) {
+                statement.execute(sql);
+            }
+            statement.execute("PRAGMA user_version = " + versao);
+            conexao.commit();
+        } finally {
+            statement.close();
+            conexao.setAutoCommit(true);
+        }
+    }
+}
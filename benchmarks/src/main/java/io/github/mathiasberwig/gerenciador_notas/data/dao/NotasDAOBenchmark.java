@@ -0,0 +1,204 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.github.mathiasberwig.gerenciador_notas.benchmarks.GeradorNotas;
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+/**
+ * Latência das operações dos {@link ArmazenamentoNotas mecanismos de armazenamento} do
+ * {@link NotasDAO}, medidas com o mesmo conjunto de notas. O armazenamento é criado em um arquivo
+ * temporário com {@link #quantidadeNotas} notas antes de cada iteração.
+ * <p/>
+ * O parâmetro {@link #motor} compara o SQLite ({@link NotasDAOJdbc}, com e sem o cache de
+ * instruções compiladas) com o {@link ArmazenamentoLog}, e {@link #tamanhoConteudo} compara notas
+ * curtas (texto) com notas acima do limite de compactação
+ * ({@link CodificadorConteudo#LIMITE_COMPRESSAO}). Sobre o SQLite, as inserções e atualizações
+ * incluem o registro da revisão no histórico, como no aplicativo; ambos os tamanhos ficam abaixo do
+ * limite de segmentação ({@link CodificadorConteudo#LIMITE_SEGMENTACAO}), não reproduzida pelo
+ * {@link NotasDAOJdbc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class NotasDAOBenchmark {
+
+    public static final String SQLITE = "sqlite";
+    public static final String SQLITE_SEM_CACHE = "sqlite-sem-cache";
+    public static final String LOG = "log";
+
+    /**
+     * Quantidade de notas das operações em lote.
+     */
+    private static final int TAMANHO_LOTE = 500;
+
+    /**
+     * Quantidade de notas de uma página da listagem.
+     */
+    private static final int TAMANHO_PAGINA = 50;
+
+    /**
+     * Quantidade de notas geradas antes da medição e utilizadas, em sequência, pelas escritas
+     * individuais; a geração do conteúdo não é incluída nas medições.
+     */
+    private static final int TAMANHO_AMOSTRA = 256;
+
+    @Param({"2000"})
+    public int quantidadeNotas;
+
+    @Param({"200", "16384"})
+    public int tamanhoConteudo;
+
+    @Param({SQLITE, SQLITE_SEM_CACHE, LOG})
+    public String motor;
+
+    private File arquivo;
+    private ArmazenamentoNotas armazenamento;
+    private Random random;
+    private long[] ids;
+    private ArrayList<Nota> lote;
+    private ArrayList<Nota> amostra;
+    private int proximaAmostra;
+
+    @Setup(Level.Iteration)
+    public void criarArmazenamento() throws IOException, SQLException {
+        arquivo = File.createTempFile("gerenciador-notas", "." + motor);
+        if (LOG.equals(motor)) {
+            NotasDAOJdbc.excluirArquivos(arquivo);
+            armazenamento = new ArmazenamentoLog(arquivo);
+        } else {
+            armazenamento = NotasDAOJdbc.criar(arquivo, SQLITE.equals(motor));
+        }
+        GeradorNotas gerador = new GeradorNotas();
+        random = new Random(GeradorNotas.SEMENTE);
+
+        ArrayList<Nota> notas = gerador.notas(quantidadeNotas, tamanhoConteudo);
+        ids = inserirTodas(notas);
+        lote = gerador.notas(TAMANHO_LOTE, tamanhoConteudo);
+        amostra = gerador.notas(TAMANHO_AMOSTRA, tamanhoConteudo);
+    }
+
+    @TearDown(Level.Iteration)
+    public void excluirArmazenamento() throws IOException {
+        armazenamento.fechar();
+        NotasDAOJdbc.excluirArquivos(arquivo);
+    }
+
+    @Benchmark
+    public ArrayList<Nota> listarPagina() throws IOException {
+        return armazenamento.listar(idAleatorio() - 1, TAMANHO_PAGINA);
+    }
+
+    @Benchmark
+    public Nota buscarPorId() throws IOException {
+        return armazenamento.buscarPorId(idAleatorio());
+    }
+
+    @Benchmark
+    public long inserir() throws IOException {
+        return armazenamento.inserir(proximaNota());
+    }
+
+    @Benchmark
+    public boolean atualizar() throws IOException {
+        Nota nota = proximaNota();
+        nota.setId(idAleatorio());
+        return armazenamento.atualizar(nota);
+    }
+
+    /**
+     * A exclusão é medida junto com a inserção da nota excluída, mantendo constante a quantidade
+     * de notas; a latência da exclusão é a diferença em relação a {@link #inserir()}.
+     */
+    @Benchmark
+    public boolean inserirEExcluir() throws IOException {
+        return armazenamento.excluir(armazenamento.inserir(proximaNota()));
+    }
+
+    /**
+     * Insere e exclui {@link #TAMANHO_LOTE} notas, cada operação em uma única transação.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int inserirTodasEExcluirTodas() throws IOException {
+        final long[] idsLote = inserirTodas(lote);
+        final int[] excluidas = {0};
+        armazenamento.executarEmTransacao(new ArmazenamentoNotas.Transacao() {
+            @Override
+            public void executar() throws IOException {
+                for (long id : idsLote) {
+                    if (armazenamento.excluir(id)) excluidas[0]++;
+                }
+            }
+        });
+        return excluidas[0];
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int atualizarTodas() throws IOException {
+        final int[] atualizadas = {0};
+        armazenamento.executarEmTransacao(new ArmazenamentoNotas.Transacao() {
+            @Override
+            public void executar() throws IOException {
+                for (int i = 0; i < lote.size(); i++) {
+                    Nota nota = lote.get(i);
+                    nota.setId(ids[i]);
+                    if (armazenamento.atualizar(nota)) atualizadas[0]++;
+                }
+            }
+        });
+        return atualizadas[0];
+    }
+
+    /**
+     * Insere as notas em uma única transação, como {@link NotasDAO#inserirTodas}.
+     *
+     * @return os {@code ids} gerados.
+     */
+    private long[] inserirTodas(final List<Nota> notas) throws IOException {
+        final long[] idsInseridos = new long[notas.size()];
+        armazenamento.executarEmTransacao(new ArmazenamentoNotas.Transacao() {
+            @Override
+            public void executar() throws IOException {
+                for (int i = 0; i < idsInseridos.length; i++) {
+                    idsInseridos[i] = armazenamento.inserir(notas.get(i));
+                }
+            }
+        });
+        return idsInseridos;
+    }
+
+    private Nota proximaNota() {
+        final Nota nota = amostra.get(proximaAmostra);
+        proximaAmostra = (proximaAmostra + 1) % amostra.size();
+        return nota;
+    }
+
+    private long idAleatorio() {
+        return ids[random.nextInt(ids.length)];
+    }
+}
@@ -0,0 +1,556 @@
+package io.github.mathiasberwig.gerenciador_notas.data.dao;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+/**
+ * Substituto do {@link ArmazenamentoSQLite} para a JVM, sobre o SQLite acessado por JDBC. Executa o
+ * mesmo script de criação ({@code res/raw/criacao_tabelas_db.sql}, incluindo o índice de busca e os
+ * seus gatilhos) e as mesmas instruções do {@link ArmazenamentoSQLite}, que devem ser mantidas
+ * iguais às dele. O conteúdo é compactado pelo próprio {@link CodificadorConteudo}, e cada inserção
+ * e atualização registra a revisão no histórico como o {@code HistoricoRevisoes}: lendo o conteúdo
+ * anterior somente quando a revisão puder ser armazenada como diferença ({@link DeltaConteudo}).
+ * <p/>
+ * A segmentação de notas muito extensas não é reproduzida: conteúdos acima de
+ * {@link CodificadorConteudo#LIMITE_SEGMENTACAO} são rejeitados, em vez de medidos por outro
+ * caminho que o do aplicativo.
+ * <p/>
+ * Assim como no aplicativo, cada escrita individual é uma transação, exceto dentro de
+ * {@link #executarEmTransacao(Transacao)}.
+ */
+public final class NotasDAOJdbc implements ArmazenamentoNotas {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String COLUNA_PREVIA = "CASE WHEN formato = 0 THEN substr(conteudo, 1, "
+            + (PreviaConteudo.TAMANHO + 1) + ") ELSE previa END";
+
+    private static final String SQL_LISTAR = "SELECT _id, titulo, " + COLUNA_PREVIA
+            + " AS conteudo, formato FROM notas WHERE _id > ? ORDER BY _id ASC LIMIT ?";
+    private static final String SQL_LISTAR_ANTERIORES = "SELECT _id, titulo, " + COLUNA_PREVIA
+            + " AS conteudo, formato FROM notas WHERE _id < ? ORDER BY _id DESC LIMIT ?";
+    private static final String SQL_BUSCAR_POR_ID = "SELECT _id, titulo, conteudo, formato FROM notas"
+            + " WHERE _id = ? LIMIT 1";
+    private static final String SQL_INSERIR = "INSERT INTO notas (titulo, conteudo, formato, previa)"
+            + " VALUES (?, ?, ?, ?)";
+    private static final String SQL_ATUALIZAR = "UPDATE notas SET titulo = ?, conteudo = ?, formato = ?,"
+            + " previa = ? WHERE _id = ?";
+    private static final String SQL_EXCLUIR = "DELETE FROM notas WHERE _id = ?";
+    private static final String SQL_FORMATO = "SELECT formato FROM notas WHERE _id = ?";
+    private static final String SQL_CONTEUDO = "SELECT conteudo, formato FROM notas WHERE _id = ?";
+
+    /**
+     * O mesmo de {@code HistoricoRevisoes#INTERVALO_COMPLETAS}.
+     */
+    private static final int INTERVALO_COMPLETAS = 16;
+
+    private static final String COMPLETA = "formato <> " + CodificadorConteudo.FORMATO_DELTA;
+    private static final String SQL_REVISAO_ULTIMA = "SELECT revisao, titulo, crc, (SELECT MAX(revisao)"
+            + " FROM notas_revisoes WHERE nota_id = ?1 AND " + COMPLETA + ") FROM notas_revisoes"
+            + " WHERE nota_id = ?1 ORDER BY revisao DESC LIMIT 1";
+    private static final String SQL_REVISAO_INSERIR = "INSERT INTO notas_revisoes (nota_id, revisao, data,"
+            + " titulo, tamanho, crc, formato, dados) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final Connection conexao;
+
+    /**
+     * {@code true} para compilar cada instrução uma única vez, como o {@link GerenciadorConexao};
+     * {@code false} para compilá-la a cada chamada, como antes do cache de instruções.
+     */
+    private final boolean reutilizarInstrucoes;
+
+    private final HashMap<String, PreparedStatement> instrucoes = new HashMap<>();
+
+    private NotasDAOJdbc(Connection conexao, boolean reutilizarInstrucoes) {
+        this.conexao = conexao;
+        this.reutilizarInstrucoes = reutilizarInstrucoes;
+    }
+
+    /**
+     * Cria o banco de dados no {@code arquivo} (substituindo-o, caso exista) com a mesma
+     * configuração do aplicativo: WAL e o script de criação das tabelas.
+     *
+     * @param arquivo o arquivo do banco de dados.
+     * @param reutilizarInstrucoes veja {@link #reutilizarInstrucoes}.
+     * @return o DAO aberto.
+     */
+    public static NotasDAOJdbc criar(File arquivo, boolean reutilizarInstrucoes) throws SQLException {
+        excluirArquivos(arquivo);
+        Connection conexao = DriverManager.getConnection("jdbc:sqlite:" + arquivo.getPath());
+        Statement statement = conexao.createStatement();
+        try {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            for (String sql : lerScript("/criacao_tabelas_db.sql")) {
+                statement.execute(sql);
+            }
+        } finally {
+            statement.close();
+        }
+        return new NotasDAOJdbc(conexao, reutilizarInstrucoes);
+    }
+
+    /**
+     * Exclui o arquivo do banco de dados e os arquivos auxiliares do WAL.
+     */
+    public static void excluirArquivos(File arquivo) {
+        for (String sufixo : new String[]{"", "-wal", "-shm", "-journal"}) {
+            File auxiliar = new File(arquivo.getPath() + sufixo);
+            if (auxiliar.exists() && !auxiliar.delete()) {
+                throw new IllegalStateException("Não foi possível excluir " + auxiliar);
+            }
+        }
+    }
+
+    @Override
+    public void fechar() throws IOException {
+        try {
+            for (PreparedStatement statement : instrucoes.values()) {
+                statement.close();
+            }
+            instrucoes.clear();
+            conexao.close();
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Equivalente a {@link ArmazenamentoSQLite#listar(long, int)}.
+     */
+    @Override
+    public ArrayList<Nota> listar(long aposId, int limite) throws IOException {
+        return consultarPrevias(SQL_LISTAR, aposId, limite);
+    }
+
+    /**
+     * Equivalente a {@link ArmazenamentoSQLite#listarAnteriores(long, int)}.
+     */
+    @Override
+    public ArrayList<Nota> listarAnteriores(long antesId, int limite) throws IOException {
+        ArrayList<Nota> notas = consultarPrevias(SQL_LISTAR_ANTERIORES, antesId, limite);
+        Collections.reverse(notas);
+        return notas;
+    }
+
+    /**
+     * Equivalente a {@link ArmazenamentoSQLite#buscarPorId(long)}.
+     */
+    @Override
+    public Nota buscarPorId(long id) throws IOException {
+        try {
+            PreparedStatement statement = instrucao(SQL_BUSCAR_POR_ID);
+            try {
+                statement.setLong(1, id);
+                ResultSet resultado = statement.executeQuery();
+                try {
+                    if (!resultado.next()) return null;
+
+                    final String conteudo = resultado.getInt(4) == CodificadorConteudo.FORMATO_DEFLATE
+                            ? CodificadorConteudo.descompactar(resultado.getBytes(3))
+                            : resultado.getString(3);
+                    return new Nota(resultado.getLong(1), resultado.getString(2), conteudo);
+                } finally {
+                    resultado.close();
+                }
+            } finally {
+                liberar(statement);
+            }
+        } catch (SQLException | DataFormatException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Equivalente a {@link ArmazenamentoSQLite#inserir(Nota)}.
+     */
+    @Override
+    public long inserir(Nota nota) throws IOException {
+        try {
+            final boolean transacaoPropria = iniciarTransacao();
+            try {
+                final long rowId = executarInsercao(nota);
+                if (transacaoPropria) conexao.commit();
+                return rowId;
+            } finally {
+                if (transacaoPropria) encerrarTransacao();
+            }
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Equivalente a {@link ArmazenamentoSQLite#atualizar(Nota)}.
+     */
+    @Override
+    public boolean atualizar(Nota nota) throws IOException {
+        try {
+            final boolean transacaoPropria = iniciarTransacao();
+            try {
+                final boolean atualizada = executarAtualizacao(nota) > 0;
+                if (transacaoPropria) conexao.commit();
+                return atualizada;
+            } finally {
+                if (transacaoPropria) encerrarTransacao();
+            }
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Equivalente a {@link ArmazenamentoSQLite#excluir(long)}.
+     */
+    @Override
+    public boolean excluir(long id) throws IOException {
+        try {
+            return executarExclusao(id) > 0;
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Equivalente a {@link ArmazenamentoSQLite#executarEmTransacao(Transacao)}: as escritas
+     * executadas dentro da transação não abrem transações próprias.
+     */
+    @Override
+    public void executarEmTransacao(Transacao transacao) throws IOException {
+        try {
+            if (!conexao.getAutoCommit()) {
+                transacao.executar();
+                return;
+            }
+            conexao.setAutoCommit(false);
+            try {
+                transacao.executar();
+                conexao.commit();
+            } finally {
+                encerrarTransacao();
+            }
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private ArrayList<Nota> consultarPrevias(String sql, long id, int limite) throws IOException {
+        try {
+            PreparedStatement statement = instrucao(sql);
+            try {
+                statement.setLong(1, id);
+                statement.setInt(2, limite);
+                ResultSet resultado = statement.executeQuery();
+                try {
+                    ArrayList<Nota> notas = new ArrayList<>(limite);
+                    while (resultado.next()) {
+                        notas.add(PreviaConteudo.criar(resultado.getLong(1), resultado.getString(2), resultado.getString(3)));
+                    }
+                    return notas;
+                } finally {
+                    resultado.close();
+                }
+            } finally {
+                liberar(statement);
+            }
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private long executarInsercao(Nota nota) throws SQLException {
+        final long rowId;
+        PreparedStatement statement = instrucao(SQL_INSERIR);
+        try {
+            statement.setString(1, nota.getTitulo());
+            vincularConteudo(statement, 2, nota.getConteudo());
+            if (statement.executeUpdate() == 0) return -1;
+
+            Statement consulta = conexao.createStatement();
+            try {
+                ResultSet resultado = consulta.executeQuery("SELECT last_insert_rowid()");
+                rowId = resultado.next() ? resultado.getLong(1) : -1;
+            } finally {
+                consulta.close();
+            }
+        } finally {
+            liberar(statement);
+        }
+        if (rowId != -1) registrarRevisao(rowId, nota.getTitulo(), nota.getConteudo(), false);
+        return rowId;
+    }
+
+    /**
+     * Mesma sequência de {@code ArmazenamentoSQLite#executarAtualizacao}: consulta o formato,
+     * registra a revisão antes de sobrescrever o conteúdo anterior e então atualiza a nota.
+     */
+    private int executarAtualizacao(Nota nota) throws SQLException {
+        if (consultarFormato(nota.getId()) == -1) return 0;
+        registrarRevisao(nota.getId(), nota.getTitulo(), nota.getConteudo(), true);
+
+        PreparedStatement statement = instrucao(SQL_ATUALIZAR);
+        try {
+            statement.setString(1, nota.getTitulo());
+            vincularConteudo(statement, 2, nota.getConteudo());
+            statement.setLong(5, nota.getId());
+            return statement.executeUpdate();
+        } finally {
+            liberar(statement);
+        }
+    }
+
+    private int consultarFormato(long id) throws SQLException {
+        PreparedStatement statement = instrucao(SQL_FORMATO);
+        try {
+            statement.setLong(1, id);
+            ResultSet resultado = statement.executeQuery();
+            try {
+                return resultado.next() ? resultado.getInt(1) : -1;
+            } finally {
+                resultado.close();
+            }
+        } finally {
+            liberar(statement);
+        }
+    }
+
+    /**
+     * Equivalente ao {@code HistoricoRevisoes#registrar}: registra a revisão caso o título ou o
+     * conteúdo sejam diferentes da última, como diferença em relação ao conteúdo anterior quando
+     * ela for vantajosa e a revisão não precisar ser completa.
+     *
+     * @param lerAnterior {@code true} para ler o conteúdo anterior quando a diferença puder ser
+     *                    armazenada; {@code false} para armazenar a revisão por completo.
+     */
+    private void registrarRevisao(long idNota, String titulo, String conteudo, boolean lerAnterior)
+            throws SQLException {
+        final byte[] bytes = conteudo.getBytes(UTF_8);
+        final long crc = calcularCrc(bytes);
+
+        int ultima = 0;
+        int ultimaCompleta = 0;
+        long crcUltima = -1;
+        PreparedStatement consulta = instrucao(SQL_REVISAO_ULTIMA);
+        try {
+            consulta.setLong(1, idNota);
+            ResultSet resultado = consulta.executeQuery();
+            try {
+                if (resultado.next()) {
+                    ultima = resultado.getInt(1);
+                    crcUltima = resultado.getLong(3);
+                    ultimaCompleta = resultado.getInt(4);
+                    // Gravação sem alterações
+                    if (crcUltima == crc && titulo.equals(resultado.getString(2))) return;
+                }
+            } finally {
+                resultado.close();
+            }
+        } finally {
+            liberar(consulta);
+        }
+        final int revisao = ultima + 1;
+
+        byte[] delta = null;
+        if (lerAnterior && ultima > 0 && revisao - ultimaCompleta < INTERVALO_COMPLETAS) {
+            final String anterior = lerConteudo(idNota);
+            final byte[] base = anterior != null ? anterior.getBytes(UTF_8) : null;
+            if (base != null && calcularCrc(base) == crcUltima) {
+                delta = DeltaConteudo.calcular(base, bytes);
+                // Uma diferença maior que metade do conteúdo não compensa a reconstrução
+                if (delta.length > bytes.length / 2) delta = null;
+            }
+        }
+
+        PreparedStatement inserir = instrucao(SQL_REVISAO_INSERIR);
+        try {
+            inserir.setLong(1, idNota);
+            inserir.setInt(2, revisao);
+            inserir.setLong(3, System.currentTimeMillis());
+            inserir.setString(4, titulo);
+            inserir.setInt(5, conteudo.length());
+            inserir.setLong(6, crc);
+            if (delta != null) {
+                inserir.setInt(7, CodificadorConteudo.FORMATO_DELTA);
+                inserir.setBytes(8, delta);
+            } else {
+                final byte[] compactado = CodificadorConteudo.compactar(conteudo);
+                if (compactado != null) {
+                    inserir.setInt(7, CodificadorConteudo.FORMATO_DEFLATE);
+                    inserir.setBytes(8, compactado);
+                } else {
+                    inserir.setInt(7, CodificadorConteudo.FORMATO_TEXTO);
+                    inserir.setString(8, conteudo);
+                }
+            }
+            inserir.executeUpdate();
+        } finally {
+            liberar(inserir);
+        }
+    }
+
+    /**
+     * @return o conteúdo da nota, ou {@code null} caso ela não exista ou não possa ser lido (a
+     * revisão é então armazenada por completo).
+     */
+    private String lerConteudo(long id) throws SQLException {
+        PreparedStatement statement = instrucao(SQL_CONTEUDO);
+        try {
+            statement.setLong(1, id);
+            ResultSet resultado = statement.executeQuery();
+            try {
+                if (!resultado.next()) return null;
+                switch (resultado.getInt(2)) {
+                    case CodificadorConteudo.FORMATO_DEFLATE:
+                        return CodificadorConteudo.descompactar(resultado.getBytes(1));
+                    case CodificadorConteudo.FORMATO_TEXTO:
+                        return resultado.getString(1);
+                    default:
+                        return null;
+                }
+            } catch (DataFormatException ex) {
+                return null;
+            } finally {
+                resultado.close();
+            }
+        } finally {
+            liberar(statement);
+        }
+    }
+
+    private static long calcularCrc(byte[] dados) {
+        final CRC32 crc = new CRC32();
+        crc.update(dados, 0, dados.length);
+        return crc.getValue();
+    }
+
+    private int executarExclusao(long id) throws SQLException {
+        PreparedStatement statement = instrucao(SQL_EXCLUIR);
+        try {
+            statement.setLong(1, id);
+            return statement.executeUpdate();
+        } finally {
+            liberar(statement);
+        }
+    }
+
+    /**
+     * Mesmo tratamento de {@code ArmazenamentoSQLite#vincularConteudo}: compacta o conteúdo extenso
+     * e grava a prévia em texto.
+     */
+    private static void vincularConteudo(PreparedStatement statement, int indice, String conteudo)
+            throws SQLException {
+        if (conteudo.length() > CodificadorConteudo.LIMITE_SEGMENTACAO) {
+            throw new IllegalArgumentException("A segmentação do conteúdo não é reproduzida: "
+                    + conteudo.length() + " caracteres.");
+        }
+        final byte[] compactado = CodificadorConteudo.compactar(conteudo);
+        if (compactado != null) {
+            statement.setBytes(indice, compactado);
+            statement.setInt(indice + 1, CodificadorConteudo.FORMATO_DEFLATE);
+            statement.setString(indice + 2, PreviaConteudo.extrair(conteudo));
+        } else {
+            statement.setString(indice, conteudo);
+            statement.setInt(indice + 1, CodificadorConteudo.FORMATO_TEXTO);
+            statement.setNull(indice + 2, Types.VARCHAR);
+        }
+    }
+
+    private PreparedStatement instrucao(String sql) throws SQLException {
+        if (!reutilizarInstrucoes) {
+            return conexao.prepareStatement(sql);
+        }
+        PreparedStatement statement = instrucoes.get(sql);
+        if (statement == null) {
+            statement = conexao.prepareStatement(sql);
+            instrucoes.put(sql, statement);
+        }
+        return statement;
+    }
+
+    private void liberar(PreparedStatement statement) throws SQLException {
+        if (reutilizarInstrucoes) {
+            statement.clearParameters();
+        } else {
+            statement.close();
+        }
+    }
+
+    /**
+     * @return {@code true} caso a transação tenha sido iniciada; {@code false} caso a escrita seja
+     * executada em uma transação já iniciada.
+     */
+    private boolean iniciarTransacao() throws SQLException {
+        if (!conexao.getAutoCommit()) return false;
+        conexao.setAutoCommit(false);
+        return true;
+    }
+
+    private void encerrarTransacao() throws SQLException {
+        if (!conexao.getAutoCommit()) {
+            conexao.rollback();
+            conexao.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Lê o script do classpath com as mesmas regras de separação de {@code ScriptSQL}.
+     */
+    static List<String> lerScript(String recurso) {
+        InputStream in = NotasDAOJdbc.class.getResourceAsStream(recurso);
+        if (in == null) {
+            throw new IllegalStateException("Script não encontrado: " + recurso);
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+        try {
+            List<String> instrucoes = new ArrayList<>();
+            StringBuilder atual = new StringBuilder();
+            boolean dentroBloco = false;
+
+            String linha;
+            while ((linha = reader.readLine()) != null) {
+                final String texto = linha.trim();
+                if (texto.isEmpty() || texto.startsWith("--")) continue;
+
+                atual.append(linha).append('\n');
+                final String maiusculas = texto.toUpperCase();
+                if (!dentroBloco && maiusculas.endsWith("BEGIN")) {
+                    dentroBloco = true;
+                } else if (dentroBloco ? maiusculas.equals("END;") : texto.endsWith(";")) {
+                    dentroBloco = false;
+                    instrucoes.add(atual.toString().trim().replaceAll(";$", ""));
+                    atual.setLength(0);
+                }
+            }
+            if (atual.toString().trim().length() > 0) {
+                instrucoes.add(atual.toString().trim());
+            }
+            return instrucoes;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Não foi possível ler o script " + recurso, ex);
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
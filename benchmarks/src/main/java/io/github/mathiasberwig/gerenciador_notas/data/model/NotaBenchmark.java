@@ -0,0 +1,70 @@
+package io.github.mathiasberwig.gerenciador_notas.data.model;
+
+import android.os.Parcel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.mathiasberwig.gerenciador_notas.benchmarks.GeradorNotas;
+
+/**
+ * Custo da serialização da {@link Nota} em um {@link Parcel} (estado salvo e argumentos dos
+ * fragmentos) e de {@code equals}/{@code hashCode} (comparação de listas e chaves de mapas).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class NotaBenchmark {
+
+    @Param({"200", "16384"})
+    public int tamanhoConteudo;
+
+    private Nota nota;
+
+    /**
+     * Cópia com o mesmo conteúdo, em outras instâncias de {@code String}: {@code equals} compara
+     * todos os caracteres.
+     */
+    private Nota copia;
+
+    private Parcel parcel;
+
+    @Setup
+    public void criarNotas() {
+        nota = new GeradorNotas().nota(1L, tamanhoConteudo);
+        copia = new Nota(1L, new String(nota.getTitulo()), new String(nota.getConteudo()));
+        parcel = Parcel.obtain();
+    }
+
+    @Benchmark
+    public Nota escreverELerParcel() {
+        parcel.recycle();
+        nota.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        return Nota.CREATOR.createFromParcel(parcel);
+    }
+
+    @Benchmark
+    public boolean equalsCopia() {
+        return nota.equals(copia);
+    }
+
+    @Benchmark
+    public int hashCodeNota() {
+        return copia.hashCode();
+    }
+}
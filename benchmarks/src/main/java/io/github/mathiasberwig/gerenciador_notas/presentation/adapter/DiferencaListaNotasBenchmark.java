@@ -0,0 +1,102 @@
+package io.github.mathiasberwig.gerenciador_notas.presentation.adapter;
+
+import android.support.v7.widget.RecyclerView;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.github.mathiasberwig.gerenciador_notas.benchmarks.GeradorNotas;
+import io.github.mathiasberwig.gerenciador_notas.data.model.Nota;
+
+/**
+ * Custo de {@link DiferencaListaNotas#calcular} e da aplicação das operações em um adaptador, para
+ * uma janela de {@link NotasRecyclerViewAdapter#MAX_NOTAS_JANELA} notas e diferentes alterações
+ * entre a lista antiga e a nova.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class DiferencaListaNotasBenchmark {
+
+    /**
+     * Cópia de {@link NotasRecyclerViewAdapter#MAX_NOTAS_JANELA}.
+     */
+    private static final int TAMANHO_JANELA = 200;
+
+    /**
+     * {@code identicas}: listas iguais (em outras instâncias); {@code alteracoes}: 10% das notas
+     * alteradas; {@code insercoesRemocoes}: 10% removidas e 10% inseridas; {@code movimentacoes}:
+     * 20 notas reordenadas.
+     */
+    @Param({"identicas", "alteracoes", "insercoesRemocoes", "movimentacoes"})
+    public String cenario;
+
+    private ArrayList<Nota> antiga;
+    private ArrayList<Nota> nova;
+    private final RecyclerView.Adapter<?> adapter = new RecyclerView.Adapter<Object>() {
+    };
+
+    @Setup
+    public void criarListas() {
+        GeradorNotas gerador = new GeradorNotas();
+        Random random = gerador.getRandom();
+
+        antiga = new ArrayList<>(TAMANHO_JANELA);
+        for (long id = 1; id <= TAMANHO_JANELA; id++) {
+            antiga.add(gerador.nota(id, 200));
+        }
+        nova = new ArrayList<>(TAMANHO_JANELA);
+        for (Nota nota : antiga) {
+            nova.add(new Nota(nota.getId(), nota.getTitulo(), new String(nota.getConteudo())));
+        }
+
+        switch (cenario) {
+            case "identicas":
+                break;
+            case "alteracoes":
+                for (int i = 0; i < TAMANHO_JANELA / 10; i++) {
+                    final int posicao = random.nextInt(TAMANHO_JANELA);
+                    nova.set(posicao, gerador.nota(nova.get(posicao).getId(), 200));
+                }
+                break;
+            case "insercoesRemocoes":
+                long proximoId = TAMANHO_JANELA + 1;
+                for (int i = 0; i < TAMANHO_JANELA / 10; i++) {
+                    nova.remove(random.nextInt(nova.size()));
+                    nova.add(random.nextInt(nova.size() + 1), gerador.nota(proximoId++, 200));
+                }
+                break;
+            case "movimentacoes":
+                for (int i = 0; i < 20; i++) {
+                    Collections.swap(nova, random.nextInt(TAMANHO_JANELA), random.nextInt(TAMANHO_JANELA));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Cenário desconhecido: " + cenario);
+        }
+    }
+
+    @Benchmark
+    public DiferencaListaNotas calcularEAplicar() {
+        DiferencaListaNotas diferenca = DiferencaListaNotas.calcular(antiga, nova);
+        diferenca.aplicar(adapter);
+        return diferenca;
+    }
+}
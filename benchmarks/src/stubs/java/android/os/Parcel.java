@@ -0,0 +1,114 @@
+package android.os;
+
+import java.util.Arrays;
+
+/**
+ * Substituto de {@code android.os.Parcel} para a JVM. Assim como o original, grava os valores em
+ * um buffer contíguo (textos em UTF-16, precedidos do tamanho), de modo que o custo medido seja
+ * o de serializar e copiar os dados, e não o de uma estrutura auxiliar.
+ */
+public final class Parcel {
+    private byte[] dados = new byte[256];
+    private int tamanho;
+    private int posicao;
+
+    private Parcel() {
+    }
+
+    public static Parcel obtain() {
+        return new Parcel();
+    }
+
+    public void recycle() {
+        tamanho = 0;
+        posicao = 0;
+    }
+
+    public int dataSize() {
+        return tamanho;
+    }
+
+    public int dataPosition() {
+        return posicao;
+    }
+
+    public void setDataPosition(int pos) {
+        posicao = pos;
+    }
+
+    public byte[] marshall() {
+        return Arrays.copyOf(dados, tamanho);
+    }
+
+    public void writeByte(byte val) {
+        reservar(1);
+        dados[posicao++] = val;
+        atualizarTamanho();
+    }
+
+    public byte readByte() {
+        return dados[posicao++];
+    }
+
+    public void writeInt(int val) {
+        reservar(4);
+        dados[posicao++] = (byte) (val >>> 24);
+        dados[posicao++] = (byte) (val >>> 16);
+        dados[posicao++] = (byte) (val >>> 8);
+        dados[posicao++] = (byte) val;
+        atualizarTamanho();
+    }
+
+    public int readInt() {
+        return (dados[posicao++] & 0xFF) << 24
+                | (dados[posicao++] & 0xFF) << 16
+                | (dados[posicao++] & 0xFF) << 8
+                | (dados[posicao++] & 0xFF);
+    }
+
+    public void writeLong(long val) {
+        writeInt((int) (val >>> 32));
+        writeInt((int) val);
+    }
+
+    public long readLong() {
+        return (long) readInt() << 32 | (readInt() & 0xFFFFFFFFL);
+    }
+
+    public void writeString(String val) {
+        if (val == null) {
+            writeInt(-1);
+            return;
+        }
+        final int quantidade = val.length();
+        writeInt(quantidade);
+        reservar(quantidade * 2);
+        for (int i = 0; i < quantidade; i++) {
+            final char c = val.charAt(i);
+            dados[posicao++] = (byte) (c >>> 8);
+            dados[posicao++] = (byte) c;
+        }
+        atualizarTamanho();
+    }
+
+    public String readString() {
+        final int quantidade = readInt();
+        if (quantidade < 0) return null;
+
+        final char[] chars = new char[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            chars[i] = (char) ((dados[posicao++] & 0xFF) << 8 | (dados[posicao++] & 0xFF));
+        }
+        return new String(chars);
+    }
+
+    private void reservar(int bytes) {
+        if (posicao + bytes > dados.length) {
+            dados = Arrays.copyOf(dados, Math.max(dados.length * 2, posicao + bytes));
+        }
+    }
+
+    private void atualizarTamanho() {
+        tamanho = Math.max(tamanho, posicao);
+    }
+}
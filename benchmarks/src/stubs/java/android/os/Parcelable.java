@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * Substituto de {@code android.os.Parcelable} para a JVM, com somente os membros utilizados pelas
+ * classes do aplicativo medidas nos benchmarks.
+ */
+public interface Parcelable {
+
+    int describeContents();
+
+    void writeToParcel(Parcel dest, int flags);
+
+    interface Creator<T> {
+        T createFromParcel(Parcel source);
+
+        T[] newArray(int size);
+    }
+}
@@ -0,0 +1,27 @@
+package android.support.v7.widget;
+
+/**
+ * Substituto de {@code android.support.v7.widget.RecyclerView} para a JVM, com somente as
+ * notificações do adaptador utilizadas por
+ * {@code io.github.mathiasberwig.gerenciador_notas.presentation.adapter.DiferencaListaNotas}.
+ */
+public class RecyclerView {
+
+    public abstract static class Adapter<VH> {
+
+        public void notifyDataSetChanged() {
+        }
+
+        public void notifyItemRangeChanged(int positionStart, int itemCount) {
+        }
+
+        public void notifyItemRangeInserted(int positionStart, int itemCount) {
+        }
+
+        public void notifyItemRangeRemoved(int positionStart, int itemCount) {
+        }
+
+        public void notifyItemMoved(int fromPosition, int toPosition) {
+        }
+    }
+}